@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def archive = new File(basedir, ".mvn/keepass.jsa")
+assert archive.isFile()
+assert archive.length() > 0
+
+def classList = new File(basedir, ".mvn/keepass.classlist")
+assert classList.text.contains("org/knowhowlab/maven/plugins/keepass/ReadMojo")
+
+def log = new File(basedir, "build.log").text
+assert log.contains("CDS archive is created")
+assert !log.contains("Startup benchmark")
+
+def trainingLog = new File(basedir, ".mvn/keepass-cds.log")
+assert trainingLog.text.contains("Records are resolved")
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import de.slackspace.openkeepass.KeePassDatabase
+import de.slackspace.openkeepass.domain.EntryBuilder
+import de.slackspace.openkeepass.domain.GroupBuilder
+import de.slackspace.openkeepass.domain.KeePassFileBuilder
+import de.slackspace.openkeepass.domain.Property
+
+// 10 regions x 10 teams x 10 services x 5 environments, every environment has 10 entries
+// in a nested "secrets" group: 50000 entries, 6 group levels below Root
+def environments = ["dev", "test", "stage", "prod", "qa"]
+def entriesPerGroup = 10
+def recordCount = 300
+
+def groupUuid = { index -> new UUID(0x67726f7570000000L, index as long) }
+def entryUuid = { index -> new UUID(0x656e747279000000L, index as long) }
+def entryPath = { int index ->
+    int k = index.intdiv(entriesPerGroup)
+    int e = k % 5
+    int s = k.intdiv(5) % 10
+    int t = k.intdiv(50) % 10
+    int r = k.intdiv(500)
+    [r: r, t: t, s: s, e: e, k: k, env: environments[e]]
+}
+
+long start = System.currentTimeMillis()
+def root = new GroupBuilder(groupUuid(0)).name("Root")
+int n = 0
+for (r in 0..9) {
+    def region = new GroupBuilder(groupUuid(100000 + r)).name("region-$r")
+    for (t in 0..9) {
+        def team = new GroupBuilder(groupUuid(200000 + r * 10 + t)).name("team-$r-$t")
+        for (s in 0..9) {
+            def service = new GroupBuilder(groupUuid(300000 + (r * 10 + t) * 10 + s)).name("service-$r-$t-$s")
+            for (e in 0..4) {
+                int k = ((r * 10 + t) * 10 + s) * 5 + e
+                def environment = new GroupBuilder(groupUuid(400000 + k)).name("${environments[e]}-$r-$t-$s")
+                def secrets = new GroupBuilder(groupUuid(500000 + k)).name("secrets")
+                for (i in 0..<entriesPerGroup) {
+                    def entry = new EntryBuilder(entryUuid(n))
+                            .title("entry-$n")
+                            .username("user-$n")
+                            .password("pass-$n")
+                            .url("https://host-${n}.example.org")
+                    entry.customPropertyList.add(new Property("environment", environments[e], false))
+                    entry.customPropertyList.add(new Property("index", "$n", false))
+                    secrets.addEntry(entry.build())
+                    n++
+                }
+                environment.addGroup(secrets.build())
+                service.addGroup(environment.build())
+            }
+            team.addGroup(service.build())
+        }
+        region.addGroup(team.build())
+    }
+    root.addGroup(region.build())
+}
+
+def target = new File(basedir, "target")
+target.mkdirs()
+new File(target, "large.kdbx").withOutputStream { out ->
+    KeePassDatabase.write(new KeePassFileBuilder("large").addTopGroups(root.build()).build(), "large123", out)
+}
+println "Generated KeePass file with $n entries in ${System.currentTimeMillis() - start} ms"
+
+// records cycle through all group and entry filter types
+def records = new StringBuilder()
+def expected = new Properties()
+for (i in 0..<recordCount) {
+    int entry = (i * 167) % n
+    def p = entryPath(entry)
+    def uuid = entryUuid(entry).toString()
+    def path = "/Root/region-${p.r}/team-${p.r}-${p.t}/service-${p.r}-${p.t}-${p.s}/${p.env}-${p.r}-${p.t}-${p.s}/secrets"
+    def group = null
+    def filter
+    switch (i % 10) {
+        case 0: filter = "entry-$entry"; break
+        case 1: filter = "title:entry-$entry"; break
+        case 2: filter = "regex:entr[y]-$entry"; break
+        case 3: filter = "uuid:${uuid.replace('-', '')}"; break
+        case 4: group = "path:$path"; filter = "title:entry-$entry"; break
+        case 5: group = "name:${p.env}-${p.r}-${p.t}-${p.s}"; filter = "entry-$entry"; break
+        case 6: group = "regex:service-${p.r}-${p.t}-${p.s}"; filter = "regex:entry-$entry"; break
+        case 7: group = "uuid:${groupUuid(500000 + p.k)}"; filter = "title:entry-$entry"; break
+        case 8: filter = "and(title:entry-$entry, attr:environment=${p.env})"; break
+        default:
+            group = "and(regex:team-${p.r}-${p.t}, not(name:region-${p.r}))"
+            filter = "or(uuid:$uuid, attr:index=$entry)"
+    }
+    records.append("""
+                                <record>
+                                    <prefix>r${i}.</prefix>
+${group == null ? '' : "                                    <group>$group</group>\n"}                                    <entry>$filter</entry>
+                                </record>""")
+    expected.setProperty("r${i}.username", "user-$entry".toString())
+    expected.setProperty("r${i}.password", "pass-$entry".toString())
+    expected.setProperty("r${i}.url", "https://host-${entry}.example.org".toString())
+}
+
+def pom = new File(basedir, "pom.xml")
+pom.text = pom.text.replace("<!-- @records@ -->", records.toString().trim())
+new File(target, "expected.properties").withWriter { expected.store(it, null) }
+return true
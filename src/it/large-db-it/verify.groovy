@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+def expected = new Properties()
+new File(basedir, "target/expected.properties").withReader { expected.load(it) }
+def properties = new Properties()
+new File(basedir, "output.properties").withReader { properties.load(it) }
+
+assert expected.size() == 900
+expected.each { key, value ->
+    assert properties.getProperty(key) == value: "$key"
+}
+
+// per-phase timings are checked against the budget, e.g. -Dkeepass.it.budget.open=60000
+def budget = new Properties()
+new File(basedir, "budget.properties").withReader { budget.load(it) }
+def log = new File(basedir, "build.log").text
+def timings = log =~ /Records are resolved: (\d+) records in (\d+) ms \(open (\d+) ms, compact (\d+) ms, lookup (\d+) ms\)/
+assert timings.find()
+assert timings.group(1) as int == 300
+def phases = [total: timings.group(2), open: timings.group(3), compact: timings.group(4), lookup: timings.group(5)]
+phases.each { phase, time ->
+    def name = "keepass.it.budget.$phase"
+    long limit = (System.getProperty(name) ?: budget.getProperty(name)) as long
+    println "Phase $phase: $time ms (budget $limit ms)"
+    assert (time as long) <= limit: "Phase $phase took $time ms, budget is $limit ms"
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+["", "module-a", "module-b", "module-c"].each { module ->
+    def properties = new Properties()
+    properties.load(new FileReader(new File(new File(basedir, module), "output.properties")))
+
+    assert properties.getProperty("nexus.username").equals("khl")
+    assert properties.getProperty("nexus.password").equals("khl-oss")
+    assert properties.getProperty("http.username").equals("admin")
+    assert properties.getProperty("http.password").equals("123456")
+}
+
+def log = new File(basedir, "build.log").text
+assert log.count("KeePass file is open") == 1
+assert log.count("Records are resolved by another module") == 3
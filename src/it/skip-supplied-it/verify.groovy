@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+def properties = new Properties()
+properties.load(new FileReader(new File(basedir, "output.properties")))
+
+assert properties.getProperty("http.username").equals("admin")
+assert properties.getProperty("http.url").equals("http://localhost:8080")
+assert properties.getProperty("http.password").equals("123456")
+// supplied properties are not overwritten
+assert properties.getProperty("nexus.password") != "khl-oss"
+
+def log = new File(basedir, "build.log").text
+assert log.count("All properties of records are already set. KeePass file is not opened") == 1
+assert log.count("Records with missing properties: 1 of 2") == 1
+assert log.count("KeePass file is open") == 1
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentProtocol;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassRejectedCredentialsException;
+
+/**
+ * Base class for goals that work with a KeePass file and its credentials
+ *
+ * @author dpishchukhin.
+ */
+public abstract class AbstractKeePassMojo extends AbstractMojo {
+    /**
+     * Location of a KeePass file.
+     */
+    @Parameter(property = "keepass.file", required = true)
+    protected File file;
+
+    /**
+     * KeePass File password credentials
+     */
+    @Parameter(property = "keepass.password")
+    protected String password;
+
+    /**
+     * Location of a key file.
+     */
+    @Parameter(property = "keepass.keyfile")
+    protected File keyFile;
+
+    /**
+     * Location of the agent socket. By default it is a file in a per-user directory
+     * in <code>java.io.tmpdir</code>, named after the KeePass file path.
+     */
+    @Parameter(property = "keepass.agent.socket")
+    protected File agentSocket;
+
+    /**
+     * Number of threads that decrypt the file payload and verify its blocks.
+     * By default all available processors are used.
+     */
+    @Parameter(property = "keepass.decrypt-threads", defaultValue = "0")
+    protected int decryptThreads;
+
+    protected Path getAgentSocket() {
+        return agentSocket == null ? KeePassAgentProtocol.defaultSocket(file) : agentSocket.toPath();
+    }
+
+    protected boolean hasCredentials() {
+        return password != null || keyFile != null;
+    }
+
+    protected void checkCredentials() throws MojoFailureException {
+        if (!hasCredentials()) {
+            getLog().error("Both credentials Password or/and Key file are missed");
+            throw new MojoFailureException("Both credentials Password or/and Key file are missed");
+        }
+    }
+
+    protected byte[] compositeKey() throws MojoFailureException {
+        try {
+            return KeePassDAO.compositeKey(password, keyFile);
+        } catch (IllegalArgumentException e) {
+            getLog().error(e.getMessage());
+            throw new MojoFailureException(e.getMessage(), e);
+        }
+    }
+
+    protected KeePassDAO open(KeePassDAO dao) throws MojoFailureException {
+        try {
+            return unlock(dao);
+        } catch (KeePassRejectedCredentialsException e) {
+            // the message is precise enough without a stack trace
+            getLog().error(e.getMessage());
+            throw new MojoFailureException(e.getMessage(), e);
+        } catch (Exception e) {
+            getLog().error(format("Unable to open file: %s", file.getAbsolutePath()), e);
+            throw new MojoFailureException(format("Unable to open file: %s", file.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Opens the file with configured credentials
+     *
+     * @param dao KeePass file
+     * @return open KeePass file
+     */
+    protected KeePassDAO unlock(KeePassDAO dao) {
+        return unlock(dao, password, keyFile, decryptThreads);
+    }
+
+    /**
+     * Opens the file with given credentials. Does not refer to the mojo, so it can be used by openers that outlive the build
+     *
+     * @param dao            KeePass file
+     * @param password       password or <code>null</code>
+     * @param keyFile        key file or <code>null</code>
+     * @param decryptThreads number of decryption threads, <code>0</code> for default
+     * @return open KeePass file
+     */
+    protected static KeePassDAO unlock(KeePassDAO dao, String password, File keyFile, int decryptThreads) {
+        if (decryptThreads > 0) {
+            dao.setDecryptThreads(decryptThreads);
+        }
+        if (keyFile == null) {
+            dao.open(password);
+        } else if (password == null) {
+            dao.open(keyFile);
+        } else {
+            dao.open(password, keyFile);
+        }
+        return dao;
+    }
+}
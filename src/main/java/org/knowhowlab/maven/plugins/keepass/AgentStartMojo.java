@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.lang.String.format;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgent;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentClient;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentProtocol;
+
+/**
+ * Starts a background agent that keeps the open KeePass file in memory and serves lookups
+ * of {@link ReadMojo} over a Unix domain socket, so following builds do not pay for key derivation
+ *
+ * @author dpishchukhin.
+ */
+@Mojo(name = "agent-start", requiresProject = false, threadSafe = true)
+public class AgentStartMojo extends AbstractKeePassMojo {
+    /**
+     * Agent time to live in seconds.
+     */
+    @Parameter(property = "keepass.agent.ttl", defaultValue = "3600")
+    private long agentTtl;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        checkCredentials();
+
+        Path socket = getAgentSocket();
+        if (Files.exists(socket)) {
+            try (KeePassAgentClient ignored = KeePassAgentClient.connect(socket, file, compositeKey())) {
+                getLog().info(format("Agent is already running: %s", socket));
+                return;
+            } catch (KeePassAgentClient.RejectedCredentialsException e) {
+                getLog().error(format("Agent is already running with other credentials: %s", socket));
+                throw new MojoFailureException(e.getMessage(), e);
+            } catch (KeePassAgentClient.StaleAgentException e) {
+                getLog().info("Agent data is outdated. Restart agent");
+                stopAgent(socket);
+            } catch (IOException e) {
+                getLog().debug(format("Agent is not available: %s", e.getMessage()));
+            }
+        }
+
+        Path log;
+        try {
+            KeePassAgentProtocol.secureDirectory(socket.toAbsolutePath().getParent());
+            log = Paths.get(socket.toAbsolutePath() + ".log");
+        } catch (IOException e) {
+            throw new MojoFailureException(format("Unable to prepare agent directory: %s", e.getMessage()), e);
+        }
+
+        List<String> command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(getClasspath());
+        command.add(KeePassAgent.class.getName());
+        command.add(socket.toAbsolutePath().toString());
+        command.add(file.getAbsolutePath());
+        command.add(String.valueOf(agentTtl));
+        if (keyFile != null) {
+            command.add(keyFile.getAbsolutePath());
+        }
+
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectError(log.toFile())
+                    .start();
+            try (DataOutputStream credentials = new DataOutputStream(process.getOutputStream())) {
+                credentials.writeBoolean(password != null);
+                if (password != null) {
+                    byte[] bytes = password.getBytes(StandardCharsets.UTF_8);
+                    credentials.writeInt(bytes.length);
+                    credentials.write(bytes);
+                }
+            }
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            if (!KeePassAgent.READY.equals(line)) {
+                getLog().error(format("Agent failed to start. See log: %s", log));
+                throw new MojoFailureException(format("Agent failed to start for file: %s", file.getAbsolutePath()));
+            }
+            getLog().info(format("Agent is started: %s (ttl %d s)", socket, agentTtl));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to start agent", e);
+        }
+    }
+
+    private void stopAgent(Path socket) throws MojoFailureException {
+        try {
+            KeePassAgentClient.stop(socket, file, compositeKey());
+        } catch (IOException e) {
+            getLog().debug(format("Unable to stop agent: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Agent runs with the plugin classpath
+     */
+    private String getClasspath() throws MojoExecutionException {
+        Set<String> elements = new LinkedHashSet<String>();
+        ClassLoader classLoader = getClass().getClassLoader();
+        if (classLoader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                try {
+                    elements.add(new File(url.toURI()).getAbsolutePath());
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    throw new MojoExecutionException(format("Unsupported classpath element: %s", url), e);
+                }
+            }
+        } else {
+            elements.add(System.getProperty("java.class.path"));
+        }
+        return String.join(File.pathSeparator, elements);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentClient;
+
+/**
+ * Stops the agent started by {@link AgentStartMojo}
+ *
+ * @author dpishchukhin.
+ */
+@Mojo(name = "agent-stop", requiresProject = false, threadSafe = true)
+public class AgentStopMojo extends AbstractKeePassMojo {
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        checkCredentials();
+
+        Path socket = getAgentSocket();
+        if (!Files.exists(socket)) {
+            getLog().info(format("Agent is not running: %s", socket));
+            return;
+        }
+        try {
+            KeePassAgentClient.stop(socket, file, compositeKey());
+            getLog().info(format("Agent is stopped: %s", socket));
+        } catch (IOException e) {
+            getLog().warn(format("Agent is not available: %s", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Definition of entry attachment that has to be written to a file
+ *
+ * @author dpishchukhin.
+ */
+public class Attachment {
+    /**
+     * Attachment name
+     */
+    @Parameter(required = true)
+    private String name;
+
+    /**
+     * A file name relative to attachments directory that has to be used instead of attachment name. Optional.
+     */
+    @Parameter(required = false)
+    private String mapTo;
+
+    public Attachment() {
+    }
+
+    Attachment(String name, String mapTo) {
+        this.name = name;
+        this.mapTo = mapTo;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMapTo() {
+        return mapTo;
+    }
+
+    @Override
+    public String toString() {
+        return "Attachment{" +
+                "name='" + name + '\'' +
+                ", mapTo='" + mapTo + '\'' +
+                '}';
+    }
+}
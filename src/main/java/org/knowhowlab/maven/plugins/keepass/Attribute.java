@@ -36,6 +36,14 @@ public class Attribute {
     @Parameter(required = false)
     private String mapTo;
 
+    public Attribute() {
+    }
+
+    Attribute(String name, String mapTo) {
+        this.name = name;
+        this.mapTo = mapTo;
+    }
+
     public String getName() {
         return name;
     }
@@ -43,4 +51,12 @@ public class Attribute {
     public String getMapTo() {
         return mapTo;
     }
+
+    @Override
+    public String toString() {
+        return "Attribute{" +
+                "name='" + name + '\'' +
+                ", mapTo='" + mapTo + '\'' +
+                '}';
+    }
 }
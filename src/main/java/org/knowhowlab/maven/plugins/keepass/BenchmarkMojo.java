@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassKdfParameters;
+
+/**
+ * Reports key derivation parameters of a KeePass file, measures how long it takes to open the file
+ * on the current machine and calculates parameters that would hit the target unlock time
+ *
+ * @author dpishchukhin.
+ */
+@Mojo(name = "benchmark", threadSafe = true)
+public class BenchmarkMojo extends AbstractKeePassMojo {
+    /**
+     * Target unlock time in milliseconds.
+     */
+    @Parameter(property = "keepass.benchmark.target", defaultValue = "300")
+    private long targetMillis;
+
+    /**
+     * Number of measurements. The fastest one is used for calculations.
+     */
+    @Parameter(property = "keepass.benchmark.iterations", defaultValue = "3")
+    private int iterations;
+
+    /**
+     * Location of the JSON report.
+     */
+    @Parameter(property = "keepass.benchmark.output", defaultValue = "${project.build.directory}/keepass-benchmark.json")
+    private File outputFile;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (iterations < 1 || targetMillis < 1) {
+            throw new MojoFailureException("Both iterations and target time have to be positive");
+        }
+
+        KeePassKdfParameters kdf = new KeePassDAO(file).getKdfParameters();
+        getLog().info(format("KeePass file: %s", file.getAbsolutePath()));
+        getLog().info(format("File format version: %s", toVersion(kdf.getFileFormatVersion())));
+        getLog().info(format("KDF: %s", kdf.getType()));
+
+        Result result = new Result();
+        switch (kdf.getType()) {
+            case AES:
+                getLog().info(format("Transform rounds: %d", kdf.getRounds()));
+                result.keyTransformNanos = measureKeyTransform(kdf.getRounds());
+                double roundsPerSecond = kdf.getRounds() * 1e9 / result.keyTransformNanos;
+                result.recommendedRounds = Math.max(1L, (long) (roundsPerSecond * targetMillis / 1000));
+                getLog().info(format("Key transformation: %s ms (%.0f rounds/s)",
+                        toMillis(result.keyTransformNanos), roundsPerSecond));
+                break;
+            case ARGON2D:
+            case ARGON2ID:
+                getLog().info(format("Memory: %d KiB, iterations: %d, parallelism: %d",
+                        kdf.getMemory() / 1024, kdf.getIterations(), kdf.getParallelism()));
+                getLog().warn("Argon2 key derivation is not supported for decryption, timings are not available");
+                break;
+            default:
+                getLog().warn("Unknown KDF, timings are not available");
+        }
+
+        if (kdf.getType() == KeePassKdfParameters.Type.AES) {
+            if (hasCredentials()) {
+                measureOpen(result);
+                getLog().info(format("Open: min %s ms, avg %s ms", toMillis(result.openMinNanos),
+                        toMillis(result.openAvgNanos)));
+            } else {
+                getLog().warn("Credentials are missed. Open time is not measured");
+            }
+            getLog().info(format("Recommended transform rounds for %d ms: %d", targetMillis, result.recommendedRounds));
+        }
+
+        writeReport(kdf, result);
+        getLog().info(format("Benchmark report: %s", outputFile.getAbsolutePath()));
+    }
+
+    private long measureKeyTransform(long rounds) {
+        KeePassDAO dao = new KeePassDAO(file);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            best = Math.min(best, dao.measureKeyTransform(rounds));
+        }
+        return best;
+    }
+
+    private void measureOpen(Result result) throws MojoFailureException {
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            open(new KeePassDAO(file));
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            best = Math.min(best, elapsed);
+        }
+        result.openMinNanos = best;
+        result.openAvgNanos = total / iterations;
+    }
+
+    private void writeReport(KeePassKdfParameters kdf, Result result) throws MojoExecutionException {
+        File dir = outputFile.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new MojoExecutionException(format("Unable to create directory: %s", dir));
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(outputFile.toPath()),
+                StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write(format("  \"file\": \"%s\",%n", escape(file.getAbsolutePath())));
+            writer.write(format("  \"fileFormatVersion\": \"%s\",%n", toVersion(kdf.getFileFormatVersion())));
+            writer.write("  \"kdf\": {\n");
+            writer.write(format("    \"type\": \"%s\",%n", kdf.getType()));
+            writer.write(format("    \"rounds\": %d,%n", kdf.getRounds()));
+            writer.write(format("    \"memory\": %d,%n", kdf.getMemory()));
+            writer.write(format("    \"iterations\": %d,%n", kdf.getIterations()));
+            writer.write(format("    \"parallelism\": %d%n", kdf.getParallelism()));
+            writer.write("  },\n");
+            writer.write(format("  \"targetMillis\": %d,%n", targetMillis));
+            writer.write(format("  \"keyTransformMillis\": %s,%n", toJsonMillis(result.keyTransformNanos)));
+            writer.write(format("  \"openMinMillis\": %s,%n", toJsonMillis(result.openMinNanos)));
+            writer.write(format("  \"openAvgMillis\": %s,%n", toJsonMillis(result.openAvgNanos)));
+            writer.write(format("  \"recommendedRounds\": %s%n",
+                    result.recommendedRounds < 0 ? "null" : String.valueOf(result.recommendedRounds)));
+            writer.write("}\n");
+        } catch (IOException e) {
+            throw new MojoExecutionException(format("Unable to write benchmark report: %s", outputFile), e);
+        }
+    }
+
+    private static String toVersion(int version) {
+        return format("%d.%d", version >>> 16, version & 0xFFFF);
+    }
+
+    private static String toMillis(long nanos) {
+        return format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+
+    private static String toJsonMillis(long nanos) {
+        return nanos < 0 ? "null" : toMillis(nanos);
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class Result {
+        private long keyTransformNanos = -1;
+        private long openMinNanos = -1;
+        private long openAvgNanos = -1;
+        private long recommendedRounds = -1;
+    }
+}
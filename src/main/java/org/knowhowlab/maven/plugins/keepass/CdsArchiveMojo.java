@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Creates a class data sharing (AppCDS) archive for Maven JVMs that run {@link ReadMojo}.
+ * <p>
+ * A training Maven process is forked with the launcher class path and options of <code>.mvn/jvm.config</code>.
+ * It runs <code>keepass:read</code> against a sample KeePass file. Classes loaded by the JVM, Maven and
+ * the plugin class realm are dumped to a dynamic archive at exit, the loaded class list is written as well.
+ * The archive is used by adding <code>-XX:SharedArchiveFile</code> to <code>.mvn/jvm.config</code>.
+ *
+ * @author dpishchukhin.
+ */
+@Mojo(name = "cds-archive", requiresProject = false, threadSafe = true)
+public class CdsArchiveMojo extends AbstractMojo {
+    static final String LAUNCHER = "org.codehaus.plexus.classworlds.launcher.Launcher";
+
+    private static final String SAMPLE_PASSWORD = "testpass";
+    private static final Pattern RESOLVED = Pattern.compile("Records are resolved: \\d+ records in (\\d+) ms");
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    @Parameter(defaultValue = "${plugin}", readonly = true)
+    private PluginDescriptor plugin;
+
+    /**
+     * Location of the archive.
+     */
+    @Parameter(property = "keepass.cds.archive", defaultValue = "${session.request.multiModuleProjectDirectory}/.mvn/keepass.jsa")
+    private File archive;
+
+    /**
+     * Location of the list of classes loaded by the training run.
+     */
+    @Parameter(property = "keepass.cds.class-list", defaultValue = "${session.request.multiModuleProjectDirectory}/.mvn/keepass.classlist")
+    private File classList;
+
+    /**
+     * Location of the output of the last training or benchmark run. It is kept after the goal ends.
+     */
+    @Parameter(property = "keepass.cds.log", defaultValue = "${session.request.multiModuleProjectDirectory}/.mvn/keepass-cds.log")
+    private File trainingLog;
+
+    /**
+     * Location of JVM options of Maven. They are used for training and benchmark runs.
+     */
+    @Parameter(property = "keepass.cds.jvm-config", defaultValue = "${session.request.multiModuleProjectDirectory}/.mvn/jvm.config")
+    private File jvmConfig;
+
+    /**
+     * Extra arguments of the training <code>keepass:read</code> execution, e.g. <code>-Dkeepass.compact=true</code>,
+     * so the classes of used features are archived.
+     */
+    @Parameter
+    private List<String> trainingArguments = new ArrayList<String>();
+
+    /**
+     * Number of benchmark runs with and without the archive. The median is reported. <code>0</code> disables benchmark.
+     */
+    @Parameter(property = "keepass.cds.benchmark-runs", defaultValue = "3")
+    private int benchmarkRuns;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        String mavenHome = System.getProperty("maven.home");
+        String classworldsConf = System.getProperty("classworlds.conf");
+        if (mavenHome == null || classworldsConf == null) {
+            getLog().error("Maven launcher is not found. The goal has to run with mvn");
+            throw new MojoFailureException("Maven launcher is not found. The goal has to run with mvn");
+        }
+
+        Path training = null;
+        try {
+            training = Files.createTempDirectory("keepass-cds");
+            prepareTraining(training);
+            List<String> options = readJvmConfig();
+
+            Path dump = Paths.get(archive.getAbsolutePath() + ".tmp");
+            Files.createDirectories(dump.toAbsolutePath().getParent());
+            Files.createDirectories(classList.getAbsoluteFile().getParentFile().toPath());
+            Files.createDirectories(trainingLog.getAbsoluteFile().getParentFile().toPath());
+            List<String> dumpOptions = new ArrayList<String>(options);
+            dumpOptions.add("-XX:ArchiveClassesAtExit=" + dump.toAbsolutePath());
+            dumpOptions.add("-XX:DumpLoadedClassList=" + classList.getAbsolutePath());
+            Run run = train(training, dumpOptions, mavenHome, classworldsConf);
+            if (run.exitCode != 0 || !Files.exists(dump)) {
+                getLog().error(format("Training run failed with exit code %d. See log: %s", run.exitCode, run.log));
+                throw new MojoFailureException(format("Training run failed. See log: %s", run.log));
+            }
+            Files.move(dump, archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            getLog().info(format("CDS archive is created: %s (%d KB, %d classes are loaded)", archive.getAbsolutePath(),
+                    archive.length() / 1024, countLines(classList.toPath())));
+
+            if (benchmarkRuns > 0) {
+                benchmark(training, options, mavenHome, classworldsConf);
+            }
+            getLog().info(format("Add to .mvn/jvm.config: -XX:SharedArchiveFile=%s", archive.getAbsolutePath()));
+        } catch (IOException e) {
+            getLog().error(format("Unable to create CDS archive: %s", e.getMessage()), e);
+            throw new MojoExecutionException(format("Unable to create CDS archive: %s", archive.getAbsolutePath()), e);
+        } finally {
+            if (training != null) {
+                delete(training);
+            }
+        }
+    }
+
+    private void benchmark(Path training, List<String> options, String mavenHome, String classworldsConf)
+            throws IOException, MojoFailureException {
+        List<String> shared = new ArrayList<String>(options);
+        shared.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        List<Run> without = new ArrayList<Run>();
+        List<Run> with = new ArrayList<Run>();
+        // runs alternate, so both variants see the same disk cache and machine load
+        for (int i = 0; i < benchmarkRuns; i++) {
+            without.add(check(train(training, options, mavenHome, classworldsConf)));
+            with.add(check(train(training, shared, mavenHome, classworldsConf)));
+        }
+        long totalWithout = median(without, false);
+        long totalWith = median(with, false);
+        getLog().info(format("Startup benchmark, median of %d runs:", benchmarkRuns));
+        getLog().info(format("  without archive: Maven %d ms, keepass:read %d ms", totalWithout, median(without, true)));
+        getLog().info(format("  with archive:    Maven %d ms, keepass:read %d ms", totalWith, median(with, true)));
+        if (totalWith >= totalWithout) {
+            getLog().warn("Archive does not speed up startup on this machine");
+        }
+    }
+
+    private Run check(Run run) throws MojoFailureException {
+        if (run.exitCode != 0) {
+            getLog().error(format("Benchmark run failed with exit code %d. See log: %s", run.exitCode, run.log));
+            throw new MojoFailureException(format("Benchmark run failed. See log: %s", run.log));
+        }
+        return run;
+    }
+
+    /**
+     * Forks a Maven process that runs <code>keepass:read</code> with the sample file
+     */
+    private Run train(Path training, List<String> options, String mavenHome, String classworldsConf) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Dclassworlds.conf=" + classworldsConf);
+        command.add("-Dmaven.home=" + mavenHome);
+        command.add("-Dmaven.multiModuleProjectDirectory=" + training);
+        command.add(LAUNCHER);
+        command.add("-B");
+        command.add("-o");
+        command.add("-f");
+        command.add(training.resolve("pom.xml").toString());
+        command.add("-Dmaven.repo.local=" + session.getRepositorySession().getLocalRepository().getBasedir().getAbsolutePath());
+        command.add(format("%s:%s:%s:read", plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion()));
+        command.add("-Dkeepass.file=" + training.resolve("sample.kdbx"));
+        command.add("-Dkeepass.password=" + SAMPLE_PASSWORD);
+        command.add("-Dkeepass.records-manifest=" + training.resolve("training-records.json"));
+        command.add("-Dkeepass.agent=false");
+        command.addAll(trainingArguments);
+        getLog().debug(format("Training command: %s", command));
+
+        // the training directory is deleted at the end, the log is kept for failed runs
+        Path log = trainingLog.getAbsoluteFile().toPath();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(training.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            int exitCode = process.waitFor();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return new Run(exitCode, elapsed, resolveMillis(new String(Files.readAllBytes(log), StandardCharsets.UTF_8)), log);
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for training run", e);
+        }
+    }
+
+    private void prepareTraining(Path training) throws IOException {
+        copyResource("sample.kdbx", training);
+        copyResource("training-records.json", training);
+        String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+                + "    <modelVersion>4.0.0</modelVersion>\n"
+                + "    <groupId>org.knowhowlab.maven.plugins.cds</groupId>\n"
+                + "    <artifactId>keepass-cds-training</artifactId>\n"
+                + "    <version>1.0</version>\n"
+                + "    <packaging>pom</packaging>\n"
+                + "</project>\n";
+        Files.write(training.resolve("pom.xml"), pom.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void copyResource(String name, Path directory) throws IOException {
+        try (InputStream stream = CdsArchiveMojo.class.getResourceAsStream("cds/" + name)) {
+            if (stream == null) {
+                throw new IOException(format("Resource is not found: %s", name));
+            }
+            Files.copy(stream, directory.resolve(name));
+        }
+    }
+
+    /**
+     * Archive options of the current configuration are not used for training
+     */
+    private List<String> readJvmConfig() throws IOException {
+        if (jvmConfig == null || !jvmConfig.isFile()) {
+            return Collections.emptyList();
+        }
+        String projectDirectory = jvmConfig.getAbsoluteFile().getParentFile().getParent();
+        return parseJvmConfig(new String(Files.readAllBytes(jvmConfig.toPath()), StandardCharsets.UTF_8), projectDirectory);
+    }
+
+    /**
+     * @param content          content of <code>jvm.config</code>
+     * @param projectDirectory value of <code>MAVEN_PROJECTBASEDIR</code>
+     * @return JVM options without class data sharing options
+     */
+    static List<String> parseJvmConfig(String content, String projectDirectory) {
+        List<String> options = new ArrayList<String>();
+        // mvn joins lines of jvm.config with spaces
+        for (String line : content.split("\r?\n")) {
+            for (String option : line.trim().split("\\s+")) {
+                option = option.replace("${MAVEN_PROJECTBASEDIR}", projectDirectory)
+                        .replace("$MAVEN_PROJECTBASEDIR", projectDirectory);
+                if (!option.isEmpty() && !isSharingOption(option)) {
+                    options.add(option);
+                }
+            }
+        }
+        return options;
+    }
+
+    private static boolean isSharingOption(String option) {
+        for (String prefix : Arrays.asList("-Xshare:", "-XX:SharedArchiveFile=", "-XX:ArchiveClassesAtExit=",
+                "-XX:SharedClassListFile=", "-XX:DumpLoadedClassList=", "-XX:+AutoCreateSharedArchive")) {
+            if (option.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return time of record resolution reported by {@link ReadMojo}, -1 if it is not found
+     */
+    static long resolveMillis(String log) {
+        Matcher matcher = RESOLVED.matcher(log);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    static long median(List<Run> runs, boolean plugin) {
+        long[] values = new long[runs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = plugin ? runs.get(i).pluginMillis : runs.get(i).totalMillis;
+        }
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+    private static long countLines(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.ISO_8859_1)) {
+            return lines.filter(line -> !line.startsWith("#") && !line.startsWith("@")).count();
+        }
+    }
+
+    private void delete(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            getLog().debug(format("Unable to delete training directory: %s", directory));
+        }
+    }
+
+    static final class Run {
+        private final int exitCode;
+        private final long totalMillis;
+        private final long pluginMillis;
+        private final Path log;
+
+        Run(int exitCode, long totalMillis, long pluginMillis, Path log) {
+            this.exitCode = exitCode;
+            this.totalMillis = totalMillis;
+            this.pluginMillis = pluginMillis;
+            this.log = log;
+        }
+    }
+}
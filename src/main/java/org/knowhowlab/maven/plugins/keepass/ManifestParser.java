@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Parses records manifests into trees of maps, lists and scalars.
+ * <p>
+ * JSON is parsed completely. YAML is parsed as a block subset: mappings, sequences, plain and quoted scalars and
+ * comments. Flow collections, anchors and multi-line scalars are not supported. Properties have keys
+ * <code>[id].[field]</code> and <code>[id].attributes.[index].[field]</code>, records and list items keep
+ * the order of the file.
+ *
+ * @author dpishchukhin.
+ */
+final class ManifestParser {
+    private ManifestParser() {
+    }
+
+    /**
+     * @param text JSON text
+     * @return maps, lists, strings, booleans and <code>null</code>. Numbers are strings
+     * @throws IllegalArgumentException invalid JSON
+     */
+    static Object parseJson(String text) {
+        Json json = new Json(text);
+        Object value = json.value();
+        json.skipWhitespaces();
+        if (json.position < text.length()) {
+            throw json.error("Unexpected character");
+        }
+        return value;
+    }
+
+    /**
+     * @param text YAML text
+     * @return maps, lists, strings and <code>null</code>
+     * @throws IllegalArgumentException invalid or unsupported YAML
+     */
+    static Object parseYaml(String text) {
+        Yaml yaml = new Yaml(text);
+        if (yaml.lines.isEmpty()) {
+            return null;
+        }
+        Object value = yaml.block(yaml.lines.get(0).indent);
+        if (yaml.index < yaml.lines.size()) {
+            throw yaml.error("Unexpected indentation");
+        }
+        return value;
+    }
+
+    /**
+     * @param text properties text
+     * @return list of record maps
+     * @throws IllegalArgumentException invalid key
+     */
+    static Object parseProperties(String text) {
+        final Map<String, String> values = new LinkedHashMap<String, String>();
+        Properties properties = new Properties() {
+            @Override
+            public synchronized Object put(Object key, Object value) {
+                values.put((String) key, (String) value);
+                return super.put(key, value);
+            }
+        };
+        try {
+            properties.load(new StringReader(text));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(format("Unable to read properties: %s", e.getMessage()), e);
+        }
+        Map<String, Map<String, Object>> records = new LinkedHashMap<String, Map<String, Object>>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            String[] parts = entry.getKey().split("\\.", 4);
+            if (parts.length == 2) {
+                record(records, parts[0]).put(parts[1], entry.getValue());
+            } else if (parts.length == 4) {
+                item(record(records, parts[0]), parts[1], parts[2]).put(parts[3], entry.getValue());
+            } else {
+                throw new IllegalArgumentException(format("Invalid property key: %s", entry.getKey()));
+            }
+        }
+        List<Object> result = new ArrayList<Object>();
+        for (Map<String, Object> record : records.values()) {
+            for (Map.Entry<String, Object> field : record.entrySet()) {
+                if (field.getValue() instanceof Map) {
+                    field.setValue(new ArrayList<Object>(((Map<?, ?>) field.getValue()).values()));
+                }
+            }
+            result.add(record);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> record(Map<String, Map<String, Object>> records, String id) {
+        return records.computeIfAbsent(id, key -> new LinkedHashMap<String, Object>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> item(Map<String, Object> record, String list, String index) {
+        Object items = record.computeIfAbsent(list, key -> new LinkedHashMap<String, Object>());
+        if (!(items instanceof Map)) {
+            throw new IllegalArgumentException(format("%s is a value and a list", list));
+        }
+        return ((Map<String, Map<String, Object>>) items).computeIfAbsent(index, key -> new LinkedHashMap<String, Object>());
+    }
+
+    private static final class Json {
+        private final String text;
+        private int position;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        private Object value() {
+            skipWhitespaces();
+            if (position >= text.length()) {
+                throw error("Value is missed");
+            }
+            char c = text.charAt(position);
+            if (c == '{') {
+                return object();
+            } else if (c == '[') {
+                return array();
+            } else if (c == '"') {
+                return string();
+            } else if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            } else if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            } else if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Unexpected character");
+            }
+            return text.substring(start, position);
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            position++;
+            skipWhitespaces();
+            if (position < text.length() && text.charAt(position) == '}') {
+                position++;
+                return result;
+            }
+            while (true) {
+                skipWhitespaces();
+                if (position >= text.length() || text.charAt(position) != '"') {
+                    throw error("Name is expected");
+                }
+                String name = string();
+                skipWhitespaces();
+                if (position >= text.length() || text.charAt(position) != ':') {
+                    throw error("Colon is expected");
+                }
+                position++;
+                result.put(name, value());
+                if (next('}')) {
+                    return result;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> result = new ArrayList<Object>();
+            position++;
+            skipWhitespaces();
+            if (position < text.length() && text.charAt(position) == ']') {
+                position++;
+                return result;
+            }
+            while (true) {
+                result.add(value());
+                if (next(']')) {
+                    return result;
+                }
+            }
+        }
+
+        /**
+         * @return <code>true</code> if the closing character is read, <code>false</code> if a comma is read
+         */
+        private boolean next(char closing) {
+            skipWhitespaces();
+            if (position >= text.length()) {
+                throw error(format("'%s' is missed", closing));
+            }
+            char c = text.charAt(position++);
+            if (c == closing) {
+                return true;
+            } else if (c != ',') {
+                throw error(format("Comma or '%s' is expected", closing));
+            }
+            return false;
+        }
+
+        private String string() {
+            StringBuilder result = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= text.length()) {
+                    throw error("Closing quote is missed");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return result.toString();
+                } else if (c != '\\') {
+                    result.append(c);
+                } else if (position >= text.length()) {
+                    throw error("Escape sequence is missed");
+                } else {
+                    char escaped = text.charAt(position++);
+                    switch (escaped) {
+                        case 'b':
+                            result.append('\b');
+                            break;
+                        case 'f':
+                            result.append('\f');
+                            break;
+                        case 'n':
+                            result.append('\n');
+                            break;
+                        case 'r':
+                            result.append('\r');
+                            break;
+                        case 't':
+                            result.append('\t');
+                            break;
+                        case 'u':
+                            if (position + 4 > text.length()) {
+                                throw error("Invalid unicode escape");
+                            }
+                            try {
+                                result.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            } catch (NumberFormatException e) {
+                                throw error("Invalid unicode escape");
+                            }
+                            position += 4;
+                            break;
+                        default:
+                            result.append(escaped);
+                    }
+                }
+            }
+        }
+
+        private void skipWhitespaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(format("%s at position %d", message, position));
+        }
+    }
+
+    private static final class Yaml {
+        private final List<Line> lines = new ArrayList<Line>();
+        private int index;
+
+        private Yaml(String text) {
+            String[] rows = text.split("\r\n|\r|\n", -1);
+            for (int i = 0; i < rows.length; i++) {
+                String row = stripComment(rows[i]);
+                String content = row.trim();
+                if (content.isEmpty() || "---".equals(content)) {
+                    continue;
+                } else if (row.indexOf('\t') >= 0 && row.indexOf('\t') < row.indexOf(content)) {
+                    throw new IllegalArgumentException(format("Tabs are not allowed in indentation at line %d", i + 1));
+                }
+                lines.add(new Line(i + 1, row.indexOf(content), content));
+            }
+        }
+
+        /**
+         * Parses a block of lines with the indentation
+         */
+        private Object block(int indent) {
+            Line line = lines.get(index);
+            if (isItem(line.content)) {
+                return sequence(indent);
+            }
+            return mapping(indent);
+        }
+
+        private List<Object> sequence(int indent) {
+            List<Object> result = new ArrayList<Object>();
+            while (index < lines.size()) {
+                Line line = lines.get(index);
+                if (line.indent != indent || !isItem(line.content)) {
+                    break;
+                }
+                String content = line.content.substring(1).trim();
+                if (content.isEmpty()) {
+                    index++;
+                    result.add(nested(indent, false));
+                } else {
+                    // the item content is a new block that starts after the dash
+                    int offset = line.content.indexOf(content);
+                    lines.set(index, new Line(line.number, indent + offset, content));
+                    if (isItem(content) || key(content) >= 0) {
+                        result.add(block(indent + offset));
+                    } else {
+                        index++;
+                        result.add(scalar(content, line));
+                    }
+                }
+            }
+            return result;
+        }
+
+        private Map<String, Object> mapping(int indent) {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            while (index < lines.size()) {
+                Line line = lines.get(index);
+                if (line.indent != indent || isItem(line.content)) {
+                    break;
+                }
+                int colon = key(line.content);
+                if (colon < 0) {
+                    throw error("Mapping key is expected");
+                }
+                String key = line.content.substring(0, colon).trim();
+                if (key.startsWith("'") || key.startsWith("\"")) {
+                    key = (String) scalar(key, line);
+                }
+                if (result.containsKey(key)) {
+                    throw error(format("Duplicate key: %s", key));
+                }
+                String value = line.content.substring(colon + 1).trim();
+                index++;
+                result.put(key, value.isEmpty() ? nested(indent, true) : scalar(value, line));
+            }
+            return result;
+        }
+
+        /**
+         * A block sequence can be a value of a mapping key at the same indentation
+         */
+        private Object nested(int indent, boolean sameIndentSequence) {
+            if (index >= lines.size()) {
+                return null;
+            }
+            Line next = lines.get(index);
+            if (next.indent > indent || (sameIndentSequence && next.indent == indent && isItem(next.content))) {
+                return block(next.indent);
+            }
+            return null;
+        }
+
+        private Object scalar(String value, Line line) {
+            char first = value.charAt(0);
+            if (first == '\'' || first == '"') {
+                if (value.length() < 2 || value.charAt(value.length() - 1) != first) {
+                    throw new IllegalArgumentException(format("Closing quote is missed at line %d", line.number));
+                }
+                String quoted = value.substring(1, value.length() - 1);
+                if (first == '\'') {
+                    return quoted.replace("''", "'");
+                }
+                try {
+                    return (String) parseJson(value);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(format("Invalid quoted value at line %d", line.number), e);
+                }
+            } else if (first == '[' || first == '{' || first == '&' || first == '*' || first == '|' || first == '>') {
+                throw new IllegalArgumentException(format("Unsupported YAML value at line %d: %s", line.number, value));
+            } else if ("~".equals(value) || "null".equals(value)) {
+                return null;
+            }
+            return value;
+        }
+
+        private IllegalArgumentException error(String message) {
+            Line line = lines.get(Math.min(index, lines.size() - 1));
+            return new IllegalArgumentException(format("%s at line %d: %s", message, line.number, line.content));
+        }
+
+        private static boolean isItem(String content) {
+            return "-".equals(content) || content.startsWith("- ");
+        }
+
+        /**
+         * @return position of the colon that ends a mapping key, or -1
+         */
+        private static int key(String content) {
+            int start = 0;
+            char first = content.charAt(0);
+            if (first == '\'' || first == '"') {
+                start = content.indexOf(first, 1);
+                while (first == '\'' && start > 0 && start + 1 < content.length() && content.charAt(start + 1) == '\'') {
+                    start = content.indexOf(first, start + 2);
+                }
+                if (start < 0) {
+                    return -1;
+                }
+            }
+            int colon = content.indexOf(':', start);
+            while (colon >= 0 && colon + 1 < content.length() && content.charAt(colon + 1) != ' ') {
+                colon = content.indexOf(':', colon + 1);
+            }
+            return colon;
+        }
+
+        private static String stripComment(String row) {
+            char quote = 0;
+            for (int i = 0; i < row.length(); i++) {
+                char c = row.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    } else if (c == '\\' && quote == '"') {
+                        i++;
+                    }
+                } else if ((c == '\'' || c == '"') && (i == 0 || row.charAt(i - 1) == ' ' || row.charAt(i - 1) == '-')) {
+                    quote = c;
+                } else if (c == '#' && (i == 0 || row.charAt(i - 1) == ' ')) {
+                    return row.substring(0, i);
+                }
+            }
+            return row;
+        }
+    }
+
+    private static final class Line {
+        private final int number;
+        private final int indent;
+        private final String content;
+
+        private Line(int number, int indent, String content) {
+            this.number = number;
+            this.indent = indent;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Results of {@link ReadMojo} shared by all modules of a reactor session.
+ * <p>
+ * Results are stored in the data map of the session request as futures. Resolved properties are JDK types, so they
+ * are shared between plugin class realms of different modules. Results with plugin types have to be keyed by the realm. The first module resolves the result, other modules
+ * (also in parallel builds) wait for it.
+ *
+ * @author dpishchukhin.
+ */
+final class ReactorResults {
+    static final String KEY_PREFIX = "org.knowhowlab.keepass.read.";
+
+    private ReactorResults() {
+    }
+
+    /**
+     * @param data     session data
+     * @param key      result key
+     * @param resolver resolves the result if it is not resolved yet
+     * @return shared result. It must not be changed
+     * @throws Exception resolution error of this module
+     * @throws IllegalStateException resolution failed in another module
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T resolveOnce(Map<String, Object> data, String key, Callable<T> resolver) throws Exception {
+        CompletableFuture<T> created = new CompletableFuture<T>();
+        CompletableFuture<T> shared;
+        synchronized (data) {
+            shared = (CompletableFuture<T>) data.putIfAbsent(KEY_PREFIX + key, created);
+        }
+        if (shared == null) {
+            try {
+                T result = resolver.call();
+                created.complete(result);
+                return result;
+            } catch (Exception e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return shared.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shared KeePass records", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("KeePass records are not resolved in another module", e.getCause());
+        }
+    }
+}
@@ -21,19 +21,52 @@ import static org.apache.maven.plugins.annotations.LifecyclePhase.VALIDATE;
 import static org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO.convertToUUID;
 
 import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
-
-import org.apache.maven.plugin.AbstractMojo;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentClient;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassAttachment;
 import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
 import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
 import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassHolder;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassLookup;
 import org.knowhowlab.maven.plugins.keepass.dao.KeePassProperty;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassReadOnlySnapshot;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassReferenceResolver;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassScope;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.EntryAttributeFilter;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.EntryUUIDFilter;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.Filter;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.FilterParser;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.FilterPlanner;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.RegexEngine;
+import org.knowhowlab.maven.plugins.keepass.jfr.KeePassRecordEvent;
+import org.knowhowlab.maven.plugins.keepass.jmx.KeePassStatistics;
+import org.knowhowlab.maven.plugins.keepass.redact.SecretRedaction;
 
 /**
  * Reads account information and passwords from KeePass file and set them to system properties
@@ -41,34 +74,33 @@ import org.knowhowlab.maven.plugins.keepass.dao.KeePassProperty;
  * @author dpishchukhin.
  */
 @Mojo(name = "read", defaultPhase = VALIDATE, threadSafe = true)
-public class ReadMojo extends AbstractMojo {
+public class ReadMojo extends AbstractKeePassMojo {
     @Parameter(defaultValue = "${project}", readonly = true)
     private MavenProject project;
 
-    /**
-     * Location of a KeePass file.
-     */
-    @Parameter(property = "keepass.file", required = true)
-    private File file;
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
 
     /**
-     * KeePass File password credentials
+     * A list of records that has to be read from a KeePass file and set to system properties
+     * @see org.knowhowlab.maven.plugins.keepass.Record
      */
-    @Parameter(property = "keepass.password")
-    private String password;
+    @Parameter
+    private List<Record> records = new ArrayList<Record>();
 
     /**
-     * Location of a key file.
+     * File with more records in properties (<code>.properties</code>), YAML (<code>.yaml</code>, <code>.yml</code>)
+     * or JSON (<code>.json</code>) format. They are read after <code>records</code>. A manifest is parsed and
+     * validated once per reactor session and shared by modules while its content is the same.
      */
-    @Parameter(property = "keepass.keyfile")
-    private File keyFile;
+    @Parameter(property = "keepass.records-manifest")
+    private File recordsManifest;
 
     /**
-     * A list of records that has to be read from a KeePass file and set to system properties
-     * @see org.knowhowlab.maven.plugins.keepass.Record
+     * Directory for entry attachments.
      */
-    @Parameter(required = true)
-    private List<Record> records = new ArrayList<Record>();
+    @Parameter(property = "keepass.attachments.directory", defaultValue = "${project.build.directory}/keepass")
+    private File attachmentsDirectory;
 
     /**
      * Ignores group and entry duplicates. In case of duplication only warns in logs.
@@ -76,12 +108,154 @@ public class ReadMojo extends AbstractMojo {
     @Parameter(property = "keepass.ignore-duplicates", defaultValue = "false")
     private boolean ignoreDuplicates;
 
+    /**
+     * Excludes the Recycle Bin group of the KeePass file from search.
+     */
+    @Parameter(property = "keepass.exclude-recycle-bin", defaultValue = "false")
+    private boolean excludeRecycleBin;
+
+    /**
+     * Group paths that are excluded from search with their subgroups, e.g. <code>/Root/Archive</code>.
+     */
+    @Parameter
+    private List<String> excludedGroups = new ArrayList<String>();
+
+    /**
+     * Maximum depth of searched groups. The database root group has depth 0. Negative value means no limit.
+     */
+    @Parameter(property = "keepass.max-depth", defaultValue = "-1")
+    private int maxDepth;
+
     /**
      * Disables plugin.
      */
     @Parameter(property = "keepass.skip", defaultValue = "false")
     private boolean skip;
 
+    /**
+     * Replaces the open file tree with a compact read-only snapshot before lookups.
+     * Reduces memory footprint of large KeePass files.
+     */
+    @Parameter(property = "keepass.compact", defaultValue = "false")
+    private boolean compact;
+
+    /**
+     * Keeps protected values (e.g. passwords) of the compact snapshot in a direct buffer outside of the heap.
+     * Only values of found entries become heap strings. The buffer is zeroed when records are resolved,
+     * in watch mode when the watched file is released. Implies <code>compact</code>.
+     */
+    @Parameter(property = "keepass.off-heap-secrets", defaultValue = "false")
+    private boolean offHeapSecrets;
+
+    /**
+     * Uses the agent started by <code>keepass:agent-start</code> when its socket is present.
+     * Falls back to opening the KeePass file if the agent is not available.
+     */
+    @Parameter(property = "keepass.agent", defaultValue = "true")
+    private boolean useAgent;
+
+    /**
+     * Keeps the open KeePass file in memory of a long-lived Maven process (mvnd, IDE) for following builds
+     * and reloads it in background when the file is changed. Credentials are kept in memory while the process runs.
+     */
+    @Parameter(property = "keepass.watch", defaultValue = "false")
+    private boolean watch;
+
+    /**
+     * Quiet period in milliseconds after the last change of a watched KeePass file before it is reloaded.
+     */
+    @Parameter(property = "keepass.watch.debounce", defaultValue = "500")
+    private long watchDebounce;
+
+    /**
+     * Resolves records once per reactor session. The first module opens the KeePass file, other modules
+     * with the same file, credentials, search scope and records reuse resolved properties.
+     * Records with attachments are resolved in every module.
+     */
+    @Parameter(property = "keepass.run-once", defaultValue = "false")
+    private boolean runOnce;
+
+    /**
+     * Matches <code>regex</code> filters with a linear-time engine, so a pattern cannot take exponential time
+     * on long titles and names. Backreferences, lookaround, possessive quantifiers and some other constructs
+     * are not supported and fail the build.
+     */
+    @Parameter(property = "keepass.linear-regex", defaultValue = "false")
+    private boolean linearRegex;
+
+    /**
+     * Resolves KeePass field references (<code>{REF:P@I:[uuid]}</code>) and placeholders (<code>{USERNAME}</code>)
+     * in entry values. Every referenced value is resolved once per execution. Values are set as they are stored
+     * by default.
+     */
+    @Parameter(property = "keepass.resolve-references", defaultValue = "false")
+    private boolean resolveReferences;
+
+    /**
+     * Opens the KeePass file only if some properties of records are not set yet as user (<code>-D</code>), system
+     * or project properties, and resolves only records with missing properties. Set properties are not overwritten.
+     * An empty value is treated as not set.
+     */
+    @Parameter(property = "keepass.skip-supplied", defaultValue = "false")
+    private boolean skipSupplied;
+
+    /**
+     * Masks passwords and attribute values of records, and the password of the KeePass file, in everything
+     * that is printed to the console for the rest of the Maven process, also in output of other plugins.
+     * Values shorter than 4 characters are not masked.
+     */
+    @Parameter(property = "keepass.redact-secrets", defaultValue = "false")
+    private boolean redactSecrets;
+
+    /**
+     * Watched files of this process by file, search scope and credentials
+     */
+    private static final ConcurrentMap<String, KeePassHolder> HOLDERS = new ConcurrentHashMap<String, KeePassHolder>();
+
+    /**
+     * Random key of credential digests in cache keys. Cache keys are visible to other plugins in session data,
+     * they can not test guessed passwords against them without this key
+     */
+    private static final byte[] CACHE_KEY_SECRET = new byte[32];
+
+    static {
+        new SecureRandom().nextBytes(CACHE_KEY_SECRET);
+    }
+
+    static {
+        KeePassStatistics.getInstance().register(new KeePassStatistics.Cache() {
+            public int getHeldDatabases() {
+                return HOLDERS.size();
+            }
+
+            public long getRetainedBytes() {
+                long bytes = 0;
+                for (KeePassHolder holder : HOLDERS.values()) {
+                    bytes += holder.get().getRetainedBytes();
+                }
+                return bytes;
+            }
+
+            /**
+             * Builds that use an evicted file keep its snapshot until they are done, the next build opens the file again
+             */
+            public int evict() {
+                int evicted = 0;
+                synchronized (HOLDERS) {
+                    for (String key : HOLDERS.keySet()) {
+                        KeePassHolder holder = HOLDERS.remove(key);
+                        try {
+                            holder.close();
+                        } catch (IOException e) {
+                            // watcher is stopped anyway
+                        }
+                        evicted++;
+                    }
+                }
+                return evicted;
+            }
+        });
+    }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
@@ -89,46 +263,374 @@ public class ReadMojo extends AbstractMojo {
             return;
         }
 
-        KeePassDAO dao = new KeePassDAO(file);
-
-        if (password == null && keyFile == null) {
-            getLog().error("Both credentials Password or/and Key file are missed");
-            throw new MojoFailureException("Both credentials Password or/and Key file are missed");
+        List<Record> all = getRecords();
+        final List<Record> pending = skipSupplied ? missingRecords(all) : all;
+        if (skipSupplied && pending.isEmpty()) {
+            getLog().info("All properties of records are already set. KeePass file is not opened");
+            return;
+        } else if (skipSupplied) {
+            getLog().info(format("Records with missing properties: %d of %d", pending.size(), all.size()));
         }
 
-        try {
-            if (keyFile == null) {
-                dao.open(password);
-            } else if (password == null) {
-                dao.open(keyFile);
+        checkCredentials();
+
+        final KeePassScope scope = new KeePassScope(excludeRecycleBin, excludedGroups, maxDepth);
+        Properties properties;
+        if (runOnce && hasAttachments(pending)) {
+            getLog().warn("Attachments are written to module directories. Records are resolved in every module");
+            properties = resolve(scope, pending);
+        } else if (runOnce) {
+            final AtomicBoolean resolved = new AtomicBoolean();
+            try {
+                properties = ReactorResults.resolveOnce(session.getRequest().getData(), cacheKey(scope) + '|' + resolveReferences + '|' + pending,
+                        () -> {
+                            resolved.set(true);
+                            return resolve(scope, pending);
+                        });
+            } catch (MojoExecutionException | MojoFailureException e) {
+                throw e;
+            } catch (Exception e) {
+                getLog().error(format("Unable to get shared records: %s", e.getMessage()), e);
+                throw new MojoFailureException(format("Unable to get shared records: %s", e.getMessage()));
+            }
+            if (!resolved.get()) {
+                KeePassStatistics.getInstance().recordCache(true);
+                getLog().info(format("Records are resolved by another module: %d properties", properties.size()));
+            }
+        } else {
+            properties = resolve(scope, pending);
+        }
+        if (redactSecrets) {
+            redact(pending, properties);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (skipSupplied && isSupplied(name)) {
+                getLog().debug(format("Property is already set: %s", name));
             } else {
-                dao.open(password, keyFile);
+                project.getProperties().setProperty(name, properties.getProperty(name));
+            }
+        }
+    }
+
+    private void redact(List<Record> records, Properties properties) {
+        List<String> secrets = new ArrayList<String>();
+        secrets.add(password);
+        for (Record record : records) {
+            secrets.add(properties.getProperty(record.getPrefix() + record.getSuffixPassword()));
+            if (record.getAttributes() != null) {
+                for (Attribute attribute : record.getAttributes()) {
+                    String name = attribute.getMapTo() == null ? attribute.getName() : attribute.getMapTo();
+                    secrets.add(properties.getProperty(record.getPrefix() + name));
+                }
             }
-            getLog().info(format("KeePass file is open: %s", file.getAbsolutePath()));
+        }
+        int count = SecretRedaction.register(secrets);
+        getLog().info(format("Secrets are masked in console output: %d values", count));
+    }
+
+    /**
+     * @return configured records and records of the manifest
+     */
+    private List<Record> getRecords() throws MojoFailureException {
+        if (recordsManifest == null) {
+            return records;
+        }
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(recordsManifest.toPath());
+        } catch (IOException e) {
+            getLog().error(format("Unable to read records manifest: %s", recordsManifest.getAbsolutePath()), e);
+            throw new MojoFailureException(format("Unable to read records manifest: %s", recordsManifest.getAbsolutePath()));
+        }
+        // records are plugin classes, so they are shared only by modules with the same plugin class realm
+        String key = "manifest." + Integer.toHexString(System.identityHashCode(Record.class)) + '.'
+                + RecordsManifest.digest(content);
+        final AtomicBoolean parsed = new AtomicBoolean();
+        List<Record> manifest;
+        try {
+            manifest = ReactorResults.resolveOnce(session.getRequest().getData(), key, () -> {
+                parsed.set(true);
+                return RecordsManifest.parse(recordsManifest.getName(), new String(content, StandardCharsets.UTF_8));
+            });
         } catch (Exception e) {
-            getLog().error(format("Unable to open file: %s", file.getAbsolutePath()), e);
-            throw new MojoFailureException(format("Unable to open file: %s", file.getAbsolutePath()));
+            String message = e instanceof IllegalStateException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            getLog().error(format("Invalid records manifest: %s. %s", recordsManifest.getAbsolutePath(), message));
+            throw new MojoFailureException(format("Invalid records manifest: %s. %s", recordsManifest.getAbsolutePath(), message));
         }
+        getLog().info(format("Records manifest is %s: %s (%d records)", parsed.get() ? "parsed" : "reused",
+                recordsManifest.getAbsolutePath(), manifest.size()));
+        if (records.isEmpty()) {
+            return manifest;
+        }
+        List<Record> all = new ArrayList<Record>(records);
+        all.addAll(manifest);
+        return all;
+    }
 
+    /**
+     * @return records with at least one property that is not set yet
+     */
+    private List<Record> missingRecords(List<Record> records) {
+        List<Record> missing = new ArrayList<Record>();
         for (Record record : records) {
-            handleRecord(dao, record);
+            for (String name : record.getPropertyNames()) {
+                if (!isSupplied(name)) {
+                    missing.add(record);
+                    break;
+                }
+            }
+        }
+        return missing;
+    }
+
+    private boolean isSupplied(String name) {
+        String value = session.getUserProperties().getProperty(name);
+        if (value == null || value.isEmpty()) {
+            value = session.getSystemProperties().getProperty(name);
+        }
+        if (value == null || value.isEmpty()) {
+            value = project.getProperties().getProperty(name);
+        }
+        return value != null && !value.isEmpty();
+    }
+
+    /**
+     * Resolves records
+     *
+     * @param scope   search scope
+     * @param records records to resolve
+     * @return properties of records
+     */
+    private Properties resolve(KeePassScope scope, List<Record> records) throws MojoExecutionException, MojoFailureException {
+        Properties properties = new Properties();
+        KeePassAgentClient agent = null;
+        KeePassDAO opened = null;
+        KeePassReadOnlySnapshot watched = null;
+        if (useAgent && hasAttachments(records)) {
+            getLog().debug("Agent does not serve attachments. Open KeePass file");
+        } else if (useAgent && !scope.isAll()) {
+            getLog().debug("Agent does not support search scope. Open KeePass file");
+        } else if (useAgent && linearRegex) {
+            getLog().debug("Agent does not support linear regex engine. Open KeePass file");
+        } else if (useAgent && watch) {
+            getLog().debug("Watched KeePass file is used instead of agent");
+        } else if (useAgent) {
+            agent = connectAgent();
+        }
+        long start = System.nanoTime();
+        long openTime = 0;
+        long compactTime = 0;
+        try {
+            KeePassLookup lookup = agent;
+            if (agent != null) {
+                KeePassStatistics.getInstance().recordCache(true);
+            }
+            if (lookup == null && watch) {
+                watched = getHolder(scope).getSnapshot();
+                lookup = watched;
+            } else if (lookup == null) {
+                KeePassStatistics.getInstance().recordCache(false);
+                KeePassDAO dao = open(new KeePassDAO(file));
+                dao.setRegexEngine(regexEngine());
+                opened = dao;
+                openTime = System.nanoTime() - start;
+                getLog().info(format("KeePass file is open: %s", file.getAbsolutePath()));
+                if (!scope.isAll()) {
+                    dao.setScope(scope);
+                    getLog().debug(format("Search scope: %s", scope));
+                }
+                if (compact || offHeapSecrets) {
+                    long compactStart = System.nanoTime();
+                    dao.compact(offHeapSecrets);
+                    compactTime = System.nanoTime() - compactStart;
+                    getLog().debug("KeePass file tree is replaced with a compact snapshot");
+                }
+                lookup = dao;
+            }
+
+            long lookupStart = System.nanoTime();
+            KeePassReferenceResolver references = resolveReferences ? new KeePassReferenceResolver(lookup) : null;
+            for (Record record : records) {
+                handleRecord(lookup, references, record, properties);
+            }
+            if (references != null && references.getResolved() > 0) {
+                getLog().debug(format("References are resolved: %d values, %d referenced entries",
+                        references.getResolved(), references.getLookups()));
+            }
+            long end = System.nanoTime();
+            getLog().info(format("Records are resolved: %d records in %d ms (open %d ms, compact %d ms, lookup %d ms)",
+                    records.size(), millis(end - start), millis(openTime), millis(compactTime), millis(end - lookupStart)));
+        } finally {
+            if (opened != null) {
+                opened.close();
+            }
+            if (watched != null) {
+                // protected values of a replaced or evicted version are zeroed when its last build is done
+                watched.close();
+            }
+            if (agent != null) {
+                try {
+                    agent.close();
+                } catch (IOException e) {
+                    getLog().debug(format("Unable to close agent connection: %s", e.getMessage()));
+                }
+            }
+        }
+        return properties;
+    }
+
+    private RegexEngine regexEngine() {
+        return linearRegex ? RegexEngine.LINEAR : RegexEngine.JAVA;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private KeePassHolder getHolder(final KeePassScope scope) throws MojoFailureException {
+        String key = cacheKey(scope);
+        KeePassHolder holder = HOLDERS.get(key);
+        if (holder == null) {
+            synchronized (HOLDERS) {
+                holder = HOLDERS.get(key);
+                if (holder == null) {
+                    KeePassStatistics.getInstance().recordCache(false);
+                    // the holder outlives the build, so its opener must not refer to the mojo, the project or the session
+                    final String password = this.password;
+                    final File keyFile = this.keyFile;
+                    final int decryptThreads = this.decryptThreads;
+                    final RegexEngine regexEngine = regexEngine();
+                    holder = new KeePassHolder(file, dao -> unlock(dao, password, keyFile, decryptThreads)
+                            .setScope(scope).setRegexEngine(regexEngine), watchDebounce, offHeapSecrets);
+                    try {
+                        holder.start();
+                    } catch (Exception e) {
+                        getLog().error(format("Unable to open file: %s", file.getAbsolutePath()), e);
+                        throw new MojoFailureException(format("Unable to open file: %s", file.getAbsolutePath()));
+                    }
+                    HOLDERS.put(key, holder);
+                    getLog().info(format("KeePass file is open and watched: %s", file.getAbsolutePath()));
+                    return holder;
+                }
+            }
+        }
+        KeePassStatistics.getInstance().recordCache(true);
+        if (holder.getLastError() != null) {
+            getLog().warn(format("Unable to reload changed KeePass file. Previous version is used: %s",
+                    holder.getLastError().getMessage()));
+        }
+        getLog().info(format("Watched KeePass file is used: %s (version %d)", file.getAbsolutePath(), holder.getVersion()));
+        return holder;
+    }
+
+    /**
+     * Open files are not shared between different credentials. The key has only a keyed digest of credentials
+     * with a random key of the plugin class realm, so modules of another realm resolve their records again
+     */
+    private String cacheKey(KeePassScope scope) throws MojoFailureException {
+        try {
+            Mac digest = Mac.getInstance("HmacSHA256");
+            digest.init(new SecretKeySpec(CACHE_KEY_SECRET, "HmacSHA256"));
+            if (password != null) {
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            if (keyFile != null) {
+                digest.update(keyFile.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            }
+            return file.getCanonicalPath() + '|' + scope + '|' + regexEngine() + '|' + offHeapSecrets + '|'
+                    + new BigInteger(1, digest.doFinal()).toString(16);
+        } catch (IOException | GeneralSecurityException e) {
+            getLog().error(format("Unable to read file: %s", file.getAbsolutePath()), e);
+            throw new MojoFailureException(format("Unable to read file: %s", file.getAbsolutePath()));
+        }
+    }
+
+    private KeePassAgentClient connectAgent() {
+        Path socket = getAgentSocket();
+        if (!Files.exists(socket)) {
+            getLog().debug(format("Agent socket is not found: %s", socket));
+            return null;
+        }
+        try {
+            KeePassAgentClient agent = KeePassAgentClient.connect(socket, file, KeePassDAO.compositeKey(password, keyFile));
+            getLog().info(format("KeePass agent is used: %s", socket));
+            return agent;
+        } catch (KeePassAgentClient.RejectedCredentialsException e) {
+            // the file is opened with these credentials, so they are rejected the same way as without agent
+            getLog().warn(e.getMessage());
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            getLog().warn(format("KeePass agent is not available: %s", e.getMessage()));
+            return null;
         }
     }
 
-    private void handleRecord(KeePassDAO dao, Record record) throws MojoFailureException {
-        KeePassGroup group = findGroup(dao, record.getGroup());
-        KeePassEntry entry = findEntry(dao, group, record.getEntry());
+    private void handleRecord(KeePassLookup dao, KeePassReferenceResolver references, Record record, Properties properties)
+            throws MojoFailureException {
+        KeePassRecordEvent event = new KeePassRecordEvent();
+        event.begin();
+        long visited = visitedNodes(dao);
+        try {
+            KeePassGroup group = findGroup(dao, record, event);
+            KeePassEntry entry = group == null ? null : findEntry(dao, group, record, event);
+            if (entry == null) {
+                getLog().warn(format("Optional record %s is skipped", record.getPrefix()));
+                return;
+            }
+
+            getLog().info(format("Entry with UUID: %s is found", entry.getUuid()));
 
-        getLog().info(format("Entry with UUID: %s is found", entry.getUuid()));
+            if (references == null) {
+                properties.setProperty(record.getPrefix() + record.getSuffixUsername(), entry.getUsername());
+                properties.setProperty(record.getPrefix() + record.getSuffixPassword(), entry.getPassword());
+                properties.setProperty(record.getPrefix() + record.getSuffixUrl(), entry.getUrl());
+            } else {
+                try {
+                    properties.setProperty(record.getPrefix() + record.getSuffixUsername(), references.getUsername(entry));
+                    properties.setProperty(record.getPrefix() + record.getSuffixPassword(), references.getPassword(entry));
+                    properties.setProperty(record.getPrefix() + record.getSuffixUrl(), references.getUrl(entry));
+                } catch (IllegalArgumentException e) {
+                    getLog().error(format("Unable to resolve references of entry with UUID: %s", entry.getUuid()), e);
+                    throw new MojoFailureException(format("Unable to resolve references of entry with UUID: %s", entry.getUuid()));
+                }
+            }
 
-        project.getProperties().setProperty(record.getPrefix() + record.getSuffixUsername(), entry.getUsername());
-        project.getProperties().setProperty(record.getPrefix() + record.getSuffixPassword(), entry.getPassword());
-        project.getProperties().setProperty(record.getPrefix() + record.getSuffixUrl(), entry.getUrl());
+            handleAttributes(record.getPrefix(), entry, references, record.getAttributes(), properties);
+            handleAttachments(record.getPrefix(), entry, record.getAttachments(), properties);
+            event.success = true;
+        } finally {
+            if (!(dao instanceof KeePassAgentClient) && getLog().isDebugEnabled()) {
+                getLog().debug(format("Record %s: %d nodes are visited", record.getPrefix(),
+                        visitedNodes(dao) - visited));
+            }
+            if (event.groupFilterType != null) {
+                KeePassStatistics.getInstance().recordLookup("group:" + event.groupFilterType);
+            }
+            if (event.entryFilterType != null) {
+                KeePassStatistics.getInstance().recordLookup("entry:" + event.entryFilterType);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.attributes = record.getAttributes() == null ? 0 : record.getAttributes().size();
+                event.databaseSize = file.length();
+                event.agent = dao instanceof KeePassAgentClient;
+                event.commit();
+            }
+        }
+    }
 
-        handleAttributes(record.getPrefix(), entry, record.getAttributes());
+    private static long visitedNodes(KeePassLookup dao) {
+        if (dao instanceof KeePassDAO) {
+            return ((KeePassDAO) dao).getVisitedNodes();
+        } else if (dao instanceof KeePassReadOnlySnapshot) {
+            return ((KeePassReadOnlySnapshot) dao).getVisitedNodes();
+        }
+        return 0;
     }
 
-    private void handleAttributes(String prefix, KeePassEntry entry, List<Attribute> attributes) throws MojoFailureException {
+    private void handleAttributes(String prefix, KeePassEntry entry, KeePassReferenceResolver references,
+                                  List<Attribute> attributes, Properties properties) throws MojoFailureException {
         if (attributes != null) {
             for (Attribute attribute : attributes) {
                 KeePassProperty property = entry.getPropertyByName(attribute.getName());
@@ -136,25 +638,83 @@ public class ReadMojo extends AbstractMojo {
                     getLog().error(format("Unknown Attribute name: %s", attribute.getName()));
                     throw new MojoFailureException(format("Unknown Attribute name: %s", attribute.getName()));
                 }
+                String value = property.getValue();
+                if (references != null) {
+                    try {
+                        value = references.getValue(entry, attribute.getName());
+                    } catch (IllegalArgumentException e) {
+                        getLog().error(format("Unable to resolve references of Attribute: %s", attribute.getName()), e);
+                        throw new MojoFailureException(format("Unable to resolve references of Attribute: %s", attribute.getName()));
+                    }
+                }
                 if (attribute.getMapTo() == null) {
-                    project.getProperties().setProperty(prefix + attribute.getName(), property.getValue());
+                    properties.setProperty(prefix + attribute.getName(), value);
                 } else {
-                    project.getProperties().setProperty(prefix + attribute.getMapTo(), property.getValue());
+                    properties.setProperty(prefix + attribute.getMapTo(), value);
+                }
+            }
+        }
+    }
+
+    private void handleAttachments(String prefix, KeePassEntry entry, List<Attachment> attachments, Properties properties) throws MojoFailureException {
+        if (attachments != null) {
+            Path directory = attachmentsDirectory.toPath().toAbsolutePath().normalize();
+            for (Attachment attachment : attachments) {
+                KeePassAttachment binary = entry.getAttachmentByName(attachment.getName());
+                if (binary == null) {
+                    getLog().error(format("Unknown Attachment name: %s", attachment.getName()));
+                    throw new MojoFailureException(format("Unknown Attachment name: %s", attachment.getName()));
+                }
+                String name = attachment.getMapTo() == null ? attachment.getName() : attachment.getMapTo();
+                Path target = directory.resolve(name).normalize();
+                if (!target.startsWith(directory) || target.equals(directory)) {
+                    getLog().error(format("Attachment file is outside of attachments directory: %s", name));
+                    throw new MojoFailureException(format("Attachment file is outside of attachments directory: %s", name));
+                }
+                try {
+                    if (binary.writeTo(target)) {
+                        getLog().info(format("Attachment: %s is written to %s (%d bytes)", attachment.getName(), target, binary.getSize()));
+                    } else {
+                        getLog().info(format("Attachment: %s is up to date: %s", attachment.getName(), target));
+                    }
+                } catch (IOException e) {
+                    getLog().error(format("Unable to write attachment: %s", attachment.getName()), e);
+                    throw new MojoFailureException(format("Unable to write attachment: %s", attachment.getName()));
                 }
+                properties.setProperty(prefix + name, target.toString());
             }
         }
     }
 
-    private KeePassGroup findGroup(KeePassDAO dao, String groupFilter) throws MojoFailureException {
+    private static boolean hasAttachments(List<Record> records) {
+        for (Record record : records) {
+            if (record.getAttachments() != null && !record.getAttachments().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return found group or <code>null</code> if the group of an optional record is not found
+     */
+    private KeePassGroup findGroup(KeePassLookup dao, Record record, KeePassRecordEvent event) throws MojoFailureException {
         KeePassGroup group;
+        String groupFilter = record.getGroup();
 
         if (groupFilter == null) {
+            event.groupFilterType = "root";
+            event.groupMatches = 1;
             return dao.getRootGroup();
         }
 
-        List<KeePassGroup> groups = findGroups(dao, groupFilter);
+        List<KeePassGroup> groups = findGroups(dao, record, event);
+        event.groupMatches = groups.size();
 
-        if (groups == null || groups.isEmpty()) {
+        if (groups.isEmpty() && record.isOptional()) {
+            getLog().warn(format("Group: %s is unknown", groupFilter));
+            return null;
+        } else if (groups.isEmpty()) {
             getLog().error(format("Group: %s is unknown", groupFilter));
             throw new MojoFailureException(format("Group: %s is unknown", groupFilter));
         } else if (groups.size() > 1) {
@@ -171,8 +731,22 @@ public class ReadMojo extends AbstractMojo {
         return group;
     }
 
-    private List<KeePassGroup> findGroups(KeePassDAO dao, String groupFilter) throws MojoFailureException {
+    private List<KeePassGroup> findGroups(KeePassLookup dao, Record record, KeePassRecordEvent event) throws MojoFailureException {
         ArrayList<KeePassGroup> result = new ArrayList<KeePassGroup>();
+        String groupFilter = record.getGroup();
+
+        if (FilterParser.isComposite(groupFilter)) {
+            event.groupFilterType = "composite";
+            try {
+                Filter<KeePassGroup> plan = record.getGroupPlan(regexEngine());
+                getLog().debug(format("Group filter plan: %s", plan));
+                result.addAll(dao.findGroups(plan));
+            } catch (Exception e) {
+                getLog().error(format("Unable to find group by filter: %s", groupFilter), e);
+                throw new MojoFailureException(format("Unable to find group by filter: %s", groupFilter));
+            }
+            return result;
+        }
 
         String[] filterFields = groupFilter.split(":", 2);
 
@@ -191,20 +765,21 @@ public class ReadMojo extends AbstractMojo {
             }
             filterData = filterFields[1];
         }
+        event.groupFilterType = filterType.name();
 
         try {
             switch (filterType) {
                 case name:
-                    result.addAll(dao.getGroupsByName(filterData));
+                    result.addAll(dao.findGroupsByName(filterData));
                     break;
                 case regex:
-                    result.addAll(dao.getGroupsByNameRegex(filterData));
+                    result.addAll(dao.findGroupsByNameRegex(filterData));
                     break;
                 case uuid:
-                    result.add(dao.getGroup(convertToUUID(filterData)));
+                    dao.findGroup(convertToUUID(filterData)).ifPresent(result::add);
                     break;
                 case path:
-                    result.addAll(dao.getGroupsByPath(filterData));
+                    result.addAll(dao.findGroupsByPath(filterData));
                     break;
             }
         } catch (Exception e) {
@@ -214,11 +789,20 @@ public class ReadMojo extends AbstractMojo {
         return result;
     }
 
-    private KeePassEntry findEntry(KeePassDAO dao, KeePassGroup group, String entryFilter) throws MojoFailureException {
+    /**
+     * @return found entry or <code>null</code> if the entry of an optional record is not found
+     */
+    private KeePassEntry findEntry(KeePassLookup dao, KeePassGroup group, Record record, KeePassRecordEvent event)
+            throws MojoFailureException {
         KeePassEntry entry;
-
-        List<KeePassEntry> entries = findEntries(dao, group, entryFilter);
-        if (entries == null || entries.isEmpty()) {
+        String entryFilter = record.getEntry();
+
+        List<KeePassEntry> entries = findEntries(dao, group, record, event);
+        event.entryMatches = entries.size();
+        if (entries.isEmpty() && record.isOptional()) {
+            getLog().warn(format("Entry: %s is unknown", entryFilter));
+            return null;
+        } else if (entries.isEmpty()) {
             getLog().error(format("Entry: %s is unknown", entryFilter));
             throw new MojoFailureException(format("Entry: %s is unknown", entryFilter));
         } else if (entries.size() > 1) {
@@ -235,8 +819,27 @@ public class ReadMojo extends AbstractMojo {
         return entry;
     }
 
-    private List<KeePassEntry> findEntries(KeePassDAO dao, KeePassGroup group, String entryFilter) throws MojoFailureException {
+    private List<KeePassEntry> findEntries(KeePassLookup dao, KeePassGroup group, Record record, KeePassRecordEvent event) throws MojoFailureException {
         ArrayList<KeePassEntry> result = new ArrayList<KeePassEntry>();
+        String entryFilter = record.getEntry();
+
+        if (FilterParser.isComposite(entryFilter)) {
+            event.entryFilterType = "composite";
+            try {
+                Filter<KeePassEntry> plan = record.getEntryPlan(regexEngine());
+                getLog().debug(format("Entry filter plan: %s", plan));
+                UUID uuid = FilterPlanner.findUuid(plan);
+                if (uuid == null) {
+                    result.addAll(dao.findEntries(group, plan));
+                } else {
+                    findEntryByUuid(dao, group, uuid).filter(plan::matches).ifPresent(result::add);
+                }
+            } catch (Exception e) {
+                getLog().error(format("Unable to find entry by filter: %s", entryFilter), e);
+                throw new MojoFailureException(format("Unable to find entry by filter: %s", entryFilter));
+            }
+            return result;
+        }
 
         String[] filterFields = entryFilter.split(":", 2);
 
@@ -255,17 +858,26 @@ public class ReadMojo extends AbstractMojo {
             }
             filterData = filterFields[1];
         }
+        event.entryFilterType = filterType.name();
 
         try {
             switch (filterType) {
                 case title:
-                    result.addAll(dao.getEntriesByTitle(group, filterData));
+                    result.addAll(dao.findEntriesByTitle(group, filterData));
                     break;
                 case regex:
-                    result.addAll(dao.getEntriesByTitleRegex(group, filterData));
+                    result.addAll(dao.findEntriesByTitleRegex(group, filterData));
                     break;
                 case uuid:
-                    result.add(dao.getEntry(convertToUUID(filterData)));
+                    findEntryByUuid(dao, group, convertToUUID(filterData)).ifPresent(result::add);
+                    break;
+                case attr:
+                    int index = filterData.indexOf('=');
+                    if (index <= 0) {
+                        throw new IllegalArgumentException(format("Invalid attribute filter: %s", filterData));
+                    }
+                    result.addAll(dao.findEntries(group,
+                            new EntryAttributeFilter(filterData.substring(0, index), filterData.substring(index + 1))));
                     break;
             }
         } catch (Exception e) {
@@ -275,11 +887,22 @@ public class ReadMojo extends AbstractMojo {
         return result;
     }
 
+    /**
+     * At most one entry has the UUID. It is looked up directly if the root group is searched, otherwise the group is walked
+     * to check that the entry is inside of it. Lookups find entries only in the search scope.
+     */
+    private static Optional<KeePassEntry> findEntryByUuid(KeePassLookup dao, KeePassGroup group, UUID uuid) {
+        if (group.getUuid().equals(dao.getRootGroup().getUuid())) {
+            return dao.findEntry(uuid);
+        }
+        return dao.findEntries(group, new EntryUUIDFilter(uuid)).stream().findFirst();
+    }
+
     private enum GroupFilterType {
         name, regex, uuid, path
     }
 
     private enum EntryFilterType {
-        title, regex, uuid
+        title, regex, uuid, attr
     }
 }
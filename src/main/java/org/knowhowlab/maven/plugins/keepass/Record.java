@@ -18,8 +18,16 @@ package org.knowhowlab.maven.plugins.keepass;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.maven.plugins.annotations.Parameter;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.Filter;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.FilterParser;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.FilterPlanner;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.RegexEngine;
 
 /**
  * Record that should be read from a KeePass file and set to system properties
@@ -38,19 +46,19 @@ public class Record {
      * suffix for username
      */
     @Parameter(required = false, defaultValue = "username")
-    private String suffixUsername;
+    private String suffixUsername = "username";
 
     /**
      * suffix for password
      */
     @Parameter(required = false, defaultValue = "password")
-    private String suffixPassword;
+    private String suffixPassword = "password";
 
     /**
      * suffix for url
      */
     @Parameter(required = false, defaultValue = "url")
-    private String suffixUrl;
+    private String suffixUrl = "url";
 
     /**
      * Groups filter. It has a format: [filter-type]:[filter-data].
@@ -73,6 +81,44 @@ public class Record {
     @Parameter(required = false)
     private List<Attribute> attributes = new ArrayList<Attribute>();
 
+    /**
+     * List of attachments have to be written to files for the found entry.
+     * A file path is set to a system property with the prefix and the file name.
+     * @see org.knowhowlab.maven.plugins.keepass.Attachment
+     */
+    @Parameter(required = false)
+    private List<Attachment> attachments = new ArrayList<Attachment>();
+
+    /**
+     * Optional record is skipped with a warning if its group or entry is not found.
+     */
+    @Parameter(required = false, defaultValue = "false")
+    private boolean optional;
+
+    /**
+     * Compiled composite filter plans by regex engine. Records of a manifest are shared by modules
+     */
+    private final ConcurrentMap<RegexEngine, Filter<KeePassGroup>> groupPlans =
+            new ConcurrentHashMap<RegexEngine, Filter<KeePassGroup>>();
+    private final ConcurrentMap<RegexEngine, Filter<KeePassEntry>> entryPlans =
+            new ConcurrentHashMap<RegexEngine, Filter<KeePassEntry>>();
+
+    public Record() {
+    }
+
+    Record(String prefix, String suffixUsername, String suffixPassword, String suffixUrl, String group, String entry,
+           List<Attribute> attributes, List<Attachment> attachments, boolean optional) {
+        this.prefix = prefix;
+        this.suffixUsername = suffixUsername;
+        this.suffixPassword = suffixPassword;
+        this.suffixUrl = suffixUrl;
+        this.group = group;
+        this.entry = entry;
+        this.attributes = attributes;
+        this.attachments = attachments;
+        this.optional = optional;
+    }
+
     public String getPrefix() {
         return prefix;
     }
@@ -100,4 +146,66 @@ public class Record {
     public List<Attribute> getAttributes() {
         return attributes;
     }
+
+    public List<Attachment> getAttachments() {
+        return attachments;
+    }
+
+    public boolean isOptional() {
+        return optional;
+    }
+
+    /**
+     * @param engine engine of <code>regex</code> filters
+     * @return evaluation plan of the composite group filter. It is compiled once per engine
+     * @throws IllegalArgumentException invalid filter
+     */
+    Filter<KeePassGroup> getGroupPlan(RegexEngine engine) {
+        return groupPlans.computeIfAbsent(engine, e -> FilterPlanner.plan(FilterParser.parseGroupFilter(group, e)));
+    }
+
+    /**
+     * @param engine engine of <code>regex</code> filters
+     * @return evaluation plan of the composite entry filter. It is compiled once per engine
+     * @throws IllegalArgumentException invalid filter
+     */
+    Filter<KeePassEntry> getEntryPlan(RegexEngine engine) {
+        return entryPlans.computeIfAbsent(engine, e -> FilterPlanner.plan(FilterParser.parseEntryFilter(entry, e)));
+    }
+
+    /**
+     * @return names of all properties that are set by this record
+     */
+    public List<String> getPropertyNames() {
+        List<String> names = new ArrayList<String>();
+        names.add(prefix + suffixUsername);
+        names.add(prefix + suffixPassword);
+        names.add(prefix + suffixUrl);
+        if (attributes != null) {
+            for (Attribute attribute : attributes) {
+                names.add(prefix + (attribute.getMapTo() == null ? attribute.getName() : attribute.getMapTo()));
+            }
+        }
+        if (attachments != null) {
+            for (Attachment attachment : attachments) {
+                names.add(prefix + (attachment.getMapTo() == null ? attachment.getName() : attachment.getMapTo()));
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return "Record{" +
+                "prefix='" + prefix + '\'' +
+                ", suffixUsername='" + suffixUsername + '\'' +
+                ", suffixPassword='" + suffixPassword + '\'' +
+                ", suffixUrl='" + suffixUrl + '\'' +
+                ", group='" + group + '\'' +
+                ", entry='" + entry + '\'' +
+                ", attributes=" + attributes +
+                ", attachments=" + attachments +
+                ", optional=" + optional +
+                '}';
+    }
 }
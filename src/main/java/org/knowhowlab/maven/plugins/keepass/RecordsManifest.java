@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.lang.String.format;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.knowhowlab.maven.plugins.keepass.dao.filter.FilterParser;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.RegexEngine;
+
+/**
+ * Records manifest: an external file with records in properties, YAML or JSON format.
+ * <p>
+ * JSON and YAML manifests have a list of records or a mapping with a <code>records</code> list. Record fields have
+ * names of {@link Record} parameters, attributes and attachments are lists of mappings with <code>name</code> and
+ * <code>mapTo</code> or lists of names. Records are validated, composite filters are compiled
+ * for the default regex engine.
+ *
+ * @author dpishchukhin.
+ */
+final class RecordsManifest {
+    private static final Set<String> RECORD_FIELDS = new HashSet<String>(Arrays.asList("prefix", "suffixUsername",
+            "suffixPassword", "suffixUrl", "group", "entry", "optional", "attributes", "attachments"));
+    private static final Set<String> ITEM_FIELDS = new HashSet<String>(Arrays.asList("name", "mapTo"));
+
+    private RecordsManifest() {
+    }
+
+    /**
+     * @param content manifest content
+     * @return hex SHA-256 digest of the content
+     */
+    static String digest(byte[] content) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param fileName manifest file name. Its extension defines the format:
+     *                 <code>.properties</code>, <code>.yaml</code>, <code>.yml</code> or <code>.json</code>
+     * @param text     manifest content
+     * @return unmodifiable list of records
+     * @throws IllegalArgumentException unknown format, invalid manifest or invalid record
+     */
+    static List<Record> parse(String fileName, String text) {
+        String name = fileName.toLowerCase(Locale.ENGLISH);
+        Object tree;
+        if (name.endsWith(".properties")) {
+            tree = ManifestParser.parseProperties(text);
+        } else if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+            tree = ManifestParser.parseYaml(text);
+        } else if (name.endsWith(".json")) {
+            tree = ManifestParser.parseJson(text);
+        } else {
+            throw new IllegalArgumentException(format("Unknown manifest format: %s. Use .properties, .yaml or .json", fileName));
+        }
+        if (tree instanceof Map && ((Map<?, ?>) tree).size() == 1 && ((Map<?, ?>) tree).containsKey("records")) {
+            tree = ((Map<?, ?>) tree).get("records");
+        }
+        if (!(tree instanceof List)) {
+            throw new IllegalArgumentException("List of records is expected");
+        }
+        List<Record> records = new ArrayList<Record>();
+        for (Object item : (List<?>) tree) {
+            records.add(toRecord(records.size() + 1, item));
+        }
+        return Collections.unmodifiableList(records);
+    }
+
+    private static Record toRecord(int index, Object item) {
+        if (!(item instanceof Map)) {
+            throw new IllegalArgumentException(format("Record %d is not a mapping", index));
+        }
+        Map<?, ?> fields = (Map<?, ?>) item;
+        for (Object field : fields.keySet()) {
+            if (!RECORD_FIELDS.contains(field)) {
+                throw new IllegalArgumentException(format("Unknown field of record %d: %s", index, field));
+            }
+        }
+        String prefix = string(index, fields, "prefix", null);
+        String entry = string(index, fields, "entry", null);
+        if (prefix == null || entry == null) {
+            throw new IllegalArgumentException(format("Record %d has no prefix or entry", index));
+        }
+        Record record = new Record(prefix,
+                string(index, fields, "suffixUsername", "username"),
+                string(index, fields, "suffixPassword", "password"),
+                string(index, fields, "suffixUrl", "url"),
+                string(index, fields, "group", null),
+                entry,
+                toAttributes(index, fields.get("attributes")),
+                toAttachments(index, fields.get("attachments")),
+                bool(index, fields, "optional"));
+        try {
+            if (FilterParser.isComposite(record.getGroup())) {
+                record.getGroupPlan(RegexEngine.JAVA);
+            }
+            if (FilterParser.isComposite(record.getEntry())) {
+                record.getEntryPlan(RegexEngine.JAVA);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(format("Invalid filter of record %d (%s): %s", index, prefix, e.getMessage()), e);
+        }
+        return record;
+    }
+
+    private static List<Attribute> toAttributes(int index, Object value) {
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (Map<?, ?> item : items(index, "attributes", value)) {
+            attributes.add(new Attribute(itemName(index, "attributes", item), (String) item.get("mapTo")));
+        }
+        return attributes;
+    }
+
+    private static List<Attachment> toAttachments(int index, Object value) {
+        List<Attachment> attachments = new ArrayList<Attachment>();
+        for (Map<?, ?> item : items(index, "attachments", value)) {
+            attachments.add(new Attachment(itemName(index, "attachments", item), (String) item.get("mapTo")));
+        }
+        return attachments;
+    }
+
+    private static List<Map<?, ?>> items(int index, String list, Object value) {
+        List<Map<?, ?>> items = new ArrayList<Map<?, ?>>();
+        if (value == null) {
+            return items;
+        } else if (!(value instanceof List)) {
+            throw new IllegalArgumentException(format("%s of record %d is not a list", list, index));
+        }
+        for (Object item : (List<?>) value) {
+            if (item instanceof String) {
+                items.add(Collections.singletonMap("name", item));
+            } else if (item instanceof Map) {
+                Map<?, ?> fields = (Map<?, ?>) item;
+                for (Map.Entry<?, ?> field : fields.entrySet()) {
+                    if (!ITEM_FIELDS.contains(field.getKey())) {
+                        throw new IllegalArgumentException(format("Unknown field of %s of record %d: %s", list, index, field.getKey()));
+                    } else if (field.getValue() != null && !(field.getValue() instanceof String)) {
+                        throw new IllegalArgumentException(format("%s of %s of record %d is not a string", field.getKey(), list, index));
+                    }
+                }
+                items.add(fields);
+            } else {
+                throw new IllegalArgumentException(format("Invalid item of %s of record %d: %s", list, index, item));
+            }
+        }
+        return items;
+    }
+
+    private static String itemName(int index, String list, Map<?, ?> item) {
+        String name = (String) item.get("name");
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException(format("Item of %s of record %d has no name", list, index));
+        }
+        return name;
+    }
+
+    private static String string(int index, Map<?, ?> fields, String name, String defaultValue) {
+        Object value = fields.get(name);
+        if (value == null) {
+            return defaultValue;
+        } else if (!(value instanceof String)) {
+            throw new IllegalArgumentException(format("%s of record %d is not a string", name, index));
+        }
+        return (String) value;
+    }
+
+    private static boolean bool(int index, Map<?, ?> fields, String name) {
+        Object value = fields.get(name);
+        if (value == null || value instanceof Boolean) {
+            return Boolean.TRUE.equals(value);
+        } else if ("true".equalsIgnoreCase(value.toString()) || "false".equalsIgnoreCase(value.toString())) {
+            return Boolean.parseBoolean(value.toString());
+        }
+        throw new IllegalArgumentException(format("%s of record %d is not a boolean: %s", name, index, value));
+    }
+}
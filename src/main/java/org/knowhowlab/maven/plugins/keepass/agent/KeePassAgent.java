@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.agent;
+
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentProtocol.*;
+
+/**
+ * Agent that keeps an open KeePass file in memory and answers lookups over a Unix domain socket.
+ * <p>
+ * The socket directory and the socket itself are accessible only by the owner. Clients are served, and may stop
+ * the agent, only after the handshake proves their credentials. The agent stops accepting connections when
+ * its time to live is over and exits once open connections are closed.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassAgent implements Closeable {
+    /**
+     * Printed to standard output when the agent is ready to accept connections
+     */
+    public static final String READY = "READY";
+
+    private static final long SHUTDOWN_GRACE_SECONDS = 60;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final KeePassDAO dao;
+    private final Path socket;
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final KeePassGroup rootGroup;
+    private final byte[] compositeKey;
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "keepass-agent-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ServerSocketChannel server;
+
+    /**
+     * @param dao          open KeePass file
+     * @param file         location of the KeePass file. Used to detect stale data
+     * @param socket       socket location
+     * @param compositeKey composite key of credentials that opened the file. Clients have to prove the same credentials
+     */
+    public KeePassAgent(KeePassDAO dao, File file, Path socket, byte[] compositeKey) {
+        this.dao = dao;
+        this.compositeKey = compositeKey.clone();
+        this.socket = socket;
+        this.path = canonicalPath(file);
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.rootGroup = dao.getRootGroup();
+    }
+
+    public void start() throws IOException {
+        secureDirectory(socket.toAbsolutePath().getParent());
+        Files.deleteIfExists(socket);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        secureSocket(socket);
+    }
+
+    /**
+     * Accepts connections until the agent is closed or time to live is over
+     *
+     * @param ttlMillis time to live in milliseconds
+     */
+    public void serve(long ttlMillis) throws IOException {
+        Thread timer = new Thread(() -> {
+            try {
+                Thread.sleep(ttlMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            close();
+        }, "keepass-agent-ttl");
+        timer.setDaemon(true);
+        timer.start();
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                workers.execute(() -> handle(channel));
+            }
+        } catch (ClosedChannelException e) {
+            // closed by ttl or stop request
+        } finally {
+            timer.interrupt();
+            workers.shutdown();
+            try {
+                workers.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            if (server != null) {
+                server.close();
+            }
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            System.err.println(format("Unable to close agent socket: %s", e.getMessage()));
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (SocketChannel ignored = channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            // credentials are proven, a stale agent can still be stopped
+            boolean authenticated = false;
+            boolean accepted = false;
+            int op;
+            while ((op = in.read()) >= 0) {
+                if (op == OP_HELLO) {
+                    byte status = hello(in, out);
+                    authenticated = status == STATUS_OK || status == STATUS_STALE;
+                    accepted = status == STATUS_OK;
+                } else if (op == OP_STOP && authenticated) {
+                    out.writeByte(STATUS_OK);
+                    // socket is removed before the reply, so a new agent can take it over right away
+                    close();
+                    out.flush();
+                    return;
+                } else if (accepted) {
+                    process((byte) op, in, out);
+                } else {
+                    out.writeByte(STATUS_ERROR);
+                    writeString(out, "Handshake is required");
+                    authenticated = false;
+                }
+                out.flush();
+                if (!authenticated) {
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // client closed the connection, e.g. the agent did not prove its credentials
+        } catch (IOException e) {
+            System.err.println(format("Agent connection failed: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Proves credentials of the agent, then verifies credentials of the client and its file
+     *
+     * @return written status
+     */
+    private byte hello(DataInputStream in, DataOutputStream out) throws IOException {
+        int version = in.readInt();
+        if (version != VERSION) {
+            out.writeByte(STATUS_ERROR);
+            writeString(out, format("Unsupported protocol version: %d", version));
+            return STATUS_ERROR;
+        }
+        String clientPath = readString(in);
+        long clientLastModified = in.readLong();
+        long clientLength = in.readLong();
+        byte[] clientSalt = new byte[SALT_LENGTH];
+        in.readFully(clientSalt);
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        out.writeByte(STATUS_OK);
+        out.write(salt);
+        out.write(proof(compositeKey, AGENT_PROOF, salt, clientSalt));
+        out.flush();
+
+        byte[] clientProof = new byte[PROOF_LENGTH];
+        in.readFully(clientProof);
+        byte status;
+        if (!MessageDigest.isEqual(clientProof, proof(compositeKey, CLIENT_PROOF, clientSalt, salt))) {
+            status = STATUS_REJECTED;
+        } else if (!path.equals(clientPath) || lastModified != clientLastModified || length != clientLength) {
+            status = STATUS_STALE;
+        } else {
+            status = STATUS_OK;
+        }
+        out.writeByte(status);
+        return status;
+    }
+
+    private void process(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream result = new DataOutputStream(buffer);
+        try {
+            switch (op) {
+                case OP_ROOT_GROUP:
+                    writeGroup(result, rootGroup);
+                    break;
+                case OP_GROUP_BY_UUID: {
+                    Optional<KeePassGroup> group = dao.findGroup(readUUID(in));
+                    if (!group.isPresent()) {
+                        out.writeByte(STATUS_NOT_FOUND);
+                        return;
+                    }
+                    writeGroup(result, group.get());
+                    break;
+                }
+                case OP_ENTRY_BY_UUID: {
+                    Optional<KeePassEntry> entry = dao.findEntry(readUUID(in));
+                    if (!entry.isPresent()) {
+                        out.writeByte(STATUS_NOT_FOUND);
+                        return;
+                    }
+                    writeEntry(result, entry.get());
+                    break;
+                }
+                case OP_GROUPS_BY_NAME:
+                    writeGroups(result, dao.findGroupsByName(readString(in)));
+                    break;
+                case OP_GROUPS_BY_NAME_REGEX:
+                    writeGroups(result, dao.findGroupsByNameRegex(readString(in)));
+                    break;
+                case OP_GROUPS_BY_PATH:
+                    writeGroups(result, dao.findGroupsByPath(readString(in)));
+                    break;
+                case OP_ENTRIES_BY_TITLE: {
+                    Optional<KeePassGroup> group = findGroup(readUUID(in));
+                    String data = readString(in);
+                    writeEntries(result, group.isPresent()
+                            ? dao.findEntriesByTitle(group.get(), data) : new ArrayList<KeePassEntry>());
+                    break;
+                }
+                case OP_ENTRIES_BY_TITLE_REGEX: {
+                    Optional<KeePassGroup> group = findGroup(readUUID(in));
+                    String data = readString(in);
+                    writeEntries(result, group.isPresent()
+                            ? dao.findEntriesByTitleRegex(group.get(), data) : new ArrayList<KeePassEntry>());
+                    break;
+                }
+                default:
+                    throw new IOException(format("Unknown operation: %d", op));
+            }
+        } catch (RuntimeException e) {
+            out.writeByte(STATUS_ERROR);
+            writeString(out, e.getMessage());
+            return;
+        }
+        out.writeByte(STATUS_OK);
+        buffer.writeTo(out);
+    }
+
+    private Optional<KeePassGroup> findGroup(UUID uuid) {
+        return rootGroup.getUuid().equals(uuid) ? Optional.of(rootGroup) : dao.findGroup(uuid);
+    }
+
+    /**
+     * Starts the agent. Arguments: socket location, KeePass file location, time to live in seconds
+     * and an optional key file location. The password is read from standard input.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: KeePassAgent <socket> <file> <ttl-seconds> [key-file]");
+            System.exit(2);
+        }
+        Path socket = Paths.get(args[0]);
+        File file = new File(args[1]);
+        long ttlSeconds = Long.parseLong(args[2]);
+        File keyFile = args.length > 3 ? new File(args[3]) : null;
+
+        DataInputStream in = new DataInputStream(System.in);
+        String password = in.readBoolean() ? readString(in) : null;
+        in.close();
+
+        KeePassAgent agent;
+        try {
+            KeePassDAO dao = new KeePassDAO(file);
+            if (keyFile == null) {
+                dao.open(password);
+            } else if (password == null) {
+                dao.open(keyFile);
+            } else {
+                dao.open(password, keyFile);
+            }
+            agent = new KeePassAgent(dao, file, socket, KeePassDAO.compositeKey(password, keyFile));
+            agent.start();
+        } catch (Exception e) {
+            System.err.println(format("Unable to start agent for file: %s", file.getAbsolutePath()));
+            e.printStackTrace();
+            System.exit(1);
+            return;
+        }
+
+        System.out.println(READY);
+        System.out.close();
+        agent.serve(TimeUnit.SECONDS.toMillis(ttlSeconds));
+        System.exit(0);
+    }
+}
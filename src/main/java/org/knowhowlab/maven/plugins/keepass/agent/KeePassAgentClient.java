@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.agent;
+
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassLookup;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassNotFoundException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.lang.String.format;
+import static org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentProtocol.*;
+
+/**
+ * Client of the agent. Lookups have the same semantics as {@link org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO}
+ * lookups, but returned groups have no entries and subgroups.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassAgentClient implements KeePassLookup, Closeable {
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private KeePassAgentClient(SocketChannel channel) {
+        this.channel = channel;
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Connects to the agent that serves the given KeePass file
+     *
+     * @param socket       agent socket
+     * @param file         KeePass file
+     * @param compositeKey composite key of credentials, see {@link org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO#compositeKey(String, File)}
+     * @return connected client
+     * @throws IOException                  agent is not available or its socket belongs to another user
+     * @throws StaleAgentException          agent serves another file or an outdated version of the file
+     * @throws RejectedCredentialsException agent file is open with other credentials
+     */
+    public static KeePassAgentClient connect(Path socket, File file, byte[] compositeKey) throws IOException {
+        KeePassAgentClient client = open(socket);
+        try {
+            if (client.hello(file, compositeKey) == STATUS_STALE) {
+                throw new StaleAgentException(format("Agent data is outdated for file: %s", file.getAbsolutePath()));
+            }
+            return client;
+        } catch (IOException e) {
+            client.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Asks the agent that listens on the socket to stop. Works for stale agents as well
+     *
+     * @param socket       agent socket
+     * @param file         KeePass file
+     * @param compositeKey composite key of credentials
+     * @throws IOException                  agent is not available or its socket belongs to another user
+     * @throws RejectedCredentialsException agent file is open with other credentials
+     */
+    public static void stop(Path socket, File file, byte[] compositeKey) throws IOException {
+        try (KeePassAgentClient client = open(socket)) {
+            client.hello(file, compositeKey);
+            client.out.writeByte(OP_STOP);
+            client.out.flush();
+            client.in.readByte();
+        }
+    }
+
+    private static KeePassAgentClient open(Path socket) throws IOException {
+        verifySocket(socket);
+        return new KeePassAgentClient(SocketChannel.open(UnixDomainSocketAddress.of(socket)));
+    }
+
+    /**
+     * Verifies credentials of the agent before its own credentials are proven
+     *
+     * @return {@link KeePassAgentProtocol#STATUS_OK} or {@link KeePassAgentProtocol#STATUS_STALE}
+     */
+    private byte hello(File file, byte[] compositeKey) throws IOException {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        out.writeByte(OP_HELLO);
+        out.writeInt(VERSION);
+        writeString(out, canonicalPath(file));
+        out.writeLong(file.lastModified());
+        out.writeLong(file.length());
+        out.write(salt);
+        out.flush();
+        if (in.readByte() != STATUS_OK) {
+            throw new IOException(readString(in));
+        }
+        byte[] agentSalt = new byte[SALT_LENGTH];
+        in.readFully(agentSalt);
+        byte[] agentProof = new byte[PROOF_LENGTH];
+        in.readFully(agentProof);
+        if (!MessageDigest.isEqual(agentProof, proof(compositeKey, AGENT_PROOF, agentSalt, salt))) {
+            throw new RejectedCredentialsException(format("Agent file is open with other credentials: %s", file.getAbsolutePath()));
+        }
+        out.write(proof(compositeKey, CLIENT_PROOF, salt, agentSalt));
+        out.flush();
+        byte status = in.readByte();
+        if (status == STATUS_REJECTED) {
+            throw new RejectedCredentialsException(format("Agent rejected credentials for file: %s", file.getAbsolutePath()));
+        } else if (status != STATUS_OK && status != STATUS_STALE) {
+            throw new IOException(format("Unexpected agent status: %d", status));
+        }
+        return status;
+    }
+
+    public KeePassGroup getRootGroup() {
+        try {
+            out.writeByte(OP_ROOT_GROUP);
+            readStatus();
+            return readGroup(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public KeePassGroup getGroup(UUID uuid) {
+        return findGroup(uuid).orElseThrow(() -> new KeePassNotFoundException("Group with UUID " + uuid + " does not exists"));
+    }
+
+    @Override
+    public Optional<KeePassGroup> findGroup(UUID uuid) {
+        try {
+            out.writeByte(OP_GROUP_BY_UUID);
+            writeUUID(out, uuid);
+            return readStatus() ? Optional.of(readGroup(in)) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public KeePassEntry getEntry(UUID uuid) {
+        return findEntry(uuid).orElseThrow(() -> new KeePassNotFoundException("Entry with UUID " + uuid + " does not exists"));
+    }
+
+    @Override
+    public Optional<KeePassEntry> findEntry(UUID uuid) {
+        try {
+            out.writeByte(OP_ENTRY_BY_UUID);
+            writeUUID(out, uuid);
+            return readStatus() ? Optional.of(readEntry(in)) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public List<KeePassGroup> getGroupsByName(String name) {
+        return notEmpty(findGroupsByName(name), "name", name);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByName(String name) {
+        return requestGroups(OP_GROUPS_BY_NAME, name);
+    }
+
+    public List<KeePassGroup> getGroupsByNameRegex(String regex) {
+        return notEmpty(findGroupsByNameRegex(regex), "name regex", regex);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByNameRegex(String regex) {
+        return requestGroups(OP_GROUPS_BY_NAME_REGEX, regex);
+    }
+
+    public List<KeePassGroup> getGroupsByPath(String path) {
+        return notEmpty(findGroupsByPath(path), "path", path);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByPath(String path) {
+        return requestGroups(OP_GROUPS_BY_PATH, path);
+    }
+
+    public List<KeePassEntry> getEntriesByTitle(KeePassGroup group, String title) {
+        return notEmpty(findEntriesByTitle(group, title), "title", title);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntriesByTitle(KeePassGroup group, String title) {
+        return requestEntries(OP_ENTRIES_BY_TITLE, group, title);
+    }
+
+    public List<KeePassEntry> getEntriesByTitleRegex(KeePassGroup group, String regex) {
+        return notEmpty(findEntriesByTitleRegex(group, regex), "title regex", regex);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntriesByTitleRegex(KeePassGroup group, String regex) {
+        return requestEntries(OP_ENTRIES_BY_TITLE_REGEX, group, regex);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private List<KeePassGroup> requestGroups(byte op, String data) {
+        try {
+            out.writeByte(op);
+            writeString(out, data);
+            readStatus();
+            return readGroups(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<KeePassEntry> requestEntries(byte op, KeePassGroup group, String data) {
+        try {
+            out.writeByte(op);
+            writeUUID(out, group.getUuid());
+            writeString(out, data);
+            readStatus();
+            return readEntries(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> List<T> notEmpty(List<T> result, String filter, String data) {
+        if (result.isEmpty()) {
+            throw new KeePassNotFoundException(format("Invalid filter: %s %s", filter, data));
+        }
+        return result;
+    }
+
+    /**
+     * Sends the request and reads response status. Lookup errors have the same type as DAO errors
+     *
+     * @return <code>false</code> if nothing is found
+     */
+    private boolean readStatus() throws IOException {
+        out.flush();
+        byte status = in.readByte();
+        if (status == STATUS_NOT_FOUND) {
+            return false;
+        } else if (status != STATUS_OK) {
+            throw new IllegalArgumentException(readString(in));
+        }
+        return true;
+    }
+
+    /**
+     * Agent serves another file or an outdated version of the file
+     */
+    public static class StaleAgentException extends IOException {
+        public StaleAgentException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Agent file is open with other credentials
+     */
+    public static class RejectedCredentialsException extends IOException {
+        public RejectedCredentialsException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.agent;
+
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassProperty;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static java.lang.String.format;
+
+/**
+ * Binary protocol between the agent and its clients.
+ * <p>
+ * Every request is an operation byte followed by its arguments, every response is a status byte
+ * followed by the result or an error message. Misses are not errors: list lookups return empty lists,
+ * UUID lookups return {@link #STATUS_NOT_FOUND} without a message. Strings are encoded as an <code>int</code> length
+ * (<code>-1</code> for <code>null</code>) and UTF-8 bytes, UUIDs as two <code>long</code> values.
+ * Groups are sent with their paths, so composite group filters match them like groups of the file.
+ * <p>
+ * Both sides prove the composite key with a keyed MAC over random salts of the client and the agent, the key itself
+ * is never sent. The agent proves it first, so a client never sends its proof to a socket of somebody else.
+ * The socket directory and the socket have to belong to the current user.
+ *
+ * @author dpishchukhin.
+ */
+public final class KeePassAgentProtocol {
+    static final byte OP_HELLO = 1;
+    static final byte OP_ROOT_GROUP = 2;
+    static final byte OP_GROUP_BY_UUID = 3;
+    static final byte OP_ENTRY_BY_UUID = 4;
+    static final byte OP_GROUPS_BY_NAME = 5;
+    static final byte OP_GROUPS_BY_NAME_REGEX = 6;
+    static final byte OP_GROUPS_BY_PATH = 7;
+    static final byte OP_ENTRIES_BY_TITLE = 8;
+    static final byte OP_ENTRIES_BY_TITLE_REGEX = 9;
+    static final byte OP_STOP = 10;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    static final byte STATUS_STALE = 2;
+    static final byte STATUS_REJECTED = 3;
+    static final byte STATUS_NOT_FOUND = 4;
+
+    static final int VERSION = 5;
+    static final int SALT_LENGTH = 16;
+    static final int PROOF_LENGTH = 32;
+    static final byte AGENT_PROOF = 'A';
+    static final byte CLIENT_PROOF = 'C';
+    static final int MAX_STRING_LENGTH = 16 << 20;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = PosixFilePermissions.fromString("rw-------");
+
+    private KeePassAgentProtocol() {
+    }
+
+    /**
+     * Default socket location for a KeePass file: a per-user directory in <code>java.io.tmpdir</code>
+     * and a file name derived from the canonical path of the KeePass file.
+     *
+     * @param file KeePass file
+     * @return socket path
+     */
+    public static Path defaultSocket(File file) {
+        Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "keepass-agent-" + System.getProperty("user.name"));
+        return directory.resolve(hash(canonicalPath(file)).substring(0, 16) + ".sock");
+    }
+
+    /**
+     * Creates the socket directory if needed and verifies that it belongs to the current user
+     * and nobody else has access to it.
+     *
+     * @param directory socket directory
+     * @throws IOException directory can not be created, belongs to another user or is accessible by others
+     */
+    public static void secureDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            if (isPosix()) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+        verifyDirectory(directory);
+    }
+
+    /**
+     * Verifies that the socket and its directory belong to the current user and nobody else has access to the directory
+     *
+     * @param socket socket location
+     * @throws IOException socket or its directory belongs to another user or the directory is accessible by others
+     */
+    static void verifySocket(Path socket) throws IOException {
+        verifyDirectory(socket.toAbsolutePath().getParent());
+        verifyOwner(socket);
+    }
+
+    private static void verifyDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException(format("Agent directory is not a directory: %s", directory));
+        }
+        verifyOwner(directory);
+        if (isPosix()) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS);
+            if (!OWNER_ONLY_DIRECTORY.equals(permissions)) {
+                throw new IOException(format("Agent directory is accessible by other users: %s %s", directory,
+                        PosixFilePermissions.toString(permissions)));
+            }
+        }
+    }
+
+    private static void verifyOwner(Path path) throws IOException {
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!user.equals(owner)) {
+            throw new IOException(format("Agent file belongs to another user: %s %s", path, owner.getName()));
+        }
+    }
+
+    static void secureSocket(Path socket) throws IOException {
+        if (isPosix()) {
+            Files.setPosixFilePermissions(socket, OWNER_ONLY_FILE);
+        }
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    static String canonicalPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param compositeKey composite key of credentials
+     * @param role         {@link #AGENT_PROOF} or {@link #CLIENT_PROOF}, so a proof of one side can not be replayed by the other
+     * @param first        salt of the proving side
+     * @param second       salt of the verifying side
+     * @return proof of credentials
+     */
+    static byte[] proof(byte[] compositeKey, byte role, byte[] first, byte[] second) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(compositeKey, "HmacSHA256"));
+            mac.update(role);
+            mac.update(first);
+            mac.update(second);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        } else if (length > MAX_STRING_LENGTH) {
+            throw new IOException(format("String is too long: %d", length));
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeUUID(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUUID(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void writeGroup(DataOutput out, KeePassGroup group) throws IOException {
+        writeUUID(out, group.getUuid());
+        writeString(out, group.getName());
+        writeString(out, group.getPath());
+    }
+
+    static KeePassGroup readGroup(DataInput in) throws IOException {
+        return KeePassGroup.create(readUUID(in), readString(in), readString(in));
+    }
+
+    static void writeGroups(DataOutput out, List<KeePassGroup> groups) throws IOException {
+        out.writeInt(groups.size());
+        for (KeePassGroup group : groups) {
+            writeGroup(out, group);
+        }
+    }
+
+    static List<KeePassGroup> readGroups(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<KeePassGroup> groups = new ArrayList<KeePassGroup>(size);
+        for (int i = 0; i < size; i++) {
+            groups.add(readGroup(in));
+        }
+        return groups;
+    }
+
+    static void writeEntry(DataOutput out, KeePassEntry entry) throws IOException {
+        writeUUID(out, entry.getUuid());
+        List<KeePassProperty> properties = entry.getProperties();
+        out.writeInt(properties.size());
+        for (KeePassProperty property : properties) {
+            writeString(out, property.getKey());
+            writeString(out, property.getValue());
+        }
+    }
+
+    static KeePassEntry readEntry(DataInput in) throws IOException {
+        UUID uuid = readUUID(in);
+        int size = in.readInt();
+        List<KeePassProperty> properties = new ArrayList<KeePassProperty>(size);
+        for (int i = 0; i < size; i++) {
+            properties.add(new KeePassProperty(readString(in), readString(in)));
+        }
+        return KeePassEntry.create(uuid, properties);
+    }
+
+    static void writeEntries(DataOutput out, List<KeePassEntry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (KeePassEntry entry : entries) {
+            writeEntry(out, entry);
+        }
+    }
+
+    static List<KeePassEntry> readEntries(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<KeePassEntry> entries = new ArrayList<KeePassEntry>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(readEntry(in));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import de.slackspace.openkeepass.domain.Attachment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Entry attachment. The content is a decompressed binary from the binary pool of the KeePass file.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassAttachment {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Attachment attachment;
+
+    public KeePassAttachment(Attachment attachment) {
+        this.attachment = attachment;
+    }
+
+    Attachment getAttachment() {
+        return attachment;
+    }
+
+    public String getKey() {
+        return attachment.getKey();
+    }
+
+    public int getSize() {
+        return attachment.getData() == null ? 0 : attachment.getData().length;
+    }
+
+    /**
+     * Writes the content to a file. The content is written from the binary pool to the file channel without copies.
+     * The file is replaced atomically and is not touched if it has the same content.
+     *
+     * @param file target file
+     * @return <code>true</code> if the file is written, <code>false</code> if it has the same content
+     * @throws IOException unable to write the file
+     */
+    public boolean writeTo(Path file) throws IOException {
+        byte[] data = attachment.getData() == null ? new byte[0] : attachment.getData();
+        if (hasContent(file, data)) {
+            return false;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * Compares the file with the data in chunks
+     */
+    private static boolean hasContent(Path file, byte[] data) throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) != data.length) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(BUFFER_SIZE, Math.max(data.length, 1)));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int position = 0;
+            while (position < data.length) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    return false;
+                }
+                buffer.flip();
+                if (!buffer.equals(ByteBuffer.wrap(data, position, read))) {
+                    return false;
+                }
+                position += read;
+            }
+        }
+        return true;
+    }
+}
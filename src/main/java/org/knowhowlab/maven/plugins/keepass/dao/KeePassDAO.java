@@ -17,26 +17,63 @@
 package org.knowhowlab.maven.plugins.keepass.dao;
 
 import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.api.KeyFileReader;
+import de.slackspace.openkeepass.crypto.Aes;
+import de.slackspace.openkeepass.crypto.Sha256;
 import de.slackspace.openkeepass.domain.Entry;
 import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.Meta;
 import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.util.ByteUtils;
+import org.knowhowlab.maven.plugins.keepass.dao.crypto.InvalidCredentialsException;
+import org.knowhowlab.maven.plugins.keepass.dao.crypto.PayloadReader;
 import org.knowhowlab.maven.plugins.keepass.dao.filter.*;
+import org.knowhowlab.maven.plugins.keepass.jfr.KeePassFileReadEvent;
+import org.knowhowlab.maven.plugins.keepass.jfr.KeePassOpenEvent;
+import org.knowhowlab.maven.plugins.keepass.jmx.KeePassStatistics;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+import static java.lang.String.format;
 import static java.util.UUID.fromString;
 
 /**
  * @author dpishchukhin.
  */
-public class KeePassDAO {
+public class KeePassDAO implements KeePassLookup, Closeable {
+    private final File file;
     private final KeePassDatabase keePassDatabase;
     private KeePassFile keePassFile;
+    private KeePassSnapshot snapshot;
+    private KeePassScope scope = KeePassScope.ALL;
+    private volatile GroupScope groupScope;
+    private int decryptThreads = Runtime.getRuntime().availableProcessors();
+    private RegexEngine regexEngine = RegexEngine.JAVA;
+    private final AtomicLong visitedNodes = new AtomicLong();
 
     public KeePassDAO(File file) {
+        KeePassFileReadEvent event = new KeePassFileReadEvent();
+        event.begin();
         keePassDatabase = KeePassDatabase.getInstance(file);
+        this.file = file;
+        if (event.shouldCommit()) {
+            event.file = file.getAbsolutePath();
+            event.databaseSize = file.length();
+            event.commit();
+        }
     }
 
     public static UUID convertToUUID(String digits) {
@@ -50,50 +87,367 @@ public class KeePassDAO {
     }
 
     public KeePassDAO open(String password) {
-        try {
-            keePassFile = keePassDatabase.openDatabase(password);
-            return this;
-        } catch (KeePassDatabaseUnreadableException e) {
-            throw new IllegalArgumentException("Invalid password?", e);
-        }
+        return open("password", () -> passwordKey(password));
     }
 
     public KeePassDAO open(String password, File keyFile) {
+        return open("password and key file", () -> ByteUtils.concat(passwordKey(password), keyFileKey(keyFile)));
+    }
+
+    public KeePassDAO open(File keyFile) {
+        return open("key file", () -> keyFileKey(keyFile));
+    }
+
+    /**
+     * Credentials that were rejected by this file are remembered for the session, following attempts
+     * with the same credentials fail without key derivation
+     */
+    private KeePassDAO open(String credentials, Supplier<byte[]> key) {
+        KeePassOpenEvent event = beginOpen(credentials);
+        boolean rejected = false;
         try {
-            keePassFile = keePassDatabase.openDatabase(password, keyFile);
+            byte[] compositeKey = key.get();
+            if (KeePassRejectedCredentials.isRejected(file, compositeKey)) {
+                rejected = true;
+                throw new KeePassRejectedCredentialsException(format("Invalid %s (already rejected in this session): %s",
+                        credentials, file.getAbsolutePath()));
+            }
+            try {
+                keePassFile = read(compositeKey);
+            } catch (InvalidCredentialsException e) {
+                KeePassRejectedCredentials.reject(file, compositeKey);
+                throw new KeePassRejectedCredentialsException(format("Invalid %s: %s", credentials, file.getAbsolutePath()), e);
+            } catch (KeePassDatabaseUnreadableException e) {
+                throw new IllegalArgumentException(format("Unable to read file: %s. %s", file.getAbsolutePath(), e.getMessage()), e);
+            }
+            snapshot = null;
+            groupScope = null;
+            event.success = true;
             return this;
-        } catch (KeePassDatabaseUnreadableException e) {
-            throw new IllegalArgumentException("Invalid password and/or key file?", e);
+        } finally {
+            if (rejected) {
+                KeePassStatistics.getInstance().recordRejectedOpen();
+            } else {
+                KeePassStatistics.getInstance().recordOpen(event.success);
+            }
+            commitOpen(event);
         }
     }
 
-    public KeePassDAO open(File keyFile) {
+    /**
+     * Sets number of threads that decrypt the payload and verify its blocks
+     *
+     * @param decryptThreads number of threads
+     * @return this DAO
+     */
+    public KeePassDAO setDecryptThreads(int decryptThreads) {
+        if (decryptThreads < 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of decryption threads: %d", decryptThreads));
+        }
+        this.decryptThreads = decryptThreads;
+        return this;
+    }
+
+    public int getDecryptThreads() {
+        return decryptThreads;
+    }
+
+    /**
+     * Sets engine of regex lookups
+     *
+     * @param regexEngine regex engine
+     * @return this DAO
+     */
+    public KeePassDAO setRegexEngine(RegexEngine regexEngine) {
+        if (regexEngine == null) {
+            throw new IllegalArgumentException("Regex engine must not be null");
+        }
+        this.regexEngine = regexEngine;
+        return this;
+    }
+
+    public RegexEngine getRegexEngine() {
+        return regexEngine;
+    }
+
+    private KeePassFile read(byte[] compositeKey) {
+        byte[] database;
         try {
-            keePassFile = keePassDatabase.openDatabase(keyFile);
-            return this;
-        } catch (KeePassDatabaseUnreadableException e) {
-            throw new IllegalArgumentException("Invalid key file?", e);
+            database = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new PayloadReader(decryptThreads).read(database, keePassDatabase.getHeader(), compositeKey);
+    }
+
+    /**
+     * Composite key of credentials: hash of the password, key of the key file or both
+     *
+     * @param password password or <code>null</code>
+     * @param keyFile  key file or <code>null</code>
+     * @return composite key
+     * @throws IllegalArgumentException both credentials are missed or the key file can not be read
+     */
+    public static byte[] compositeKey(String password, File keyFile) {
+        if (keyFile == null) {
+            return passwordKey(password);
+        } else if (password == null) {
+            return keyFileKey(keyFile);
+        }
+        return ByteUtils.concat(passwordKey(password), keyFileKey(keyFile));
+    }
+
+    private static byte[] passwordKey(String password) {
+        if (password == null) {
+            throw new IllegalArgumentException("The password for the database must not be null. Please provide a valid password.");
+        }
+        return Sha256.hash(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] keyFileKey(File keyFile) {
+        if (keyFile == null) {
+            throw new IllegalArgumentException("You must provide a valid KeePass keyfile.");
+        }
+        try (InputStream stream = new FileInputStream(keyFile)) {
+            return new KeyFileReader().readKeyFile(stream);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The KeePass keyfile could not be found. You must provide a valid KeePass keyfile.", e);
+        }
+    }
+
+    private static KeePassOpenEvent beginOpen(String credentials) {
+        KeePassOpenEvent event = new KeePassOpenEvent();
+        event.credentials = credentials;
+        event.begin();
+        return event;
+    }
+
+    private void commitOpen(KeePassOpenEvent event) {
+        event.end();
+        if (event.shouldCommit()) {
+            KeePassKdfParameters kdf = getKdfParameters();
+            event.databaseSize = file.length();
+            event.kdf = kdf.getType().name();
+            event.transformRounds = kdf.getType() == KeePassKdfParameters.Type.AES ? kdf.getRounds() : kdf.getIterations();
+            event.commit();
+        }
+    }
+
+    /**
+     * Key derivation parameters of the file. The file does not have to be open.
+     */
+    public KeePassKdfParameters getKdfParameters() {
+        return KeePassKdfParameters.fromHeader(keePassDatabase.getHeader());
+    }
+
+    /**
+     * Runs AES-KDF key transformation with the file transform seed on a dummy key.
+     *
+     * @param rounds number of transform rounds
+     * @return elapsed time in nanoseconds
+     */
+    public long measureKeyTransform(long rounds) {
+        byte[] seed = keePassDatabase.getHeader().getTransformSeed();
+        if (seed == null) {
+            seed = new byte[32];
+        }
+        long start = System.nanoTime();
+        Aes.transformKey(seed, new byte[32], rounds);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Sets search scope of all following lookups. The scope of a compact snapshot is set when the snapshot is built.
+     *
+     * @param scope search scope
+     * @return this DAO
+     * @throws IllegalStateException compact snapshot is already built
+     */
+    public KeePassDAO setScope(KeePassScope scope) {
+        if (snapshot != null) {
+            throw new IllegalStateException("Scope has to be set before compact snapshot is built");
+        }
+        this.scope = scope;
+        this.groupScope = null;
+        return this;
+    }
+
+    public KeePassScope getScope() {
+        return scope;
+    }
+
+    /**
+     * @return number of groups and entries visited by all lookups
+     */
+    public long getVisitedNodes() {
+        return snapshot != null ? visitedNodes.get() + snapshot.getVisitedNodes() : visitedNodes.get();
+    }
+
+    /**
+     * Replaces the open file tree with a compact read-only snapshot, that is used for all following lookups.
+     * The tree is released. Groups and entries returned after this call have no subgroups and entries.
+     * Groups out of scope are not copied.
+     *
+     * @return this DAO
+     */
+    public KeePassDAO compact() {
+        return compact(false);
+    }
+
+    /**
+     * Replaces the tree with a compact read-only snapshot, see {@link #compact()}.
+     * Protected values (e.g. passwords) can be stored in a direct buffer outside of the heap.
+     * Heap strings are created only for values that are read with <code>String</code> getters.
+     * The values are zeroed by {@link #close()}.
+     *
+     * @param offHeapSecrets stores protected values outside of the heap
+     * @return this DAO
+     */
+    public KeePassDAO compact(boolean offHeapSecrets) {
+        if (snapshot == null) {
+            snapshot = KeePassSnapshot.build(keePassFile.getRoot(), groupScope(), offHeapSecrets);
+            keePassFile = null;
+        }
+        return this;
+    }
+
+    /**
+     * Creates an immutable snapshot of the open file that is safe for any number of concurrent readers.
+     * The snapshot has the search scope and the regex engine of this DAO and does not depend on the DAO later.
+     * If the DAO is compact, its snapshot is shared and protected values stay owned by the DAO.
+     *
+     * @return read-only snapshot
+     * @throws IllegalStateException file is not open
+     */
+    public KeePassReadOnlySnapshot snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * Creates an immutable snapshot of the open file, see {@link #snapshot()}
+     *
+     * @param offHeapSecrets stores protected values of a new snapshot outside of the heap.
+     *                       They are zeroed when the snapshot is closed
+     * @return read-only snapshot
+     * @throws IllegalStateException file is not open
+     */
+    public KeePassReadOnlySnapshot snapshot(boolean offHeapSecrets) {
+        if (snapshot != null) {
+            return new KeePassReadOnlySnapshot(snapshot, scope, regexEngine, false);
+        }
+        if (keePassFile == null) {
+            throw new IllegalStateException("KeePass file is not open");
+        }
+        return new KeePassReadOnlySnapshot(KeePassSnapshot.build(keePassFile.getRoot(), groupScope(), offHeapSecrets),
+                scope, regexEngine, true);
+    }
+
+    /**
+     * Creates a snapshot of the compact DAO that holds protected values until it is closed,
+     * see {@link KeePassHolder#getSnapshot()}
+     *
+     * @return read-only snapshot or <code>null</code> if protected values are already released
+     */
+    KeePassReadOnlySnapshot retainSnapshot() {
+        return snapshot.retain() ? new KeePassReadOnlySnapshot(snapshot, scope, regexEngine, true) : null;
+    }
+
+    /**
+     * Releases protected values of the compact DAO, they are zeroed when no snapshot of {@link #retainSnapshot()} holds them
+     */
+    void release() {
+        snapshot.release();
+    }
+
+    public boolean isCompact() {
+        return snapshot != null;
+    }
+
+    /**
+     * @return estimated memory of the compact snapshot in bytes, -1 if the DAO is not compact
+     */
+    public long getRetainedBytes() {
+        return snapshot == null ? -1 : snapshot.getRetainedBytes();
+    }
+
+    /**
+     * Zeroes protected values stored outside of the heap. Entries that reference them are not readable anymore
+     */
+    public void close() {
+        if (snapshot != null) {
+            snapshot.clearSecrets();
         }
     }
 
     public KeePassGroup getRootGroup() {
-        return new KeePassGroup(keePassFile.getRoot());
+        if (snapshot != null) {
+            return snapshot.getRootGroup();
+        }
+        return KeePassGroup.root(keePassFile.getRoot());
     }
 
     public KeePassGroup getGroup(UUID uuid) {
-        return new GroupWalker(getRootGroup()).findAny(new GroupUUIDFilter(uuid));
+        if (snapshot != null) {
+            return snapshot.getGroup(uuid);
+        }
+        return notEmpty(findGroup(uuid), new GroupUUIDFilter(uuid));
+    }
+
+    @Override
+    public Optional<KeePassGroup> findGroup(UUID uuid) {
+        if (snapshot != null) {
+            return snapshot.findGroup(uuid);
+        }
+        GroupWalker walker = new GroupWalker(getRootGroup(), groupScope());
+        try {
+            return walker.findFirst(new GroupUUIDFilter(uuid));
+        } finally {
+            visitedNodes.addAndGet(walker.getVisited());
+        }
     }
 
     public KeePassEntry getEntry(UUID uuid) {
-        Entry entry = keePassFile.getEntryByUUID(uuid);
-        if(entry==null) {
-        	throw new IllegalArgumentException("Entry with UUID "+uuid+" does not exists");
+        if (snapshot != null) {
+            return snapshot.getEntry(uuid);
+        }
+        Optional<KeePassEntry> entry = findEntry(uuid);
+        if (!entry.isPresent()) {
+            throw new KeePassNotFoundException("Entry with UUID " + uuid + " does not exists");
         }
-		return new KeePassEntry(entry);
+        return entry.get();
+    }
+
+    @Override
+    public Optional<KeePassEntry> findEntry(UUID uuid) {
+        if (snapshot != null) {
+            return snapshot.findEntry(uuid);
+        }
+        if (!scope.isAll()) {
+            EntryWalker walker = new EntryWalker(getRootGroup(), groupScope());
+            try {
+                return walker.findFirst(new EntryUUIDFilter(uuid));
+            } finally {
+                visitedNodes.addAndGet(walker.getVisited());
+            }
+        }
+        Entry entry = keePassFile.getEntryByUUID(uuid);
+        return entry == null ? Optional.<KeePassEntry>empty() : Optional.of(new KeePassEntry(entry));
     }
 
     public List<KeePassGroup> getGroupsByName(String name) {
-        return new GroupWalker(getRootGroup()).findAll(new GroupNameFilter(name));
+        if (snapshot != null) {
+            return snapshot.getGroupsByName(name);
+        }
+        GroupNameFilter filter = new GroupNameFilter(name);
+        return notEmpty(walkGroups(filter), filter);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByName(String name) {
+        if (snapshot != null) {
+            return snapshot.findGroupsByName(name);
+        }
+        return walkGroups(new GroupNameFilter(name));
     }
 
     public List<KeePassEntry> getEntriesByTitle(String title) {
@@ -101,7 +455,19 @@ public class KeePassDAO {
     }
 
     public List<KeePassEntry> getEntriesByTitle(KeePassGroup group, String title) {
-        return new EntryWalker(group).findAll(new EntryTitleFilter(title));
+        if (snapshot != null) {
+            return snapshot.getEntriesByTitle(group, title);
+        }
+        EntryTitleFilter filter = new EntryTitleFilter(title);
+        return notEmpty(walkEntries(group, filter), filter);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntriesByTitle(KeePassGroup group, String title) {
+        if (snapshot != null) {
+            return snapshot.findEntriesByTitle(group, title);
+        }
+        return walkEntries(group, new EntryTitleFilter(title));
     }
 
     public List<KeePassEntry> getEntriesByTitleRegex(String regex) {
@@ -109,14 +475,142 @@ public class KeePassDAO {
     }
 
     public List<KeePassEntry> getEntriesByTitleRegex(KeePassGroup group, String regex) {
-        return new EntryWalker(group).findAll(new EntryTitleRegexFilter(regex));
+        if (snapshot != null) {
+            return snapshot.getEntriesByTitleRegex(group, regex, regexEngine);
+        }
+        EntryTitleRegexFilter filter = new EntryTitleRegexFilter(regex, regexEngine);
+        return notEmpty(walkEntries(group, filter), filter);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntriesByTitleRegex(KeePassGroup group, String regex) {
+        if (snapshot != null) {
+            return snapshot.findEntriesByTitleRegex(group, regex, regexEngine);
+        }
+        return walkEntries(group, new EntryTitleRegexFilter(regex, regexEngine));
     }
 
     public List<KeePassGroup> getGroupsByNameRegex(String regex) {
-        return new GroupWalker(getRootGroup()).findAll(new GroupNameRegexFilter(regex));
+        if (snapshot != null) {
+            return snapshot.getGroupsByNameRegex(regex, regexEngine);
+        }
+        GroupNameRegexFilter filter = new GroupNameRegexFilter(regex, regexEngine);
+        return notEmpty(walkGroups(filter), filter);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByNameRegex(String regex) {
+        if (snapshot != null) {
+            return snapshot.findGroupsByNameRegex(regex, regexEngine);
+        }
+        return walkGroups(new GroupNameRegexFilter(regex, regexEngine));
     }
 
     public List<KeePassGroup> getGroupsByPath(String path) {
-        return new GroupWalker(getRootGroup()).findAll(new GroupPathFilter(path.split("/")));
+        if (snapshot != null) {
+            return snapshot.getGroupsByPath(path);
+        }
+        GroupPathFilter filter = new GroupPathFilter(path.split("/"));
+        return notEmpty(walkGroups(filter), filter);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByPath(String path) {
+        if (snapshot != null) {
+            return snapshot.findGroupsByPath(path);
+        }
+        return walkGroups(new GroupPathFilter(path.split("/")));
+    }
+
+    public List<KeePassGroup> getGroups(Filter<KeePassGroup> filter) {
+        if (snapshot != null) {
+            return snapshot.getGroups(filter);
+        }
+        return notEmpty(walkGroups(filter), filter);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroups(Filter<KeePassGroup> filter) {
+        if (snapshot != null) {
+            return snapshot.findGroups(filter);
+        }
+        return walkGroups(filter);
+    }
+
+    public List<KeePassEntry> getEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        if (snapshot != null) {
+            return snapshot.getEntries(group, filter);
+        }
+        return notEmpty(walkEntries(group, filter), filter);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        if (snapshot != null) {
+            return snapshot.findEntries(group, filter);
+        }
+        return walkEntries(group, filter);
+    }
+
+    private List<KeePassGroup> walkGroups(Filter<KeePassGroup> filter) {
+        GroupWalker walker = new GroupWalker(getRootGroup(), groupScope());
+        try {
+            return walker.findMatches(filter);
+        } finally {
+            visitedNodes.addAndGet(walker.getVisited());
+        }
+    }
+
+    private List<KeePassGroup> walkGroups(GroupPathFilter filter) {
+        GroupWalker walker = new GroupWalker(getRootGroup(), groupScope());
+        try {
+            return walker.findMatches(filter);
+        } finally {
+            visitedNodes.addAndGet(walker.getVisited());
+        }
+    }
+
+    private List<KeePassEntry> walkEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        if (group.getPath() == null && !scope.isAll()) {
+            // detached group: depth and path are required by scope
+            Optional<KeePassGroup> attached = findGroup(group.getUuid());
+            if (!attached.isPresent()) {
+                return new ArrayList<KeePassEntry>();
+            }
+            group = attached.get();
+        }
+        EntryWalker walker = new EntryWalker(group, groupScope());
+        try {
+            return walker.findMatches(filter);
+        } finally {
+            visitedNodes.addAndGet(walker.getVisited());
+        }
+    }
+
+    private static <T> T notEmpty(Optional<T> result, Object filter) {
+        if (!result.isPresent()) {
+            throw new KeePassNotFoundException(format("Invalid filter: %s", filter));
+        }
+        return result.get();
+    }
+
+    private static <T> List<T> notEmpty(List<T> result, Object filter) {
+        if (result.isEmpty()) {
+            throw new KeePassNotFoundException(format("Invalid filter: %s", filter));
+        }
+        return result;
+    }
+
+    private GroupScope groupScope() {
+        GroupScope result = groupScope;
+        if (result == null) {
+            result = scope.toGroupScope(getRecycleBin(keePassFile.getMeta()));
+            groupScope = result;
+        }
+        return result;
+    }
+
+    private static UUID getRecycleBin(Meta meta) {
+        return meta != null && Boolean.TRUE.equals(meta.getRecycleBinEnabled()) ? meta.getRecycleBinUuid() : null;
     }
 }
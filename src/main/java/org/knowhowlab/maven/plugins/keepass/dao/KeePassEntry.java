@@ -16,25 +16,94 @@
 
 package org.knowhowlab.maven.plugins.keepass.dao;
 
+import de.slackspace.openkeepass.domain.Attachment;
 import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
 import de.slackspace.openkeepass.domain.Property;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * @author dpishchukhin.
  */
 public class KeePassEntry {
-    private Entry entry;
+    static final String TITLE = "Title";
+    static final String USER_NAME = "UserName";
+    static final String PASSWORD = "Password";
+    static final String URL = "URL";
+    static final String NOTES = "Notes";
+
+    private final Entry entry;
+    private final Map<String, KeePassSecret> secrets;
 
     public KeePassEntry(Entry entry) {
+        this(entry, Collections.<String, KeePassSecret>emptyMap());
+    }
+
+    private KeePassEntry(Entry entry, Map<String, KeePassSecret> secrets) {
         this.entry = entry;
+        this.secrets = secrets;
+    }
+
+    /**
+     * Creates an entry that is not backed by a KeePass file, e.g. an entry received from the agent
+     *
+     * @param uuid       entry UUID
+     * @param properties all entry properties including standard ones
+     * @return detached entry
+     */
+    public static KeePassEntry create(UUID uuid, List<KeePassProperty> properties) {
+        return create(uuid, properties, new ArrayList<KeePassAttachment>());
+    }
+
+    /**
+     * Creates an entry with attachments that is not backed by a KeePass file
+     *
+     * @param uuid        entry UUID
+     * @param properties  all entry properties including standard ones
+     * @param attachments entry attachments
+     * @return detached entry
+     */
+    public static KeePassEntry create(UUID uuid, List<KeePassProperty> properties, List<KeePassAttachment> attachments) {
+        EntryBuilder builder = new EntryBuilder(uuid);
+        for (KeePassAttachment attachment : attachments) {
+            builder.getAttachmentList().add(attachment.getAttachment());
+        }
+        Map<String, KeePassSecret> secrets = new LinkedHashMap<String, KeePassSecret>();
+        for (KeePassProperty property : properties) {
+            String key = property.getKey();
+            // an empty placeholder keeps the position of an off-heap value among entry properties
+            String value = "";
+            if (property.getSecret() != null) {
+                secrets.put(key, property.getSecret());
+            } else {
+                value = property.getValue();
+            }
+            if (TITLE.equals(key)) {
+                builder.title(value);
+            } else if (USER_NAME.equals(key)) {
+                builder.username(value);
+            } else if (PASSWORD.equals(key)) {
+                builder.password(value);
+            } else if (URL.equals(key)) {
+                builder.url(value);
+            } else if (NOTES.equals(key)) {
+                builder.notes(value);
+            } else {
+                builder.getCustomPropertyList().add(new Property(key, value, false));
+            }
+        }
+        return new KeePassEntry(builder.build(), secrets.isEmpty()
+                ? Collections.<String, KeePassSecret>emptyMap() : Collections.unmodifiableMap(secrets));
     }
 
     public String getTitle() {
-        return entry.getTitle();
+        return secrets.containsKey(TITLE) ? secrets.get(TITLE).toString() : entry.getTitle();
     }
 
     public UUID getUuid() {
@@ -42,26 +111,48 @@ public class KeePassEntry {
     }
 
     public String getUsername() {
-        return entry.getUsername();
+        return secrets.containsKey(USER_NAME) ? secrets.get(USER_NAME).toString() : entry.getUsername();
     }
 
     public String getPassword() {
-        return entry.getPassword();
+        return secrets.containsKey(PASSWORD) ? secrets.get(PASSWORD).toString() : entry.getPassword();
     }
 
     public String getUrl() {
-        return entry.getUrl();
+        return secrets.containsKey(URL) ? secrets.get(URL).toString() : entry.getUrl();
     }
 
     public List<KeePassProperty> getProperties() {
         List<KeePassProperty> properties = new ArrayList<KeePassProperty>(entry.getProperties().size());
         for (Property property : entry.getProperties()) {
-            properties.add(new KeePassProperty(property));
+            KeePassSecret secret = secrets.get(property.getKey());
+            properties.add(secret == null ? new KeePassProperty(property) : new KeePassProperty(property.getKey(), secret));
         }
         return properties;
     }
 
+    public List<KeePassAttachment> getAttachments() {
+        List<KeePassAttachment> attachments = new ArrayList<KeePassAttachment>(entry.getAttachments().size());
+        for (Attachment attachment : entry.getAttachments()) {
+            attachments.add(new KeePassAttachment(attachment));
+        }
+        return attachments;
+    }
+
+    public KeePassAttachment getAttachmentByName(String name) {
+        for (Attachment attachment : entry.getAttachments()) {
+            if (name.equals(attachment.getKey())) {
+                return new KeePassAttachment(attachment);
+            }
+        }
+        return null;
+    }
+
     public KeePassProperty getPropertyByName(String name) {
+        KeePassSecret secret = secrets.get(name);
+        if (secret != null) {
+            return new KeePassProperty(name, secret);
+        }
         return new KeePassProperty(entry.getPropertyByName(name));
     }
 }
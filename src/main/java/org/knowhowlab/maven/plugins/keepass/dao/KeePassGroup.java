@@ -18,6 +18,8 @@ package org.knowhowlab.maven.plugins.keepass.dao;
 
 import de.slackspace.openkeepass.domain.Entry;
 import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.GroupScope;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,10 +29,55 @@ import java.util.UUID;
  * @author dpishchukhin.
  */
 public class KeePassGroup {
-    private Group group;
+    private final Group group;
+    private final String path;
+    private final int depth;
 
     KeePassGroup(Group group) {
+        this(group, null, 0);
+    }
+
+    /**
+     * @param group group
+     * @param path  group path, <code>null</code> if unknown
+     * @param depth group depth. The database root group has depth 0
+     */
+    KeePassGroup(Group group, String path, int depth) {
         this.group = group;
+        this.path = path;
+        this.depth = depth;
+    }
+
+    /**
+     * @param root root group of a KeePass file. It is a parent of the database root group
+     * @return root group with known path and depth
+     */
+    static KeePassGroup root(Group root) {
+        return new KeePassGroup(root, name(root), -1);
+    }
+
+    /**
+     * Creates a group without entries and subgroups that is not backed by a KeePass file,
+     * e.g. a group received from the agent
+     *
+     * @param uuid group UUID
+     * @param name group name
+     * @return detached group
+     */
+    public static KeePassGroup create(UUID uuid, String name) {
+        return create(uuid, name, null);
+    }
+
+    /**
+     * Creates a group without entries and subgroups that is not backed by a KeePass file
+     *
+     * @param uuid group UUID
+     * @param name group name
+     * @param path group path, <code>null</code> if unknown
+     * @return detached group
+     */
+    public static KeePassGroup create(UUID uuid, String name, String path) {
+        return new KeePassGroup(new GroupBuilder(uuid).name(name).build(), path, 0);
     }
     
     public String getName() {
@@ -41,6 +88,17 @@ public class KeePassGroup {
         return group.getUuid();
     }
 
+    /**
+     * @return group path, e.g. <code>/Root/server</code>. <code>null</code> if unknown
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
     public List<KeePassEntry> getEntries() {
         List<KeePassEntry> entries = new ArrayList<KeePassEntry>(group.getEntries().size());
         for (Entry entry : group.getEntries()) {
@@ -50,10 +108,25 @@ public class KeePassGroup {
     }
 
     public List<KeePassGroup> getGroups() {
+        return getGroups(GroupScope.ALL);
+    }
+
+    /**
+     * @param scope search scope
+     * @return subgroups in scope. Subgroups out of scope are not created
+     */
+    public List<KeePassGroup> getGroups(GroupScope scope) {
         List<KeePassGroup> groups = new ArrayList<KeePassGroup>(group.getGroups().size());
         for (Group group : this.group.getGroups()) {
-            groups.add(new KeePassGroup(group));
+            String childPath = path == null ? null : path + "/" + name(group);
+            if (scope.includes(group.getUuid(), childPath, depth + 1)) {
+                groups.add(new KeePassGroup(group, childPath, depth + 1));
+            }
         }
         return groups;
     }
+
+    private static String name(Group group) {
+        return group.getName() == null ? "" : group.getName();
+    }
 }
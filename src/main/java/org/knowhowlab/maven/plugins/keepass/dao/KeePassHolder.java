@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Holds an open KeePass file as a compact snapshot and reloads it when the file is changed.
+ * <p>
+ * The file directory is watched by a background thread. Changes are debounced: the file is reloaded
+ * when it has not been changed for the debounce period, so a file that is being written is not read.
+ * The new snapshot replaces the current one atomically. Lookups that use the current snapshot are not blocked
+ * and never see a partially loaded file. A failed reload keeps the current snapshot.
+ * <p>
+ * Protected values can be kept outside of the heap. Snapshots of {@link #getSnapshot()} hold them until they are closed.
+ * Values of a replaced or closed version are zeroed when its last snapshot is closed, so builds that started before
+ * a reload or {@link #close()} are not affected.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassHolder implements Closeable {
+    private final File file;
+    private final UnaryOperator<KeePassDAO> opener;
+    private final long debounceMillis;
+    private final boolean offHeapSecrets;
+    private final AtomicReference<KeePassDAO> current = new AtomicReference<KeePassDAO>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile RuntimeException lastError;
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * @param file           KeePass file
+     * @param opener         opens the file with credentials. Called on the watcher thread for reloads
+     * @param debounceMillis quiet period after the last change before the file is reloaded
+     */
+    public KeePassHolder(File file, UnaryOperator<KeePassDAO> opener, long debounceMillis) {
+        this(file, opener, debounceMillis, false);
+    }
+
+    /**
+     * @param file           KeePass file
+     * @param opener         opens the file with credentials. Called on the watcher thread for reloads
+     * @param debounceMillis quiet period after the last change before the file is reloaded
+     * @param offHeapSecrets stores protected values of snapshots outside of the heap
+     */
+    public KeePassHolder(File file, UnaryOperator<KeePassDAO> opener, long debounceMillis, boolean offHeapSecrets) {
+        this.file = file.getAbsoluteFile();
+        this.opener = opener;
+        this.debounceMillis = debounceMillis;
+        this.offHeapSecrets = offHeapSecrets;
+    }
+
+    /**
+     * Opens the file and starts watching it
+     *
+     * @return this holder
+     * @throws IOException file directory can not be watched
+     */
+    public synchronized KeePassHolder start() throws IOException {
+        if (watcher != null) {
+            throw new IllegalStateException("Holder is already started");
+        }
+        current.set(load());
+        version.set(1);
+        Path directory = file.toPath().getParent();
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        watcher = new Thread(this::watch, "keepass-watcher-" + file.getName());
+        watcher.setDaemon(true);
+        watcher.start();
+        return this;
+    }
+
+    /**
+     * @return current version of the file. It is not changed by reloads, but its protected values stored outside
+     * of the heap are zeroed once it is replaced and no snapshot holds them, use {@link #getSnapshot()} to read them
+     */
+    public KeePassDAO get() {
+        KeePassDAO dao = current.get();
+        if (dao == null) {
+            throw new IllegalStateException("Holder is not started or closed");
+        }
+        return dao;
+    }
+
+    /**
+     * @return immutable view of the current version that is safe for concurrent readers. It holds protected values
+     * until it is closed
+     */
+    public KeePassReadOnlySnapshot getSnapshot() {
+        while (true) {
+            KeePassReadOnlySnapshot snapshot = get().retainSnapshot();
+            if (snapshot != null) {
+                return snapshot;
+            }
+            // replaced by a concurrent reload, retry with the new version
+        }
+    }
+
+    /**
+     * @return number of loaded versions of the file
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return error of the last reload, <code>null</code> if the last reload succeeded
+     */
+    public RuntimeException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Stops watching the file and releases protected values of the current version stored outside of the heap.
+     * They are zeroed when all its snapshots are closed
+     */
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watchService.close();
+            watcher.interrupt();
+            watcher = null;
+        }
+        KeePassDAO dao = current.getAndSet(null);
+        if (dao != null) {
+            dao.release();
+        }
+    }
+
+    private KeePassDAO load() {
+        KeePassDAO dao = opener.apply(new KeePassDAO(file));
+        if (!dao.isCompact()) {
+            dao.compact(offHeapSecrets);
+        }
+        return dao;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                if (!isChanged(watchService.take())) {
+                    continue;
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key != null && isChanged(key)) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+                    }
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // holder is closed
+        }
+    }
+
+    private boolean isChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || file.getName().equals(String.valueOf(event.context()))) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        try {
+            KeePassDAO loaded = load();
+            KeePassDAO previous;
+            synchronized (this) {
+                if (watcher == null) {
+                    // closed while the file was loaded
+                    loaded.release();
+                    return;
+                }
+                previous = current.getAndSet(loaded);
+            }
+            version.incrementAndGet();
+            previous.release();
+            lastError = null;
+        } catch (RuntimeException e) {
+            lastError = e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KeePassHolder{" +
+                "file=" + file +
+                ", version=" + version +
+                ", offHeapSecrets=" + offHeapSecrets +
+                '}';
+    }
+}
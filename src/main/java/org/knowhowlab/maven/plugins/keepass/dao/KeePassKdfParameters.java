@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import de.slackspace.openkeepass.domain.KeePassHeader;
+import de.slackspace.openkeepass.domain.VariantDictionary;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Key derivation parameters taken from a KeePass file header. Reading them does not require credentials.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassKdfParameters {
+    private static final int DATABASE_V4_FILE_VERSION = 0x00040000;
+
+    private static final UUID AES_KDF_UUID = UUID.fromString("c9d9f39a-628a-4460-bf74-0d08c18a4fea");
+    private static final UUID ARGON2D_UUID = UUID.fromString("ef636ddf-8c29-444b-91f7-a9a403e30a0c");
+    private static final UUID ARGON2ID_UUID = UUID.fromString("9e298b19-56db-4773-b23d-fc3ec6f0a1e6");
+
+    public enum Type {
+        AES, ARGON2D, ARGON2ID, UNKNOWN
+    }
+
+    private final int fileFormatVersion;
+    private final Type type;
+    private final long rounds;
+    private final long memory;
+    private final long iterations;
+    private final int parallelism;
+
+    private KeePassKdfParameters(int fileFormatVersion, Type type, long rounds, long memory, long iterations,
+                                 int parallelism) {
+        this.fileFormatVersion = fileFormatVersion;
+        this.type = type;
+        this.rounds = rounds;
+        this.memory = memory;
+        this.iterations = iterations;
+        this.parallelism = parallelism;
+    }
+
+    static KeePassKdfParameters fromHeader(KeePassHeader header) {
+        int version = header.getFileFormatVersion();
+        if (version < DATABASE_V4_FILE_VERSION) {
+            return new KeePassKdfParameters(version, Type.AES, header.getTransformRounds(), 0, 0, 0);
+        }
+        VariantDictionary kdf = header.getKdfParameters();
+        if (kdf == null) {
+            return new KeePassKdfParameters(version, Type.UNKNOWN, 0, 0, 0, 0);
+        }
+        Type type = toType(kdf.getByteArray("$UUID"));
+        switch (type) {
+            case AES:
+                return new KeePassKdfParameters(version, type, getLong(kdf, "R"), 0, 0, 0);
+            case ARGON2D:
+            case ARGON2ID:
+                return new KeePassKdfParameters(version, type, 0, getLong(kdf, "M"), getLong(kdf, "I"),
+                        getInt(kdf, "P"));
+            default:
+                return new KeePassKdfParameters(version, type, 0, 0, 0, 0);
+        }
+    }
+
+    private static Type toType(byte[] uuid) {
+        if (uuid == null || uuid.length != 16) {
+            return Type.UNKNOWN;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(uuid);
+        UUID kdfUuid = new UUID(buffer.getLong(), buffer.getLong());
+        if (AES_KDF_UUID.equals(kdfUuid)) {
+            return Type.AES;
+        } else if (ARGON2D_UUID.equals(kdfUuid)) {
+            return Type.ARGON2D;
+        } else if (ARGON2ID_UUID.equals(kdfUuid)) {
+            return Type.ARGON2ID;
+        }
+        return Type.UNKNOWN;
+    }
+
+    private static long getLong(VariantDictionary dictionary, String key) {
+        try {
+            return dictionary.getLong(key);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static int getInt(VariantDictionary dictionary, String key) {
+        try {
+            return dictionary.getInt(key);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return file format version as stored in the header, e.g. <code>0x00030001</code>
+     */
+    public int getFileFormatVersion() {
+        return fileFormatVersion;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return AES-KDF transform rounds, 0 for Argon2
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return Argon2 memory in bytes, 0 for AES-KDF
+     */
+    public long getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return Argon2 iterations, 0 for AES-KDF
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return Argon2 parallelism, 0 for AES-KDF
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("KeePassKdfParameters{");
+        sb.append("fileFormatVersion=").append(Integer.toHexString(fileFormatVersion));
+        sb.append(", type=").append(type);
+        sb.append(", rounds=").append(rounds);
+        sb.append(", memory=").append(memory);
+        sb.append(", iterations=").append(iterations);
+        sb.append(", parallelism=").append(parallelism);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import org.knowhowlab.maven.plugins.keepass.dao.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.lang.String.format;
+
+/**
+ * Lookup operations on an open KeePass file.
+ * <p>
+ * <code>get</code> lookups fail with {@link KeePassNotFoundException} if nothing is found. <code>find</code> lookups
+ * return an empty result instead, so misses are cheap. Default <code>find</code> lookups delegate to
+ * <code>get</code> lookups, implementations override them to avoid exceptions. Other errors, e.g. an invalid regex,
+ * are thrown by both kinds of lookups.
+ *
+ * @author dpishchukhin.
+ */
+public interface KeePassLookup {
+    KeePassGroup getRootGroup();
+
+    KeePassGroup getGroup(UUID uuid);
+
+    KeePassEntry getEntry(UUID uuid);
+
+    List<KeePassGroup> getGroupsByName(String name);
+
+    List<KeePassGroup> getGroupsByNameRegex(String regex);
+
+    List<KeePassGroup> getGroupsByPath(String path);
+
+    List<KeePassEntry> getEntriesByTitle(KeePassGroup group, String title);
+
+    List<KeePassEntry> getEntriesByTitleRegex(KeePassGroup group, String regex);
+
+    /**
+     * Finds groups that match the filter. The default implementation delegates to {@link #findGroups(Filter)}
+     *
+     * @param filter group filter
+     * @return matched groups
+     * @throws KeePassNotFoundException no group matches the filter
+     */
+    default List<KeePassGroup> getGroups(Filter<KeePassGroup> filter) {
+        List<KeePassGroup> result = findGroups(filter);
+        if (result.isEmpty()) {
+            throw new KeePassNotFoundException(format("Invalid filter: %s", filter));
+        }
+        return result;
+    }
+
+    /**
+     * Finds entries of the group subtree that match the filter. The default implementation delegates
+     * to {@link #findEntries(KeePassGroup, Filter)}
+     *
+     * @param group  group
+     * @param filter entry filter
+     * @return matched entries
+     * @throws KeePassNotFoundException no entry matches the filter
+     */
+    default List<KeePassEntry> getEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        List<KeePassEntry> result = findEntries(group, filter);
+        if (result.isEmpty()) {
+            throw new KeePassNotFoundException(format("Invalid filter: %s", filter));
+        }
+        return result;
+    }
+
+    /**
+     * @param uuid group UUID
+     * @return group or empty result if the group is unknown
+     */
+    default Optional<KeePassGroup> findGroup(UUID uuid) {
+        try {
+            return Optional.of(getGroup(uuid));
+        } catch (KeePassNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param uuid entry UUID
+     * @return entry or empty result if the entry is unknown
+     */
+    default Optional<KeePassEntry> findEntry(UUID uuid) {
+        try {
+            return Optional.of(getEntry(uuid));
+        } catch (KeePassNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param name group name
+     * @return matched groups, the list is empty if nothing matches
+     */
+    default List<KeePassGroup> findGroupsByName(String name) {
+        try {
+            return getGroupsByName(name);
+        } catch (KeePassNotFoundException e) {
+            return new ArrayList<KeePassGroup>();
+        }
+    }
+
+    /**
+     * @param regex group name regex
+     * @return matched groups, the list is empty if nothing matches
+     */
+    default List<KeePassGroup> findGroupsByNameRegex(String regex) {
+        try {
+            return getGroupsByNameRegex(regex);
+        } catch (KeePassNotFoundException e) {
+            return new ArrayList<KeePassGroup>();
+        }
+    }
+
+    /**
+     * @param path group path
+     * @return matched groups, the list is empty if nothing matches
+     */
+    default List<KeePassGroup> findGroupsByPath(String path) {
+        try {
+            return getGroupsByPath(path);
+        } catch (KeePassNotFoundException e) {
+            return new ArrayList<KeePassGroup>();
+        }
+    }
+
+    /**
+     * @param group group
+     * @param title entry title
+     * @return matched entries of the group subtree, the list is empty if nothing matches
+     */
+    default List<KeePassEntry> findEntriesByTitle(KeePassGroup group, String title) {
+        try {
+            return getEntriesByTitle(group, title);
+        } catch (KeePassNotFoundException e) {
+            return new ArrayList<KeePassEntry>();
+        }
+    }
+
+    /**
+     * @param group group
+     * @param regex entry title regex
+     * @return matched entries of the group subtree, the list is empty if nothing matches
+     */
+    default List<KeePassEntry> findEntriesByTitleRegex(KeePassGroup group, String regex) {
+        try {
+            return getEntriesByTitleRegex(group, regex);
+        } catch (KeePassNotFoundException e) {
+            return new ArrayList<KeePassEntry>();
+        }
+    }
+
+    /**
+     * The default implementation filters all groups by name regex lookup
+     *
+     * @param filter group filter
+     * @return matched groups, the list is empty if nothing matches
+     */
+    default List<KeePassGroup> findGroups(Filter<KeePassGroup> filter) {
+        List<KeePassGroup> result = new ArrayList<KeePassGroup>();
+        for (KeePassGroup group : findGroupsByNameRegex("(?s).*")) {
+            if (filter.matches(group)) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The default implementation filters all entries of the subtree by title regex lookup
+     *
+     * @param group  group
+     * @param filter entry filter
+     * @return matched entries of the group subtree, the list is empty if nothing matches
+     */
+    default List<KeePassEntry> findEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        List<KeePassEntry> result = new ArrayList<KeePassEntry>();
+        for (KeePassEntry entry : findEntriesByTitleRegex(group, "(?s).*")) {
+            if (filter.matches(entry)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+}
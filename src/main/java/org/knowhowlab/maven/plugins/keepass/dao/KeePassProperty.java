@@ -22,17 +22,49 @@ import de.slackspace.openkeepass.domain.Property;
  * @author dpishchukhin.
  */
 public class KeePassProperty {
-    private Property property;
+    private final Property property;
+    private final KeePassSecret secret;
 
     public KeePassProperty(Property property) {
+        this(property, null);
+    }
+
+    public KeePassProperty(String key, String value) {
+        this(new Property(key, value, false));
+    }
+
+    /**
+     * @param key    property key
+     * @param secret protected value stored outside of the heap
+     */
+    KeePassProperty(String key, KeePassSecret secret) {
+        this(new Property(key, null, true), secret);
+    }
+
+    private KeePassProperty(Property property, KeePassSecret secret) {
         this.property = property;
+        this.secret = secret;
     }
 
     public String getKey() {
         return property.getKey();
     }
 
+    /**
+     * @return value. A heap string is created for protected values stored outside of the heap
+     */
     public String getValue() {
-        return property.getValue();
+        return secret == null ? property.getValue() : secret.toString();
+    }
+
+    /**
+     * @return value without creating a heap string for protected values stored outside of the heap
+     */
+    public CharSequence getCharSequence() {
+        return secret == null ? property.getValue() : secret;
+    }
+
+    KeePassSecret getSecret() {
+        return secret;
     }
 }
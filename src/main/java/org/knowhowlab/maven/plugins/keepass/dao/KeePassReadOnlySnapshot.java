@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import org.knowhowlab.maven.plugins.keepass.dao.filter.Filter;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.RegexEngine;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Immutable read-only snapshot of an open KeePass file, see {@link KeePassDAO#snapshot()}.
+ * <p>
+ * The snapshot does not reference the KeePass file tree and the DAO. All its state is final and set
+ * in the constructor, so an instance that is handed over to other threads in any way is fully visible to them.
+ * Lookups return new detached groups and entries on every call, a returned object is never shared with other callers.
+ * The snapshot is safe for any number of concurrent readers without locking.
+ * <p>
+ * {@link #close()} releases protected values stored outside of the heap. Lookups after close fail,
+ * so the snapshot has to be closed when all readers are done.
+ *
+ * @author dpishchukhin.
+ */
+public final class KeePassReadOnlySnapshot implements KeePassLookup, AutoCloseable {
+    private final KeePassSnapshot snapshot;
+    private final KeePassScope scope;
+    private final RegexEngine regexEngine;
+    /**
+     * <code>true</code> if this instance holds a reference to protected values outside of the heap
+     */
+    private final boolean ownsReference;
+    private volatile boolean closed;
+
+    KeePassReadOnlySnapshot(KeePassSnapshot snapshot, KeePassScope scope, RegexEngine regexEngine, boolean ownsReference) {
+        this.snapshot = snapshot;
+        this.scope = scope;
+        this.regexEngine = regexEngine;
+        this.ownsReference = ownsReference;
+    }
+
+    public KeePassScope getScope() {
+        return scope;
+    }
+
+    public RegexEngine getRegexEngine() {
+        return regexEngine;
+    }
+
+    /**
+     * @return <code>true</code> if protected values are stored outside of the heap
+     */
+    public boolean hasOffHeapSecrets() {
+        return snapshot.hasOffHeapSecrets();
+    }
+
+    /**
+     * @return number of groups and entries visited by all lookups
+     */
+    public long getVisitedNodes() {
+        return snapshot.getVisitedNodes();
+    }
+
+    public int getGroupCount() {
+        return snapshot.getGroupCount();
+    }
+
+    public int getEntryCount() {
+        return snapshot.getEntryCount();
+    }
+
+    public KeePassGroup getRootGroup() {
+        return open().getRootGroup();
+    }
+
+    public KeePassGroup getGroup(UUID uuid) {
+        return open().getGroup(uuid);
+    }
+
+    @Override
+    public Optional<KeePassGroup> findGroup(UUID uuid) {
+        return open().findGroup(uuid);
+    }
+
+    public KeePassEntry getEntry(UUID uuid) {
+        return open().getEntry(uuid);
+    }
+
+    @Override
+    public Optional<KeePassEntry> findEntry(UUID uuid) {
+        return open().findEntry(uuid);
+    }
+
+    public List<KeePassGroup> getGroupsByName(String name) {
+        return open().getGroupsByName(name);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByName(String name) {
+        return open().findGroupsByName(name);
+    }
+
+    public List<KeePassGroup> getGroupsByNameRegex(String regex) {
+        return open().getGroupsByNameRegex(regex, regexEngine);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByNameRegex(String regex) {
+        return open().findGroupsByNameRegex(regex, regexEngine);
+    }
+
+    public List<KeePassGroup> getGroupsByPath(String path) {
+        return open().getGroupsByPath(path);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroupsByPath(String path) {
+        return open().findGroupsByPath(path);
+    }
+
+    public List<KeePassEntry> getEntriesByTitle(String title) {
+        return getEntriesByTitle(getRootGroup(), title);
+    }
+
+    public List<KeePassEntry> getEntriesByTitle(KeePassGroup group, String title) {
+        return open().getEntriesByTitle(group, title);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntriesByTitle(KeePassGroup group, String title) {
+        return open().findEntriesByTitle(group, title);
+    }
+
+    public List<KeePassEntry> getEntriesByTitleRegex(String regex) {
+        return getEntriesByTitleRegex(getRootGroup(), regex);
+    }
+
+    public List<KeePassEntry> getEntriesByTitleRegex(KeePassGroup group, String regex) {
+        return open().getEntriesByTitleRegex(group, regex, regexEngine);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntriesByTitleRegex(KeePassGroup group, String regex) {
+        return open().findEntriesByTitleRegex(group, regex, regexEngine);
+    }
+
+    @Override
+    public List<KeePassGroup> getGroups(Filter<KeePassGroup> filter) {
+        return open().getGroups(filter);
+    }
+
+    @Override
+    public List<KeePassGroup> findGroups(Filter<KeePassGroup> filter) {
+        return open().findGroups(filter);
+    }
+
+    @Override
+    public List<KeePassEntry> getEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        return open().getEntries(group, filter);
+    }
+
+    @Override
+    public List<KeePassEntry> findEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        return open().findEntries(group, filter);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Releases protected values stored outside of the heap, they are zeroed when no other reader holds them.
+     * Following lookups fail
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            if (ownsReference) {
+                snapshot.release();
+            }
+        }
+    }
+
+    private KeePassSnapshot open() {
+        if (closed) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("KeePassReadOnlySnapshot{");
+        sb.append("groups=").append(snapshot.getGroupCount());
+        sb.append(", entries=").append(snapshot.getEntryCount());
+        sb.append(", scope=").append(scope);
+        sb.append(", closed=").append(closed);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.lang.String.format;
+import static org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO.convertToUUID;
+
+/**
+ * Resolves KeePass field references and placeholders in entry values.
+ * <p>
+ * A reference <code>{REF:[field]@I:[uuid]}</code> is replaced with a field of the entry with the UUID.
+ * Fields are <code>T</code> (title), <code>U</code> (user name), <code>P</code> (password), <code>A</code> (URL),
+ * <code>N</code> (notes) and <code>I</code> (UUID). Placeholders <code>{TITLE}</code>, <code>{USERNAME}</code>,
+ * <code>{PASSWORD}</code>, <code>{URL}</code>, <code>{NOTES}</code>, <code>{UUID}</code> and
+ * <code>{S:[name]}</code> are replaced with fields of the same entry. Other text in braces is kept as is.
+ * <p>
+ * Every resolved value is memoized by entry UUID and field for the lifetime of the resolver, so a shared
+ * credential is looked up and resolved once. Instances are not thread safe.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassReferenceResolver {
+    /**
+     * Maximal number of nested references and placeholders
+     */
+    public static final int MAX_DEPTH = 12;
+
+    private static final String REFERENCE = "REF:";
+    private static final String CUSTOM = "S:";
+
+    private final KeePassLookup lookup;
+    private final Map<String, String> values = new HashMap<String, String>();
+    private final Map<UUID, KeePassEntry> entries = new HashMap<UUID, KeePassEntry>();
+    private final Set<String> resolving = new LinkedHashSet<String>();
+
+    /**
+     * @param lookup open KeePass file. Referenced entries are looked up by UUID
+     */
+    public KeePassReferenceResolver(KeePassLookup lookup) {
+        this.lookup = lookup;
+    }
+
+    public String getUsername(KeePassEntry entry) {
+        return getValue(entry, KeePassEntry.USER_NAME);
+    }
+
+    public String getPassword(KeePassEntry entry) {
+        return getValue(entry, KeePassEntry.PASSWORD);
+    }
+
+    public String getUrl(KeePassEntry entry) {
+        return getValue(entry, KeePassEntry.URL);
+    }
+
+    /**
+     * @param entry entry
+     * @param key   property key, e.g. <code>UserName</code> or a custom attribute name
+     * @return value with resolved references and placeholders or <code>null</code> if the entry has no such property
+     * @throws IllegalArgumentException unknown referenced entry, unsupported reference, reference cycle
+     *                                  or too deep references
+     */
+    public String getValue(KeePassEntry entry, String key) {
+        String value = rawValue(entry, key);
+        if (value == null || value.indexOf('{') < 0) {
+            return value;
+        }
+        return resolve(entry, key, value);
+    }
+
+    /**
+     * @return number of referenced entries that have been looked up
+     */
+    public int getLookups() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of memoized values
+     */
+    public int getResolved() {
+        return values.size();
+    }
+
+    private String resolve(KeePassEntry entry, String key, String value) {
+        String id = entry.getUuid() + "#" + key;
+        String result = values.get(id);
+        if (result != null) {
+            return result;
+        }
+        if (resolving.contains(id)) {
+            throw new IllegalArgumentException(format("Reference cycle: %s -> %s", String.join(" -> ", resolving), id));
+        }
+        if (resolving.size() >= MAX_DEPTH) {
+            throw new IllegalArgumentException(format("References are nested deeper than %d: %s", MAX_DEPTH, id));
+        }
+        resolving.add(id);
+        try {
+            result = interpolate(entry, value);
+        } finally {
+            resolving.remove(id);
+        }
+        values.put(id, result);
+        return result;
+    }
+
+    private String interpolate(KeePassEntry entry, String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        int position = 0;
+        int start = value.indexOf('{');
+        while (start >= 0) {
+            int end = value.indexOf('}', start + 1);
+            if (end < 0) {
+                break;
+            }
+            String replacement = placeholder(entry, value.substring(start + 1, end));
+            if (replacement == null) {
+                // not a placeholder: the brace is a part of the value
+                start = value.indexOf('{', start + 1);
+                continue;
+            }
+            result.append(value, position, start).append(replacement);
+            position = end + 1;
+            start = value.indexOf('{', position);
+        }
+        result.append(value, position, value.length());
+        return result.toString();
+    }
+
+    /**
+     * @return replacement or <code>null</code> if the text is not a placeholder
+     */
+    private String placeholder(KeePassEntry entry, String text) {
+        String name = text.toUpperCase(Locale.ENGLISH);
+        if (name.startsWith(REFERENCE)) {
+            return reference(text);
+        } else if (name.startsWith(CUSTOM)) {
+            return field(entry, text.substring(CUSTOM.length()));
+        }
+        switch (name) {
+            case "TITLE":
+                return orEmpty(field(entry, KeePassEntry.TITLE));
+            case "USERNAME":
+                return orEmpty(field(entry, KeePassEntry.USER_NAME));
+            case "PASSWORD":
+                return orEmpty(field(entry, KeePassEntry.PASSWORD));
+            case "URL":
+                return orEmpty(field(entry, KeePassEntry.URL));
+            case "NOTES":
+                return orEmpty(field(entry, KeePassEntry.NOTES));
+            case "UUID":
+                return uuid(entry);
+            default:
+                return null;
+        }
+    }
+
+    private String reference(String text) {
+        String reference = text.substring(REFERENCE.length());
+        if (reference.length() < 5 || reference.charAt(1) != '@' || reference.charAt(3) != ':') {
+            throw new IllegalArgumentException(format("Invalid reference: {%s}", text));
+        }
+        char searchIn = Character.toUpperCase(reference.charAt(2));
+        if (searchIn != 'I') {
+            throw new IllegalArgumentException(format("Unsupported reference: {%s}. Only references by UUID are supported", text));
+        }
+        UUID uuid;
+        try {
+            uuid = convertToUUID(reference.substring(4));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(format("Invalid reference: {%s}", text), e);
+        }
+        char field = Character.toUpperCase(reference.charAt(0));
+        String key;
+        switch (field) {
+            case 'T':
+                key = KeePassEntry.TITLE;
+                break;
+            case 'U':
+                key = KeePassEntry.USER_NAME;
+                break;
+            case 'P':
+                key = KeePassEntry.PASSWORD;
+                break;
+            case 'A':
+                key = KeePassEntry.URL;
+                break;
+            case 'N':
+                key = KeePassEntry.NOTES;
+                break;
+            case 'I':
+                return uuid(entry(uuid, text));
+            default:
+                throw new IllegalArgumentException(format("Unknown reference field: {%s}", text));
+        }
+
+        String id = uuid + "#" + key;
+        String result = values.get(id);
+        if (result != null) {
+            return result;
+        }
+        KeePassEntry target = entry(uuid, text);
+        result = orEmpty(rawValue(target, key));
+        if (result.indexOf('{') < 0) {
+            values.put(id, result);
+            return result;
+        }
+        return resolve(target, key, result);
+    }
+
+    private KeePassEntry entry(UUID uuid, String text) {
+        KeePassEntry entry = entries.get(uuid);
+        if (entry == null) {
+            entry = lookup.findEntry(uuid).orElseThrow(() ->
+                    new IllegalArgumentException(format("Referenced entry is unknown: {%s}", text)));
+            entries.put(uuid, entry);
+        }
+        return entry;
+    }
+
+    private String field(KeePassEntry entry, String key) {
+        String value = rawValue(entry, key);
+        if (value == null || value.indexOf('{') < 0) {
+            return value;
+        }
+        return resolve(entry, key, value);
+    }
+
+    /**
+     * Raw values are read from entry properties: getters of standard fields return values
+     * with whole-value references replaced by the file parser
+     */
+    private static String rawValue(KeePassEntry entry, String key) {
+        for (KeePassProperty property : entry.getProperties()) {
+            if (key.equals(property.getKey())) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String uuid(KeePassEntry entry) {
+        return entry.getUuid().toString().replace("-", "").toUpperCase(Locale.ENGLISH);
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
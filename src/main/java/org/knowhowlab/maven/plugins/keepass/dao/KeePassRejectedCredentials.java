@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.knowhowlab.maven.plugins.keepass.jmx.KeePassStatistics;
+
+/**
+ * Credentials that were rejected by a KeePass file in this session.
+ * <p>
+ * Only a salted digest of the composite key is kept per file. A file is identified by its canonical path,
+ * modification time and length, so a changed file is checked again. Other modules of the reactor
+ * (the plugin class realm is shared by them) fail without key derivation.
+ *
+ * @author dpishchukhin.
+ */
+final class KeePassRejectedCredentials {
+    private static final ConcurrentMap<String, Set<String>> REJECTED = new ConcurrentHashMap<String, Set<String>>();
+    /**
+     * Estimated memory of a remembered digest: hex string and set node
+     */
+    private static final int DIGEST_BYTES = 136;
+
+    static {
+        KeePassStatistics.getInstance().register(new KeePassStatistics.Cache() {
+            public int getHeldDatabases() {
+                return 0;
+            }
+
+            public long getRetainedBytes() {
+                long bytes = 0;
+                for (Map.Entry<String, Set<String>> entry : REJECTED.entrySet()) {
+                    bytes += 2L * entry.getKey().length() + (long) DIGEST_BYTES * entry.getValue().size();
+                }
+                return bytes;
+            }
+
+            public int evict() {
+                int evicted = 0;
+                for (String id : REJECTED.keySet()) {
+                    Set<String> digests = REJECTED.remove(id);
+                    evicted += digests == null ? 0 : digests.size();
+                }
+                return evicted;
+            }
+        });
+    }
+
+    private KeePassRejectedCredentials() {
+    }
+
+    /**
+     * @param file         KeePass file
+     * @param compositeKey hash of credentials
+     * @return <code>true</code> if these credentials were rejected by the file
+     */
+    static boolean isRejected(File file, byte[] compositeKey) {
+        String id = fileId(file);
+        Set<String> digests = REJECTED.get(id);
+        return digests != null && digests.contains(digest(id, compositeKey));
+    }
+
+    /**
+     * @param file         KeePass file
+     * @param compositeKey hash of rejected credentials
+     */
+    static void reject(File file, byte[] compositeKey) {
+        String id = fileId(file);
+        REJECTED.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(digest(id, compositeKey));
+    }
+
+    /**
+     * Forgets all rejected credentials
+     */
+    static void clear() {
+        REJECTED.clear();
+    }
+
+    private static String fileId(File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            path = file.getAbsolutePath();
+        }
+        return path + '#' + file.lastModified() + '#' + file.length();
+    }
+
+    /**
+     * Composite key is salted with the file id, so equal credentials of different files have different digests
+     */
+    private static String digest(String fileId, byte[] compositeKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fileId.getBytes(StandardCharsets.UTF_8));
+            digest.update(compositeKey);
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import org.knowhowlab.maven.plugins.keepass.dao.filter.GroupScope;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Search scope of lookups: Recycle Bin, excluded group paths and maximum group depth.
+ * Subtrees out of scope are not visited.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassScope {
+    /**
+     * Whole file is searched
+     */
+    public static final KeePassScope ALL = new KeePassScope(false, Collections.<String>emptyList(), -1);
+
+    private static final UUID NO_RECYCLE_BIN = new UUID(0, 0);
+
+    private final boolean excludeRecycleBin;
+    private final Set<String> excludedPaths;
+    private final int maxDepth;
+
+    /**
+     * @param excludeRecycleBin excludes the Recycle Bin group defined in the database metadata
+     * @param excludedPaths     group paths, e.g. <code>/Root/Archive</code>, that are excluded with their subgroups
+     * @param maxDepth          maximum depth of searched groups. The database root group has depth 0.
+     *                          Negative value means no limit
+     */
+    public KeePassScope(boolean excludeRecycleBin, Collection<String> excludedPaths, int maxDepth) {
+        this.excludeRecycleBin = excludeRecycleBin;
+        this.excludedPaths = new LinkedHashSet<String>();
+        if (excludedPaths != null) {
+            for (String path : excludedPaths) {
+                this.excludedPaths.add(path.endsWith("/") ? path.substring(0, path.length() - 1) : path);
+            }
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    public boolean isExcludeRecycleBin() {
+        return excludeRecycleBin;
+    }
+
+    public Set<String> getExcludedPaths() {
+        return Collections.unmodifiableSet(excludedPaths);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean isAll() {
+        return !excludeRecycleBin && excludedPaths.isEmpty() && maxDepth < 0;
+    }
+
+    /**
+     * @param recycleBin Recycle Bin group UUID of the file. <code>null</code> if the Recycle Bin is disabled
+     * @return group scope for walkers
+     */
+    GroupScope toGroupScope(UUID recycleBin) {
+        if (isAll()) {
+            return GroupScope.ALL;
+        }
+        final UUID excludedUuid = excludeRecycleBin && !NO_RECYCLE_BIN.equals(recycleBin) ? recycleBin : null;
+        return new GroupScope() {
+            public boolean includes(UUID uuid, String path, int depth) {
+                if (maxDepth >= 0 && depth > maxDepth) {
+                    return false;
+                } else if (excludedUuid != null && excludedUuid.equals(uuid)) {
+                    return false;
+                }
+                return path == null || !excludedPaths.contains(path);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "KeePassScope{excludeRecycleBin=" + excludeRecycleBin + ", excludedPaths=" + excludedPaths
+                + ", maxDepth=" + maxDepth + "}";
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import java.util.Arrays;
+
+/**
+ * Read-only view of a protected value that is stored outside of the heap.
+ * A <code>String</code> is created only by {@link #toString()}.
+ *
+ * @author dpishchukhin.
+ */
+public final class KeePassSecret implements CharSequence {
+    private final KeePassSecrets secrets;
+    private final int offset;
+    private final int length;
+
+    KeePassSecret(KeePassSecrets secrets, int offset, int length) {
+        this.secrets = secrets;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @throws IllegalStateException secrets are cleared
+     */
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+        }
+        return secrets.charAt(offset + index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Start: " + start + ", end: " + end + ", length: " + length);
+        }
+        return new KeePassSecret(secrets, offset + start, end - start);
+    }
+
+    /**
+     * @return value as a heap string
+     * @throws IllegalStateException secrets are cleared
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = secrets.charAt(offset + i);
+        }
+        try {
+            return new String(chars);
+        } finally {
+            Arrays.fill(chars, '\0');
+        }
+    }
+}
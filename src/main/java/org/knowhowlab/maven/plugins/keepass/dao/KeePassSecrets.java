@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Protected values in a direct buffer. Values are zeroed by {@link #close()}.
+ *
+ * @author dpishchukhin.
+ */
+final class KeePassSecrets implements Closeable {
+    private final ByteBuffer buffer;
+    private final CharBuffer chars;
+    private final int[] offsets;
+    private final int[] lengths;
+    private int size;
+    private volatile boolean closed;
+
+    /**
+     * @param count  number of values
+     * @param length total length of values in chars
+     */
+    KeePassSecrets(int count, int length) {
+        buffer = ByteBuffer.allocateDirect(length * Character.BYTES);
+        chars = buffer.asCharBuffer();
+        offsets = new int[count];
+        lengths = new int[count];
+    }
+
+    /**
+     * @param value value
+     * @return value index
+     */
+    int add(CharSequence value) {
+        int index = size++;
+        offsets[index] = chars.position();
+        lengths[index] = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            chars.put(value.charAt(i));
+        }
+        return index;
+    }
+
+    KeePassSecret get(int index) {
+        return new KeePassSecret(this, offsets[index], lengths[index]);
+    }
+
+    char charAt(int index) {
+        if (closed) {
+            throw new IllegalStateException("Secrets are cleared");
+        }
+        return chars.get(index);
+    }
+
+    int getLength() {
+        return chars.capacity();
+    }
+
+    /**
+     * @return direct buffer and index arrays in bytes
+     */
+    long getRetainedBytes() {
+        return buffer.capacity() + 2 * (16 + 4L * offsets.length);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Zeroes all values
+     */
+    public void close() {
+        closed = true;
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,762 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import de.slackspace.openkeepass.domain.Attachment;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.Property;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.Filter;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.GroupScope;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.RegexEngine;
+import org.knowhowlab.maven.plugins.keepass.jmx.KeePassStatistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import static java.lang.String.format;
+
+/**
+ * Read-only columnar copy of a KeePass file tree.
+ * <p>
+ * Groups are stored in pre-order, so a subtree is a contiguous range of group indexes, and entries are ordered
+ * by their groups, so entries of a subtree are a contiguous range as well. Every attribute is an array indexed
+ * by group, entry or property number. Property keys, group names and values are indexes in a shared string pool,
+ * that holds every distinct string once. Groups and entries are found by UUID with a binary search in
+ * their indexes sorted by UUID.
+ * <p>
+ * Lookups return detached groups and entries, see {@link KeePassGroup#create(UUID, String)} and
+ * {@link KeePassEntry#create(UUID, List, List)}. Instances are immutable and thread safe.
+ *
+ * @author dpishchukhin.
+ */
+final class KeePassSnapshot {
+    private static final int NONE = -1;
+
+    private final String[] strings;
+
+    private final long[] groupUuidHigh;
+    private final long[] groupUuidLow;
+    private final int[] groupName;
+    private final int[] groupParent;
+    private final int[] groupDepth;
+    /**
+     * Index of the first group after the subtree of a group
+     */
+    private final int[] groupEnd;
+    /**
+     * Index of the first entry of a group. Has an extra element with the number of entries
+     */
+    private final int[] groupFirstEntry;
+    /**
+     * Group indexes sorted by UUID
+     */
+    private final int[] groupsByUuid;
+
+    private final long[] entryUuidHigh;
+    private final long[] entryUuidLow;
+    /**
+     * Entry indexes sorted by UUID
+     */
+    private final int[] entriesByUuid;
+    /**
+     * Index of the first property of an entry. Has an extra element with the number of properties
+     */
+    private final int[] entryFirstProperty;
+
+    private final int[] propertyKey;
+    private final int[] propertyValue;
+
+    /**
+     * Index of the first attachment of an entry. Has an extra element with the number of attachments
+     */
+    private final int[] entryFirstAttachment;
+
+    private final int[] attachmentKey;
+    private final int[] attachmentRef;
+    /**
+     * Attachment content is shared with the binary pool, not copied
+     */
+    private final byte[][] attachmentData;
+
+    private final int titleKey;
+    /**
+     * Protected values stored outside of the heap, <code>null</code> if they are in the string pool
+     */
+    private final KeePassSecrets secrets;
+    /**
+     * Owner and readers of protected values, they are zeroed when the last one is released
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private final LongAdder visitedNodes = new LongAdder();
+
+    private KeePassSnapshot(Builder builder) {
+        strings = builder.pool.toArray();
+        groupUuidHigh = builder.groupUuidHigh;
+        groupUuidLow = builder.groupUuidLow;
+        groupName = builder.groupName;
+        groupParent = builder.groupParent;
+        groupDepth = builder.groupDepth;
+        groupEnd = builder.groupEnd;
+        groupFirstEntry = builder.groupFirstEntry;
+        groupsByUuid = sortByUuid(groupUuidHigh, groupUuidLow);
+        entryUuidHigh = builder.entryUuidHigh;
+        entryUuidLow = builder.entryUuidLow;
+        entriesByUuid = sortByUuid(entryUuidHigh, entryUuidLow);
+        entryFirstProperty = builder.entryFirstProperty;
+        propertyKey = builder.propertyKey;
+        propertyValue = builder.propertyValue;
+        entryFirstAttachment = builder.entryFirstAttachment;
+        attachmentKey = builder.attachmentKey;
+        attachmentRef = builder.attachmentRef;
+        attachmentData = builder.attachmentData;
+        titleKey = builder.pool.find(KeePassEntry.TITLE);
+        secrets = builder.secrets;
+    }
+
+    /**
+     * Copies the tree. The tree is not referenced by the snapshot.
+     *
+     * @param root root group
+     * @return snapshot
+     */
+    static KeePassSnapshot build(Group root) {
+        return build(root, GroupScope.ALL);
+    }
+
+    /**
+     * Copies groups in scope. The tree is not referenced by the snapshot.
+     *
+     * @param root  root group
+     * @param scope groups that have to be copied
+     * @return snapshot
+     */
+    static KeePassSnapshot build(Group root, GroupScope scope) {
+        return build(root, scope, false);
+    }
+
+    /**
+     * Copies groups in scope. The tree is not referenced by the snapshot.
+     *
+     * @param root           root group
+     * @param scope          groups that have to be copied
+     * @param offHeapSecrets stores protected values in a direct buffer instead of the string pool
+     * @return snapshot
+     */
+    static KeePassSnapshot build(Group root, GroupScope scope, boolean offHeapSecrets) {
+        long start = System.nanoTime();
+        KeePassSnapshot snapshot = new KeePassSnapshot(new Builder(root, scope, offHeapSecrets));
+        KeePassStatistics.getInstance().recordIndexBuild(System.nanoTime() - start);
+        return snapshot;
+    }
+
+    /**
+     * @return <code>true</code> if protected values are stored outside of the heap
+     */
+    boolean hasOffHeapSecrets() {
+        return secrets != null;
+    }
+
+    /**
+     * Adds a reader of protected values
+     *
+     * @return <code>false</code> if the values are already released
+     */
+    boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Removes the owner or a reader of protected values. The last one zeroes them
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            clearSecrets();
+        }
+    }
+
+    /**
+     * Zeroes protected values stored outside of the heap
+     */
+    void clearSecrets() {
+        if (secrets != null) {
+            secrets.close();
+        }
+    }
+
+    /**
+     * @return number of groups and entries visited by all lookups
+     */
+    long getVisitedNodes() {
+        return visitedNodes.sum();
+    }
+
+    int getGroupCount() {
+        return groupName.length;
+    }
+
+    int getEntryCount() {
+        return entryUuidHigh.length;
+    }
+
+    int getStringCount() {
+        return strings.length;
+    }
+
+    /**
+     * Estimates memory of arrays, pooled strings, attachments and off-heap values with 64-bit compressed
+     * object layout. Latin-1 strings take one byte per char
+     *
+     * @return estimated memory in bytes
+     */
+    long getRetainedBytes() {
+        long bytes = array(strings.length, 4);
+        for (String value : strings) {
+            bytes += 24 + array(value.length(), isLatin1(value) ? 1 : 2);
+        }
+        bytes += array(groupUuidHigh.length, 8) + array(groupUuidLow.length, 8)
+                + array(entryUuidHigh.length, 8) + array(entryUuidLow.length, 8);
+        for (int[] values : new int[][]{groupName, groupParent, groupDepth, groupEnd, groupFirstEntry, groupsByUuid,
+                entriesByUuid, entryFirstProperty, propertyKey, propertyValue, entryFirstAttachment, attachmentKey,
+                attachmentRef}) {
+            bytes += array(values.length, 4);
+        }
+        bytes += array(attachmentData.length, 4);
+        for (byte[] data : attachmentData) {
+            bytes += data == null ? 0 : array(data.length, 1);
+        }
+        if (secrets != null) {
+            bytes += secrets.getRetainedBytes();
+        }
+        return bytes;
+    }
+
+    private static long array(int length, int elementSize) {
+        return (16 + (long) length * elementSize + 7) & ~7L;
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    KeePassGroup getRootGroup() {
+        return group(0);
+    }
+
+    KeePassGroup getGroup(UUID uuid) {
+        return findGroup(uuid).orElseThrow(() -> new KeePassNotFoundException("Group with UUID " + uuid + " does not exists"));
+    }
+
+    Optional<KeePassGroup> findGroup(UUID uuid) {
+        int index = indexOf(groupUuidHigh, groupUuidLow, groupsByUuid, uuid);
+        return index == NONE ? Optional.<KeePassGroup>empty() : Optional.of(group(index));
+    }
+
+    KeePassEntry getEntry(UUID uuid) {
+        return findEntry(uuid).orElseThrow(() -> new KeePassNotFoundException("Entry with UUID " + uuid + " does not exists"));
+    }
+
+    Optional<KeePassEntry> findEntry(UUID uuid) {
+        int index = indexOf(entryUuidHigh, entryUuidLow, entriesByUuid, uuid);
+        return index == NONE ? Optional.<KeePassEntry>empty() : Optional.of(entry(index));
+    }
+
+    List<KeePassGroup> getGroupsByName(String name) {
+        return notEmpty(findGroupsByName(name), "name", name);
+    }
+
+    List<KeePassGroup> findGroupsByName(String name) {
+        List<KeePassGroup> result = new ArrayList<KeePassGroup>();
+        for (int i = 0; i < groupName.length; i++) {
+            if (name.equals(string(groupName[i]))) {
+                result.add(group(i));
+            }
+        }
+        visitedNodes.add(groupName.length);
+        return result;
+    }
+
+    List<KeePassGroup> getGroupsByNameRegex(String regex, RegexEngine engine) {
+        return notEmpty(findGroupsByNameRegex(regex, engine), "regex", regex);
+    }
+
+    List<KeePassGroup> findGroupsByNameRegex(String regex, RegexEngine engine) {
+        Predicate<String> pattern = engine.compile(regex);
+        List<KeePassGroup> result = new ArrayList<KeePassGroup>();
+        for (int i = 0; i < groupName.length; i++) {
+            String name = string(groupName[i]);
+            if (name != null && pattern.test(name)) {
+                result.add(group(i));
+            }
+        }
+        visitedNodes.add(groupName.length);
+        return result;
+    }
+
+    List<KeePassGroup> getGroupsByPath(String path) {
+        return notEmpty(findGroupsByPath(path), "path", path);
+    }
+
+    List<KeePassGroup> findGroupsByPath(String path) {
+        String[] names = path.split("/");
+        List<KeePassGroup> result = new ArrayList<KeePassGroup>();
+        // matched[i] is true if group i and all its ancestors match the path
+        boolean[] matched = new boolean[groupName.length];
+        int visited = 0;
+        for (int i = 0; i < groupName.length; i++) {
+            visited++;
+            int depth = groupDepth[i];
+            int parent = groupParent[i];
+            if (depth >= names.length || (parent != NONE && !matched[parent])) {
+                // pre-order: skip the subtree
+                i = groupEnd[i] - 1;
+                continue;
+            }
+            String name = string(groupName[i]);
+            matched[i] = names[depth].equals(name == null ? "" : name);
+            if (matched[i] && depth == names.length - 1) {
+                result.add(group(i));
+            }
+        }
+        visitedNodes.add(visited);
+        return result;
+    }
+
+    List<KeePassEntry> getEntriesByTitle(KeePassGroup group, String title) {
+        return notEmpty(entriesByTitle(entryRange(group), title), "title", title);
+    }
+
+    List<KeePassEntry> findEntriesByTitle(KeePassGroup group, String title) {
+        int[] range = findEntryRange(group);
+        return range == null ? new ArrayList<KeePassEntry>() : entriesByTitle(range, title);
+    }
+
+    private List<KeePassEntry> entriesByTitle(int[] range, String title) {
+        List<KeePassEntry> result = new ArrayList<KeePassEntry>();
+        for (int i = range[0]; i < range[1]; i++) {
+            if (title.equals(title(i))) {
+                result.add(entry(i));
+            }
+        }
+        visitedNodes.add(range[1] - range[0]);
+        return result;
+    }
+
+    List<KeePassEntry> getEntriesByTitleRegex(KeePassGroup group, String regex, RegexEngine engine) {
+        return notEmpty(entriesByTitleRegex(entryRange(group), regex, engine), "regex", regex);
+    }
+
+    List<KeePassEntry> findEntriesByTitleRegex(KeePassGroup group, String regex, RegexEngine engine) {
+        int[] range = findEntryRange(group);
+        return range == null ? new ArrayList<KeePassEntry>() : entriesByTitleRegex(range, regex, engine);
+    }
+
+    private List<KeePassEntry> entriesByTitleRegex(int[] range, String regex, RegexEngine engine) {
+        Predicate<String> pattern = engine.compile(regex);
+        List<KeePassEntry> result = new ArrayList<KeePassEntry>();
+        for (int i = range[0]; i < range[1]; i++) {
+            String title = title(i);
+            if (title != null && pattern.test(title)) {
+                result.add(entry(i));
+            }
+        }
+        visitedNodes.add(range[1] - range[0]);
+        return result;
+    }
+
+    List<KeePassGroup> getGroups(Filter<KeePassGroup> filter) {
+        return notEmpty(findGroups(filter), filter);
+    }
+
+    List<KeePassGroup> findGroups(Filter<KeePassGroup> filter) {
+        List<KeePassGroup> result = new ArrayList<KeePassGroup>();
+        for (int i = 0; i < groupName.length; i++) {
+            Group item = new GroupBuilder(new UUID(groupUuidHigh[i], groupUuidLow[i])).name(string(groupName[i])).build();
+            KeePassGroup group = new KeePassGroup(item, path(i), groupDepth[i] - 1);
+            if (filter.matches(group)) {
+                result.add(group);
+            }
+        }
+        visitedNodes.add(groupName.length);
+        return result;
+    }
+
+    List<KeePassEntry> getEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        return notEmpty(entries(entryRange(group), filter), filter);
+    }
+
+    List<KeePassEntry> findEntries(KeePassGroup group, Filter<KeePassEntry> filter) {
+        int[] range = findEntryRange(group);
+        return range == null ? new ArrayList<KeePassEntry>() : entries(range, filter);
+    }
+
+    private List<KeePassEntry> entries(int[] range, Filter<KeePassEntry> filter) {
+        List<KeePassEntry> result = new ArrayList<KeePassEntry>();
+        for (int i = range[0]; i < range[1]; i++) {
+            KeePassEntry entry = entry(i);
+            if (filter.matches(entry)) {
+                result.add(entry);
+            }
+        }
+        visitedNodes.add(range[1] - range[0]);
+        return result;
+    }
+
+    /**
+     * @return entries of the group subtree: first index inclusive and last index exclusive
+     * @throws KeePassNotFoundException group is not in the snapshot
+     */
+    private int[] entryRange(KeePassGroup group) {
+        int[] range = findEntryRange(group);
+        if (range == null) {
+            throw new KeePassNotFoundException("Group with UUID " + group.getUuid() + " does not exists");
+        }
+        return range;
+    }
+
+    /**
+     * @return entries of the group subtree or <code>null</code> if the group is not in the snapshot
+     */
+    private int[] findEntryRange(KeePassGroup group) {
+        int index = indexOf(groupUuidHigh, groupUuidLow, groupsByUuid, group.getUuid());
+        if (index == NONE) {
+            return null;
+        }
+        return new int[]{groupFirstEntry[index], groupFirstEntry[groupEnd[index]]};
+    }
+
+    private String title(int entry) {
+        for (int i = entryFirstProperty[entry]; i < entryFirstProperty[entry + 1]; i++) {
+            if (propertyKey[i] == titleKey) {
+                return isSecret(propertyValue[i]) ? secret(propertyValue[i]).toString() : string(propertyValue[i]);
+            }
+        }
+        return null;
+    }
+
+    private KeePassGroup group(int index) {
+        return KeePassGroup.create(new UUID(groupUuidHigh[index], groupUuidLow[index]), string(groupName[index]));
+    }
+
+    private String path(int index) {
+        String name = string(groupName[index]);
+        name = name == null ? "" : name;
+        return groupParent[index] == NONE ? name : path(groupParent[index]) + "/" + name;
+    }
+
+    private KeePassEntry entry(int index) {
+        int first = entryFirstProperty[index];
+        int last = entryFirstProperty[index + 1];
+        List<KeePassProperty> properties = new ArrayList<KeePassProperty>(last - first);
+        for (int i = first; i < last; i++) {
+            if (isSecret(propertyValue[i])) {
+                properties.add(new KeePassProperty(string(propertyKey[i]), secret(propertyValue[i])));
+            } else {
+                properties.add(new KeePassProperty(string(propertyKey[i]), string(propertyValue[i])));
+            }
+        }
+        List<KeePassAttachment> attachments = new ArrayList<KeePassAttachment>();
+        for (int i = entryFirstAttachment[index]; i < entryFirstAttachment[index + 1]; i++) {
+            attachments.add(new KeePassAttachment(new Attachment(string(attachmentKey[i]), attachmentRef[i], attachmentData[i])));
+        }
+        return KeePassEntry.create(new UUID(entryUuidHigh[index], entryUuidLow[index]), properties, attachments);
+    }
+
+    private String string(int index) {
+        return index == NONE ? null : strings[index];
+    }
+
+    /**
+     * Values of protected properties stored outside of the heap are encoded as negative indexes below {@link #NONE}
+     */
+    private static boolean isSecret(int value) {
+        return value < NONE;
+    }
+
+    private static int secretValue(int index) {
+        return NONE - 1 - index;
+    }
+
+    private KeePassSecret secret(int value) {
+        return secrets.get(NONE - 1 - value);
+    }
+
+    /**
+     * @return the first index with the UUID or {@link #NONE}
+     */
+    private static int indexOf(long[] high, long[] low, int[] sorted, UUID uuid) {
+        if (uuid == null) {
+            return NONE;
+        }
+        long mostSigBits = uuid.getMostSignificantBits();
+        long leastSigBits = uuid.getLeastSignificantBits();
+        int from = 0;
+        int to = sorted.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            int index = sorted[middle];
+            if (compare(high[index], low[index], mostSigBits, leastSigBits) < 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        if (from < sorted.length) {
+            int index = sorted[from];
+            if (high[index] == mostSigBits && low[index] == leastSigBits) {
+                return index;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Duplicate UUIDs keep their order, so lookups find the first of them
+     *
+     * @return indexes sorted by UUID
+     */
+    private static int[] sortByUuid(long[] high, long[] low) {
+        Integer[] order = new Integer[high.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(high[a], low[a], high[b], low[b]));
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = order[i];
+        }
+        return sorted;
+    }
+
+    private static int compare(long high1, long low1, long high2, long low2) {
+        int result = Long.compare(high1, high2);
+        return result != 0 ? result : Long.compare(low1, low2);
+    }
+
+    private static <T> List<T> notEmpty(List<T> result, String filter, String value) {
+        if (result.isEmpty()) {
+            throw new KeePassNotFoundException(format("Invalid filter: %s %s", filter, value));
+        }
+        return result;
+    }
+
+    private static <T> List<T> notEmpty(List<T> result, Filter<?> filter) {
+        if (result.isEmpty()) {
+            throw new KeePassNotFoundException(format("Invalid filter: %s", filter));
+        }
+        return result;
+    }
+
+    /**
+     * Counts tree nodes and fills exactly sized arrays in the second pass
+     */
+    private static final class Builder {
+        private final StringPool pool = new StringPool();
+        private final GroupScope scope;
+        private final boolean offHeapSecrets;
+        private KeePassSecrets secrets;
+
+        private long[] groupUuidHigh;
+        private long[] groupUuidLow;
+        private int[] groupName;
+        private int[] groupParent;
+        private int[] groupDepth;
+        private int[] groupEnd;
+        private int[] groupFirstEntry;
+        private long[] entryUuidHigh;
+        private long[] entryUuidLow;
+        private int[] entryFirstProperty;
+        private int[] propertyKey;
+        private int[] propertyValue;
+        private int[] entryFirstAttachment;
+        private int[] attachmentKey;
+        private int[] attachmentRef;
+        private byte[][] attachmentData;
+
+        private int groups;
+        private int entries;
+        private int properties;
+        private int attachments;
+        private int secretCount;
+        private int secretLength;
+
+        private Builder(Group root, GroupScope scope, boolean offHeapSecrets) {
+            this.scope = scope;
+            this.offHeapSecrets = offHeapSecrets;
+            count(root, "", -1);
+            if (offHeapSecrets) {
+                secrets = new KeePassSecrets(secretCount, secretLength);
+            }
+            groupUuidHigh = new long[groups];
+            groupUuidLow = new long[groups];
+            groupName = new int[groups];
+            groupParent = new int[groups];
+            groupDepth = new int[groups];
+            groupEnd = new int[groups];
+            groupFirstEntry = new int[groups + 1];
+            entryUuidHigh = new long[entries];
+            entryUuidLow = new long[entries];
+            entryFirstProperty = new int[entries + 1];
+            propertyKey = new int[properties];
+            propertyValue = new int[properties];
+            entryFirstAttachment = new int[entries + 1];
+            attachmentKey = new int[attachments];
+            attachmentRef = new int[attachments];
+            attachmentData = new byte[attachments][];
+
+            groups = 0;
+            entries = 0;
+            properties = 0;
+            attachments = 0;
+            add(root, NONE, 0, "");
+            groupFirstEntry[groups] = entries;
+            entryFirstProperty[entries] = properties;
+            entryFirstAttachment[entries] = attachments;
+        }
+
+        private void count(Group group, String path, int scopeDepth) {
+            groups++;
+            for (Entry entry : group.getEntries()) {
+                entries++;
+                properties += entry.getProperties().size();
+                attachments += entry.getAttachments().size();
+                if (offHeapSecrets) {
+                    for (Property property : entry.getProperties()) {
+                        if (isSecret(property)) {
+                            secretCount++;
+                            secretLength += property.getValue().length();
+                        }
+                    }
+                }
+            }
+            for (Group child : group.getGroups()) {
+                String childPath = path + "/" + name(child);
+                if (scope.includes(child.getUuid(), childPath, scopeDepth + 1)) {
+                    count(child, childPath, scopeDepth + 1);
+                }
+            }
+        }
+
+        /**
+         * @param depth depth in the tree. The root group has depth 0, the database root group has depth 1
+         */
+        private void add(Group group, int parent, int depth, String path) {
+            int index = groups++;
+            UUID uuid = group.getUuid();
+            groupUuidHigh[index] = uuid == null ? 0 : uuid.getMostSignificantBits();
+            groupUuidLow[index] = uuid == null ? 0 : uuid.getLeastSignificantBits();
+            groupName[index] = pool.add(group.getName());
+            groupParent[index] = parent;
+            groupDepth[index] = depth;
+            groupFirstEntry[index] = entries;
+            for (Entry entry : group.getEntries()) {
+                add(entry);
+            }
+            for (Group child : group.getGroups()) {
+                String childPath = path + "/" + name(child);
+                if (scope.includes(child.getUuid(), childPath, depth)) {
+                    add(child, index, depth + 1, childPath);
+                }
+            }
+            groupEnd[index] = groups;
+        }
+
+        private static String name(Group group) {
+            return group.getName() == null ? "" : group.getName();
+        }
+
+        private static boolean isSecret(Property property) {
+            return property.isProtected() && property.getValue() != null;
+        }
+
+        private void add(Entry entry) {
+            int index = entries++;
+            UUID uuid = entry.getUuid();
+            entryUuidHigh[index] = uuid == null ? 0 : uuid.getMostSignificantBits();
+            entryUuidLow[index] = uuid == null ? 0 : uuid.getLeastSignificantBits();
+            entryFirstProperty[index] = properties;
+            for (Property property : entry.getProperties()) {
+                propertyKey[properties] = pool.add(property.getKey());
+                if (offHeapSecrets && isSecret(property)) {
+                    propertyValue[properties] = secretValue(secrets.add(property.getValue()));
+                } else {
+                    propertyValue[properties] = pool.add(property.getValue());
+                }
+                properties++;
+            }
+            entryFirstAttachment[index] = attachments;
+            for (Attachment attachment : entry.getAttachments()) {
+                attachmentKey[attachments] = pool.add(attachment.getKey());
+                attachmentRef[attachments] = attachment.getRef();
+                attachmentData[attachments] = attachment.getData();
+                attachments++;
+            }
+        }
+    }
+
+    /**
+     * Assigns an index to every distinct string
+     */
+    private static final class StringPool {
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        int add(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = strings.size();
+                indexes.put(value, index);
+                strings.add(value);
+            }
+            return index;
+        }
+
+        int find(String value) {
+            Integer index = indexes.get(value);
+            return index == null ? NONE : index;
+        }
+
+        String[] toArray() {
+            return strings.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decrypts the payload in chunks on an executor and returns decrypted chunks in payload order.
+ * <p>
+ * At most <code>window</code> chunks are decrypted ahead of the reader, so memory is bounded by
+ * <code>window * chunkSize</code> regardless of the payload size.
+ *
+ * @author dpishchukhin.
+ */
+class ChunkDecrypter extends InputStream {
+    private final PayloadCipher cipher;
+    private final byte[] key;
+    private final byte[] iv;
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+    private final int chunkSize;
+    private final int window;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private int submitted;
+    private byte[] chunk;
+    private int position;
+    private int limit;
+    private int consumed;
+
+    ChunkDecrypter(PayloadCipher cipher, byte[] key, byte[] iv, byte[] data, int offset, int length,
+                   int chunkSize, int window, ExecutorService executor) throws IOException {
+        if (iv.length != cipher.getIvLength()) {
+            throw new IOException(String.format("Invalid %s IV length: %d", cipher, iv.length));
+        }
+        if (cipher == PayloadCipher.AES && length % cipher.getAlignment() != 0) {
+            throw new IOException(String.format("Invalid %s payload length: %d", cipher, length));
+        }
+        this.cipher = cipher;
+        this.key = key;
+        this.iv = iv;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.chunkSize = Math.max(cipher.getAlignment(), chunkSize - chunkSize % cipher.getAlignment());
+        this.window = window;
+        this.executor = executor;
+    }
+
+    /**
+     * @return next decrypted chunk or <code>null</code> if the payload is over. Padding is removed
+     * from the last chunk
+     */
+    byte[] nextChunk() throws IOException {
+        while (pending.size() < window && (long) submitted * chunkSize < length) {
+            int chunkOffset = submitted * chunkSize;
+            int chunkLength = Math.min(chunkSize, length - chunkOffset);
+            pending.add(executor.submit(() -> {
+                byte[] output = new byte[chunkLength];
+                cipher.decrypt(key, iv, data, offset, chunkOffset, chunkLength, output);
+                return output;
+            }));
+            submitted++;
+        }
+        Future<byte[]> next = pending.poll();
+        if (next == null) {
+            return null;
+        }
+        byte[] result = await(next);
+        limit = result.length;
+        if (pending.isEmpty() && (long) submitted * chunkSize >= length) {
+            int padding = cipher.padding(result, limit);
+            if (padding < 0) {
+                throw new IOException("Invalid payload padding");
+            }
+            limit -= padding;
+        }
+        return result;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (chunk == null || position == limit) {
+            chunk = nextChunk();
+            position = 0;
+            if (chunk == null) {
+                return -1;
+            }
+        }
+        int count = Math.min(len, limit - position);
+        System.arraycopy(chunk, position, buffer, off, count);
+        position += count;
+        consumed += count;
+        return count;
+    }
+
+    /**
+     * Reads exactly <code>len</code> bytes
+     */
+    void readFully(byte[] buffer, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = read(buffer, off, len);
+            if (count < 0) {
+                throw new IOException("Unexpected end of payload");
+            }
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * @return upper bound of bytes left in the payload. Padding of the last chunk is not known
+     * before it is decrypted, so it is included
+     */
+    int remaining() {
+        return length - consumed;
+    }
+
+    @Override
+    public void close() {
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Decryption is interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.ChaCha20ParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Outer ciphers of the KeePass payload. Both ciphers can decrypt any aligned range of the payload
+ * independently: CBC uses the previous ciphertext block as IV, ChaCha20 starts the block counter
+ * at the range offset.
+ *
+ * @author dpishchukhin.
+ */
+public enum PayloadCipher {
+    AES("31c1f2e6bf714350be5805216afc5aff", 16, 16) {
+        @Override
+        void decrypt(byte[] key, byte[] iv, byte[] data, int offset, int chunkOffset, int length, byte[] output)
+                throws GeneralSecurityException {
+            byte[] chunkIv = chunkOffset == 0 ? iv : Arrays.copyOfRange(data, offset + chunkOffset - 16, offset + chunkOffset);
+            Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(chunkIv));
+            cipher.doFinal(data, offset + chunkOffset, length, output, 0);
+        }
+
+        @Override
+        int padding(byte[] chunk, int length) {
+            int padding = length == 0 ? 0 : chunk[length - 1] & 0xFF;
+            if (padding < 1 || padding > 16) {
+                return -1;
+            }
+            for (int i = length - padding; i < length; i++) {
+                if ((chunk[i] & 0xFF) != padding) {
+                    return -1;
+                }
+            }
+            return padding;
+        }
+    },
+    CHACHA20("d6038a2b8b6f4cb5a524339a31dbb59a", 12, 64) {
+        @Override
+        void decrypt(byte[] key, byte[] iv, byte[] data, int offset, int chunkOffset, int length, byte[] output)
+                throws GeneralSecurityException {
+            Cipher cipher = Cipher.getInstance("ChaCha20");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "ChaCha20"),
+                    new ChaCha20ParameterSpec(iv, chunkOffset / 64));
+            cipher.doFinal(data, offset + chunkOffset, length, output, 0);
+        }
+
+        @Override
+        int padding(byte[] chunk, int length) {
+            return 0;
+        }
+    };
+
+    private final byte[] uuid;
+    private final int ivLength;
+    private final int alignment;
+
+    PayloadCipher(String uuid, int ivLength, int alignment) {
+        this.uuid = hex(uuid);
+        this.ivLength = ivLength;
+        this.alignment = alignment;
+    }
+
+    /**
+     * @param uuid cipher UUID from the file header
+     * @return cipher or <code>null</code> if the cipher is not supported
+     */
+    public static PayloadCipher fromUuid(byte[] uuid) {
+        for (PayloadCipher cipher : values()) {
+            if (Arrays.equals(cipher.uuid, uuid)) {
+                return cipher;
+            }
+        }
+        return null;
+    }
+
+    public byte[] getUuid() {
+        return uuid.clone();
+    }
+
+    public int getIvLength() {
+        return ivLength;
+    }
+
+    /**
+     * Chunks of the payload must start at a multiple of this value
+     */
+    public int getAlignment() {
+        return alignment;
+    }
+
+    /**
+     * Decrypts a range of the payload
+     *
+     * @param key         master key
+     * @param iv          encryption IV from the file header
+     * @param data        buffer with the payload
+     * @param offset      payload offset in the buffer
+     * @param chunkOffset range offset in the payload. Multiple of {@link #getAlignment()}
+     * @param length      range length
+     * @param output      buffer for decrypted range
+     */
+    abstract void decrypt(byte[] key, byte[] iv, byte[] data, int offset, int chunkOffset, int length, byte[] output)
+            throws GeneralSecurityException;
+
+    /**
+     * @return padding length at the end of the last decrypted chunk or -1 if padding is invalid
+     */
+    abstract int padding(byte[] chunk, int length);
+
+    private static byte[] hex(String value) {
+        byte[] bytes = new byte[value.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
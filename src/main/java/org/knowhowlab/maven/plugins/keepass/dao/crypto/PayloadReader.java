@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import de.slackspace.openkeepass.crypto.Aes;
+import de.slackspace.openkeepass.crypto.ProtectedStringCrypto;
+import de.slackspace.openkeepass.crypto.Sha256;
+import de.slackspace.openkeepass.domain.CompressionAlgorithm;
+import de.slackspace.openkeepass.domain.CrsAlgorithm;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassHeader;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.parser.KeePassDatabaseXmlParser;
+import de.slackspace.openkeepass.parser.SimpleXmlParser;
+import de.slackspace.openkeepass.processor.DecryptionStrategy;
+import de.slackspace.openkeepass.processor.Enricher;
+import de.slackspace.openkeepass.util.ByteUtils;
+import org.knowhowlab.maven.plugins.keepass.jfr.KeePassDecryptionEvent;
+import org.knowhowlab.maven.plugins.keepass.jfr.KeePassKeyDerivationEvent;
+import org.knowhowlab.maven.plugins.keepass.jfr.KeePassParseEvent;
+import org.knowhowlab.maven.plugins.keepass.jmx.KeePassStatistics;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static java.lang.String.format;
+
+/**
+ * Reads the payload of a KeePass file (KDBX 3.1 layout) using several threads.
+ * <p>
+ * Chunks of the payload are decrypted in parallel and consumed in order through a bounded
+ * window. Blocks of the hashed block stream are verified in parallel while following chunks
+ * are still decrypted. The payload is parsed only when all blocks are verified.
+ * <p>
+ * Supported outer ciphers are AES-256 and ChaCha20. Protected values are decrypted with {@link Salsa20Stream}.
+ * Key derivation, decryption and parsing are timed for the statistics and reported as Flight Recorder events.
+ *
+ * @author dpishchukhin.
+ */
+public class PayloadReader {
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final int START_BYTES_LENGTH = 32;
+    private static final int BLOCK_HEADER_LENGTH = 40;
+
+    private final int threads;
+    private final int chunkSize;
+
+    /**
+     * @param threads number of decryption threads
+     */
+    public PayloadReader(int threads) {
+        this(threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param threads   number of decryption threads
+     * @param chunkSize size of decrypted chunks in bytes
+     */
+    public PayloadReader(int threads, int chunkSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(format("Invalid number of threads: %d", threads));
+        }
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Decrypts and parses the file
+     *
+     * @param database     file content
+     * @param header       file header
+     * @param compositeKey hash of credentials
+     * @return parsed file
+     * @throws InvalidCredentialsException        invalid credentials
+     * @throws KeePassDatabaseUnreadableException corrupted file
+     */
+    public KeePassFile read(byte[] database, KeePassHeader header, byte[] compositeKey) {
+        PayloadCipher cipher = PayloadCipher.fromUuid(header.getCipher());
+        if (cipher == null) {
+            throw new KeePassDatabaseUnreadableException(format("Unsupported cipher: %s", toHex(header.getCipher())));
+        }
+        int offset = KeePassHeader.VERSION_SIGNATURE_LENGTH + header.getHeaderSize();
+        KeePassStatistics statistics = KeePassStatistics.getInstance();
+        KeePassKeyDerivationEvent keyDerivation = new KeePassKeyDerivationEvent();
+        keyDerivation.begin();
+        long start = System.nanoTime();
+        byte[] masterKey = masterKey(header, compositeKey);
+        statistics.recordKeyDerivation(System.nanoTime() - start);
+        keyDerivation.transformRounds = header.getTransformRounds();
+        keyDerivation.commit();
+        KeePassDecryptionEvent decryption = new KeePassDecryptionEvent();
+        decryption.begin();
+        start = System.nanoTime();
+        checkStartBytes(cipher, masterKey, header, database, offset);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "keepass-decrypt");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ChunkDecrypter payload = new ChunkDecrypter(cipher, masterKey,
+                header.getEncryptionIV(), database, offset, database.length - offset,
+                chunkSize, threads * 2, executor)) {
+            // start bytes are already verified
+            payload.readFully(new byte[START_BYTES_LENGTH], 0, START_BYTES_LENGTH);
+            List<byte[]> blocks = readBlocks(payload, executor);
+            statistics.recordDecryption(System.nanoTime() - start);
+            decryption.cipher = cipher.name();
+            decryption.payloadSize = database.length - offset;
+            decryption.threads = threads;
+            decryption.commit();
+            KeePassParseEvent parse = new KeePassParseEvent();
+            parse.begin();
+            start = System.nanoTime();
+            List<InputStream> streams = new ArrayList<InputStream>(blocks.size());
+            for (byte[] block : blocks) {
+                streams.add(new ByteArrayInputStream(block));
+            }
+            InputStream xml = new SequenceInputStream(Collections.enumeration(streams));
+            if (header.getCompression() == CompressionAlgorithm.Gzip) {
+                xml = new GZIPInputStream(xml, 64 * 1024);
+            }
+            KeePassFile keePassFile = new KeePassDatabaseXmlParser(new SimpleXmlParser())
+                    .fromXml(xml, new DecryptionStrategy(getProtectedStringCrypto(header)));
+            keePassFile = new Enricher(keePassFile).enrichIcons().enrichAttachments().enrichReferences().process();
+            statistics.recordParse(System.nanoTime() - start);
+            parse.compressed = header.getCompression() == CompressionAlgorithm.Gzip;
+            parse.commit();
+            return keePassFile;
+        } catch (IOException e) {
+            throw new KeePassDatabaseUnreadableException(format("Could not open database file: %s", e.getMessage()), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Decrypts only the first cipher blocks of the payload and compares them with the start bytes of the header,
+     * so invalid credentials are detected before the rest of the payload is decrypted
+     *
+     * @throws InvalidCredentialsException start bytes do not match
+     */
+    static void checkStartBytes(PayloadCipher cipher, byte[] masterKey, KeePassHeader header, byte[] database, int offset) {
+        int length = Math.max(START_BYTES_LENGTH, cipher.getAlignment());
+        if (database.length - offset < length) {
+            throw new KeePassDatabaseUnreadableException("The keepass database file is truncated.");
+        }
+        byte[] startBytes = new byte[length];
+        try {
+            cipher.decrypt(masterKey, header.getEncryptionIV(), database, offset, 0, length, startBytes);
+        } catch (GeneralSecurityException e) {
+            throw new KeePassDatabaseUnreadableException(format("Could not decrypt database file: %s", e.getMessage()), e);
+        }
+        if (!MessageDigest.isEqual(Arrays.copyOf(startBytes, START_BYTES_LENGTH), header.getStreamStartBytes())) {
+            throw new InvalidCredentialsException("The keepass database file cannot be decrypted with these credentials.");
+        }
+    }
+
+    /**
+     * Master key of the outer cipher. Key derivation is the same as in openkeepass
+     *
+     * @param header       file header
+     * @param compositeKey hash of credentials
+     * @return master key
+     */
+    public static byte[] masterKey(KeePassHeader header, byte[] compositeKey) {
+        byte[] transformed = Sha256.hash(Aes.transformKey(header.getTransformSeed(), Sha256.hash(compositeKey),
+                header.getTransformRounds()));
+        return Sha256.hash(ByteUtils.concat(Arrays.copyOf(header.getMasterSeed(), 32), transformed));
+    }
+
+    /**
+     * Splits the hashed block stream into blocks. Every block hash is verified by a separate task
+     */
+    private static List<byte[]> readBlocks(ChunkDecrypter payload, ExecutorService executor) throws IOException {
+        List<byte[]> blocks = new ArrayList<byte[]>();
+        List<Future<Void>> checks = new ArrayList<Future<Void>>();
+        byte[] blockHeader = new byte[BLOCK_HEADER_LENGTH];
+        while (true) {
+            payload.readFully(blockHeader, 0, BLOCK_HEADER_LENGTH);
+            int index = readInt(blockHeader, 0);
+            int size = readInt(blockHeader, 36);
+            if (index != blocks.size()) {
+                throw new IOException(format("Unexpected hashed block index: %d", index));
+            }
+            if (size == 0) {
+                break;
+            }
+            if (size < 0 || size > payload.remaining()) {
+                throw new IOException(format("Invalid size of hashed block %d: %d, %d bytes remain. The file is corrupted",
+                        index, size, payload.remaining()));
+            }
+            byte[] block = new byte[size];
+            payload.readFully(block, 0, size);
+            byte[] hash = Arrays.copyOfRange(blockHeader, 4, 36);
+            checks.add(executor.submit(() -> {
+                if (!MessageDigest.isEqual(hash, sha256(block))) {
+                    throw new IOException(format("Hashed block %d is corrupt", index));
+                }
+                return null;
+            }));
+            blocks.add(block);
+        }
+        for (Future<Void> check : checks) {
+            ChunkDecrypter.await(check);
+        }
+        return blocks;
+    }
+
+    private static ProtectedStringCrypto getProtectedStringCrypto(KeePassHeader header) {
+        if (!CrsAlgorithm.Salsa20.equals(header.getCrsAlgorithm())) {
+            throw new UnsupportedOperationException("Only Salsa20 is supported as CrsAlgorithm at the moment!");
+        }
+        return Salsa20Stream.createInstance(header.getProtectedStreamKey());
+    }
+
+    private static byte[] sha256(byte[] data) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(data);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadReader{" +
+                "threads=" + threads +
+                ", chunkSize=" + chunkSize +
+                '}';
+    }
+}
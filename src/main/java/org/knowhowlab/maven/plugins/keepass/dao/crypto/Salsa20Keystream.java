@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+/**
+ * Generator of Salsa20 keystream blocks. Implementations are not thread safe.
+ *
+ * @author dpishchukhin.
+ */
+interface Salsa20Keystream {
+    int BLOCK_SIZE = 64;
+
+    /**
+     * @return number of 64-byte blocks produced by one {@link #generate(int[], long, byte[])} call
+     */
+    int blocks();
+
+    /**
+     * Generates keystream blocks <code>counter .. counter + blocks() - 1</code>
+     *
+     * @param input   Salsa20 input words. Counter words 8 and 9 are ignored
+     * @param counter number of the first block
+     * @param out     keystream, <code>blocks() * 64</code> bytes
+     */
+    void generate(int[] input, long counter, byte[] out);
+
+    /**
+     * XORs data with keystream in place
+     *
+     * @param keystream       keystream
+     * @param keystreamOffset offset of keystream
+     * @param data            data
+     * @param offset          offset of data
+     * @param length          number of bytes
+     */
+    void xor(byte[] keystream, int keystreamOffset, byte[] data, int offset, int length);
+}
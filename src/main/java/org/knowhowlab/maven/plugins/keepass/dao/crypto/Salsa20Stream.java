@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import de.slackspace.openkeepass.crypto.ProtectedStringCrypto;
+import de.slackspace.openkeepass.crypto.Sha256;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static java.lang.String.format;
+
+/**
+ * Inner random stream of protected values. Values are XORed with one continuous Salsa20 keystream
+ * in document order, so an instance is used by one parser.
+ * <p>
+ * Keystream is generated several blocks at a time. With <code>--add-modules jdk.incubator.vector</code>
+ * in <code>.mvn/jvm.config</code> blocks are computed in vector lanes, otherwise one by one.
+ *
+ * @author dpishchukhin.
+ */
+final class Salsa20Stream implements ProtectedStringCrypto {
+    static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private static final byte[] INNER_STREAM_IV = {(byte) 0xE8, 0x30, 0x09, 0x4B, (byte) 0x97, 0x20, 0x5D, 0x2A};
+    private static final int MIN_VECTOR_BLOCKS = 4;
+
+    private final Salsa20Keystream keystream;
+    private final int[] input = new int[16];
+    private final byte[] buffer;
+    private int position;
+    private long counter;
+
+    /**
+     * @param key       256-bit key
+     * @param nonce     64-bit nonce
+     * @param keystream keystream generator
+     */
+    Salsa20Stream(byte[] key, byte[] nonce, Salsa20Keystream keystream) {
+        if (key.length != 32 || nonce.length != 8) {
+            throw new IllegalArgumentException(format("Invalid Salsa20 key or nonce length: %d, %d", key.length, nonce.length));
+        }
+        this.keystream = keystream;
+        input[0] = 0x61707865;
+        input[1] = readInt(key, 0);
+        input[2] = readInt(key, 4);
+        input[3] = readInt(key, 8);
+        input[4] = readInt(key, 12);
+        input[5] = 0x3320646e;
+        input[6] = readInt(nonce, 0);
+        input[7] = readInt(nonce, 4);
+        input[10] = 0x79622d32;
+        input[11] = readInt(key, 16);
+        input[12] = readInt(key, 20);
+        input[13] = readInt(key, 24);
+        input[14] = readInt(key, 28);
+        input[15] = 0x6b206574;
+        buffer = new byte[keystream.blocks() * Salsa20Keystream.BLOCK_SIZE];
+        position = buffer.length;
+    }
+
+    /**
+     * @param protectedStreamKey protected stream key of the file header
+     * @return inner stream of the file
+     */
+    static Salsa20Stream createInstance(byte[] protectedStreamKey) {
+        if (protectedStreamKey == null) {
+            throw new IllegalArgumentException("ProtectedStreamKey must not be null");
+        }
+        return new Salsa20Stream(Sha256.hash(protectedStreamKey), INNER_STREAM_IV, newKeystream());
+    }
+
+    /**
+     * @return vector keystream if the Vector API module is available and has at least 4 int lanes, scalar otherwise
+     */
+    static Salsa20Keystream newKeystream() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // loaded by name, so the class is never linked without the module
+                Salsa20Keystream vector = (Salsa20Keystream) Class.forName(Salsa20Stream.class.getPackage().getName()
+                        + ".VectorSalsa20Keystream").getDeclaredConstructor().newInstance();
+                if (vector.blocks() >= MIN_VECTOR_BLOCKS) {
+                    return vector;
+                }
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // module is not visible to the plugin class loader
+            }
+        }
+        return new ScalarSalsa20Keystream();
+    }
+
+    /**
+     * XORs data with the next bytes of the keystream in place
+     */
+    void process(byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (position == buffer.length) {
+                keystream.generate(input, counter, buffer);
+                counter += keystream.blocks();
+                position = 0;
+            }
+            int chunk = Math.min(length, buffer.length - position);
+            keystream.xor(buffer, position, data, offset, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public String decrypt(String protectedString) {
+        if (protectedString == null) {
+            throw new IllegalArgumentException("ProtectedString must not be null");
+        }
+        byte[] bytes = Base64.getMimeDecoder().decode(protectedString);
+        process(bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public String encrypt(String plainString) {
+        if (plainString == null) {
+            throw new IllegalArgumentException("PlainString must not be null");
+        }
+        byte[] bytes = plainString.getBytes(StandardCharsets.UTF_8);
+        process(bytes, 0, bytes.length);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    @Override
+    public String toString() {
+        return "Salsa20Stream{" +
+                "keystream=" + keystream.getClass().getSimpleName() +
+                ", blocks=" + keystream.blocks() +
+                '}';
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+/**
+ * Salsa20/20 keystream computed one block at a time
+ *
+ * @author dpishchukhin.
+ */
+final class ScalarSalsa20Keystream implements Salsa20Keystream {
+    static final int BLOCKS = 4;
+
+    public int blocks() {
+        return BLOCKS;
+    }
+
+    public void generate(int[] input, long counter, byte[] out) {
+        for (int block = 0; block < BLOCKS; block++) {
+            long blockCounter = counter + block;
+            int x0 = input[0], x1 = input[1], x2 = input[2], x3 = input[3];
+            int x4 = input[4], x5 = input[5], x6 = input[6], x7 = input[7];
+            int x8 = (int) blockCounter, x9 = (int) (blockCounter >>> 32);
+            int x10 = input[10], x11 = input[11], x12 = input[12], x13 = input[13];
+            int x14 = input[14], x15 = input[15];
+            for (int round = 0; round < 10; round++) {
+                // column round
+                x4 ^= Integer.rotateLeft(x0 + x12, 7);
+                x8 ^= Integer.rotateLeft(x4 + x0, 9);
+                x12 ^= Integer.rotateLeft(x8 + x4, 13);
+                x0 ^= Integer.rotateLeft(x12 + x8, 18);
+                x9 ^= Integer.rotateLeft(x5 + x1, 7);
+                x13 ^= Integer.rotateLeft(x9 + x5, 9);
+                x1 ^= Integer.rotateLeft(x13 + x9, 13);
+                x5 ^= Integer.rotateLeft(x1 + x13, 18);
+                x14 ^= Integer.rotateLeft(x10 + x6, 7);
+                x2 ^= Integer.rotateLeft(x14 + x10, 9);
+                x6 ^= Integer.rotateLeft(x2 + x14, 13);
+                x10 ^= Integer.rotateLeft(x6 + x2, 18);
+                x3 ^= Integer.rotateLeft(x15 + x11, 7);
+                x7 ^= Integer.rotateLeft(x3 + x15, 9);
+                x11 ^= Integer.rotateLeft(x7 + x3, 13);
+                x15 ^= Integer.rotateLeft(x11 + x7, 18);
+                // row round
+                x1 ^= Integer.rotateLeft(x0 + x3, 7);
+                x2 ^= Integer.rotateLeft(x1 + x0, 9);
+                x3 ^= Integer.rotateLeft(x2 + x1, 13);
+                x0 ^= Integer.rotateLeft(x3 + x2, 18);
+                x6 ^= Integer.rotateLeft(x5 + x4, 7);
+                x7 ^= Integer.rotateLeft(x6 + x5, 9);
+                x4 ^= Integer.rotateLeft(x7 + x6, 13);
+                x5 ^= Integer.rotateLeft(x4 + x7, 18);
+                x11 ^= Integer.rotateLeft(x10 + x9, 7);
+                x8 ^= Integer.rotateLeft(x11 + x10, 9);
+                x9 ^= Integer.rotateLeft(x8 + x11, 13);
+                x10 ^= Integer.rotateLeft(x9 + x8, 18);
+                x12 ^= Integer.rotateLeft(x15 + x14, 7);
+                x13 ^= Integer.rotateLeft(x12 + x15, 9);
+                x14 ^= Integer.rotateLeft(x13 + x12, 13);
+                x15 ^= Integer.rotateLeft(x14 + x13, 18);
+            }
+            int offset = block * BLOCK_SIZE;
+            writeInt(out, offset, x0 + input[0]);
+            writeInt(out, offset + 4, x1 + input[1]);
+            writeInt(out, offset + 8, x2 + input[2]);
+            writeInt(out, offset + 12, x3 + input[3]);
+            writeInt(out, offset + 16, x4 + input[4]);
+            writeInt(out, offset + 20, x5 + input[5]);
+            writeInt(out, offset + 24, x6 + input[6]);
+            writeInt(out, offset + 28, x7 + input[7]);
+            writeInt(out, offset + 32, x8 + (int) blockCounter);
+            writeInt(out, offset + 36, x9 + (int) (blockCounter >>> 32));
+            writeInt(out, offset + 40, x10 + input[10]);
+            writeInt(out, offset + 44, x11 + input[11]);
+            writeInt(out, offset + 48, x12 + input[12]);
+            writeInt(out, offset + 52, x13 + input[13]);
+            writeInt(out, offset + 56, x14 + input[14]);
+            writeInt(out, offset + 60, x15 + input[15]);
+        }
+    }
+
+    public void xor(byte[] keystream, int keystreamOffset, byte[] data, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            data[offset + i] ^= keystream[keystreamOffset + i];
+        }
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+}
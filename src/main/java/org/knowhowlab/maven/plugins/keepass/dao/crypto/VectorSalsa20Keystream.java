@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Salsa20/20 keystream computed with the Vector API. Every lane computes its own block,
+ * so one call produces as many blocks as the preferred vector has int lanes (16 with AVX-512).
+ * <p>
+ * The class is loaded only when the JVM runs with <code>--add-modules jdk.incubator.vector</code>.
+ *
+ * @author dpishchukhin.
+ */
+final class VectorSalsa20Keystream implements Salsa20Keystream {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = INTS.length();
+
+    // word i of all blocks is stored at i * LANES
+    private final int[] initial = new int[16 * LANES];
+    private final int[] state = new int[16 * LANES];
+
+    public int blocks() {
+        return LANES;
+    }
+
+    public void generate(int[] input, long counter, byte[] out) {
+        for (int word = 0; word < 16; word++) {
+            for (int lane = 0; lane < LANES; lane++) {
+                initial[word * LANES + lane] = input[word];
+            }
+        }
+        for (int lane = 0; lane < LANES; lane++) {
+            initial[8 * LANES + lane] = (int) (counter + lane);
+            initial[9 * LANES + lane] = (int) ((counter + lane) >>> 32);
+        }
+        System.arraycopy(initial, 0, state, 0, state.length);
+        for (int round = 0; round < 10; round++) {
+            // column round
+            quarterRound(state, 0, 4, 8, 12);
+            quarterRound(state, 5, 9, 13, 1);
+            quarterRound(state, 10, 14, 2, 6);
+            quarterRound(state, 15, 3, 7, 11);
+            // row round
+            quarterRound(state, 0, 1, 2, 3);
+            quarterRound(state, 5, 6, 7, 4);
+            quarterRound(state, 10, 11, 8, 9);
+            quarterRound(state, 15, 12, 13, 14);
+        }
+        for (int word = 0; word < 16; word++) {
+            for (int lane = 0; lane < LANES; lane++) {
+                int value = state[word * LANES + lane] + initial[word * LANES + lane];
+                int offset = lane * BLOCK_SIZE + word * 4;
+                out[offset] = (byte) value;
+                out[offset + 1] = (byte) (value >>> 8);
+                out[offset + 2] = (byte) (value >>> 16);
+                out[offset + 3] = (byte) (value >>> 24);
+            }
+        }
+    }
+
+    public void xor(byte[] keystream, int keystreamOffset, byte[] data, int offset, int length) {
+        int i = 0;
+        for (int bound = BYTES.loopBound(length); i < bound; i += BYTES.length()) {
+            ByteVector.fromArray(BYTES, data, offset + i)
+                    .lanewise(VectorOperators.XOR, ByteVector.fromArray(BYTES, keystream, keystreamOffset + i))
+                    .intoArray(data, offset + i);
+        }
+        for (; i < length; i++) {
+            data[offset + i] ^= keystream[keystreamOffset + i];
+        }
+    }
+
+    /**
+     * State goes through the array between quarter rounds. With all 16 words as local vectors C2 stops inlining
+     * vector operations at its node count limit and boxes every intermediate vector, which is slower than scalar code
+     */
+    private static void quarterRound(int[] state, int ia, int ib, int ic, int id) {
+        IntVector a = IntVector.fromArray(INTS, state, ia * LANES);
+        IntVector b = IntVector.fromArray(INTS, state, ib * LANES);
+        IntVector c = IntVector.fromArray(INTS, state, ic * LANES);
+        IntVector d = IntVector.fromArray(INTS, state, id * LANES);
+        b = b.lanewise(VectorOperators.XOR, a.add(d).lanewise(VectorOperators.ROL, 7));
+        c = c.lanewise(VectorOperators.XOR, b.add(a).lanewise(VectorOperators.ROL, 9));
+        d = d.lanewise(VectorOperators.XOR, c.add(b).lanewise(VectorOperators.ROL, 13));
+        a = a.lanewise(VectorOperators.XOR, d.add(c).lanewise(VectorOperators.ROL, 18));
+        a.intoArray(state, ia * LANES);
+        b.intoArray(state, ib * LANES);
+        c.intoArray(state, ic * LANES);
+        d.intoArray(state, id * LANES);
+    }
+}
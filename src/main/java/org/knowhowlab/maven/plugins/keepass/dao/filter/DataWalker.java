@@ -17,12 +17,45 @@
 package org.knowhowlab.maven.plugins.keepass.dao.filter;
 
 import java.util.List;
+import java.util.Optional;
+
+import static java.lang.String.format;
 
 /**
  * @author dpishchukhin.
  */
 public interface DataWalker<T> {
-    T findAny(Filter<T> filter);
+    /**
+     * @param filter filter
+     * @return first matched item or empty result if nothing matches
+     */
+    Optional<T> findFirst(Filter<T> filter);
+
+    /**
+     * @param filter filter
+     * @return matched items, the list is empty if nothing matches
+     */
+    List<T> findMatches(Filter<T> filter);
+
+    /**
+     * @param filter filter
+     * @return first matched item
+     * @throws IllegalArgumentException nothing matches
+     */
+    default T findAny(Filter<T> filter) {
+        return findFirst(filter).orElseThrow(() -> new IllegalArgumentException(format("Invalid filter: %s", filter)));
+    }
 
-    List<T> findAll(Filter<T> filter);
+    /**
+     * @param filter filter
+     * @return matched items
+     * @throws IllegalArgumentException nothing matches
+     */
+    default List<T> findAll(Filter<T> filter) {
+        List<T> result = findMatches(filter);
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException(format("Invalid filter: %s", filter));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassProperty;
+
+/**
+ * Matches entries with an attribute value
+ *
+ * @author dpishchukhin.
+ */
+public class EntryAttributeFilter implements Filter<KeePassEntry> {
+    private String name;
+    private String value;
+
+    public EntryAttributeFilter(String name, String value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public boolean matches(KeePassEntry item) {
+        for (KeePassProperty property : item.getProperties()) {
+            if (name.equals(property.getKey())) {
+                CharSequence actual = property.getCharSequence();
+                return actual != null && value.contentEquals(actual);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EntryAttributeFilter{");
+        sb.append("name='").append(name).append('\'');
+        sb.append(", value='").append(value).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
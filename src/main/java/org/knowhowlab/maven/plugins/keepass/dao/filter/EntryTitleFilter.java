@@ -28,7 +28,19 @@ public class EntryTitleFilter implements Filter<KeePassEntry> {
         this.title = title;
     }
 
+    public String getTitle() {
+        return title;
+    }
+
     public boolean matches(KeePassEntry item) {
         return title.equals(item.getTitle());
     }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EntryTitleFilter{");
+        sb.append("title='").append(title).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
 }
@@ -18,18 +18,39 @@ package org.knowhowlab.maven.plugins.keepass.dao.filter;
 
 import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
 
+import java.util.function.Predicate;
+
 
 /**
  * @author dpishchukhin.
  */
 public class EntryTitleRegexFilter implements Filter<KeePassEntry> {
     private String regex;
+    private Predicate<String> pattern;
 
     public EntryTitleRegexFilter(String regex) {
+        this(regex, RegexEngine.JAVA);
+    }
+
+    /**
+     * @param regex  regular expression
+     * @param engine regex engine. The expression is compiled once
+     * @throws java.util.regex.PatternSyntaxException invalid or unsupported regular expression
+     */
+    public EntryTitleRegexFilter(String regex, RegexEngine engine) {
         this.regex = regex;
+        this.pattern = engine.compile(regex);
     }
 
     public boolean matches(KeePassEntry item) {
-        return item.getTitle() != null && item.getTitle().matches(regex);
+        return item.getTitle() != null && pattern.test(item.getTitle());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EntryTitleRegexFilter{");
+        sb.append("regex='").append(regex).append('\'');
+        sb.append('}');
+        return sb.toString();
     }
 }
@@ -30,6 +30,10 @@ public class EntryUUIDFilter implements Filter<KeePassEntry> {
         this.uuid = uuid;
     }
 
+    public UUID getUuid() {
+        return uuid;
+    }
+
     public boolean matches(KeePassEntry item) {
         return uuid.equals(item.getUuid());
     }
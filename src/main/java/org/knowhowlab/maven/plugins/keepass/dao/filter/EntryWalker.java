@@ -21,33 +21,46 @@ import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
 
 import java.util.ArrayList;
 import java.util.List;
-
-import static java.lang.String.format;
+import java.util.Optional;
 
 /**
  * @author dpishchukhin.
  */
 public class EntryWalker implements DataWalker<KeePassEntry> {
     private KeePassGroup rootGroup;
+    private GroupScope scope;
+    private int visited;
 
     public EntryWalker(KeePassGroup rootGroup) {
+        this(rootGroup, GroupScope.ALL);
+    }
+
+    public EntryWalker(KeePassGroup rootGroup, GroupScope scope) {
         this.rootGroup = rootGroup;
+        this.scope = scope;
+    }
+
+    /**
+     * @return number of groups and entries visited by this walker
+     */
+    public int getVisited() {
+        return visited;
     }
 
-    public KeePassEntry findAny(Filter<KeePassEntry> filter) {
-        KeePassEntry entry = findEntry(rootGroup, filter);
-        if (entry != null) return entry;
-        throw new IllegalArgumentException(format("Invalid filter: %s", filter));
+    public Optional<KeePassEntry> findFirst(Filter<KeePassEntry> filter) {
+        return Optional.ofNullable(findEntry(rootGroup, filter));
     }
 
     private KeePassEntry findEntry(KeePassGroup searchGroup, Filter<KeePassEntry> filter) {
+        visited++;
         List<KeePassEntry> entries = searchGroup.getEntries();
         for (KeePassEntry entry : entries) {
+            visited++;
             if (filter.matches(entry)) {
                 return entry;
             }
         }
-        List<KeePassGroup> groups = searchGroup.getGroups();
+        List<KeePassGroup> groups = searchGroup.getGroups(scope);
         for (KeePassGroup group : groups) {
             KeePassEntry entry = findEntry(group, filter);
             if (entry != null) {
@@ -57,20 +70,20 @@ public class EntryWalker implements DataWalker<KeePassEntry> {
         return null;
     }
 
-    public List<KeePassEntry> findAll(Filter<KeePassEntry> filter) {
-        List<KeePassEntry> result = findEntries(rootGroup, filter, new ArrayList<KeePassEntry>());
-        if (!result.isEmpty()) return result;
-        throw new IllegalArgumentException(format("Invalid filter: %s", filter));
+    public List<KeePassEntry> findMatches(Filter<KeePassEntry> filter) {
+        return findEntries(rootGroup, filter, new ArrayList<KeePassEntry>());
     }
 
     private List<KeePassEntry> findEntries(KeePassGroup searchGroup, Filter<KeePassEntry> filter, ArrayList<KeePassEntry> list) {
+        visited++;
         List<KeePassEntry> entries = searchGroup.getEntries();
+        visited += entries.size();
         for (KeePassEntry entry : entries) {
             if (filter.matches(entry)) {
                 list.add(entry);
             }
         }
-        List<KeePassGroup> groups = searchGroup.getGroups();
+        List<KeePassGroup> groups = searchGroup.getGroups(scope);
         for (KeePassGroup group : groups) {
             findEntries(group, filter, list);
         }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO.convertToUUID;
+
+/**
+ * Parses filter queries. A query is a filter <code>[filter-type]:[filter-data]</code> or a composite filter
+ * <code>and(query, ...)</code>, <code>or(query, ...)</code> or <code>not(query)</code>, e.g.
+ * <code>and(regex:Deploy.*, attr:environment=production, not(title:Deployment old))</code>.
+ * An operator is followed by its parenthesis without whitespace, so a title like <code>Not (used)</code> is not a composite filter.
+ * <p>
+ * Filter data ends with a comma or a closing parenthesis that are not nested in parentheses or brackets.
+ * Other filter data has to be quoted with single quotes, a quote inside quoted data is doubled.
+ * <p>
+ * Entry filter types: <code>uuid, title, regex and attr</code> (<code>attr:[name]=[value]</code>).
+ * Group filter types: <code>uuid, name, regex and path</code>. Default types are <code>title</code> and <code>name</code>.
+ *
+ * @author dpishchukhin.
+ */
+public final class FilterParser {
+    private static final Pattern COMPOSITE = Pattern.compile("\\s*(and|or|not)\\(", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TYPE = Pattern.compile("\\s*([A-Za-z]+)\\s*:");
+
+    private final String query;
+    private final LeafFactory<?> factory;
+    private int position;
+
+    private FilterParser(String query, LeafFactory<?> factory) {
+        this.query = query;
+        this.factory = factory;
+    }
+
+    /**
+     * @param query filter query
+     * @return <code>true</code> if the query is a composite filter, i.e. starts with <code>and(</code>, <code>or(</code>
+     * or <code>not(</code>
+     */
+    public static boolean isComposite(String query) {
+        return query != null && COMPOSITE.matcher(query).lookingAt();
+    }
+
+    /**
+     * @param query entry filter query
+     * @return filter
+     * @throws IllegalArgumentException invalid query
+     */
+    public static Filter<KeePassEntry> parseEntryFilter(String query) {
+        return parseEntryFilter(query, RegexEngine.JAVA);
+    }
+
+    /**
+     * @param query  entry filter query
+     * @param engine engine of <code>regex</code> filters
+     * @return filter
+     * @throws IllegalArgumentException invalid query
+     */
+    public static Filter<KeePassEntry> parseEntryFilter(String query, final RegexEngine engine) {
+        return new FilterParser(query, new LeafFactory<KeePassEntry>() {
+            public Filter<KeePassEntry> create(String type, String data) {
+                if (type == null || "title".equals(type)) {
+                    return new EntryTitleFilter(data);
+                } else if ("regex".equals(type)) {
+                    return new EntryTitleRegexFilter(data, engine);
+                } else if ("uuid".equals(type)) {
+                    return new EntryUUIDFilter(convertToUUID(data));
+                } else if ("attr".equals(type)) {
+                    int index = data.indexOf('=');
+                    if (index <= 0) {
+                        throw new IllegalArgumentException(format("Invalid attribute filter: %s", data));
+                    }
+                    return new EntryAttributeFilter(data.substring(0, index), data.substring(index + 1));
+                }
+                throw new IllegalArgumentException(format("Unknown Entry filter type: %s", type));
+            }
+        }).<KeePassEntry>parse();
+    }
+
+    /**
+     * @param query group filter query
+     * @return filter
+     * @throws IllegalArgumentException invalid query
+     */
+    public static Filter<KeePassGroup> parseGroupFilter(String query) {
+        return parseGroupFilter(query, RegexEngine.JAVA);
+    }
+
+    /**
+     * @param query  group filter query
+     * @param engine engine of <code>regex</code> filters
+     * @return filter
+     * @throws IllegalArgumentException invalid query
+     */
+    public static Filter<KeePassGroup> parseGroupFilter(String query, final RegexEngine engine) {
+        return new FilterParser(query, new LeafFactory<KeePassGroup>() {
+            public Filter<KeePassGroup> create(String type, String data) {
+                if (type == null || "name".equals(type)) {
+                    return new GroupNameFilter(data);
+                } else if ("regex".equals(type)) {
+                    return new GroupNameRegexFilter(data, engine);
+                } else if ("uuid".equals(type)) {
+                    return new GroupUUIDFilter(convertToUUID(data));
+                } else if ("path".equals(type)) {
+                    return new GroupFullPathFilter(data);
+                }
+                throw new IllegalArgumentException(format("Unknown Group filter type: %s", type));
+            }
+        }).<KeePassGroup>parse();
+    }
+
+    private <T> Filter<T> parse() {
+        Filter<T> filter = parseQuery();
+        skipWhitespaces();
+        if (position < query.length()) {
+            throw error("Unexpected character");
+        }
+        return filter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Filter<T> parseQuery() {
+        Matcher matcher = COMPOSITE.matcher(query).region(position, query.length());
+        if (!matcher.lookingAt()) {
+            position = skip(position);
+            Matcher type = TYPE.matcher(query).region(position, query.length());
+            String filterType = null;
+            if (type.lookingAt()) {
+                filterType = type.group(1).toLowerCase(Locale.ENGLISH);
+                position = type.end();
+            }
+            return ((LeafFactory<T>) factory).create(filterType, parseData());
+        }
+        String operator = matcher.group(1).toLowerCase(Locale.ENGLISH);
+        position = matcher.end();
+        List<Filter<T>> filters = new ArrayList<Filter<T>>();
+        while (true) {
+            filters.add(this.<T>parseQuery());
+            skipWhitespaces();
+            if (position >= query.length()) {
+                throw error("Closing parenthesis is missed");
+            }
+            char c = query.charAt(position++);
+            if (c == ')') {
+                break;
+            } else if (c != ',') {
+                throw error("Comma or closing parenthesis is expected");
+            }
+        }
+        if ("and".equals(operator)) {
+            return new AndFilter<T>(filters);
+        } else if ("or".equals(operator)) {
+            return new OrFilter<T>(filters);
+        } else if (filters.size() != 1) {
+            throw error("not() has exactly one filter");
+        }
+        return new NotFilter<T>(filters.get(0));
+    }
+
+    private String parseData() {
+        skipWhitespaces();
+        if (position < query.length() && query.charAt(position) == '\'') {
+            StringBuilder data = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= query.length()) {
+                    throw error("Closing quote is missed");
+                }
+                char c = query.charAt(position++);
+                if (c == '\'') {
+                    if (position < query.length() && query.charAt(position) == '\'') {
+                        position++;
+                    } else {
+                        return data.toString();
+                    }
+                }
+                data.append(c);
+            }
+        }
+        int start = position;
+        int depth = 0;
+        while (position < query.length()) {
+            char c = query.charAt(position);
+            if (depth == 0 && (c == ',' || c == ')')) {
+                break;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            }
+            position++;
+        }
+        String data = query.substring(start, position).trim();
+        if (data.isEmpty()) {
+            throw error("Filter data is missed");
+        }
+        return data;
+    }
+
+    private void skipWhitespaces() {
+        position = skip(position);
+    }
+
+    private int skip(int index) {
+        while (index < query.length() && Character.isWhitespace(query.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(format("%s at position %d: %s", message, position, query));
+    }
+
+    private interface LeafFactory<T> {
+        Filter<T> create(String type, String data);
+    }
+}
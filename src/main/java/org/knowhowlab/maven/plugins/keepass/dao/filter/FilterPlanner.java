@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Orders composite filters by estimated cost, so cheap and selective filters run first and expensive filters
+ * run only for items that passed them. The cost combines evaluation cost and selectivity:
+ * UUID filters match at most one item, exact title, name and path filters match a few items,
+ * attribute filters scan entry properties and regex filters are the most expensive.
+ *
+ * @author dpishchukhin.
+ */
+public final class FilterPlanner {
+    static final int UUID_COST = 1;
+    static final int EXACT_COST = 2;
+    static final int ATTRIBUTE_COST = 4;
+    static final int UNKNOWN_COST = 6;
+    static final int REGEX_COST = 8;
+
+    private FilterPlanner() {
+    }
+
+    /**
+     * Flattens nested composite filters of the same type and orders their filters by cost
+     *
+     * @param filter filter
+     * @return planned filter
+     */
+    public static <T> Filter<T> plan(Filter<T> filter) {
+        if (filter instanceof AndFilter) {
+            return new AndFilter<T>(planAll(((AndFilter<T>) filter).getFilters(), true));
+        } else if (filter instanceof OrFilter) {
+            return new OrFilter<T>(planAll(((OrFilter<T>) filter).getFilters(), false));
+        } else if (filter instanceof NotFilter) {
+            return new NotFilter<T>(plan(((NotFilter<T>) filter).getFilter()));
+        }
+        return filter;
+    }
+
+    /**
+     * @param filter planned filter
+     * @return UUID that every matched item has, or <code>null</code>. Items can be looked up by this UUID
+     */
+    public static UUID findUuid(Filter<?> filter) {
+        if (filter instanceof EntryUUIDFilter) {
+            return ((EntryUUIDFilter) filter).getUuid();
+        } else if (filter instanceof GroupUUIDFilter) {
+            return ((GroupUUIDFilter) filter).getUuid();
+        } else if (filter instanceof AndFilter) {
+            for (Filter<?> child : ((AndFilter<?>) filter).getFilters()) {
+                UUID uuid = findUuid(child);
+                if (uuid != null) {
+                    return uuid;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param filter filter
+     * @return estimated cost
+     */
+    public static int cost(Filter<?> filter) {
+        if (filter instanceof EntryUUIDFilter || filter instanceof GroupUUIDFilter) {
+            return UUID_COST;
+        } else if (filter instanceof EntryTitleFilter || filter instanceof GroupNameFilter
+                || filter instanceof GroupFullPathFilter) {
+            return EXACT_COST;
+        } else if (filter instanceof EntryAttributeFilter) {
+            return ATTRIBUTE_COST;
+        } else if (filter instanceof EntryTitleRegexFilter || filter instanceof GroupNameRegexFilter) {
+            return REGEX_COST;
+        } else if (filter instanceof AndFilter) {
+            return sum(((AndFilter<?>) filter).getFilters());
+        } else if (filter instanceof OrFilter) {
+            return sum(((OrFilter<?>) filter).getFilters());
+        } else if (filter instanceof NotFilter) {
+            return cost(((NotFilter<?>) filter).getFilter());
+        }
+        return UNKNOWN_COST;
+    }
+
+    private static <T> List<Filter<T>> planAll(List<Filter<T>> filters, boolean and) {
+        List<Filter<T>> result = new ArrayList<Filter<T>>();
+        for (Filter<T> filter : filters) {
+            Filter<T> planned = plan(filter);
+            if (and && planned instanceof AndFilter) {
+                result.addAll(((AndFilter<T>) planned).getFilters());
+            } else if (!and && planned instanceof OrFilter) {
+                result.addAll(((OrFilter<T>) planned).getFilters());
+            } else {
+                result.add(planned);
+            }
+        }
+        Collections.sort(result, new Comparator<Filter<T>>() {
+            public int compare(Filter<T> f1, Filter<T> f2) {
+                return Integer.compare(cost(f1), cost(f2));
+            }
+        });
+        return result;
+    }
+
+    private static int sum(List<? extends Filter<?>> filters) {
+        int cost = 0;
+        for (Filter<?> filter : filters) {
+            cost += cost(filter);
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+
+/**
+ * Matches a group by its full path, e.g. <code>/Root/server</code>. Groups with unknown path do not match
+ *
+ * @author dpishchukhin.
+ */
+public class GroupFullPathFilter implements Filter<KeePassGroup> {
+    private String path;
+
+    public GroupFullPathFilter(String path) {
+        this.path = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    public boolean matches(KeePassGroup item) {
+        return path.equals(item.getPath());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("GroupFullPathFilter{");
+        sb.append("path='").append(path).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
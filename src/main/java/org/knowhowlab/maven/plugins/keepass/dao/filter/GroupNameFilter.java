@@ -31,4 +31,12 @@ public class GroupNameFilter implements Filter<KeePassGroup> {
     public boolean matches(KeePassGroup item) {
         return name.equals(item.getName());
     }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("GroupNameFilter{");
+        sb.append("name='").append(name).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
 }
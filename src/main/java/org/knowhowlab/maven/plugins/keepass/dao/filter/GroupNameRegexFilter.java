@@ -18,17 +18,38 @@ package org.knowhowlab.maven.plugins.keepass.dao.filter;
 
 import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
 
+import java.util.function.Predicate;
+
 /**
  * @author dpishchukhin.
  */
 public class GroupNameRegexFilter implements Filter<KeePassGroup> {
     private String regex;
+    private Predicate<String> pattern;
 
     public GroupNameRegexFilter(String regex) {
+        this(regex, RegexEngine.JAVA);
+    }
+
+    /**
+     * @param regex  regular expression
+     * @param engine regex engine. The expression is compiled once
+     * @throws java.util.regex.PatternSyntaxException invalid or unsupported regular expression
+     */
+    public GroupNameRegexFilter(String regex, RegexEngine engine) {
         this.regex = regex;
+        this.pattern = engine.compile(regex);
     }
 
     public boolean matches(KeePassGroup item) {
-        return item.getName() != null && item.getName().matches(regex);
+        return item.getName() != null && pattern.test(item.getName());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("GroupNameRegexFilter{");
+        sb.append("regex='").append(regex).append('\'');
+        sb.append('}');
+        return sb.toString();
     }
 }
@@ -30,7 +30,8 @@ public class GroupPathFilter implements FilterWithIndex<KeePassGroup> {
 
     public boolean matches(KeePassGroup item, int index) {
         String name = item.getName() == null ? "" : item.getName();
-        return path[index].equals(name);
+        // String.split drops trailing empty names, e.g. "/" has no names at all
+        return index < path.length && path[index].equals(name);
     }
 
     public boolean isLastIndex(int index) {
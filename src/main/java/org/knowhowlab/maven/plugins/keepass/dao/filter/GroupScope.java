@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import java.util.UUID;
+
+/**
+ * Defines groups that have to be searched. Subtrees of excluded groups are not visited.
+ *
+ * @author dpishchukhin.
+ */
+public interface GroupScope {
+    /**
+     * All groups are searched
+     */
+    GroupScope ALL = new GroupScope() {
+        public boolean includes(UUID uuid, String path, int depth) {
+            return true;
+        }
+    };
+
+    /**
+     * @param uuid  group UUID
+     * @param path  group path, e.g. <code>/Root/server</code>. <code>null</code> if unknown
+     * @param depth group depth. The database root group has depth 0
+     * @return <code>true</code> if the group and its subtree have to be searched
+     */
+    boolean includes(UUID uuid, String path, int depth);
+}
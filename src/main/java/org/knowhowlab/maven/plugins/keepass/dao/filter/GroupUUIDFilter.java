@@ -30,6 +30,10 @@ public class GroupUUIDFilter implements Filter<KeePassGroup> {
         this.uuid = uuid;
     }
 
+    public UUID getUuid() {
+        return uuid;
+    }
+
     public boolean matches(KeePassGroup item) {
         return uuid.equals(item.getUuid());
     }
@@ -20,6 +20,7 @@ import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static java.lang.String.format;
 
@@ -28,52 +29,64 @@ import static java.lang.String.format;
  */
 public class GroupWalker implements DataWalker<KeePassGroup> {
     private KeePassGroup rootGroup;
+    private GroupScope scope;
+    private int visited;
 
     public GroupWalker(KeePassGroup rootGroup) {
+        this(rootGroup, GroupScope.ALL);
+    }
+
+    public GroupWalker(KeePassGroup rootGroup, GroupScope scope) {
         this.rootGroup = rootGroup;
+        this.scope = scope;
     }
 
-    public KeePassGroup findAny(Filter<KeePassGroup> filter) {
-        KeePassGroup group = findGroup(rootGroup, filter);
-        if (group != null) return group;
-        throw new IllegalArgumentException(format("Invalid filter: %s", filter));
+    /**
+     * @return number of groups visited by this walker
+     */
+    public int getVisited() {
+        return visited;
+    }
+
+    public Optional<KeePassGroup> findFirst(Filter<KeePassGroup> filter) {
+        return Optional.ofNullable(findGroup(rootGroup, filter));
     }
 
     private KeePassGroup findGroup(KeePassGroup searchGroup, Filter<KeePassGroup> filter) {
+        visited++;
         if (filter.matches(searchGroup)) {
             return searchGroup;
         }
-        List<KeePassGroup> groups = searchGroup.getGroups();
+        List<KeePassGroup> groups = searchGroup.getGroups(scope);
         for (KeePassGroup group : groups) {
-            if (filter.matches(group)) {
-                return group;
-            } else {
-                KeePassGroup child = findGroup(group, filter);
-                if (child != null) {
-                    return child;
-                }
+            KeePassGroup child = findGroup(group, filter);
+            if (child != null) {
+                return child;
             }
         }
         return null;
     }
 
-    public List<KeePassGroup> findAll(Filter<KeePassGroup> filter) {
-        List<KeePassGroup> result = findGroups(rootGroup, filter, new ArrayList<KeePassGroup>());
-        if (!result.isEmpty()) return result;
-        throw new IllegalArgumentException(format("Invalid filter: %s", filter));
+    public List<KeePassGroup> findMatches(Filter<KeePassGroup> filter) {
+        return findGroups(rootGroup, filter, new ArrayList<KeePassGroup>());
+    }
+
+    public List<KeePassGroup> findMatches(FilterWithIndex<KeePassGroup> filter) {
+        return findGroups(rootGroup, 0, filter, new ArrayList<KeePassGroup>());
     }
 
     public List<KeePassGroup> findAll(FilterWithIndex<KeePassGroup> filter) {
-        List<KeePassGroup> result = findGroups(rootGroup, 0, filter, new ArrayList<KeePassGroup>());
+        List<KeePassGroup> result = findMatches(filter);
         if (!result.isEmpty()) return result;
         throw new IllegalArgumentException(format("Invalid filter: %s", filter));
     }
 
     private List<KeePassGroup> findGroups(KeePassGroup searchGroup, Filter<KeePassGroup> filter, List<KeePassGroup> list) {
+        visited++;
         if (filter.matches(searchGroup)) {
             list.add(searchGroup);
         }
-        List<KeePassGroup> groups = searchGroup.getGroups();
+        List<KeePassGroup> groups = searchGroup.getGroups(scope);
         for (KeePassGroup group : groups) {
             findGroups(group, filter, list);
         }
@@ -82,12 +95,14 @@ public class GroupWalker implements DataWalker<KeePassGroup> {
 
     private List<KeePassGroup> findGroups(KeePassGroup searchGroup, int index,
                                           FilterWithIndex<KeePassGroup> filter, List<KeePassGroup> list) {
+        visited++;
         if (!filter.matches(searchGroup, index)) {
             return list;
         } else if (filter.isLastIndex(index)) {
             list.add(searchGroup);
+            return list;
         }
-        List<KeePassGroup> groups = searchGroup.getGroups();
+        List<KeePassGroup> groups = searchGroup.getGroups(scope);
         for (KeePassGroup group : groups) {
             findGroups(group, index + 1, filter, list);
         }
@@ -0,0 +1,671 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Regular expression that is matched in time linear to the input length, whatever the pattern is.
+ * <p>
+ * The pattern is compiled to a Thompson NFA, all NFA states are simulated at once, so there is no backtracking.
+ * Matching has the semantics of {@link String#matches(String)}: the whole input has to match.
+ * <p>
+ * Supported syntax is a subset of {@link java.util.regex.Pattern}: literals, <code>.</code>, character classes
+ * with ranges and negation, <code>\d \D \w \W \s \S</code>, character escapes, <code>\Q...\E</code>,
+ * groups (capturing, non-capturing and named), alternation, greedy and lazy quantifiers
+ * <code>* + ? {n} {n,} {n,m}</code>, <code>^</code> at the start and <code>$</code> at the end of the pattern
+ * and <code>(?i)</code>, <code>(?s)</code> flags at the start of the pattern.
+ * <p>
+ * Backreferences, lookaround, atomic groups, possessive quantifiers, boundaries, Unicode classes,
+ * nested classes and other flags are rejected with {@link PatternSyntaxException}.
+ *
+ * @author dpishchukhin.
+ */
+public final class LinearPattern {
+    private static final int MAX_STATES = 10000;
+    private static final int MAX_REPETITION = 1000;
+
+    private static final int CHAR = 0;
+    private static final int SPLIT = 1;
+    private static final int MATCH = 2;
+
+    private final String regex;
+    private final int[] type;
+    private final IntPredicate[] predicate;
+    private final int[][] next;
+    private final int start;
+
+    private LinearPattern(String regex, Compiler compiler, int start) {
+        this.regex = regex;
+        int size = compiler.type.size();
+        this.type = new int[size];
+        this.predicate = new IntPredicate[size];
+        this.next = new int[size][];
+        for (int i = 0; i < size; i++) {
+            type[i] = compiler.type.get(i);
+            predicate[i] = compiler.predicate.get(i);
+            next[i] = compiler.next.get(i);
+        }
+        this.start = start;
+    }
+
+    /**
+     * @param regex regular expression
+     * @return compiled pattern
+     * @throws PatternSyntaxException invalid pattern or pattern with unsupported constructs
+     */
+    public static LinearPattern compile(String regex) {
+        Parser parser = new Parser(regex);
+        Node root = parser.parse();
+        Compiler compiler = new Compiler(regex);
+        int match = compiler.state(MATCH, null);
+        return new LinearPattern(regex, compiler, compiler.compile(root, match));
+    }
+
+    /**
+     * @param input input
+     * @return <code>true</code> if the whole input matches the pattern
+     */
+    public boolean matches(CharSequence input) {
+        int size = type.length;
+        int[] current = new int[size];
+        int[] following = new int[size];
+        int[] seen = new int[size];
+        int[] stack = new int[size];
+        int generation = 1;
+        int count = add(current, 0, start, seen, generation, stack);
+        for (int i = 0; i < input.length() && count > 0; ) {
+            int codePoint = Character.codePointAt(input, i);
+            i += Character.charCount(codePoint);
+            generation++;
+            int followingCount = 0;
+            for (int j = 0; j < count; j++) {
+                int state = current[j];
+                if (type[state] == CHAR && predicate[state].test(codePoint)) {
+                    followingCount = add(following, followingCount, next[state][0], seen, generation, stack);
+                }
+            }
+            int[] swap = current;
+            current = following;
+            following = swap;
+            count = followingCount;
+        }
+        for (int j = 0; j < count; j++) {
+            if (type[current[j]] == MATCH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the state and all states reachable by empty transitions
+     */
+    private int add(int[] list, int count, int state, int[] seen, int generation, int[] stack) {
+        int top = 0;
+        stack[top++] = state;
+        while (top > 0) {
+            int current = stack[--top];
+            if (seen[current] == generation) {
+                continue;
+            }
+            seen[current] = generation;
+            if (type[current] == SPLIT) {
+                int[] targets = next[current];
+                for (int i = targets.length - 1; i >= 0; i--) {
+                    if (seen[targets[i]] != generation) {
+                        stack[top++] = targets[i];
+                    }
+                }
+            } else {
+                list[count++] = current;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of NFA states
+     */
+    public int getStateCount() {
+        return type.length;
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+
+    private abstract static class Node {
+    }
+
+    private static final class Leaf extends Node {
+        private final IntPredicate predicate;
+
+        private Leaf(IntPredicate predicate) {
+            this.predicate = predicate;
+        }
+    }
+
+    private static final class Concat extends Node {
+        private final List<Node> nodes;
+
+        private Concat(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+    }
+
+    private static final class Alternation extends Node {
+        private final List<Node> nodes;
+
+        private Alternation(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+    }
+
+    private static final class Repeat extends Node {
+        private final Node node;
+        private final int min;
+        /**
+         * -1 if unbounded
+         */
+        private final int max;
+
+        private Repeat(Node node, int min, int max) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * Thompson construction. States are built backwards: every fragment is compiled with its continuation
+     */
+    private static final class Compiler {
+        private final String regex;
+        private final List<Integer> type = new ArrayList<Integer>();
+        private final List<IntPredicate> predicate = new ArrayList<IntPredicate>();
+        private final List<int[]> next = new ArrayList<int[]>();
+
+        private Compiler(String regex) {
+            this.regex = regex;
+        }
+
+        private int state(int stateType, IntPredicate statePredicate, int... targets) {
+            if (type.size() >= MAX_STATES) {
+                throw new PatternSyntaxException("Pattern is too large for the linear regex engine", regex, -1);
+            }
+            type.add(stateType);
+            predicate.add(statePredicate);
+            next.add(targets);
+            return type.size() - 1;
+        }
+
+        private int compile(Node node, int continuation) {
+            if (node instanceof Leaf) {
+                return state(CHAR, ((Leaf) node).predicate, continuation);
+            } else if (node instanceof Concat) {
+                List<Node> nodes = ((Concat) node).nodes;
+                int result = continuation;
+                for (int i = nodes.size() - 1; i >= 0; i--) {
+                    result = compile(nodes.get(i), result);
+                }
+                return result;
+            } else if (node instanceof Alternation) {
+                List<Node> nodes = ((Alternation) node).nodes;
+                int[] targets = new int[nodes.size()];
+                for (int i = 0; i < targets.length; i++) {
+                    targets[i] = compile(nodes.get(i), continuation);
+                }
+                return state(SPLIT, null, targets);
+            }
+            Repeat repeat = (Repeat) node;
+            int result = continuation;
+            if (repeat.max < 0) {
+                int loop = state(SPLIT, null);
+                next.set(loop, new int[]{compile(repeat.node, loop), continuation});
+                result = loop;
+            } else {
+                for (int i = repeat.min; i < repeat.max; i++) {
+                    result = state(SPLIT, null, compile(repeat.node, result), result);
+                }
+            }
+            for (int i = 0; i < repeat.min; i++) {
+                result = compile(repeat.node, result);
+            }
+            return result;
+        }
+    }
+
+    private static final class Parser {
+        private final String regex;
+        private int position;
+        private int depth;
+        private int bodyStart;
+        private boolean caseInsensitive;
+        private boolean dotAll;
+
+        private Parser(String regex) {
+            this.regex = regex;
+        }
+
+        private Node parse() {
+            parseFlags();
+            bodyStart = position;
+            Node node = parseAlternation();
+            if (position < regex.length()) {
+                // only an unbalanced closing parenthesis stops the top level alternation
+                throw error("Unmatched closing ')'");
+            }
+            return node;
+        }
+
+        private void parseFlags() {
+            if (!regex.startsWith("(?")) {
+                return;
+            }
+            int end = regex.indexOf(')');
+            String flags = end < 0 ? "" : regex.substring(2, end);
+            if (flags.isEmpty() || !flags.matches("[is]+")) {
+                return;
+            }
+            caseInsensitive = flags.indexOf('i') >= 0;
+            dotAll = flags.indexOf('s') >= 0;
+            position = end + 1;
+        }
+
+        private Node parseAlternation() {
+            List<Node> alternatives = new ArrayList<Node>();
+            alternatives.add(parseConcat());
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                alternatives.add(parseConcat());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+        }
+
+        private Node parseConcat() {
+            List<Node> nodes = new ArrayList<Node>();
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+                nodes.add(parseRepeat());
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new Concat(nodes);
+        }
+
+        private Node parseRepeat() {
+            Node atom = parseAtom();
+            if (position >= regex.length()) {
+                return atom;
+            }
+            char c = regex.charAt(position);
+            int min;
+            int max;
+            if (c == '*') {
+                min = 0;
+                max = -1;
+                position++;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+                position++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                position++;
+            } else if (c == '{') {
+                int[] range = parseRange();
+                min = range[0];
+                max = range[1];
+            } else {
+                return atom;
+            }
+            if (position < regex.length()) {
+                char modifier = regex.charAt(position);
+                if (modifier == '?') {
+                    // lazy and greedy quantifiers are the same for the whole input match
+                    position++;
+                } else if (modifier == '+') {
+                    throw unsupported("possessive quantifier");
+                }
+            }
+            if (position < regex.length() && "*+?{".indexOf(regex.charAt(position)) >= 0) {
+                throw error(String.format("Dangling meta character '%s'", regex.charAt(position)));
+            }
+            return new Repeat(atom, min, max);
+        }
+
+        private int[] parseRange() {
+            int begin = position;
+            position++;
+            int min = parseNumber();
+            int max = min;
+            if (min < 0) {
+                throw error("Illegal repetition");
+            }
+            if (position < regex.length() && regex.charAt(position) == ',') {
+                position++;
+                max = parseNumber();
+            }
+            if (position >= regex.length() || regex.charAt(position) != '}') {
+                position = begin;
+                throw error("Illegal repetition");
+            }
+            position++;
+            if (max >= 0 && max < min) {
+                throw error("Illegal repetition range");
+            }
+            if (min > MAX_REPETITION || max > MAX_REPETITION) {
+                throw unsupported(String.format("repetition over %d", MAX_REPETITION));
+            }
+            return new int[]{min, max};
+        }
+
+        /**
+         * @return number or -1 if there are no digits
+         */
+        private int parseNumber() {
+            int begin = position;
+            while (position < regex.length() && Character.isDigit(regex.charAt(position)) && position - begin < 9) {
+                position++;
+            }
+            return begin == position ? -1 : Integer.parseInt(regex.substring(begin, position));
+        }
+
+        private Node parseAtom() {
+            int codePoint = regex.codePointAt(position);
+            switch (codePoint) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    position++;
+                    return leaf(parseClass());
+                case '.':
+                    position++;
+                    return new Leaf(dotAll ? c -> true : c -> c != '\n' && c != '\r' && c != 0x85 && c != 0x2028 && c != 0x2029);
+                case '\\':
+                    return parseEscape();
+                case '^':
+                    if (position != bodyStart) {
+                        throw unsupported("'^' that is not at the start of the pattern");
+                    }
+                    position++;
+                    return new Concat(new ArrayList<Node>());
+                case '$':
+                    if (position != regex.length() - 1 || depth > 0) {
+                        throw unsupported("'$' that is not at the end of the pattern");
+                    }
+                    position++;
+                    return new Concat(new ArrayList<Node>());
+                case '*':
+                case '+':
+                case '?':
+                    throw error(String.format("Dangling meta character '%s'", (char) codePoint));
+                case '{':
+                    throw error("Illegal repetition");
+                default:
+                    position += Character.charCount(codePoint);
+                    return literal(codePoint);
+            }
+        }
+
+        private Node parseGroup() {
+            position++;
+            if (regex.startsWith("?:", position)) {
+                position += 2;
+            } else if (regex.startsWith("?<", position) && position + 2 < regex.length()
+                    && Character.isLetter(regex.charAt(position + 2))) {
+                int end = regex.indexOf('>', position);
+                if (end < 0) {
+                    throw error("Named capturing group is missing trailing '>'");
+                }
+                position = end + 1;
+            } else if (regex.startsWith("?", position)) {
+                throw unsupported("lookaround, atomic group or inline flags");
+            }
+            depth++;
+            Node node = parseAlternation();
+            depth--;
+            if (position >= regex.length() || regex.charAt(position) != ')') {
+                throw error("Unclosed group");
+            }
+            position++;
+            return node;
+        }
+
+        private IntPredicate parseClass() {
+            boolean negated = false;
+            if (position < regex.length() && regex.charAt(position) == '^') {
+                negated = true;
+                position++;
+            }
+            List<IntPredicate> items = new ArrayList<IntPredicate>();
+            boolean first = true;
+            while (true) {
+                if (position >= regex.length()) {
+                    throw error("Unclosed character class");
+                }
+                int codePoint = regex.codePointAt(position);
+                if (codePoint == ']' && !first) {
+                    position++;
+                    break;
+                }
+                first = false;
+                if (codePoint == '[') {
+                    throw unsupported("nested character class");
+                } else if (regex.startsWith("&&", position)) {
+                    throw unsupported("character class intersection");
+                }
+                int low;
+                if (codePoint == '\\') {
+                    IntPredicate escaped = classEscape();
+                    if (escaped != null) {
+                        items.add(escaped);
+                        continue;
+                    }
+                    low = escapedCharacter();
+                } else {
+                    position += Character.charCount(codePoint);
+                    low = codePoint;
+                }
+                if (position + 1 < regex.length() && regex.charAt(position) == '-' && regex.charAt(position + 1) != ']') {
+                    position++;
+                    int high;
+                    if (regex.charAt(position) == '\\') {
+                        if (classEscape() != null) {
+                            throw error("Illegal character range");
+                        }
+                        high = escapedCharacter();
+                    } else if (regex.charAt(position) == '[') {
+                        throw unsupported("nested character class");
+                    } else {
+                        high = regex.codePointAt(position);
+                        position += Character.charCount(high);
+                    }
+                    if (high < low) {
+                        throw error("Illegal character range");
+                    }
+                    final int from = low;
+                    final int to = high;
+                    items.add(c -> c >= from && c <= to);
+                } else {
+                    final int single = low;
+                    items.add(c -> c == single);
+                }
+            }
+            IntPredicate[] predicates = items.toArray(new IntPredicate[0]);
+            IntPredicate any = c -> {
+                for (IntPredicate item : predicates) {
+                    if (item.test(c)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+            IntPredicate cased = caseInsensitive ? ignoreCase(any) : any;
+            return negated ? cased.negate() : cased;
+        }
+
+        /**
+         * @return predicate of a class escape (e.g. <code>\d</code>) or <code>null</code> if the escape is a character.
+         * Position is moved only for class escapes
+         */
+        private IntPredicate classEscape() {
+            if (position + 1 >= regex.length()) {
+                throw error("Unexpected internal error");
+            }
+            IntPredicate predicate;
+            switch (regex.charAt(position + 1)) {
+                case 'd':
+                    predicate = LinearPattern::isDigit;
+                    break;
+                case 'D':
+                    predicate = c -> !isDigit(c);
+                    break;
+                case 'w':
+                    predicate = LinearPattern::isWord;
+                    break;
+                case 'W':
+                    predicate = c -> !isWord(c);
+                    break;
+                case 's':
+                    predicate = LinearPattern::isSpace;
+                    break;
+                case 'S':
+                    predicate = c -> !isSpace(c);
+                    break;
+                default:
+                    return null;
+            }
+            position += 2;
+            return predicate;
+        }
+
+        /**
+         * @return code point of a character escape, e.g. <code>\t</code> or <code>\.</code>
+         */
+        private int escapedCharacter() {
+            int begin = position;
+            position++;
+            if (position >= regex.length()) {
+                throw error("Unexpected internal error");
+            }
+            char c = regex.charAt(position++);
+            switch (c) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'a':
+                    return 0x07;
+                case 'e':
+                    return 0x1B;
+                case 'x':
+                    return hex(2);
+                case 'u':
+                    return hex(4);
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        position = begin;
+                        throw unsupported(String.format("escape \\%s", c));
+                    }
+                    position = begin + 1;
+                    int codePoint = regex.codePointAt(position);
+                    position += Character.charCount(codePoint);
+                    return codePoint;
+            }
+        }
+
+        private int hex(int digits) {
+            if (position + digits > regex.length()) {
+                throw error("Illegal hexadecimal escape sequence");
+            }
+            try {
+                int value = Integer.parseInt(regex.substring(position, position + digits), 16);
+                position += digits;
+                return value;
+            } catch (NumberFormatException e) {
+                throw error("Illegal hexadecimal escape sequence");
+            }
+        }
+
+        private Node parseEscape() {
+            IntPredicate escaped = classEscape();
+            if (escaped != null) {
+                return leaf(escaped);
+            }
+            if (regex.startsWith("\\Q", position)) {
+                int end = regex.indexOf("\\E", position + 2);
+                String quoted = regex.substring(position + 2, end < 0 ? regex.length() : end);
+                position = end < 0 ? regex.length() : end + 2;
+                List<Node> nodes = new ArrayList<Node>();
+                quoted.codePoints().forEach(c -> nodes.add(literal(c)));
+                return new Concat(nodes);
+            }
+            return literal(escapedCharacter());
+        }
+
+        private Node literal(int codePoint) {
+            return leaf(c -> c == codePoint);
+        }
+
+        private Node leaf(IntPredicate predicate) {
+            return new Leaf(caseInsensitive ? ignoreCase(predicate) : predicate);
+        }
+
+        private PatternSyntaxException unsupported(String construct) {
+            return new PatternSyntaxException(String.format("Unsupported by the linear regex engine: %s", construct),
+                    regex, position);
+        }
+
+        private PatternSyntaxException error(String message) {
+            return new PatternSyntaxException(message, regex, position);
+        }
+    }
+
+    /**
+     * Case insensitive matching of US-ASCII letters, as with {@link java.util.regex.Pattern#CASE_INSENSITIVE}
+     */
+    private static IntPredicate ignoreCase(IntPredicate predicate) {
+        return c -> predicate.test(c)
+                || (c >= 'a' && c <= 'z' && predicate.test(c - 32))
+                || (c >= 'A' && c <= 'Z' && predicate.test(c + 32));
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWord(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+/**
+ * Matches items that do not match the filter
+ *
+ * @author dpishchukhin.
+ */
+public class NotFilter<T> implements Filter<T> {
+    private Filter<T> filter;
+
+    public NotFilter(Filter<T> filter) {
+        this.filter = filter;
+    }
+
+    public Filter<T> getFilter() {
+        return filter;
+    }
+
+    public boolean matches(T item) {
+        return !filter.matches(item);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("NotFilter{");
+        sb.append("filter=").append(filter);
+        sb.append('}');
+        return sb.toString();
+    }
+}
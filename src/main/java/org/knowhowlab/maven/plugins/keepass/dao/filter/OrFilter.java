@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Matches items that match any filter. Filters are evaluated in the given order until the first match
+ *
+ * @author dpishchukhin.
+ */
+public class OrFilter<T> implements Filter<T> {
+    private List<Filter<T>> filters;
+
+    public OrFilter(List<Filter<T>> filters) {
+        this.filters = new ArrayList<Filter<T>>(filters);
+    }
+
+    public List<Filter<T>> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    public boolean matches(T item) {
+        for (Filter<T> filter : filters) {
+            if (filter.matches(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("OrFilter{");
+        sb.append("filters=").append(filters);
+        sb.append('}');
+        return sb.toString();
+    }
+}
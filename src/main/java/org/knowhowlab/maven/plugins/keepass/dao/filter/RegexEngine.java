@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Engine that matches <code>regex</code> filters
+ *
+ * @author dpishchukhin.
+ */
+public enum RegexEngine {
+    /**
+     * {@link java.util.regex.Pattern}: full syntax, backtracking matcher
+     */
+    JAVA {
+        public Predicate<String> compile(String regex) {
+            Pattern pattern = Pattern.compile(regex);
+            return value -> pattern.matcher(value).matches();
+        }
+    },
+    /**
+     * {@link LinearPattern}: subset of the syntax, matching time is linear to the value length
+     */
+    LINEAR {
+        public Predicate<String> compile(String regex) {
+            LinearPattern pattern = LinearPattern.compile(regex);
+            return pattern::matches;
+        }
+    };
+
+    /**
+     * @param regex regular expression
+     * @return predicate that is <code>true</code> if the whole value matches the regular expression
+     * @throws java.util.regex.PatternSyntaxException invalid or unsupported regular expression
+     */
+    public abstract Predicate<String> compile(String regex);
+}
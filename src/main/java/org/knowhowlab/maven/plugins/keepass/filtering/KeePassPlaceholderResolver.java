@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.filtering;
+
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassLookup;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassProperty;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassReferenceResolver;
+import org.knowhowlab.maven.plugins.keepass.jmx.KeePassStatistics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * Resolves <code>${keepass:path/to/entry#field}</code> expressions.
+ * <p>
+ * The path is a group path from the root group followed by an entry title, e.g.
+ * <code>Root/server/test/Deployment</code>. An entry without a group path is searched in the whole file.
+ * The field is one of <code>username</code>, <code>password</code>, <code>url</code>, <code>title</code>,
+ * <code>notes</code> or a custom attribute name. By default the password is resolved.
+ * <p>
+ * KeePass field references and placeholders in values are resolved only if it is enabled, see {@link KeePassReferenceResolver}.
+ * <p>
+ * The KeePass file is opened on the first resolved expression only. Every distinct expression
+ * is resolved once. Instances are not thread safe.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassPlaceholderResolver implements Closeable {
+    public static final String PREFIX = "${keepass:";
+    public static final String SUFFIX = "}";
+
+    private static final String DEFAULT_FIELD = "password";
+
+    private final Supplier<KeePassLookup> opener;
+    private final boolean ignoreDuplicates;
+    private final boolean resolveReferences;
+    private final Map<String, String> values = new HashMap<String, String>();
+    private KeePassLookup lookup;
+    private KeePassReferenceResolver references;
+
+    /**
+     * Values are returned as they are stored, references are not resolved
+     *
+     * @param opener           opens the KeePass file. Called once on the first resolved expression
+     * @param ignoreDuplicates selects the first group or entry in case of duplication
+     */
+    public KeePassPlaceholderResolver(Supplier<KeePassLookup> opener, boolean ignoreDuplicates) {
+        this(opener, ignoreDuplicates, false);
+    }
+
+    /**
+     * @param opener            opens the KeePass file. Called once on the first resolved expression
+     * @param ignoreDuplicates  selects the first group or entry in case of duplication
+     * @param resolveReferences resolves KeePass field references and placeholders in values
+     */
+    public KeePassPlaceholderResolver(Supplier<KeePassLookup> opener, boolean ignoreDuplicates, boolean resolveReferences) {
+        this.opener = opener;
+        this.ignoreDuplicates = ignoreDuplicates;
+        this.resolveReferences = resolveReferences;
+    }
+
+    /**
+     * Replaces all <code>${keepass:...}</code> expressions in the text
+     *
+     * @param text text with expressions
+     * @return text with resolved values
+     * @throws IllegalArgumentException unknown group, entry or field
+     */
+    public String interpolate(String text) {
+        int start = text.indexOf(PREFIX);
+        if (start < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        int position = 0;
+        while (start >= 0) {
+            int end = text.indexOf(SUFFIX, start + PREFIX.length());
+            if (end < 0) {
+                break;
+            }
+            result.append(text, position, start);
+            result.append(resolve(text.substring(start + PREFIX.length(), end)));
+            position = end + SUFFIX.length();
+            start = text.indexOf(PREFIX, position);
+        }
+        result.append(text, position, text.length());
+        return result.toString();
+    }
+
+    /**
+     * Resolves a single expression without <code>${keepass:</code> prefix and <code>}</code> suffix
+     *
+     * @param expression expression <code>path/to/entry#field</code>
+     * @return value
+     * @throws IllegalArgumentException unknown group, entry or field
+     */
+    public String resolve(String expression) {
+        String value = values.get(expression);
+        if (value == null) {
+            value = lookup(expression);
+            values.put(expression, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return <code>true</code> if the KeePass file has been opened
+     */
+    public boolean isOpen() {
+        return lookup != null;
+    }
+
+    public void close() throws IOException {
+        if (lookup instanceof Closeable) {
+            ((Closeable) lookup).close();
+        }
+        lookup = null;
+        references = null;
+    }
+
+    private String lookup(String expression) {
+        String path = expression;
+        String field = DEFAULT_FIELD;
+        int fieldIndex = expression.lastIndexOf('#');
+        if (fieldIndex >= 0) {
+            path = expression.substring(0, fieldIndex);
+            field = expression.substring(fieldIndex + 1);
+        }
+        path = trimSlashes(path);
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException(format("Entry is missed in expression: %s", expression));
+        }
+
+        if (lookup == null) {
+            lookup = opener.get();
+            references = resolveReferences ? new KeePassReferenceResolver(lookup) : null;
+        }
+
+        KeePassStatistics statistics = KeePassStatistics.getInstance();
+        int titleIndex = path.lastIndexOf('/');
+        KeePassGroup group;
+        if (titleIndex < 0) {
+            statistics.recordLookup("group:root");
+            group = lookup.getRootGroup();
+        } else {
+            String groupPath = path.substring(0, titleIndex);
+            statistics.recordLookup("group:path");
+            group = select(lookup.getGroupsByPath("/" + groupPath), "Group", groupPath);
+        }
+        String title = path.substring(titleIndex + 1);
+        statistics.recordLookup("entry:title");
+        KeePassEntry entry = select(lookup.getEntriesByTitle(group, title), "Entry", title);
+
+        String value = references == null ? getField(entry, field) : getField(references, entry, field);
+        if (value == null) {
+            throw new IllegalArgumentException(format("Unknown Attribute name: %s in expression: %s", field, expression));
+        }
+        return value;
+    }
+
+    private <T> T select(List<T> items, String type, String name) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException(format("%s: %s is unknown", type, name));
+        } else if (items.size() > 1 && !ignoreDuplicates) {
+            throw new IllegalArgumentException(format("%s duplication: %s", type, name));
+        }
+        return items.get(0);
+    }
+
+    private static String getField(KeePassEntry entry, String field) {
+        switch (field) {
+            case "username":
+                return entry.getUsername();
+            case "password":
+                return entry.getPassword();
+            case "url":
+                return entry.getUrl();
+            case "title":
+                return entry.getTitle();
+            case "notes":
+                field = "Notes";
+                break;
+            default:
+                break;
+        }
+        for (KeePassProperty property : entry.getProperties()) {
+            if (field.equals(property.getKey())) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String getField(KeePassReferenceResolver references, KeePassEntry entry, String field) {
+        switch (field) {
+            case "username":
+                return references.getUsername(entry);
+            case "password":
+                return references.getPassword(entry);
+            case "url":
+                return references.getUrl(entry);
+            case "title":
+                return references.getValue(entry, "Title");
+            case "notes":
+                return references.getValue(entry, "Notes");
+            default:
+                return references.getValue(entry, field);
+        }
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+}
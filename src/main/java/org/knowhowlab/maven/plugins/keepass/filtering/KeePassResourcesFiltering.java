@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.filtering;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Resource;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.filtering.MavenFilteringException;
+import org.apache.maven.shared.filtering.MavenResourcesExecution;
+import org.apache.maven.shared.filtering.MavenResourcesFiltering;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentClient;
+import org.knowhowlab.maven.plugins.keepass.agent.KeePassAgentProtocol;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassLookup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static java.lang.String.format;
+
+/**
+ * Resource filtering component that resolves <code>${keepass:path/to/entry#field}</code> expressions
+ * in filtered resources. It is enabled in <code>maven-resources-plugin</code> with
+ * <code>mavenFilteringHints</code> value <code>keepass</code> and runs after the default filtering.
+ * <p>
+ * KeePass file and credentials are taken from <code>keepass.*</code> project properties or user properties.
+ * The file is opened only if a filtered resource has an expression.
+ *
+ * @author dpishchukhin.
+ * @see KeePassPlaceholderResolver
+ */
+@Named("keepass")
+@Singleton
+public class KeePassResourcesFiltering implements MavenResourcesFiltering {
+    private static final List<String> DEFAULT_NON_FILTERED_FILE_EXTENSIONS =
+            Arrays.asList("jpg", "jpeg", "gif", "bmp", "png");
+
+    private final Logger logger = LoggerFactory.getLogger(KeePassResourcesFiltering.class);
+
+    public List<String> getDefaultNonFilteredFileExtensions() {
+        return DEFAULT_NON_FILTERED_FILE_EXTENSIONS;
+    }
+
+    public boolean filteredFileExtension(String fileName, List<String> userNonFilteredFileExtensions) {
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        if (userNonFilteredFileExtensions != null && userNonFilteredFileExtensions.contains(extension)) {
+            return false;
+        }
+        return !DEFAULT_NON_FILTERED_FILE_EXTENSIONS.contains(extension);
+    }
+
+    public void filterResources(MavenResourcesExecution execution) throws MavenFilteringException {
+        if (execution.getResources() == null || execution.getOutputDirectory() == null) {
+            return;
+        }
+        Properties properties = getProperties(execution);
+        KeePassPlaceholderResolver resolver = new KeePassPlaceholderResolver(
+                () -> open(properties, execution.getMavenProject()),
+                Boolean.parseBoolean(properties.getProperty("keepass.ignore-duplicates")),
+                Boolean.parseBoolean(properties.getProperty("keepass.resolve-references")));
+        try {
+            for (Resource resource : execution.getResources()) {
+                if (resource.isFiltering()) {
+                    filterResource(execution, resource, resolver);
+                }
+            }
+        } finally {
+            try {
+                resolver.close();
+            } catch (IOException e) {
+                logger.debug(format("Unable to close KeePass lookup: %s", e.getMessage()));
+            }
+        }
+    }
+
+    private void filterResource(MavenResourcesExecution execution, Resource resource,
+                                KeePassPlaceholderResolver resolver) throws MavenFilteringException {
+        File directory = new File(resource.getDirectory());
+        if (!directory.isAbsolute()) {
+            directory = new File(execution.getResourcesBaseDirectory() != null
+                    ? execution.getResourcesBaseDirectory()
+                    : execution.getMavenProject().getBasedir(), resource.getDirectory());
+        }
+        if (!directory.isDirectory()) {
+            return;
+        }
+
+        File outputDirectory = execution.getOutputDirectory();
+        if (resource.getTargetPath() != null) {
+            outputDirectory = new File(outputDirectory, resource.getTargetPath());
+        }
+
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(directory);
+        if (resource.getIncludes() != null && !resource.getIncludes().isEmpty()) {
+            scanner.setIncludes(resource.getIncludes().toArray(new String[0]));
+        } else {
+            scanner.setIncludes(new String[]{"**/**"});
+        }
+        if (resource.getExcludes() != null && !resource.getExcludes().isEmpty()) {
+            scanner.setExcludes(resource.getExcludes().toArray(new String[0]));
+        }
+        if (execution.isAddDefaultExcludes()) {
+            scanner.addDefaultExcludes();
+        }
+        scanner.scan();
+
+        for (String name : scanner.getIncludedFiles()) {
+            if (!filteredFileExtension(name, execution.getNonFilteredFileExtensions())) {
+                continue;
+            }
+            File target = execution.isFlatten()
+                    ? new File(outputDirectory, new File(name).getName())
+                    : new File(outputDirectory, name);
+            if (target.isFile()) {
+                filterFile(target.toPath(), getEncoding(execution, name), resolver);
+            }
+        }
+    }
+
+    private void filterFile(Path file, Charset encoding, KeePassPlaceholderResolver resolver)
+            throws MavenFilteringException {
+        try {
+            String text = new String(Files.readAllBytes(file), encoding);
+            if (!text.contains(KeePassPlaceholderResolver.PREFIX)) {
+                return;
+            }
+            Files.write(file, resolver.interpolate(text).getBytes(encoding));
+            logger.debug(format("KeePass expressions are resolved in: %s", file));
+        } catch (IllegalArgumentException e) {
+            throw new MavenFilteringException(format("Unable to resolve KeePass expression in %s: %s",
+                    file, e.getMessage()), e);
+        } catch (IOException e) {
+            throw new MavenFilteringException(format("Unable to filter file: %s", file), e);
+        }
+    }
+
+    private static Charset getEncoding(MavenResourcesExecution execution, String name) {
+        String encoding = execution.getEncoding();
+        if (name.endsWith(".properties") && execution.getPropertiesEncoding() != null) {
+            encoding = execution.getPropertiesEncoding();
+        }
+        return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    }
+
+    /**
+     * Project properties overridden by user properties
+     */
+    private static Properties getProperties(MavenResourcesExecution execution) {
+        Properties properties = new Properties();
+        MavenProject project = execution.getMavenProject();
+        if (project != null) {
+            properties.putAll(project.getProperties());
+        }
+        MavenSession session = execution.getMavenSession();
+        if (session != null) {
+            properties.putAll(session.getUserProperties());
+        }
+        if (execution.getAdditionalProperties() != null) {
+            properties.putAll(execution.getAdditionalProperties());
+        }
+        return properties;
+    }
+
+    private KeePassLookup open(Properties properties, MavenProject project) {
+        String fileName = properties.getProperty("keepass.file");
+        if (fileName == null) {
+            throw new IllegalArgumentException("KeePass file is not configured. Set keepass.file property");
+        }
+        File file = resolveFile(project, fileName);
+        String password = properties.getProperty("keepass.password");
+        String keyFileName = properties.getProperty("keepass.keyfile");
+        File keyFile = keyFileName == null ? null : resolveFile(project, keyFileName);
+        if (password == null && keyFile == null) {
+            throw new IllegalArgumentException("Both credentials Password or/and Key file are missed");
+        }
+
+        if (!"false".equals(properties.getProperty("keepass.agent"))) {
+            String socketName = properties.getProperty("keepass.agent.socket");
+            Path socket = socketName == null
+                    ? KeePassAgentProtocol.defaultSocket(file)
+                    : resolveFile(project, socketName).toPath();
+            if (Files.exists(socket)) {
+                try {
+                    KeePassAgentClient agent = KeePassAgentClient.connect(socket, file, KeePassDAO.compositeKey(password, keyFile));
+                    logger.info(format("KeePass agent is used: %s", socket));
+                    return agent;
+                } catch (KeePassAgentClient.RejectedCredentialsException e) {
+                    // the file is opened with these credentials, so they are rejected the same way as without agent
+                    logger.warn(e.getMessage());
+                } catch (IOException | IllegalArgumentException e) {
+                    logger.warn(format("KeePass agent is not available: %s", e.getMessage()));
+                }
+            }
+        }
+
+        KeePassDAO dao = new KeePassDAO(file);
+        if (keyFile == null) {
+            dao.open(password);
+        } else if (password == null) {
+            dao.open(keyFile);
+        } else {
+            dao.open(password, keyFile);
+        }
+        logger.info(format("KeePass file is open: %s", file.getAbsolutePath()));
+        return dao;
+    }
+
+    private static File resolveFile(MavenProject project, String name) {
+        File file = new File(name);
+        if (!file.isAbsolute() && project != null && project.getBasedir() != null) {
+            file = new File(project.getBasedir(), name);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Master key of a KeePass file is derived from the credentials. Nested in {@link KeePassOpenEvent}.
+ *
+ * @author dpishchukhin.
+ */
+@Name("org.knowhowlab.keepass.KeyDerivation")
+@Label("KeePass Key Derivation")
+@Category({"Maven", "KeePass"})
+@Description("Master key of a KeePass file is derived from the credentials")
+public class KeePassKeyDerivationEvent extends Event {
+    @Label("Transform Rounds")
+    public long transformRounds;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * KeePass file is opened: master key derivation, payload decryption and parsing.
+ * Encloses a {@link KeePassKeyDerivationEvent}, a {@link KeePassDecryptionEvent} and a {@link KeePassParseEvent}
+ * if the credentials are accepted.
+ *
+ * @author dpishchukhin.
+ */
+@Name("org.knowhowlab.keepass.Open")
+@Label("KeePass Open")
+@Category({"Maven", "KeePass"})
+@Description("Key derivation, payload decryption and parsing of a KeePass file")
+public class KeePassOpenEvent extends Event {
+    @Label("Database Size")
+    @DataAmount
+    public long databaseSize;
+
+    @Label("Credentials")
+    @Description("Credential types: password, key file or both")
+    public String credentials;
+
+    @Label("Key Derivation Function")
+    public String kdf;
+
+    @Label("Transform Rounds")
+    @Description("AES-KDF rounds or Argon2 iterations")
+    public long transformRounds;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Record is resolved. Filter values are not recorded, only filter types and number of matches.
+ *
+ * @author dpishchukhin.
+ */
+@Name("org.knowhowlab.keepass.Record")
+@Label("KeePass Record")
+@Category({"Maven", "KeePass"})
+@Description("Group and entry of a record are resolved")
+public class KeePassRecordEvent extends Event {
+    @Label("Group Filter Type")
+    public String groupFilterType;
+
+    @Label("Group Matches")
+    public int groupMatches;
+
+    @Label("Entry Filter Type")
+    public String entryFilterType;
+
+    @Label("Entry Matches")
+    public int entryMatches;
+
+    @Label("Attributes")
+    public int attributes;
+
+    @Label("Database Size")
+    @DataAmount
+    public long databaseSize;
+
+    @Label("Agent")
+    @Description("Record is resolved by the agent")
+    public boolean agent;
+
+    @Label("Success")
+    public boolean success;
+}
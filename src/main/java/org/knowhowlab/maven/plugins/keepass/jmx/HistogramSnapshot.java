@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.jmx;
+
+import java.util.Arrays;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * Durations recorded by a histogram. Percentiles are upper bounds of power-of-two buckets
+ *
+ * @author dpishchukhin.
+ */
+public class HistogramSnapshot {
+    private final long count;
+    private final double meanMillis;
+    private final double maxMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final long[] buckets;
+
+    @ConstructorParameters({"count", "meanMillis", "maxMillis", "p50Millis", "p90Millis", "p99Millis", "buckets"})
+    public HistogramSnapshot(long count, double meanMillis, double maxMillis, double p50Millis, double p90Millis,
+                             double p99Millis, long[] buckets) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.maxMillis = maxMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.buckets = buckets.clone();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    /**
+     * @return counts of durations: bucket <code>i</code> counts durations below <code>2^i</code> microseconds
+     */
+    public long[] getBuckets() {
+        return buckets.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{" +
+                "count=" + count +
+                ", meanMillis=" + meanMillis +
+                ", maxMillis=" + maxMillis +
+                ", p50Millis=" + p50Millis +
+                ", p90Millis=" + p90Millis +
+                ", p99Millis=" + p99Millis +
+                ", buckets=" + Arrays.toString(buckets) +
+                '}';
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Statistics of the plugin, registered in the platform MBean server as <code>org.knowhowlab.keepass:type=Statistics</code>.
+ * <p>
+ * Every plugin class realm has its own statistics. The realm that is loaded last takes the name over
+ * from a previous one. Registration errors are ignored, statistics are still recorded.
+ *
+ * @author dpishchukhin.
+ */
+public final class KeePassStatistics implements KeePassStatisticsMXBean {
+    public static final String OBJECT_NAME = "org.knowhowlab.keepass:type=Statistics";
+
+    private static final KeePassStatistics INSTANCE = new KeePassStatistics();
+
+    static {
+        INSTANCE.register(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    private final LongAdder opens = new LongAdder();
+    private final LongAdder openFailures = new LongAdder();
+    private final LongAdder rejectedOpens = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LatencyHistogram keyDerivationTime = new LatencyHistogram();
+    private final LatencyHistogram decryptionTime = new LatencyHistogram();
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+    private final LatencyHistogram indexBuildTime = new LatencyHistogram();
+    private final ConcurrentMap<String, LongAdder> lookups = new ConcurrentHashMap<String, LongAdder>();
+    private final List<Cache> caches = new CopyOnWriteArrayList<Cache>();
+    private volatile ObjectName objectName;
+
+    private KeePassStatistics() {
+    }
+
+    public static KeePassStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return registered name, <code>null</code> if registration failed
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * The name is taken over from a previous realm, so disposed realms do not stay registered
+     */
+    void register(MBeanServer server) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+            objectName = name;
+        } catch (JMException | SecurityException e) {
+            // statistics are optional
+        }
+    }
+
+    /**
+     * Registers held data that is reported and evicted by the MBean
+     *
+     * @param cache held data
+     */
+    public void register(Cache cache) {
+        caches.add(cache);
+    }
+
+    /**
+     * @param success <code>true</code> if the file is opened
+     */
+    public void recordOpen(boolean success) {
+        (success ? opens : openFailures).increment();
+    }
+
+    public void recordRejectedOpen() {
+        rejectedOpens.increment();
+    }
+
+    /**
+     * @param hit <code>true</code> if a held file is used, <code>false</code> if the file is opened
+     */
+    public void recordCache(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    public void recordKeyDerivation(long nanos) {
+        keyDerivationTime.record(nanos);
+    }
+
+    public void recordDecryption(long nanos) {
+        decryptionTime.record(nanos);
+    }
+
+    public void recordParse(long nanos) {
+        parseTime.record(nanos);
+    }
+
+    public void recordIndexBuild(long nanos) {
+        indexBuildTime.record(nanos);
+    }
+
+    /**
+     * @param filterType lookup type, e.g. <code>group:path</code>
+     */
+    public void recordLookup(String filterType) {
+        lookups.computeIfAbsent(filterType, type -> new LongAdder()).increment();
+    }
+
+    public long getOpens() {
+        return opens.sum();
+    }
+
+    public long getOpenFailures() {
+        return openFailures.sum();
+    }
+
+    public long getRejectedOpens() {
+        return rejectedOpens.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public HistogramSnapshot getKeyDerivationTime() {
+        return keyDerivationTime.snapshot();
+    }
+
+    public HistogramSnapshot getDecryptionTime() {
+        return decryptionTime.snapshot();
+    }
+
+    public HistogramSnapshot getParseTime() {
+        return parseTime.snapshot();
+    }
+
+    public HistogramSnapshot getIndexBuildTime() {
+        return indexBuildTime.snapshot();
+    }
+
+    public Map<String, Long> getLookups() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : lookups.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    public int getHeldDatabases() {
+        int databases = 0;
+        for (Cache cache : caches) {
+            databases += cache.getHeldDatabases();
+        }
+        return databases;
+    }
+
+    public long getRetainedBytes() {
+        long bytes = 0;
+        for (Cache cache : caches) {
+            bytes += cache.getRetainedBytes();
+        }
+        return bytes;
+    }
+
+    public int evictAll() {
+        int evicted = 0;
+        for (Cache cache : caches) {
+            evicted += cache.evict();
+        }
+        return evicted;
+    }
+
+    public void resetStatistics() {
+        opens.reset();
+        openFailures.reset();
+        rejectedOpens.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        keyDerivationTime.reset();
+        decryptionTime.reset();
+        parseTime.reset();
+        indexBuildTime.reset();
+        lookups.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "KeePassStatistics{" +
+                "opens=" + opens +
+                ", openFailures=" + openFailures +
+                ", rejectedOpens=" + rejectedOpens +
+                ", cacheHits=" + cacheHits +
+                ", cacheMisses=" + cacheMisses +
+                ", objectName=" + objectName +
+                '}';
+    }
+
+    /**
+     * Data held in memory between builds
+     */
+    public interface Cache {
+        /**
+         * @return number of held open files
+         */
+        int getHeldDatabases();
+
+        /**
+         * @return estimated memory in bytes
+         */
+        long getRetainedBytes();
+
+        /**
+         * Releases held data
+         *
+         * @return number of released items
+         */
+        int evict();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.jmx;
+
+import java.util.Map;
+
+/**
+ * Statistics of KeePass files opened by the plugin in this JVM, e.g. in a long-lived mvnd daemon
+ *
+ * @author dpishchukhin.
+ */
+public interface KeePassStatisticsMXBean {
+    /**
+     * @return files opened with valid credentials: key derivation, decryption and parsing
+     */
+    long getOpens();
+
+    /**
+     * @return opens that failed with invalid credentials or an unreadable file
+     */
+    long getOpenFailures();
+
+    /**
+     * @return opens that failed without key derivation, because the credentials were already rejected
+     */
+    long getRejectedOpens();
+
+    /**
+     * @return builds that used a held file: a watched file, the agent or records resolved by another module
+     */
+    long getCacheHits();
+
+    /**
+     * @return builds that opened the file
+     */
+    long getCacheMisses();
+
+    HistogramSnapshot getKeyDerivationTime();
+
+    HistogramSnapshot getDecryptionTime();
+
+    HistogramSnapshot getParseTime();
+
+    /**
+     * @return build time of compact snapshots: UUID indexes, string pool and subtree ranges
+     */
+    HistogramSnapshot getIndexBuildTime();
+
+    /**
+     * @return number of group and entry lookups by filter type, e.g. <code>group:path</code>, <code>entry:title</code>
+     */
+    Map<String, Long> getLookups();
+
+    /**
+     * @return open files that are held in memory
+     */
+    int getHeldDatabases();
+
+    /**
+     * @return estimated heap and direct memory of held files and remembered credentials in bytes
+     */
+    long getRetainedBytes();
+
+    /**
+     * Releases held files and forgets rejected credentials. Following builds open files again
+     *
+     * @return number of evicted items
+     */
+    int evictAll();
+
+    /**
+     * Resets counters and histograms
+     */
+    void resetStatistics();
+}
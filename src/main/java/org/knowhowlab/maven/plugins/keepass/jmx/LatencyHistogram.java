@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.jmx;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations with power-of-two buckets: bucket <code>i</code> counts durations
+ * below <code>2^i</code> microseconds, the last bucket counts all longer durations
+ *
+ * @author dpishchukhin.
+ */
+final class LatencyHistogram {
+    static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos duration in nanoseconds
+     */
+    void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        count.increment();
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    /**
+     * Buckets, count and sum are read without a lock, so a snapshot taken during updates can be slightly inconsistent
+     */
+    HistogramSnapshot snapshot() {
+        long[] values = new long[BUCKETS];
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = buckets.get(i);
+            sum += values[i];
+        }
+        long samples = count.sum();
+        return new HistogramSnapshot(samples,
+                samples == 0 ? 0 : millis(total.sum()) / samples,
+                millis(max.get()),
+                percentile(values, sum, 0.5),
+                percentile(values, sum, 0.9),
+                percentile(values, sum, 0.99),
+                values);
+    }
+
+    /**
+     * @return upper bound of the bucket with the percentile in milliseconds
+     */
+    private static double percentile(long[] values, long sum, double percentile) {
+        if (sum == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(sum * percentile);
+        long seen = 0;
+        for (int i = 0; i < values.length; i++) {
+            seen += values[i];
+            if (seen >= rank) {
+                return (1L << i) / 1000.0;
+            }
+        }
+        return (1L << (values.length - 1)) / 1000.0;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+}
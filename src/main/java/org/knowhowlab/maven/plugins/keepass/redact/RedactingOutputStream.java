@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.redact;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Output stream that masks secrets line by line.
+ * <p>
+ * Bytes are buffered until a line ends (<code>\n</code> or <code>\r</code> of progress output), then the line
+ * is masked in one pass and written to the target stream. A partial line is masked and written on {@link #flush()}
+ * or when it is longer than {@link #MAX_LINE_LENGTH}, so a secret split by a flush is not masked. A print stream
+ * on top of this stream must not flush automatically, it would flush every print.
+ *
+ * @author dpishchukhin.
+ */
+public class RedactingOutputStream extends OutputStream {
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final OutputStream target;
+    private final Charset charset;
+    private volatile SecretMatcher matcher;
+    private byte[] line = new byte[256];
+    private int length;
+
+    /**
+     * @param target  target stream
+     * @param charset charset of the target stream. Secrets are matched in this encoding
+     */
+    public RedactingOutputStream(OutputStream target, Charset charset) {
+        this.target = target;
+        this.charset = charset;
+        this.matcher = new SecretMatcher(new ArrayList<byte[]>());
+    }
+
+    /**
+     * Replaces masked secrets. Lines that are written later are masked with new secrets
+     *
+     * @param secrets secrets
+     */
+    public void setSecrets(Collection<String> secrets) {
+        List<byte[]> encoded = new ArrayList<byte[]>(secrets.size());
+        for (String secret : secrets) {
+            encoded.add(secret.getBytes(charset));
+        }
+        matcher = new SecretMatcher(encoded);
+    }
+
+    public SecretMatcher getMatcher() {
+        return matcher;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        append(b);
+        if (b == '\n' || b == '\r' || length >= MAX_LINE_LENGTH) {
+            writeLine();
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int count) throws IOException {
+        int end = offset + count;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] == '\n' || bytes[i] == '\r') {
+                if (length == 0) {
+                    // whole line is in the buffer of the caller
+                    writeRedacted(bytes, start, i + 1 - start);
+                } else {
+                    append(bytes, start, i + 1 - start);
+                    writeLine();
+                }
+                start = i + 1;
+            }
+        }
+        if (start < end) {
+            append(bytes, start, end - start);
+            if (length >= MAX_LINE_LENGTH) {
+                writeLine();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (length > 0) {
+            writeLine();
+        }
+        target.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        target.close();
+    }
+
+    private void append(int b) {
+        if (length == line.length) {
+            line = Arrays.copyOf(line, length * 2);
+        }
+        line[length++] = (byte) b;
+    }
+
+    private void append(byte[] bytes, int offset, int count) {
+        if (length + count > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+        }
+        System.arraycopy(bytes, offset, line, length, count);
+        length += count;
+    }
+
+    private void writeLine() throws IOException {
+        writeRedacted(line, 0, length);
+        length = 0;
+        if (line.length > MAX_LINE_LENGTH) {
+            line = new byte[256];
+        }
+    }
+
+    private void writeRedacted(byte[] bytes, int offset, int count) throws IOException {
+        byte[] redacted = matcher.redact(bytes, offset, count);
+        if (redacted == null) {
+            target.write(bytes, offset, count);
+        } else {
+            target.write(redacted);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RedactingOutputStream{" +
+                "charset=" + charset +
+                ", matcher=" + matcher +
+                '}';
+    }
+}
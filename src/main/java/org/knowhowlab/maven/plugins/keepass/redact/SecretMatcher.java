@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.redact;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+
+/**
+ * Aho–Corasick automaton that masks all occurrences of many secrets in one linear pass.
+ * <p>
+ * Secrets are matched as encoded bytes, so output is masked without decoding. The automaton is a complete
+ * transition table over byte classes: bytes that do not appear in any secret share one class. Overlapping and
+ * adjacent occurrences are masked as one run.
+ *
+ * @author dpishchukhin.
+ */
+public final class SecretMatcher {
+    /**
+     * Shorter secrets are not masked, they would mask too much of unrelated output
+     */
+    public static final int MIN_SECRET_LENGTH = 4;
+
+    static final byte[] MASK = "******".getBytes(StandardCharsets.US_ASCII);
+
+    private final int[] classes = new int[256];
+    private final int classCount;
+    private final int[] transitions;
+    /**
+     * Length of the longest secret that ends in the state, 0 if no secret ends in it
+     */
+    private final int[] matchLength;
+    private final int secretCount;
+    private final int maxLength;
+
+    /**
+     * @param secrets encoded secrets. Secrets shorter than {@link #MIN_SECRET_LENGTH} bytes are ignored
+     */
+    public SecretMatcher(Collection<byte[]> secrets) {
+        int states = 1;
+        int count = 0;
+        int longest = 0;
+        int classCount = 1;
+        for (byte[] secret : secrets) {
+            if (secret.length < MIN_SECRET_LENGTH) {
+                continue;
+            }
+            count++;
+            states += secret.length;
+            longest = Math.max(longest, secret.length);
+            for (byte b : secret) {
+                if (classes[b & 0xFF] == 0) {
+                    classes[b & 0xFF] = classCount++;
+                }
+            }
+        }
+        this.classCount = classCount;
+        this.secretCount = count;
+        this.maxLength = longest;
+
+        // trie: 0 is "no transition", the root is never a target
+        int[] trie = new int[states * classCount];
+        int[] lengths = new int[states];
+        int used = 1;
+        for (byte[] secret : secrets) {
+            if (secret.length < MIN_SECRET_LENGTH) {
+                continue;
+            }
+            int state = 0;
+            for (byte b : secret) {
+                int index = state * classCount + classes[b & 0xFF];
+                if (trie[index] == 0) {
+                    trie[index] = used++;
+                }
+                state = trie[index];
+            }
+            lengths[state] = secret.length;
+        }
+
+        // breadth-first: failure transitions of a state are complete before its children are processed
+        int[] fail = new int[used];
+        int[] order = new int[used];
+        int ordered = 1;
+        Queue<Integer> queue = new ArrayDeque<Integer>();
+        for (int c = 0; c < classCount; c++) {
+            int child = trie[c];
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            order[ordered++] = state;
+            lengths[state] = Math.max(lengths[state], lengths[fail[state]]);
+            for (int c = 0; c < classCount; c++) {
+                int index = state * classCount + c;
+                int child = trie[index];
+                int next = trie[fail[state] * classCount + c];
+                if (child != 0) {
+                    fail[child] = next;
+                    queue.add(child);
+                } else {
+                    trie[index] = next;
+                }
+            }
+        }
+
+        // states are renumbered in breadth-first order: shallow states, where most input bytes end, are adjacent
+        int[] rank = new int[used];
+        for (int i = 0; i < used; i++) {
+            rank[order[i]] = i;
+        }
+        this.transitions = new int[used * classCount];
+        this.matchLength = new int[used];
+        for (int i = 0; i < used; i++) {
+            int state = order[i];
+            for (int c = 0; c < classCount; c++) {
+                transitions[i * classCount + c] = rank[trie[state * classCount + c]];
+            }
+            matchLength[i] = lengths[state];
+        }
+    }
+
+    /**
+     * @return number of masked secrets
+     */
+    public int getSecretCount() {
+        return secretCount;
+    }
+
+    public int getStateCount() {
+        return matchLength.length;
+    }
+
+    /**
+     * @return length of the longest secret in bytes
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Masks secrets in a text
+     *
+     * @param text text
+     * @return text with masked secrets
+     */
+    public String redact(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        byte[] result = redact(bytes, 0, bytes.length);
+        return result == null ? text : new String(result, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Masks secrets in a range of bytes
+     *
+     * @param bytes  buffer
+     * @param offset range offset
+     * @param length range length
+     * @return masked range or <code>null</code> if the range has no secrets
+     */
+    public byte[] redact(byte[] bytes, int offset, int length) {
+        if (secretCount == 0) {
+            return null;
+        }
+        // masked runs [starts[i], ends[i]) in ascending order, overlapping and adjacent runs are merged
+        int[] starts = null;
+        int[] ends = null;
+        int runs = 0;
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * classCount + classes[bytes[offset + i] & 0xFF]];
+            int match = matchLength[state];
+            if (match > 0) {
+                int start = i + 1 - match;
+                if (starts == null) {
+                    starts = new int[8];
+                    ends = new int[8];
+                }
+                while (runs > 0 && start <= ends[runs - 1]) {
+                    start = Math.min(start, starts[--runs]);
+                }
+                if (runs == starts.length) {
+                    starts = Arrays.copyOf(starts, runs * 2);
+                    ends = Arrays.copyOf(ends, runs * 2);
+                }
+                starts[runs] = start;
+                ends[runs++] = i + 1;
+            }
+        }
+        if (runs == 0) {
+            return null;
+        }
+        int size = length;
+        for (int i = 0; i < runs; i++) {
+            size += MASK.length - (ends[i] - starts[i]);
+        }
+        byte[] result = new byte[size];
+        int position = 0;
+        int previous = 0;
+        for (int i = 0; i < runs; i++) {
+            System.arraycopy(bytes, offset + previous, result, position, starts[i] - previous);
+            position += starts[i] - previous;
+            System.arraycopy(MASK, 0, result, position, MASK.length);
+            position += MASK.length;
+            previous = ends[i];
+        }
+        System.arraycopy(bytes, offset + previous, result, position, length - previous);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SecretMatcher{" +
+                "secrets=" + secretCount +
+                ", states=" + matchLength.length +
+                ", classes=" + classCount +
+                '}';
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.redact;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Masks registered secrets in everything that is printed to standard output and standard error of the process,
+ * including output of other plugins and the Maven log.
+ * <p>
+ * Standard streams are wrapped once, when the first secret is registered, and stay wrapped while the process runs.
+ *
+ * @author dpishchukhin.
+ */
+public final class SecretRedaction {
+    private static final Set<String> SECRETS = new LinkedHashSet<String>();
+    private static final List<RedactingOutputStream> STREAMS = new ArrayList<RedactingOutputStream>();
+
+    private SecretRedaction() {
+    }
+
+    /**
+     * Registers secrets and wraps standard streams if they are not wrapped yet
+     *
+     * @param secrets secrets. <code>null</code> values and values shorter than
+     *                {@link SecretMatcher#MIN_SECRET_LENGTH} are ignored
+     * @return number of masked secrets of the process
+     */
+    public static synchronized int register(Collection<String> secrets) {
+        boolean changed = false;
+        for (String secret : secrets) {
+            if (secret != null && secret.length() >= SecretMatcher.MIN_SECRET_LENGTH) {
+                changed |= SECRETS.add(secret);
+            }
+        }
+        if (STREAMS.isEmpty() && !SECRETS.isEmpty()) {
+            System.setOut(wrap(System.out));
+            System.setErr(wrap(System.err));
+        } else if (changed) {
+            for (RedactingOutputStream stream : STREAMS) {
+                stream.setSecrets(SECRETS);
+            }
+        }
+        return SECRETS.size();
+    }
+
+    private static PrintStream wrap(PrintStream stream) {
+        RedactingOutputStream redacting = new RedactingOutputStream(stream, stream.charset());
+        redacting.setSecrets(SECRETS);
+        STREAMS.add(redacting);
+        // lines are written to the original stream when they end, it flushes them
+        return new PrintStream(redacting, false, stream.charset());
+    }
+}
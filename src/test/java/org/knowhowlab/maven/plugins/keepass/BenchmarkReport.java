@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+/**
+ * Results of a {@link Benchmark}. They are appended to <code>target/benchmarks.txt</code>, as surefire
+ * does not keep report entries of JUnit.
+ *
+ * @author dpishchukhin.
+ */
+public final class BenchmarkReport {
+    private static final Path FILE = Paths.get("target", "benchmarks.txt");
+
+    private final String test;
+
+    private BenchmarkReport(String test) {
+        this.test = test;
+    }
+
+    /**
+     * @param name  measured value, e.g. <code>lookup, us</code>
+     * @param value result
+     */
+    public void publish(String name, Object value) {
+        String line = String.format("%s %s: %s%n", test, name, value);
+        synchronized (BenchmarkReport.class) {
+            try {
+                Files.createDirectories(FILE.getParent());
+                Files.write(FILE, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BenchmarkReport{" +
+                "test='" + test + '\'' +
+                '}';
+    }
+
+    static final class Resolver implements ParameterResolver {
+        @Override
+        public boolean supportsParameter(ParameterContext parameter, ExtensionContext context) {
+            return parameter.getParameter().getType() == BenchmarkReport.class;
+        }
+
+        @Override
+        public Object resolveParameter(ParameterContext parameter, ExtensionContext context) {
+            return new BenchmarkReport(context.getRequiredTestClass().getSimpleName() + "." + context.getRequiredTestMethod().getName());
+        }
+    }
+}
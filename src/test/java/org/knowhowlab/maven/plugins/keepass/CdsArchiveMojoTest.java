@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.InputStream;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author dpishchukhin.
+ */
+public class CdsArchiveMojoTest {
+    @Test
+    public void testParseJvmConfig() {
+        String config = "-Xmx1g -XX:SharedArchiveFile=${MAVEN_PROJECTBASEDIR}/.mvn/keepass.jsa\n"
+                + "  -Xshare:auto\r\n"
+                + "\n"
+                + "-Dlog.dir=${MAVEN_PROJECTBASEDIR}/logs -XX:ArchiveClassesAtExit=old.jsa\n";
+        assertEquals(CdsArchiveMojo.parseJvmConfig(config, "/work"), asList("-Xmx1g", "-Dlog.dir=/work/logs"));
+    }
+
+    @Test
+    public void testResolveMillis() {
+        String log = "[INFO] --- keepass:0.4.2:read (default-cli) @ keepass-cds-training ---\n"
+                + "[INFO] Records are resolved: 2 records in 812 ms\n";
+        assertEquals(CdsArchiveMojo.resolveMillis(log), 812);
+        assertEquals(CdsArchiveMojo.resolveMillis("[INFO] BUILD SUCCESS"), -1);
+    }
+
+    @Test
+    public void testMedian() {
+        assertEquals(CdsArchiveMojo.median(asList(run(300, 30), run(100, 50), run(200, 10)), false), 200);
+        assertEquals(CdsArchiveMojo.median(asList(run(300, 30), run(100, 50), run(200, 10)), true), 30);
+    }
+
+    @Test
+    public void testTrainingResources() throws Exception {
+        for (String name : asList("sample.kdbx", "training-records.json")) {
+            try (InputStream stream = CdsArchiveMojo.class.getResourceAsStream("cds/" + name)) {
+                assertNotNull(stream, name);
+            }
+        }
+    }
+
+    private static CdsArchiveMojo.Run run(long totalMillis, long pluginMillis) {
+        return new CdsArchiveMojo.Run(0, totalMillis, pluginMillis, Paths.get("training.log"));
+    }
+}
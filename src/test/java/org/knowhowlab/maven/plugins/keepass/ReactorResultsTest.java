@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author dpishchukhin.
+ */
+public class ReactorResultsTest {
+    private static final int MODULES = 16;
+
+    private ExecutorService executor;
+    private Map<String, Object> data;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(MODULES);
+        data = new HashMap<String, Object>();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testResolveOnce_parallel() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        List<Future<Properties>> results = runModules("key", () -> {
+            calls.incrementAndGet();
+            // keep other modules waiting for the result
+            Thread.sleep(200);
+            Properties properties = new Properties();
+            properties.setProperty("test.password", "secret");
+            return properties;
+        });
+
+        Properties first = results.get(0).get();
+        for (Future<Properties> result : results) {
+            assertSame(first, result.get());
+        }
+        assertEquals(1, calls.get());
+        assertEquals("secret", first.getProperty("test.password"));
+    }
+
+    @Test
+    public void testResolveOnce_differentKeys() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Callable<Properties> resolver = () -> {
+            calls.incrementAndGet();
+            return new Properties();
+        };
+        ReactorResults.resolveOnce(data, "key1", resolver);
+        ReactorResults.resolveOnce(data, "key2", resolver);
+        ReactorResults.resolveOnce(data, "key1", resolver);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testResolveOnce_failure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        List<Future<Properties>> results = runModules("key", () -> {
+            calls.incrementAndGet();
+            Thread.sleep(200);
+            throw new MojoFailureException("Unable to open file");
+        });
+
+        int failures = 0;
+        int shared = 0;
+        for (Future<Properties> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof MojoFailureException) {
+                    failures++;
+                } else if (e.getCause() instanceof IllegalStateException) {
+                    shared++;
+                }
+            }
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, failures);
+        assertEquals(MODULES - 1, shared);
+        assertThrows(IllegalStateException.class, () -> ReactorResults.resolveOnce(data, "key", Properties::new));
+    }
+
+    private List<Future<Properties>> runModules(String key, Callable<Properties> resolver) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Properties>> results = new ArrayList<Future<Properties>>();
+        for (int i = 0; i < MODULES; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return ReactorResults.resolveOnce(data, key, resolver);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.RegexEngine;
+
+/**
+ * @author dpishchukhin.
+ */
+public class RecordsManifestTest {
+    @Test
+    public void testParse() throws Exception {
+        List<Record> records = parse("records.json");
+        assertEquals(records.size(), 2);
+
+        Record test = records.get(0);
+        assertEquals(test.getPrefix(), "test.");
+        assertEquals(test.getSuffixPassword(), "password");
+        assertEquals(test.getGroup(), "path:/Root/server/test");
+        assertEquals(test.getEntry(), "Deployment");
+        assertEquals(test.getAttributes().size(), 2);
+        assertEquals(test.getAttributes().get(0).getMapTo(), "checked");
+        assertEquals(test.getAttributes().get(1).getName(), "environment");
+        assertEquals(test.getPropertyNames().get(3), "test.checked");
+
+        Record client = records.get(1);
+        assertEquals(client.getSuffixPassword(), "secret");
+        assertTrue(client.isOptional());
+        assertEquals(client.getAttachments().get(0).getMapTo(), "client/keystore.jks");
+        // composite filters are compiled once
+        assertSame(client.getGroupPlan(RegexEngine.JAVA), client.getGroupPlan(RegexEngine.JAVA));
+    }
+
+    @Test
+    public void testParse_sameRecordsInAllFormats() throws Exception {
+        String expected = parse("records.json").toString();
+        assertEquals(parse("records.yaml").toString(), expected);
+        assertEquals(parse("records.properties").toString(), expected);
+    }
+
+    @Test
+    public void testParse_titleWithParentheses() {
+        List<Record> records = RecordsManifest.parse("records.yaml", "- prefix: a.\n  group: Or (legacy\n  entry: Not (used)");
+        assertEquals(records.get(0).getGroup(), "Or (legacy");
+        assertEquals(records.get(0).getEntry(), "Not (used)");
+    }
+
+    @Test
+    public void testParse_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.xml", "<records/>"));
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.json", "{\"records\": [{\"prefix\": \"a.\"}]}"));
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.json", "[{\"prefix\": \"a.\", \"entry\": \"b\""));
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.yaml", "- prefix: a.\n  entry: b\n  unknown: c"));
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.yaml", "- prefix: a.\n  entry: b\n  optional: maybe"));
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.yaml", "- prefix: a.\n  entry: [b]"));
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.yaml", "- prefix: a.\n  entry: and(title:b"));
+        assertThrows(IllegalArgumentException.class, () -> RecordsManifest.parse("records.properties", "a.prefix=a.\na.entry=b\na.group.x=c"));
+    }
+
+    @Test
+    public void testParseOnce() throws Exception {
+        byte[] content = generate(400);
+        Map<String, Object> data = new HashMap<String, Object>();
+
+        List<Record> first = parseOnce(data, content);
+        for (int i = 0; i < 100; i++) {
+            assertSame(parseOnce(data, content), first);
+        }
+        assertEquals(first.size(), 400);
+        assertEquals(first.get(399).getEntry(), "and(regex:Deploy.*, attr:environment=test399)");
+    }
+
+    @Benchmark
+    public void benchmarkParseOnce(BenchmarkReport report) throws Exception {
+        byte[] content = generate(400);
+        Map<String, Object> data = new HashMap<String, Object>();
+
+        long start = System.nanoTime();
+        parseOnce(data, content);
+        report.publish("parse, us", (System.nanoTime() - start) / 1000);
+        int modules = 100;
+        start = System.nanoTime();
+        for (int i = 0; i < modules; i++) {
+            parseOnce(data, content);
+        }
+        report.publish("reuse, us", (System.nanoTime() - start) / modules / 1000);
+    }
+
+    /**
+     * Every module reads and hashes the file, the parsed records are shared
+     */
+    private static List<Record> parseOnce(Map<String, Object> data, byte[] content) throws Exception {
+        return ReactorResults.resolveOnce(data, "manifest." + RecordsManifest.digest(content),
+                () -> RecordsManifest.parse("records.yaml", new String(content, StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] generate(int records) {
+        StringBuilder manifest = new StringBuilder("records:\n");
+        for (int i = 0; i < records; i++) {
+            manifest.append("- prefix: server").append(i).append(".\n")
+                    .append("  group: and(name:test, not(path:/Root/archive))\n")
+                    .append("  entry: and(regex:Deploy.*, attr:environment=test").append(i).append(")\n")
+                    .append("  attributes:\n    - name: check\n      mapTo: checked\n");
+        }
+        return manifest.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Record> parse(String name) throws IOException {
+        byte[] content = Files.readAllBytes(Paths.get("./src/test/resources/manifest", name));
+        return RecordsManifest.parse(name, new String(content, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassNotFoundException;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.FilterParser;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassAgentTest {
+    private static final byte[] KEY = KeePassDAO.compositeKey("testpass", null);
+
+    private File dbFile;
+    private Path socket;
+    private KeePassAgent agent;
+    private Thread agentThread;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dbFile = new File("./src/test/resources/testdb.kdbx");
+        socket = Files.createTempDirectory("keepass-agent").resolve("test.sock");
+        agent = new KeePassAgent(new KeePassDAO(dbFile).open("testpass"), dbFile, socket, KeePassDAO.compositeKey("testpass", null));
+        agent.start();
+        agentThread = new Thread(() -> {
+            try {
+                agent.serve(60000);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        agentThread.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        agent.close();
+        agentThread.join(5000);
+        Files.deleteIfExists(socket.getParent());
+    }
+
+    @Test
+    public void testLookups() throws Exception {
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            KeePassEntry entry = client.getEntry(UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3"));
+            assertEquals(entry.getTitle(), "Deployment");
+            assertEquals(entry.getUsername(), "test-deploy");
+            assertEquals(entry.getPassword(), "testtest");
+
+            assertEquals(client.getEntriesByTitle(client.getRootGroup(), "Deployment").size(), 3);
+            assertEquals(client.getGroupsByName("test").size(), 2);
+
+            List<KeePassGroup> groups = client.getGroupsByPath("/Root/server/test");
+            assertEquals(groups.size(), 1);
+            List<KeePassEntry> entries = client.getEntriesByTitle(groups.get(0), "Deployment");
+            assertEquals(entries.size(), 1);
+            assertEquals(entries.get(0).getPropertyByName("check").getValue(), "true");
+        }
+    }
+
+    @Test
+    public void testLookup_invalidValue() throws Exception {
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            KeePassNotFoundException e = assertThrows(KeePassNotFoundException.class, () -> client.getGroupsByName("test123"));
+            assertEquals(e.getStackTrace().length, 0);
+            assertThrows(KeePassNotFoundException.class, () -> client.getEntry(UUID.randomUUID()));
+            assertThrows(KeePassNotFoundException.class, () -> client.getEntriesByTitle(client.getRootGroup(), "Deployment123"));
+            // connection is still usable after a failed lookup
+            assertEquals(client.getGroupsByName("test").size(), 2);
+        }
+    }
+
+    @Test
+    public void testCompositeFilter_path() throws Exception {
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            List<KeePassGroup> groups = client.getGroups(FilterParser.parseGroupFilter("and(name:test, not(path:/Root/client/test))"));
+            assertEquals(groups.size(), 1);
+            assertEquals(groups.get(0).getPath(), "/Root/server/test");
+            assertEquals(client.getEntries(groups.get(0), FilterParser.parseEntryFilter("and(title:Deployment, attr:check=true)")).size(), 1);
+        }
+    }
+
+    @Test
+    public void testFindLookups() throws Exception {
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            assertTrue(client.findGroupsByName("test123").isEmpty());
+            assertFalse(client.findEntry(UUID.randomUUID()).isPresent());
+            assertEquals(client.findGroupsByName("test").size(), 2);
+            assertTrue(client.findEntriesByTitle(client.getRootGroup(), "Deployment123").isEmpty());
+            assertTrue(client.findEntries(client.getRootGroup(), FilterParser.parseEntryFilter("attr:check=false")).isEmpty());
+            assertEquals(client.findEntries(client.getRootGroup(), FilterParser.parseEntryFilter("attr:check=true")).size(), 1);
+        }
+    }
+
+    @Test
+    public void testFindLookups_invalidRegex() throws Exception {
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            // only misses are empty results, errors are thrown
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> client.findGroupsByNameRegex("te[st"));
+            assertFalse(e instanceof KeePassNotFoundException);
+        }
+    }
+
+    @Test
+    public void testConnect_staleFile() {
+        assertThrows(KeePassAgentClient.StaleAgentException.class, () ->
+                KeePassAgentClient.connect(socket, new File("./src/test/resources/test-with-key.kdbx"), KEY));
+    }
+
+    @Test
+    public void testConnect_invalidCredentials() throws Exception {
+        assertThrows(KeePassAgentClient.RejectedCredentialsException.class, () ->
+                KeePassAgentClient.connect(socket, dbFile, KeePassDAO.compositeKey("wrongpass", null)));
+        assertThrows(KeePassAgentClient.RejectedCredentialsException.class, () ->
+                KeePassAgentClient.connect(socket, dbFile, KeePassDAO.compositeKey("testpass", new File("./src/test/resources/keyfile.key"))));
+        // agent still serves clients with valid credentials
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            assertEquals(client.getGroupsByName("test").size(), 2);
+        }
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        KeePassAgentClient.stop(socket, dbFile, KEY);
+        agentThread.join(5000);
+        assertFalse(agentThread.isAlive());
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testStop_handshakeIsRequired() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            channel.write(ByteBuffer.wrap(new byte[]{KeePassAgentProtocol.OP_STOP}));
+            assertEquals(new DataInputStream(Channels.newInputStream(channel)).readByte(), KeePassAgentProtocol.STATUS_ERROR);
+        }
+        assertThrows(KeePassAgentClient.RejectedCredentialsException.class, () ->
+                KeePassAgentClient.stop(socket, dbFile, KeePassDAO.compositeKey("wrongpass", null)));
+        assertTrue(agentThread.isAlive());
+        assertTrue(Files.exists(socket));
+    }
+
+    @Test
+    public void testConnect_directoryAccessibleByOthers() throws Exception {
+        Files.setPosixFilePermissions(socket.getParent(), PosixFilePermissions.fromString("rwxr-xr-x"));
+        IOException e = assertThrows(IOException.class, () -> KeePassAgentClient.connect(socket, dbFile, KEY));
+        assertTrue(e.getMessage().contains("accessible by other users"), e.getMessage());
+    }
+
+    @Test
+    public void testConnect_agentWithoutCredentials() throws Exception {
+        Path directory = Files.createTempDirectory("keepass-fake-agent");
+        Path fakeSocket = directory.resolve("fake.sock");
+        int[] received = new int[]{0};
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(fakeSocket));
+            Thread fake = new Thread(() -> {
+                try (SocketChannel channel = server.accept()) {
+                    DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+                    DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+                    in.readByte();
+                    in.readInt();
+                    KeePassAgentProtocol.readString(in);
+                    in.readLong();
+                    in.readLong();
+                    in.readFully(new byte[KeePassAgentProtocol.SALT_LENGTH]);
+                    out.writeByte(KeePassAgentProtocol.STATUS_OK);
+                    out.write(new byte[KeePassAgentProtocol.SALT_LENGTH + KeePassAgentProtocol.PROOF_LENGTH]);
+                    received[0] = in.read();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            fake.start();
+            assertThrows(KeePassAgentClient.RejectedCredentialsException.class, () ->
+                    KeePassAgentClient.connect(fakeSocket, dbFile, KEY));
+            fake.join(5000);
+            // the client does not send its proof to an agent that did not prove credentials
+            assertEquals(received[0], -1);
+        } finally {
+            Files.deleteIfExists(fakeSocket);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testReadString_tooLong() throws Exception {
+        byte[] data = ByteBuffer.allocate(4).putInt(KeePassAgentProtocol.MAX_STRING_LENGTH + 1).array();
+        assertThrows(IOException.class, () -> KeePassAgentProtocol.readString(new DataInputStream(new ByteArrayInputStream(data))));
+    }
+
+    @Test
+    public void testRepeatedLookups() throws Exception {
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            KeePassGroup root = client.getRootGroup();
+            for (int i = 0; i < 100; i++) {
+                assertEquals(client.getEntriesByTitle(root, "Deployment").size(), 3);
+            }
+        }
+    }
+
+    @Benchmark
+    public void benchmarkWarmLookup(BenchmarkReport report) throws Exception {
+        try (KeePassAgentClient client = KeePassAgentClient.connect(socket, dbFile, KEY)) {
+            KeePassGroup root = client.getRootGroup();
+            for (int i = 0; i < 1000; i++) {
+                client.getEntriesByTitle(root, "Deployment");
+            }
+            int lookups = 5000;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                client.getEntriesByTitle(root, "Deployment");
+            }
+            report.publish("warm lookup, us", (System.nanoTime() - start) / lookups / 1000);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import de.slackspace.openkeepass.domain.Attachment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassAttachmentTest {
+    private Path directory;
+    private byte[] data;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("keepass-attachments");
+        data = new byte[4 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(data);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        KeePassAttachment attachment = new KeePassAttachment(new Attachment("keystore.jks", 0, data));
+        Path file = directory.resolve("certs/keystore.jks");
+
+        assertTrue(attachment.writeTo(file));
+        assertEquals(attachment.getSize(), data.length);
+        assertArrayEquals(Files.readAllBytes(file), data);
+    }
+
+    @Test
+    public void testWriteTo_unchanged() throws Exception {
+        KeePassAttachment attachment = new KeePassAttachment(new Attachment("keystore.jks", 0, data));
+        Path file = directory.resolve("keystore.jks");
+        attachment.writeTo(file);
+        FileTime modified = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(file, modified);
+
+        assertFalse(attachment.writeTo(file));
+        assertEquals(Files.getLastModifiedTime(file), modified);
+    }
+
+    @Test
+    public void testWriteTo_changed() throws Exception {
+        Path file = directory.resolve("keystore.jks");
+        new KeePassAttachment(new Attachment("keystore.jks", 0, data)).writeTo(file);
+
+        byte[] changed = data.clone();
+        changed[changed.length - 1]++;
+        assertTrue(new KeePassAttachment(new Attachment("keystore.jks", 0, changed)).writeTo(file));
+        assertArrayEquals(Files.readAllBytes(file), changed);
+    }
+
+    @Test
+    public void testWriteTo_empty() throws Exception {
+        Path file = directory.resolve("empty.txt");
+
+        assertTrue(new KeePassAttachment(new Attachment("empty.txt", 0, new byte[0])).writeTo(file));
+        assertEquals(Files.size(file), 0);
+        assertFalse(new KeePassAttachment(new Attachment("empty.txt", 0, new byte[0])).writeTo(file));
+    }
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.Property;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.FilterParser;
+
+/**
+ * Property-based differential test: lookups of every alternative engine return exactly
+ * what the reference group and entry walkers return, in the same order.
+ * <p>
+ * Random trees have duplicate names, empty titles, deep nesting and Unicode. A failing case is shrunk
+ * to a minimal tree. Use <code>-Dkeepass.differential.seed</code> to replay a run and
+ * <code>-Dkeepass.differential.trials</code> to change the number of trees.
+ *
+ * @author dpishchukhin.
+ */
+public class KeePassDAODifferentialTest {
+    private static final String PASSWORD = "differential";
+    private static final String[] NAMES = {"test", "Test", "test", "", " ", "server", "Ünïcødé", "日本語",
+            "🔑 keys", "é", "a.b", "(old)", "it's", "a,b"};
+    private static final String[] TITLES = {"Deployment", "deployment", "Deployment", "", "Ünïcødé", "日本語",
+            "🔑", "db (old)", "it's", "a,b"};
+    private static final String[] ATTRIBUTES = {"environment", "check", "Ünï"};
+    private static final String[] VALUES = {"prod", "test", "true", ""};
+    private static final String[] REGEXES = {".*", "t.*", "[Dd]eploy.*", "(?i)TEST", "", "[", "\\p{L}+"};
+
+    private final long seed = Long.getLong("keepass.differential.seed", System.nanoTime());
+    private final int trials = Integer.getInteger("keepass.differential.trials", 25);
+
+    @Test
+    public void testEnginesReturnSameResults() throws Exception {
+        Random random = new Random(seed);
+        for (int trial = 0; trial < trials; trial++) {
+            GroupSpec tree = GroupSpec.generate(random, 0, new int[]{60});
+            KeePassScope scope = randomScope(random, tree);
+            List<Query> queries = Query.generate(random, tree, 40);
+            Mismatch mismatch = check(tree, scope, queries);
+            if (mismatch != null) {
+                Mismatch minimal = shrink(tree, scope, mismatch);
+                fail(format(trial, minimal));
+            }
+        }
+    }
+
+    /**
+     * @return first query with different results or <code>null</code>
+     */
+    private static Mismatch check(GroupSpec tree, KeePassScope scope, List<Query> queries) throws IOException {
+        File file = write(tree);
+        try {
+            KeePassDAO reference = Engine.WALKERS.open(file, scope);
+            for (Engine engine : Arrays.asList(Engine.SNAPSHOT, Engine.OFF_HEAP_SNAPSHOT)) {
+                try (KeePassDAO dao = engine.open(file, scope)) {
+                    for (Query query : queries) {
+                        String expected = query.run(reference);
+                        String actual = query.run(dao);
+                        if (!expected.equals(actual)) {
+                            return new Mismatch(tree, engine, query, expected, actual);
+                        }
+                    }
+                }
+            }
+            return null;
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    /**
+     * Greedily removes subtrees, entries and attributes, flattens groups and simplifies strings
+     * while the mismatch is reproduced
+     */
+    private static Mismatch shrink(GroupSpec tree, KeePassScope scope, Mismatch mismatch) throws IOException {
+        Mismatch result = mismatch;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (GroupSpec candidate : result.tree.shrink()) {
+                Mismatch next = check(candidate, scope, Collections.singletonList(result.query));
+                if (next != null) {
+                    result = next;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private String format(int trial, Mismatch mismatch) {
+        return String.format("%s differs from walkers (seed %d, trial %d)%nquery: %s%nexpected: %s%nactual:   %s%ntree:%n%s",
+                mismatch.engine, seed, trial, mismatch.query, mismatch.expected, mismatch.actual, mismatch.tree.print(""));
+    }
+
+    private static KeePassScope randomScope(Random random, GroupSpec tree) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return new KeePassScope(false, Collections.<String>emptyList(), 1 + random.nextInt(3));
+            case 1:
+                List<String> paths = tree.paths("");
+                return new KeePassScope(false, Collections.singletonList(paths.get(random.nextInt(paths.size()))), -1);
+            default:
+                return KeePassScope.ALL;
+        }
+    }
+
+    private static File write(GroupSpec tree) throws IOException {
+        File file = File.createTempFile("differential", ".kdbx");
+        try (OutputStream out = new FileOutputStream(file)) {
+            KeePassDatabase.write(new KeePassFileBuilder("differential").addTopGroups(tree.build()).build(), PASSWORD, out);
+        }
+        return file;
+    }
+
+    private static <T> T pick(Random random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static <T> T pick(Random random, List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    /**
+     * Quotes filter data for {@link FilterParser}
+     */
+    private static String quote(String data) {
+        return "'" + data.replace("'", "''") + "'";
+    }
+
+    private enum Engine {
+        WALKERS {
+            KeePassDAO open(File file, KeePassScope scope) {
+                return new KeePassDAO(file).open(PASSWORD).setScope(scope);
+            }
+        },
+        SNAPSHOT {
+            KeePassDAO open(File file, KeePassScope scope) {
+                return WALKERS.open(file, scope).compact();
+            }
+        },
+        OFF_HEAP_SNAPSHOT {
+            KeePassDAO open(File file, KeePassScope scope) {
+                return WALKERS.open(file, scope).compact(true);
+            }
+        };
+
+        abstract KeePassDAO open(File file, KeePassScope scope);
+    }
+
+    private static final class Mismatch {
+        private final GroupSpec tree;
+        private final Engine engine;
+        private final Query query;
+        private final String expected;
+        private final String actual;
+
+        private Mismatch(GroupSpec tree, Engine engine, Query query, String expected, String actual) {
+            this.tree = tree;
+            this.engine = engine;
+            this.query = query;
+            this.expected = expected;
+            this.actual = actual;
+        }
+    }
+
+    /**
+     * Lookup through a public method of {@link KeePassDAO}. Groups that limit entry lookups are found
+     * by UUID in the same DAO
+     */
+    private static final class Query {
+        private final String description;
+        private final Function<KeePassDAO, Object> lookup;
+
+        private Query(String description, Function<KeePassDAO, Object> lookup) {
+            this.description = description;
+            this.lookup = lookup;
+        }
+
+        static List<Query> generate(Random random, GroupSpec tree, int count) {
+            List<GroupSpec> groups = tree.groups(new ArrayList<GroupSpec>());
+            List<EntrySpec> entries = new ArrayList<EntrySpec>();
+            for (GroupSpec group : groups) {
+                entries.addAll(group.entries);
+            }
+            List<String> paths = tree.paths("");
+            List<Query> queries = new ArrayList<Query>();
+            for (int i = 0; i < count; i++) {
+                String name = random.nextInt(5) == 0 ? "missing" : pick(random, groups).name;
+                String title = random.nextInt(5) == 0 || entries.isEmpty() ? pick(random, TITLES) : pick(random, entries).title;
+                String path = random.nextInt(5) == 0 ? "/missing" : pick(random, paths);
+                String regex = random.nextBoolean() ? pick(random, REGEXES) : Pattern.quote(name.isEmpty() ? "" : name.substring(0, 1)) + ".*";
+                UUID groupUuid = random.nextInt(5) == 0 ? UUID.randomUUID() : pick(random, groups).uuid;
+                UUID entryUuid = random.nextInt(5) == 0 || entries.isEmpty() ? UUID.randomUUID() : pick(random, entries).uuid;
+                String attribute = pick(random, ATTRIBUTES) + "=" + pick(random, VALUES);
+                switch (random.nextInt(11)) {
+                    case 0:
+                        queries.add(new Query("getGroupsByName " + name, dao -> dao.getGroupsByName(name)));
+                        break;
+                    case 1:
+                        queries.add(new Query("getGroupsByNameRegex " + regex, dao -> dao.getGroupsByNameRegex(regex)));
+                        break;
+                    case 2:
+                        queries.add(new Query("getGroupsByPath " + path, dao -> dao.getGroupsByPath(path)));
+                        break;
+                    case 3:
+                        queries.add(new Query("getGroup " + groupUuid, dao -> dao.getGroup(groupUuid)));
+                        break;
+                    case 4:
+                        queries.add(new Query("getEntry " + entryUuid, dao -> dao.getEntry(entryUuid)));
+                        break;
+                    case 5:
+                        queries.add(new Query("getEntriesByTitle " + title, dao -> dao.getEntriesByTitle(title)));
+                        break;
+                    case 6:
+                        queries.add(new Query("getEntriesByTitle " + groupUuid + " " + title,
+                                dao -> dao.getEntriesByTitle(dao.getGroup(groupUuid), title)));
+                        break;
+                    case 7:
+                        queries.add(new Query("getEntriesByTitleRegex " + regex, dao -> dao.getEntriesByTitleRegex(regex)));
+                        break;
+                    case 8:
+                        queries.add(new Query("getEntriesByTitleRegex " + groupUuid + " " + regex,
+                                dao -> dao.getEntriesByTitleRegex(dao.getGroup(groupUuid), regex)));
+                        break;
+                    case 9: {
+                        String filter = pick(random, Arrays.asList(
+                                "and(name:" + quote(name) + ", not(path:" + quote(path) + "))",
+                                "or(regex:" + quote(regex) + ", uuid:" + groupUuid + ")",
+                                "not(name:" + quote(name) + ")",
+                                "and(or(name:" + quote(name) + ", path:" + quote(path) + "), regex:" + quote(regex) + ")"));
+                        queries.add(new Query("getGroups " + filter,
+                                dao -> dao.getGroups(FilterParser.parseGroupFilter(filter))));
+                        break;
+                    }
+                    default: {
+                        String filter = pick(random, Arrays.asList(
+                                "and(title:" + quote(title) + ", attr:" + quote(attribute) + ")",
+                                "or(uuid:" + entryUuid + ", regex:" + quote(regex) + ")",
+                                "not(attr:" + quote(attribute) + ")",
+                                "and(regex:" + quote(regex) + ", not(title:" + quote(title) + "))"));
+                        boolean root = random.nextBoolean();
+                        queries.add(new Query("getEntries " + (root ? "root" : groupUuid) + " " + filter,
+                                dao -> dao.getEntries(root ? dao.getRootGroup() : dao.getGroup(groupUuid),
+                                        FilterParser.parseEntryFilter(filter))));
+                        break;
+                    }
+                }
+            }
+            return queries;
+        }
+
+        /**
+         * @return printed result or exception type. Messages of engines are not compared, subclasses of
+         * {@link IllegalArgumentException} (e.g. invalid regex) are reported as lookup failures
+         */
+        String run(KeePassDAO dao) {
+            try {
+                return print(lookup.apply(dao), dao.getRootGroup().getUuid());
+            } catch (IllegalArgumentException e) {
+                return IllegalArgumentException.class.getSimpleName();
+            } catch (RuntimeException e) {
+                return e.getClass().getSimpleName();
+            }
+        }
+
+        /**
+         * @param root UUID of the file root group. It is generated when the file is read
+         */
+        private static String print(Object result, UUID root) {
+            if (result instanceof List) {
+                List<String> items = new ArrayList<String>();
+                for (Object item : (List<?>) result) {
+                    items.add(print(item, root));
+                }
+                return items.toString();
+            } else if (result instanceof KeePassGroup) {
+                KeePassGroup group = (KeePassGroup) result;
+                return "group " + (root.equals(group.getUuid()) ? "root" : group.getUuid()) + " '" + group.getName() + "'";
+            }
+            KeePassEntry entry = (KeePassEntry) result;
+            List<String> properties = new ArrayList<String>();
+            for (KeePassProperty property : entry.getProperties()) {
+                properties.add(property.getKey() + "=" + property.getValue());
+            }
+            return "entry " + entry.getUuid() + " '" + entry.getTitle() + "' " + properties;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private static final class GroupSpec {
+        private final UUID uuid;
+        private final String name;
+        private final List<EntrySpec> entries;
+        private final List<GroupSpec> groups;
+
+        private GroupSpec(UUID uuid, String name, List<EntrySpec> entries, List<GroupSpec> groups) {
+            this.uuid = uuid;
+            this.name = name;
+            this.entries = entries;
+            this.groups = groups;
+        }
+
+        /**
+         * @param budget number of groups and entries that can still be generated
+         */
+        static GroupSpec generate(Random random, int depth, int[] budget) {
+            List<EntrySpec> entries = new ArrayList<EntrySpec>();
+            List<GroupSpec> groups = new ArrayList<GroupSpec>();
+            GroupSpec group = new GroupSpec(randomUuid(random), pick(random, NAMES), entries, groups);
+            budget[0]--;
+            for (int i = random.nextInt(4); i > 0 && budget[0] > 0; i--) {
+                entries.add(EntrySpec.generate(random));
+                budget[0]--;
+            }
+            // some branches are a deep chain of single groups
+            int children = depth >= 8 ? 0 : depth >= 3 && random.nextBoolean() ? 1 : random.nextInt(4);
+            for (int i = 0; i < children && budget[0] > 0; i++) {
+                groups.add(generate(random, depth + 1, budget));
+            }
+            return group;
+        }
+
+        Group build() {
+            GroupBuilder builder = new GroupBuilder(uuid).name(name);
+            for (EntrySpec entry : entries) {
+                builder.addEntry(entry.build());
+            }
+            for (GroupSpec group : groups) {
+                builder.addGroup(group.build());
+            }
+            return builder.build();
+        }
+
+        List<GroupSpec> groups(List<GroupSpec> result) {
+            result.add(this);
+            for (GroupSpec group : groups) {
+                group.groups(result);
+            }
+            return result;
+        }
+
+        List<String> paths(String parent) {
+            List<String> result = new ArrayList<String>();
+            String path = parent + "/" + name;
+            result.add(path);
+            for (GroupSpec group : groups) {
+                result.addAll(group.paths(path));
+            }
+            return result;
+        }
+
+        /**
+         * @return smaller variants of the tree, the most aggressive first
+         */
+        List<GroupSpec> shrink() {
+            List<GroupSpec> result = new ArrayList<GroupSpec>();
+            for (int i = 0; i < groups.size(); i++) {
+                List<GroupSpec> without = new ArrayList<GroupSpec>(groups);
+                without.remove(i);
+                result.add(new GroupSpec(uuid, name, entries, without));
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                // child is replaced by its own subgroups and entries
+                GroupSpec child = groups.get(i);
+                List<GroupSpec> flat = new ArrayList<GroupSpec>(groups);
+                flat.remove(i);
+                flat.addAll(i, child.groups);
+                List<EntrySpec> merged = new ArrayList<EntrySpec>(entries);
+                merged.addAll(child.entries);
+                result.add(new GroupSpec(uuid, name, merged, flat));
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                List<EntrySpec> without = new ArrayList<EntrySpec>(entries);
+                without.remove(i);
+                result.add(new GroupSpec(uuid, name, without, groups));
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                for (EntrySpec smaller : entries.get(i).shrink()) {
+                    List<EntrySpec> replaced = new ArrayList<EntrySpec>(entries);
+                    replaced.set(i, smaller);
+                    result.add(new GroupSpec(uuid, name, replaced, groups));
+                }
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                for (GroupSpec smaller : groups.get(i).shrink()) {
+                    List<GroupSpec> replaced = new ArrayList<GroupSpec>(groups);
+                    replaced.set(i, smaller);
+                    result.add(new GroupSpec(uuid, name, entries, replaced));
+                }
+            }
+            if (!"a".equals(name)) {
+                result.add(new GroupSpec(uuid, "a", entries, groups));
+            }
+            return result;
+        }
+
+        String print(String indent) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(indent).append("group ").append(uuid).append(" '").append(name).append("'\n");
+            for (EntrySpec entry : entries) {
+                builder.append(indent).append("  ").append(entry).append('\n');
+            }
+            for (GroupSpec group : groups) {
+                builder.append(group.print(indent + "  "));
+            }
+            return builder.toString();
+        }
+    }
+
+    private static final class EntrySpec {
+        private final UUID uuid;
+        private final String title;
+        private final Map<String, String> attributes;
+        private final boolean protectedAttributes;
+
+        private EntrySpec(UUID uuid, String title, Map<String, String> attributes, boolean protectedAttributes) {
+            this.uuid = uuid;
+            this.title = title;
+            this.attributes = attributes;
+            this.protectedAttributes = protectedAttributes;
+        }
+
+        static EntrySpec generate(Random random) {
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            for (int i = random.nextInt(3); i > 0; i--) {
+                attributes.put(pick(random, ATTRIBUTES), pick(random, VALUES));
+            }
+            return new EntrySpec(randomUuid(random), pick(random, TITLES), attributes, random.nextBoolean());
+        }
+
+        de.slackspace.openkeepass.domain.Entry build() {
+            EntryBuilder builder = new EntryBuilder(uuid).title(title).username("user " + title).password("secret " + uuid);
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                builder.getCustomPropertyList().add(new Property(attribute.getKey(), attribute.getValue(), protectedAttributes));
+            }
+            return builder.build();
+        }
+
+        List<EntrySpec> shrink() {
+            List<EntrySpec> result = new ArrayList<EntrySpec>();
+            for (String key : attributes.keySet()) {
+                Map<String, String> without = new LinkedHashMap<String, String>(attributes);
+                without.remove(key);
+                result.add(new EntrySpec(uuid, title, without, protectedAttributes));
+            }
+            if (protectedAttributes) {
+                result.add(new EntrySpec(uuid, title, attributes, false));
+            }
+            if (!"a".equals(title)) {
+                result.add(new EntrySpec(uuid, "a", attributes, protectedAttributes));
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "entry " + uuid + " '" + title + "' " + attributes + (protectedAttributes ? " protected" : "");
+        }
+    }
+
+    private static UUID randomUuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+}
@@ -17,15 +17,23 @@
 package org.knowhowlab.maven.plugins.keepass.dao;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.regex.PatternSyntaxException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.EntryTitleFilter;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.GroupNameFilter;
 
 /**
  * @author dpishchukhin.
@@ -72,6 +80,42 @@ public class KeePassDAOTest {
     	assertNotNull(new KeePassDAO(dbFile).open("testpass"));
     }
 
+    @Test
+    public void testOpen_rejectedPasswordIsRemembered() {
+        KeePassRejectedCredentials.clear();
+        KeePassRejectedCredentialsException first = assertThrows(KeePassRejectedCredentialsException.class, () ->
+                new KeePassDAO(dbFile).open("wrongpass"));
+        assertTrue(first.getMessage().startsWith("Invalid password: "), first.getMessage());
+
+        KeePassRejectedCredentialsException second = assertThrows(KeePassRejectedCredentialsException.class, () ->
+                new KeePassDAO(dbFile).open("wrongpass"));
+        assertTrue(second.getMessage().contains("already rejected"), second.getMessage());
+
+        // other credentials are still checked
+        assertNotNull(new KeePassDAO(dbFile).open("testpass"));
+    }
+
+    @Benchmark
+    public void benchmarkRejectedPassword(BenchmarkReport report) {
+        KeePassRejectedCredentials.clear();
+        long start = System.nanoTime();
+        assertThrows(IllegalArgumentException.class, () -> new KeePassDAO(dbFile).open("wrongpass"));
+        report.publish("wrong password, ms", (System.nanoTime() - start) / 1000000);
+        start = System.nanoTime();
+        assertThrows(IllegalArgumentException.class, () -> new KeePassDAO(dbFile).open("wrongpass"));
+        report.publish("already rejected, ms", (System.nanoTime() - start) / 1000000);
+    }
+
+    @Test
+    public void testKdfParameters() {
+        KeePassKdfParameters kdf = new KeePassDAO(dbFile).getKdfParameters();
+
+        assertNotNull(kdf);
+        assertEquals(kdf.getType(), KeePassKdfParameters.Type.AES);
+        assertEquals(kdf.getFileFormatVersion() >>> 16, 3);
+        assertTrue(kdf.getRounds() > 0);
+    }
+
     // find entry by UUID
     @Test
     public void testFindEntryByUUID() {
@@ -245,4 +289,71 @@ public class KeePassDAOTest {
         assertEquals(entries.size(), 1);
         assertEquals(entries.get(0).getPropertyByName("check").getValue(), "true");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFind_miss() {
+        KeePassDAO dao = new KeePassDAO(dbFile).open("testpass");
+        KeePassDAO compact = new KeePassDAO(dbFile).open("testpass").compact();
+        for (KeePassLookup lookup : Arrays.<KeePassLookup>asList(dao, compact, dao.snapshot())) {
+            KeePassGroup root = lookup.getRootGroup();
+            UUID unknown = UUID.fromString("01234567-0123-0123-0123-012345678990");
+            assertFalse(lookup.findGroup(unknown).isPresent());
+            assertFalse(lookup.findEntry(unknown).isPresent());
+            assertTrue(lookup.findGroupsByName("test123").isEmpty());
+            assertTrue(lookup.findGroupsByNameRegex("[t|e|s]{3}[0-9]?").isEmpty());
+            assertTrue(lookup.findGroupsByPath("/Root/server/test123").isEmpty());
+            assertTrue(lookup.findEntriesByTitle(root, "Deployment123").isEmpty());
+            assertTrue(lookup.findEntriesByTitleRegex(root, "Deployment[0-9]+").isEmpty());
+            assertTrue(lookup.findGroups(new GroupNameFilter("test123")).isEmpty());
+            assertTrue(lookup.findEntries(root, new EntryTitleFilter("Deployment123")).isEmpty());
+
+            assertEquals(lookup.findEntry(UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3")).get().getPassword(), "testtest");
+            assertEquals(lookup.findGroupsByName("test").size(), 2);
+            assertEquals(lookup.findEntriesByTitle(root, "Deployment").size(), 3);
+        }
+    }
+
+    @Test
+    public void testFind_invalidRegex() {
+        KeePassDAO dao = new KeePassDAO(dbFile).open("testpass");
+        KeePassDAO compact = new KeePassDAO(dbFile).open("testpass").compact();
+        for (KeePassLookup lookup : Arrays.<KeePassLookup>asList(dao, compact, dao.snapshot())) {
+            KeePassGroup root = lookup.getRootGroup();
+            assertThrows(PatternSyntaxException.class, () -> lookup.findGroupsByNameRegex("te[st"));
+            assertThrows(PatternSyntaxException.class, () -> lookup.findEntriesByTitleRegex(root, "Deploy[ment"));
+            assertThrows(KeePassNotFoundException.class, () -> lookup.getGroupsByName("test123"));
+        }
+    }
+
+    @Benchmark
+    public void benchmarkMiss(BenchmarkReport report) {
+        KeePassDAO dao = new KeePassDAO(dbFile).open("testpass").compact();
+        KeePassGroup root = dao.getRootGroup();
+        int lookups = 20000;
+        for (int i = 0; i < lookups; i++) {
+            missWithException(dao, root);
+            dao.findEntriesByTitle(root, "Deployment123");
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            missWithException(dao, root);
+        }
+        long exception = (System.nanoTime() - start) / lookups;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            assertTrue(dao.findEntriesByTitle(root, "Deployment123").isEmpty());
+        }
+        long empty = (System.nanoTime() - start) / lookups;
+        report.publish("miss with exception, ns", exception);
+        report.publish("miss with empty result, ns", empty);
+    }
+
+    private static void missWithException(KeePassDAO dao, KeePassGroup root) {
+        try {
+            dao.getEntriesByTitle(root, "Deployment123");
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("Miss is expected");
+    }
+}
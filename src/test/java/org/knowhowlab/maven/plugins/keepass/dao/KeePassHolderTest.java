@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassHolderTest {
+    private Path directory;
+    private Path file;
+    private KeePassHolder holder;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("keepass-holder");
+        file = directory.resolve("test.kdbx");
+        Files.copy(new File("./src/test/resources/testdb.kdbx").toPath(), file);
+        holder = new KeePassHolder(file.toFile(), dao -> dao.open("testpass"), 100).start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        holder.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        KeePassDAO first = holder.get();
+        assertTrue(first.isCompact());
+        assertEquals(1, holder.getVersion());
+        assertEquals(3, first.getEntriesByTitle(first.getRootGroup(), "Deployment").size());
+
+        Path temp = directory.resolve("test.kdbx.tmp");
+        KeePassDatabase.write(new KeePassFileBuilder("test")
+                .addTopGroups(new GroupBuilder("Root")
+                        .addEntry(new EntryBuilder("Release").username("release").password("secret").build())
+                        .build())
+                .build(), "testpass", temp.toString());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        await(() -> holder.getVersion() == 2);
+        KeePassDAO second = holder.get();
+        assertEquals("secret", second.getEntriesByTitle(second.getRootGroup(), "Release").get(0).getPassword());
+        assertThrows(IllegalArgumentException.class, () -> second.getEntriesByTitle(second.getRootGroup(), "Deployment"));
+        // lookups on the previous snapshot are not affected
+        assertEquals(3, first.getEntriesByTitle(first.getRootGroup(), "Deployment").size());
+        assertNull(holder.getLastError());
+    }
+
+    @Test
+    public void testReload_invalidFile() throws Exception {
+        Files.write(file, new byte[]{1, 2, 3});
+
+        await(() -> holder.getLastError() != null);
+        assertNotNull(holder.getLastError());
+        assertEquals(1, holder.getVersion());
+        KeePassDAO dao = holder.get();
+        assertEquals(3, dao.getEntriesByTitle(dao.getRootGroup(), "Deployment").size());
+    }
+
+    @Test
+    public void testOffHeapSecrets() throws Exception {
+        assertFalse(holder.getSnapshot().hasOffHeapSecrets());
+
+        KeePassHolder offHeap = new KeePassHolder(file.toFile(), dao -> dao.open("testpass"), 100, true).start();
+        try {
+            KeePassReadOnlySnapshot snapshot = offHeap.getSnapshot();
+            assertTrue(snapshot.hasOffHeapSecrets());
+            assertEquals("testtest", snapshot.getEntry(UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3")).getPassword());
+        } finally {
+            offHeap.close();
+        }
+    }
+
+    @Test
+    public void testClose_snapshotKeepsSecrets() throws Exception {
+        UUID deployment = UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3");
+        KeePassHolder offHeap = new KeePassHolder(file.toFile(), dao -> dao.open("testpass"), 100, true).start();
+        KeePassReadOnlySnapshot snapshot = offHeap.getSnapshot();
+        KeePassEntry entry = snapshot.getEntry(deployment);
+        offHeap.close();
+        assertThrows(IllegalStateException.class, offHeap::getSnapshot);
+
+        // a build that uses the closed holder is not affected
+        assertEquals("testtest", snapshot.getEntry(deployment).getPassword());
+        assertEquals("testtest", entry.getPassword());
+        snapshot.close();
+        assertThrows(IllegalStateException.class, entry::getPassword);
+    }
+
+    @Test
+    public void testReload_snapshotKeepsSecrets() throws Exception {
+        UUID deployment = UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3");
+        KeePassHolder offHeap = new KeePassHolder(file.toFile(), dao -> dao.open("testpass"), 100, true).start();
+        try {
+            KeePassReadOnlySnapshot first = offHeap.getSnapshot();
+            KeePassEntry entry = first.getEntry(deployment);
+            Files.write(file, Files.readAllBytes(file));
+            await(() -> offHeap.getVersion() == 2);
+
+            assertEquals("testtest", entry.getPassword());
+            first.close();
+            assertThrows(IllegalStateException.class, entry::getPassword);
+            try (KeePassReadOnlySnapshot second = offHeap.getSnapshot()) {
+                assertEquals("testtest", second.getEntry(deployment).getPassword());
+            }
+        } finally {
+            offHeap.close();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.RegexEngine;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassReadOnlySnapshotTest {
+    private static final UUID DEPLOYMENT = UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3");
+
+    private KeePassDAO dao;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dao = new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open("testpass");
+    }
+
+    @Test
+    public void testLookups() {
+        try (KeePassReadOnlySnapshot snapshot = dao.snapshot()) {
+            assertEquals(3, snapshot.getEntriesByTitle("Deployment").size());
+            assertEquals(2, snapshot.getGroupsByName("test").size());
+            assertEquals("testtest", snapshot.getEntry(DEPLOYMENT).getPassword());
+            KeePassGroup group = snapshot.getGroupsByPath("/Root/server/test").get(0);
+            assertEquals("true", snapshot.getEntriesByTitle(group, "Deployment").get(0).getPropertyByName("check").getValue());
+            assertEquals(dao.getEntriesByTitleRegex("Dep.*").size(), snapshot.getEntriesByTitleRegex("Dep.*").size());
+            assertThrows(IllegalArgumentException.class, () -> snapshot.getGroupsByName("test123"));
+            assertFalse(dao.isCompact());
+        }
+    }
+
+    @Test
+    public void testIndependentOfDao() {
+        dao.setRegexEngine(RegexEngine.LINEAR);
+        KeePassReadOnlySnapshot snapshot = dao.snapshot();
+        dao.setRegexEngine(RegexEngine.JAVA);
+        dao.compact(true);
+        dao.close();
+        assertEquals(RegexEngine.LINEAR, snapshot.getRegexEngine());
+        assertEquals("testtest", snapshot.getEntry(DEPLOYMENT).getPassword());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getGroupsByNameRegex("(t)\\1"));
+    }
+
+    @Test
+    public void testClose() {
+        KeePassReadOnlySnapshot snapshot = dao.snapshot(true);
+        assertTrue(snapshot.hasOffHeapSecrets());
+        snapshot.close();
+        assertTrue(snapshot.isClosed());
+        assertThrows(IllegalStateException.class, () -> snapshot.getEntry(DEPLOYMENT));
+
+        // snapshot of a compact DAO does not own its protected values
+        dao.compact(true);
+        dao.snapshot().close();
+        assertEquals("testtest", dao.getEntry(DEPLOYMENT).getPassword());
+    }
+
+    /**
+     * Runs lookups from many threads at once on one snapshot and checks that every thread sees the same results
+     */
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        try (KeePassReadOnlySnapshot snapshot = dao.snapshot(true)) {
+            String expected = lookups(snapshot);
+            for (String result : readConcurrently(snapshot, 8, 200)) {
+                assertEquals(expected, result);
+            }
+        }
+    }
+
+    @Benchmark
+    public void benchmarkConcurrentReaders(BenchmarkReport report) throws Exception {
+        try (KeePassReadOnlySnapshot snapshot = dao.snapshot(true)) {
+            int lookups = 2000;
+            for (int threads : new int[]{1, 2, 4, 8, 16}) {
+                long begin = System.nanoTime();
+                readConcurrently(snapshot, threads, lookups);
+                long elapsed = System.nanoTime() - begin;
+                report.publish(String.format("%d threads, lookups/s", threads), threads * lookups * 5L * 1000000000L / elapsed);
+            }
+        }
+    }
+
+    /**
+     * @return result of the last lookups of every thread
+     */
+    private static List<String> readConcurrently(KeePassReadOnlySnapshot snapshot, int threads, int lookups)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    String result = null;
+                    for (int j = 0; j < lookups; j++) {
+                        result = lookups(snapshot);
+                    }
+                    return result;
+                }));
+            }
+            start.countDown();
+            List<String> results = new ArrayList<String>();
+            for (Future<String> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String lookups(KeePassReadOnlySnapshot snapshot) {
+        StringBuilder result = new StringBuilder();
+        result.append(snapshot.getEntriesByTitle("Deployment").size());
+        result.append(snapshot.getEntriesByTitleRegex("Dep.*").size());
+        result.append(snapshot.getGroupsByName("test").size());
+        KeePassGroup group = snapshot.getGroupsByPath("/Root/server/test").get(0);
+        result.append(group.getUuid());
+        result.append(snapshot.getEntry(DEPLOYMENT).getPassword());
+        return result.toString();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.KeePassFileBuilder;
+import de.slackspace.openkeepass.domain.Property;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassReferenceResolverTest {
+    private static final UUID SHARED = UUID.fromString("6f1c0e2a-3b4d-4e5f-8a9b-0c1d2e3f4a5b");
+    private static final UUID SERVICE = UUID.fromString("0a1b2c3d-4e5f-4a6b-8c7d-9e0f1a2b3c4d");
+    private static final UUID CHAINED = UUID.fromString("1b2c3d4e-5f6a-4b7c-8d9e-0f1a2b3c4d5e");
+    private static final UUID SELF = UUID.fromString("2c3d4e5f-6a7b-4c8d-9e0f-1a2b3c4d5e6f");
+    private static final UUID CYCLE_A = UUID.fromString("3d4e5f6a-7b8c-4d9e-8f0a-2b3c4d5e6f7a");
+    private static final UUID CYCLE_B = UUID.fromString("4e5f6a7b-8c9d-4e0f-9a1b-3c4d5e6f7a8b");
+    private static final UUID LITERAL = UUID.fromString("5f6a7b8c-9d0e-4f1a-8b2c-4d5e6f7a8b9c");
+    private static final int CONSUMERS = 100;
+    private static final int CHAIN = KeePassReferenceResolver.MAX_DEPTH + 2;
+
+    private File dbFile;
+    private KeePassDAO dao;
+    private KeePassReferenceResolver resolver;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        EntryBuilder service = new EntryBuilder(SERVICE).title("Service")
+                .username(ref('U', SHARED)).password(ref('P', SHARED)).url(ref('A', SHARED) + "/app");
+        service.getCustomPropertyList().add(new Property("jdbc", "jdbc:{USERNAME}:{password}@{S:host}/{TITLE}", false));
+        service.getCustomPropertyList().add(new Property("host", "db", false));
+        service.getCustomPropertyList().add(new Property("owner",
+                "{REF:T@I:" + hex(SHARED) + "} {REF:I@I:" + hex(SHARED) + "}", false));
+        GroupBuilder group = new GroupBuilder("references")
+                .addEntry(new EntryBuilder(SHARED).title("Shared").username("svc").password("s3cret")
+                        .url("https://db.example.org").build())
+                .addEntry(service.build())
+                .addEntry(new EntryBuilder(CHAINED).title("Chained").username("chained").password(ref('P', SERVICE)).build())
+                .addEntry(new EntryBuilder(SELF).title("Self").username("{PASSWORD}").password("x{USERNAME}").build())
+                .addEntry(new EntryBuilder(CYCLE_A).title("Cycle A").password(ref('P', CYCLE_B)).build())
+                .addEntry(new EntryBuilder(CYCLE_B).title("Cycle B").password(ref('P', CYCLE_A)).build())
+                .addEntry(new EntryBuilder(LITERAL).title("Literal").username("{UNKNOWN} {S:missing} {")
+                        .password("{REF:P@T:Shared}").url("{REF:P@I:" + hex(UUID.randomUUID()) + "}").build());
+        for (int i = 0; i < CONSUMERS; i++) {
+            group.addEntry(new EntryBuilder(new UUID(1, i)).title("Consumer " + i).password(ref('P', SHARED)).build());
+        }
+        for (int i = 0; i < CHAIN; i++) {
+            group.addEntry(new EntryBuilder(new UUID(2, i)).title("Chain " + i)
+                    .password(i == CHAIN - 1 ? "end" : ref('P', new UUID(2, i + 1))).build());
+        }
+        dbFile = File.createTempFile("references", ".kdbx");
+        try (OutputStream out = new FileOutputStream(dbFile)) {
+            KeePassDatabase.write(new KeePassFileBuilder("references").addTopGroups(group.build()).build(), "testpass", out);
+        }
+        dao = new KeePassDAO(dbFile).open("testpass");
+        resolver = new KeePassReferenceResolver(dao);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        Files.delete(dbFile.toPath());
+    }
+
+    @Test
+    public void testReferences() {
+        KeePassEntry service = dao.getEntry(SERVICE);
+        assertEquals(ref('P', SHARED), service.getPropertyByName("Password").getValue());
+        assertEquals("svc", resolver.getUsername(service));
+        assertEquals("s3cret", resolver.getPassword(service));
+        assertEquals("https://db.example.org/app", resolver.getUrl(service));
+        assertEquals("Shared " + hex(SHARED), resolver.getValue(service, "owner"));
+        assertEquals("s3cret", resolver.getPassword(dao.getEntry(CHAINED)));
+        assertNull(resolver.getValue(service, "missing"));
+    }
+
+    @Test
+    public void testPlaceholders() {
+        KeePassEntry service = dao.getEntry(SERVICE);
+        assertEquals("jdbc:svc:s3cret@db/Service", resolver.getValue(service, "jdbc"));
+        assertEquals("{UNKNOWN} {S:missing} {", resolver.getUsername(dao.getEntry(LITERAL)));
+    }
+
+    @Test
+    public void testMemoized() {
+        for (int i = 0; i < CONSUMERS; i++) {
+            assertEquals("s3cret", resolver.getPassword(dao.getEntry(new UUID(1, i))));
+        }
+        assertEquals(1, resolver.getLookups());
+        long visited = dao.getVisitedNodes();
+        assertEquals("s3cret", resolver.getPassword(dao.getEntry(CHAINED)));
+        assertEquals(2, resolver.getLookups());
+        assertEquals("s3cret", resolver.getPassword(dao.getEntry(CHAINED)));
+        assertEquals(2, resolver.getLookups());
+        assertTrue(dao.getVisitedNodes() >= visited);
+    }
+
+    @Test
+    public void testCycles() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> resolver.getPassword(dao.getEntry(SELF)));
+        assertTrue(e.getMessage().startsWith("Reference cycle: "), e.getMessage());
+        e = assertThrows(IllegalArgumentException.class, () -> resolver.getPassword(dao.getEntry(CYCLE_A)));
+        assertTrue(e.getMessage().contains(CYCLE_B + "#Password"), e.getMessage());
+        // resolver is usable after a failure
+        assertEquals("s3cret", resolver.getPassword(dao.getEntry(SERVICE)));
+    }
+
+    @Test
+    public void testDepthLimit() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> resolver.getPassword(dao.getEntry(new UUID(2, 0))));
+        assertTrue(e.getMessage().startsWith("References are nested deeper than"), e.getMessage());
+        assertEquals("end", resolver.getPassword(dao.getEntry(new UUID(2, 3))));
+    }
+
+    @Test
+    public void testInvalidReferences() {
+        KeePassEntry literal = dao.getEntry(LITERAL);
+        assertThrows(IllegalArgumentException.class, () -> resolver.getPassword(literal));
+        assertThrows(IllegalArgumentException.class, () -> resolver.getUrl(literal));
+    }
+
+    private static String ref(char field, UUID uuid) {
+        return "{REF:" + field + "@I:" + hex(uuid) + "}";
+    }
+
+    private static String hex(UUID uuid) {
+        return uuid.toString().replace("-", "").toUpperCase();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassScopeTest {
+    private File dbFile;
+    private File recycleBinDbFile;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dbFile = new File("./src/test/resources/testdb.kdbx");
+        recycleBinDbFile = new File("./src/test/resources/testdb-recycle-bin.kdbx");
+    }
+
+    @Test
+    public void testExcludedPaths() {
+        KeePassDAO dao = new KeePassDAO(dbFile).open("testpass")
+                .setScope(new KeePassScope(false, Arrays.asList("/Root/client/"), -1));
+
+        assertEquals(dao.getGroupsByName("test").size(), 1);
+        assertEquals(dao.getGroupsByName("test").get(0).getPath(), "/Root/server/test");
+        assertThrows(IllegalArgumentException.class, () -> dao.getGroupsByPath("/Root/client/test"));
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.getGroup(UUID.fromString("59ceb3a6-18d2-9070-df1a-23b1d1411118")));
+    }
+
+    @Test
+    public void testMaxDepth() {
+        KeePassDAO dao = new KeePassDAO(dbFile).open("testpass")
+                .setScope(new KeePassScope(false, Collections.<String>emptyList(), 1));
+
+        assertEquals(dao.getGroupsByName("server").size(), 1);
+        assertThrows(IllegalArgumentException.class, () -> dao.getGroupsByName("test"));
+    }
+
+    @Test
+    public void testRecycleBin() {
+        assertEquals(new KeePassDAO(recycleBinDbFile).open("admin123").getGroupsByName("Recycle Bin").size(), 1);
+
+        KeePassDAO dao = new KeePassDAO(recycleBinDbFile).open("admin123")
+                .setScope(new KeePassScope(true, Collections.<String>emptyList(), -1));
+        assertThrows(IllegalArgumentException.class, () -> dao.getGroupsByName("Recycle Bin"));
+        assertEquals(dao.getGroupsByName("test").size(), 1);
+    }
+
+    @Test
+    public void testVisitedNodes() {
+        KeePassDAO all = new KeePassDAO(dbFile).open("testpass");
+        KeePassDAO scoped = new KeePassDAO(dbFile).open("testpass")
+                .setScope(new KeePassScope(false, Arrays.asList("/Root/client"), -1));
+
+        all.getEntriesByTitle("Deployment");
+        scoped.getEntriesByTitle("Deployment");
+
+        assertTrue(all.getVisitedNodes() > 0);
+        assertTrue(scoped.getVisitedNodes() < all.getVisitedNodes());
+    }
+
+    @Test
+    public void testCompact() {
+        KeePassDAO dao = new KeePassDAO(dbFile).open("testpass")
+                .setScope(new KeePassScope(false, Arrays.asList("/Root/client"), -1))
+                .compact();
+
+        assertEquals(dao.getGroupsByName("test").size(), 1);
+        assertTrue(dao.getVisitedNodes() > 0);
+        assertThrows(IllegalStateException.class, () -> dao.setScope(KeePassScope.ALL));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.dao.filter.EntryAttributeFilter;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassSecretsTest {
+    /**
+     * Secrets are reversed, so the test does not put them on the heap
+     */
+    private static final String SELECTED_SECRET = "ssaplabolg";
+    private static final String UNSELECTED_SECRET = "tercesrepus";
+
+    @Test
+    public void testSecretView() {
+        KeePassDAO dao = new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open("testpass").compact(true);
+        KeePassEntry entry = dao.getEntry(UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3"));
+        CharSequence password = entry.getPropertyByName("Password").getCharSequence();
+        assertTrue(password instanceof KeePassSecret);
+        assertEquals(8, password.length());
+        assertEquals('t', password.charAt(0));
+        assertEquals("test", password.subSequence(4, 8).toString());
+        assertEquals("test-deploy", entry.getUsername());
+        assertEquals(1, dao.getEntries(dao.getRootGroup(),
+                new EntryAttributeFilter("check", "true")).size());
+
+        dao.close();
+        assertThrows(IllegalStateException.class, () -> password.charAt(0));
+        assertThrows(IllegalStateException.class, entry::getPassword);
+        assertEquals("test-deploy", entry.getUsername());
+    }
+
+    @Test
+    public void testHeapDump() throws Exception {
+        KeePassDAO heap = new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open("testpass").compact();
+        Path dump = dumpHeap();
+        try {
+            assertTrue(contains(dump, UNSELECTED_SECRET));
+        } finally {
+            Files.delete(dump);
+        }
+        assertTrue(heap.isCompact());
+        heap = null;
+
+        KeePassDAO dao = new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open("testpass").compact(true);
+        String selected = dao.getEntriesByTitle(dao.getRootGroup(), "Global entry").get(0).getPassword();
+        dump = dumpHeap();
+        try {
+            assertTrue(contains(dump, SELECTED_SECRET));
+            assertFalse(contains(dump, UNSELECTED_SECRET));
+        } finally {
+            Files.delete(dump);
+        }
+        assertEquals(10, selected.length());
+        dao.close();
+    }
+
+    private static Path dumpHeap() throws IOException {
+        Path directory = Files.createTempDirectory("keepass-heap");
+        Path dump = directory.resolve("heap.hprof");
+        directory.toFile().deleteOnExit();
+        // live objects only: unreachable copies of the decrypted tree are collected before the dump
+        ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).dumpHeap(dump.toString(), true);
+        return dump;
+    }
+
+    /**
+     * Searches for a Latin-1 string that is given reversed
+     */
+    private static boolean contains(Path file, String reversed) throws IOException {
+        int length = reversed.length();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int i = 0; i + length <= buffer.limit(); i++) {
+                int j = 0;
+                while (j < length && buffer.get(i + j) == (byte) reversed.charAt(length - 1 - j)) {
+                    j++;
+                }
+                if (j == length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import de.slackspace.openkeepass.domain.Attachment;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.EntryBuilder;
+import de.slackspace.openkeepass.domain.Group;
+import de.slackspace.openkeepass.domain.GroupBuilder;
+import de.slackspace.openkeepass.domain.Property;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassSnapshotTest {
+    private KeePassDAO tree;
+    private KeePassDAO compact;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        File dbFile = new File("./src/test/resources/testdb.kdbx");
+        tree = new KeePassDAO(dbFile).open("testpass");
+        compact = new KeePassDAO(dbFile).open("testpass").compact();
+    }
+
+    @Test
+    public void testSameLookups() {
+        assertTrue(compact.isCompact());
+        assertEquals(groupUuids(compact.getGroupsByName("test")), groupUuids(tree.getGroupsByName("test")));
+        assertEquals(groupUuids(compact.getGroupsByNameRegex("[t|e|s]{3}t")),
+                groupUuids(tree.getGroupsByNameRegex("[t|e|s]{3}t")));
+        assertEquals(groupUuids(compact.getGroupsByPath("/Root/server/development")),
+                groupUuids(tree.getGroupsByPath("/Root/server/development")));
+        assertEquals(entryUuids(compact.getEntriesByTitle("Deployment")),
+                entryUuids(tree.getEntriesByTitle("Deployment")));
+        assertEquals(entryUuids(compact.getEntriesByTitleRegex("Dep[l|o]{2}yme.*")),
+                entryUuids(tree.getEntriesByTitleRegex("Dep[l|o]{2}yme.*")));
+
+        KeePassGroup group = compact.getGroupsByPath("/Root/server/test").get(0);
+        List<KeePassEntry> entries = compact.getEntriesByTitle(group, "Deployment");
+        assertEquals(entries.size(), 1);
+        assertEquals(entries.get(0).getPropertyByName("check").getValue(), "true");
+
+        UUID groupUuid = UUID.fromString("8b7e6300-b873-d32b-8c20-811b6de5f2ac");
+        assertEquals(compact.getGroup(groupUuid).getName(), tree.getGroup(groupUuid).getName());
+
+        KeePassEntry entry = compact.getEntry(UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3"));
+        assertEquals(entry.getTitle(), "Deployment");
+        assertEquals(entry.getUsername(), "test-deploy");
+        assertEquals(entry.getPassword(), "testtest");
+    }
+
+    @Test
+    public void testLookup_invalidValue() {
+        assertThrows(IllegalArgumentException.class, () -> compact.getGroupsByName("test123"));
+        assertThrows(IllegalArgumentException.class, () -> compact.getGroupsByPath("/Root/server/staging"));
+        assertThrows(IllegalArgumentException.class, () -> compact.getEntriesByTitleRegex("Deployme[0-9]{2}"));
+        assertThrows(IllegalArgumentException.class, () -> compact.getEntry(UUID.randomUUID()));
+        assertThrows(IllegalArgumentException.class, () -> compact.getGroup(UUID.randomUUID()));
+    }
+
+    @Test
+    public void testAttachments() {
+        EntryBuilder entry = new EntryBuilder(UUID.randomUUID()).title("Keystore");
+        byte[] data = {1, 2, 3};
+        entry.getAttachmentList().add(new Attachment("keystore.jks", 0, data));
+        Group root = new GroupBuilder(UUID.randomUUID()).addEntry(entry.build()).build();
+
+        KeePassSnapshot snapshot = KeePassSnapshot.build(root);
+        KeePassEntry result = snapshot.getEntriesByTitle(snapshot.getRootGroup(), "Keystore").get(0);
+
+        assertEquals(result.getAttachments().size(), 1);
+        assertEquals(result.getAttachmentByName("keystore.jks").getSize(), data.length);
+    }
+
+    @Test
+    public void testUuidLookups() {
+        Group root = generate(20, 30);
+        KeePassSnapshot snapshot = KeePassSnapshot.build(root);
+        for (Group group : root.getGroups()) {
+            assertEquals(snapshot.getGroup(group.getUuid()).getName(), group.getName());
+            for (Entry entry : group.getEntries()) {
+                assertEquals(snapshot.getEntry(entry.getUuid()).getTitle(), entry.getTitle());
+            }
+        }
+        assertFalse(snapshot.findGroup(UUID.randomUUID()).isPresent());
+        assertFalse(snapshot.findEntry(UUID.randomUUID()).isPresent());
+        assertFalse(snapshot.findEntry(new UUID(Long.MAX_VALUE, Long.MAX_VALUE)).isPresent());
+    }
+
+    @Test
+    public void testUuidLookups_duplicates() {
+        UUID uuid = UUID.randomUUID();
+        Group root = new GroupBuilder(UUID.randomUUID())
+                .addEntry(new EntryBuilder(UUID.randomUUID()).title("Before").build())
+                .addEntry(new EntryBuilder(uuid).title("First").build())
+                .addEntry(new EntryBuilder(uuid).title("Second").build())
+                .build();
+        assertEquals(KeePassSnapshot.build(root).getEntry(uuid).getTitle(), "First");
+    }
+
+    @Test
+    public void testRetainedBytes() {
+        KeePassSnapshot snapshot = KeePassSnapshot.build(generate(10, 20));
+        assertEquals(snapshot.getEntryCount(), 200);
+        assertTrue(snapshot.getRetainedBytes() > 0);
+    }
+
+    @Benchmark
+    public void benchmarkHeapFootprint(BenchmarkReport report) {
+        int groups = 100;
+        int entriesPerGroup = 200;
+
+        long base = usedHeap();
+        Group root = generate(groups, entriesPerGroup);
+        long treeSize = usedHeap() - base;
+
+        KeePassSnapshot snapshot = KeePassSnapshot.build(root);
+        root = null;
+        long snapshotSize = usedHeap() - base;
+
+        report.publish("tree, KB", treeSize / 1024);
+        report.publish("snapshot, KB", snapshotSize / 1024);
+        report.publish("snapshot strings", snapshot.getStringCount());
+        assertEquals(snapshot.getEntryCount(), groups * entriesPerGroup);
+    }
+
+    /**
+     * Strings are copied, as strings of a parsed file are not shared
+     */
+    private static Group generate(int groups, int entriesPerGroup) {
+        String[] names = {"Servers", "Databases", "Production", "Staging", "Archive"};
+        GroupBuilder root = new GroupBuilder(UUID.randomUUID()).name(new String("Root"));
+        for (int g = 0; g < groups; g++) {
+            GroupBuilder group = new GroupBuilder(UUID.randomUUID()).name(new String(names[g % names.length]));
+            for (int e = 0; e < entriesPerGroup; e++) {
+                EntryBuilder entry = new EntryBuilder(UUID.randomUUID())
+                        .title("Entry " + g + "-" + e)
+                        .username(new String("deploy"))
+                        .password(UUID.randomUUID().toString())
+                        .url(new String("https://repository.example.org"))
+                        .notes(new String("Managed by the build team"));
+                entry.getCustomPropertyList().add(
+                        new Property(new String("environment"), new String(names[e % names.length]), false));
+                group.addEntry(entry.build());
+            }
+            root.addGroup(group.build());
+        }
+        return root.build();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static List<UUID> groupUuids(List<KeePassGroup> groups) {
+        List<UUID> uuids = new ArrayList<UUID>();
+        for (KeePassGroup group : groups) {
+            uuids.add(group.getUuid());
+        }
+        return uuids;
+    }
+
+    private static List<UUID> entryUuids(List<KeePassEntry> entries) {
+        List<UUID> uuids = new ArrayList<UUID>();
+        for (KeePassEntry entry : entries) {
+            uuids.add(entry.getUuid());
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.ChaCha20ParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts test payloads with the outer ciphers, the plugin only decrypts them
+ *
+ * @author dpishchukhin.
+ */
+final class PayloadEncrypter {
+    private PayloadEncrypter() {
+    }
+
+    /**
+     * @param cipher outer cipher
+     * @param key    master key
+     * @param iv     encryption IV of the file header
+     * @param data   plain payload
+     * @return encrypted payload, AES payload is padded
+     */
+    static byte[] encrypt(PayloadCipher cipher, byte[] key, byte[] iv, byte[] data) throws GeneralSecurityException {
+        switch (cipher) {
+            case AES: {
+                Cipher aes = Cipher.getInstance("AES/CBC/PKCS5Padding");
+                aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+                return aes.doFinal(data);
+            }
+            case CHACHA20: {
+                Cipher chaCha20 = Cipher.getInstance("ChaCha20");
+                chaCha20.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "ChaCha20"), new ChaCha20ParameterSpec(iv, 0));
+                return chaCha20.doFinal(data);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown cipher: " + cipher);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.slackspace.openkeepass.KeePassDatabase;
+import de.slackspace.openkeepass.crypto.Aes;
+import de.slackspace.openkeepass.crypto.Sha256;
+import de.slackspace.openkeepass.domain.Entry;
+import de.slackspace.openkeepass.domain.KeePassFile;
+import de.slackspace.openkeepass.domain.KeePassHeader;
+import de.slackspace.openkeepass.exception.KeePassDatabaseUnreadableException;
+import de.slackspace.openkeepass.util.ByteUtils;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+
+/**
+ * @author dpishchukhin.
+ */
+public class PayloadReaderTest {
+    private static final File DB_FILE = new File("./src/test/resources/testdb.kdbx");
+    private static final String PASSWORD = "testpass";
+
+    @Test
+    public void testRead_sameAsOpenkeepass() throws Exception {
+        byte[] database = Files.readAllBytes(DB_FILE.toPath());
+        KeePassFile expected = KeePassDatabase.getInstance(DB_FILE).openDatabase(PASSWORD);
+        // small chunks make many chunks go through the reorder window
+        for (PayloadReader reader : Arrays.asList(new PayloadReader(1), new PayloadReader(4), new PayloadReader(4, 64))) {
+            assertSameEntries(expected, reader.read(database, header(database), passwordKey(PASSWORD)));
+        }
+    }
+
+    @Test
+    public void testRead_chaCha20() throws Exception {
+        byte[] database = toChaCha20(Files.readAllBytes(DB_FILE.toPath()));
+        assertEquals(PayloadCipher.fromUuid(header(database).getCipher()), PayloadCipher.CHACHA20);
+
+        KeePassFile expected = KeePassDatabase.getInstance(DB_FILE).openDatabase(PASSWORD);
+        assertSameEntries(expected, new PayloadReader(4, 128).read(database, header(database), passwordKey(PASSWORD)));
+
+        Path file = Files.createTempFile("chacha20", ".kdbx");
+        try {
+            Files.write(file, database);
+            KeePassDAO dao = new KeePassDAO(file.toFile()).open(PASSWORD);
+            assertEquals(dao.getEntry(UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3")).getPassword(), "testtest");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRead_invalidPassword() throws Exception {
+        for (byte[] database : Arrays.asList(Files.readAllBytes(DB_FILE.toPath()), toChaCha20(Files.readAllBytes(DB_FILE.toPath())))) {
+            assertThrows(InvalidCredentialsException.class, () ->
+                    new PayloadReader(4).read(database, header(database), passwordKey("wrongpass")));
+        }
+    }
+
+    @Test
+    public void testRead_corruptedBlock() throws Exception {
+        for (byte[] database : Arrays.asList(Files.readAllBytes(DB_FILE.toPath()), toChaCha20(Files.readAllBytes(DB_FILE.toPath())))) {
+            KeePassHeader header = header(database);
+            // start bytes and the first block header are intact, the first block data is not
+            database[KeePassHeader.VERSION_SIGNATURE_LENGTH + header.getHeaderSize() + 160] ^= 1;
+            KeePassDatabaseUnreadableException e = assertThrows(KeePassDatabaseUnreadableException.class, () ->
+                    new PayloadReader(4, 64).read(database, header, passwordKey(PASSWORD)));
+            assertTrue(e.getMessage().contains("Hashed block 0 is corrupt"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRead_corruptedBlockSize() throws Exception {
+        for (int mask : new int[]{0x40, 0x80}) {
+            // ChaCha20 is a stream cipher, so flipping a bit of the ciphertext flips the same bit of the payload:
+            // the high byte of the first block size follows 32 start bytes, block index and hash
+            byte[] database = toChaCha20(Files.readAllBytes(DB_FILE.toPath()));
+            KeePassHeader header = header(database);
+            database[KeePassHeader.VERSION_SIGNATURE_LENGTH + header.getHeaderSize() + 32 + 39] ^= mask;
+            KeePassDatabaseUnreadableException e = assertThrows(KeePassDatabaseUnreadableException.class, () ->
+                    new PayloadReader(4, 64).read(database, header, passwordKey(PASSWORD)));
+            assertTrue(e.getMessage().contains("Invalid size of hashed block 0"), e.getMessage());
+            assertTrue(e.getMessage().contains("The file is corrupted"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDecrypt_parallelChunks() throws Exception {
+        byte[] plain = new byte[(1 << 20) + 5];
+        new Random(1).nextBytes(plain);
+        byte[] key = new byte[32];
+        for (PayloadCipher cipher : PayloadCipher.values()) {
+            byte[] iv = new byte[cipher.getIvLength()];
+            byte[] data = PayloadEncrypter.encrypt(cipher, key, iv, plain);
+            for (int threads : new int[]{1, 4}) {
+                byte[] decrypted = decrypt(cipher, key, iv, data, 64 << 10, threads);
+                assertEquals(decrypted.length, data.length);
+                assertTrue(Arrays.equals(Arrays.copyOf(decrypted, plain.length), plain), cipher + " with " + threads + " threads");
+            }
+        }
+    }
+
+    @Benchmark
+    public void benchmarkDecryption(BenchmarkReport report) throws Exception {
+        byte[] plain = new byte[32 << 20];
+        new Random(1).nextBytes(plain);
+        byte[] key = new byte[32];
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (PayloadCipher cipher : PayloadCipher.values()) {
+            byte[] iv = new byte[cipher.getIvLength()];
+            byte[] data = PayloadEncrypter.encrypt(cipher, key, iv, plain);
+            decrypt(cipher, key, iv, data, PayloadReader.DEFAULT_CHUNK_SIZE, 1);
+            long start = System.nanoTime();
+            decrypt(cipher, key, iv, data, PayloadReader.DEFAULT_CHUNK_SIZE, 1);
+            long sequential = System.nanoTime() - start;
+            start = System.nanoTime();
+            decrypt(cipher, key, iv, data, PayloadReader.DEFAULT_CHUNK_SIZE, threads);
+            long parallel = System.nanoTime() - start;
+            report.publish(cipher + " MB/s with 1 thread", throughput(data.length, sequential));
+            report.publish(cipher + " MB/s with " + threads + " threads", throughput(data.length, parallel));
+        }
+    }
+
+    private static byte[] decrypt(PayloadCipher cipher, byte[] key, byte[] iv, byte[] data, int chunkSize, int threads)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (ChunkDecrypter decrypter = new ChunkDecrypter(cipher, key, iv, data, 0, data.length,
+                chunkSize, threads * 2, executor)) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream(data.length);
+            byte[] chunk;
+            while ((chunk = decrypter.nextChunk()) != null) {
+                result.write(chunk);
+            }
+            return result.toByteArray();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long throughput(long bytes, long nanos) {
+        return bytes * 1000000000L / nanos / (1 << 20);
+    }
+
+    private static void assertSameEntries(KeePassFile expected, KeePassFile actual) {
+        assertEquals(actual.getMeta().getDatabaseName(), expected.getMeta().getDatabaseName());
+        List<Entry> expectedEntries = expected.getEntries();
+        List<Entry> actualEntries = actual.getEntries();
+        assertEquals(actualEntries.size(), expectedEntries.size());
+        for (int i = 0; i < expectedEntries.size(); i++) {
+            assertEquals(actualEntries.get(i).getUuid(), expectedEntries.get(i).getUuid());
+            assertEquals(actualEntries.get(i).getTitle(), expectedEntries.get(i).getTitle());
+            assertEquals(actualEntries.get(i).getUsername(), expectedEntries.get(i).getUsername());
+            assertEquals(actualEntries.get(i).getPassword(), expectedEntries.get(i).getPassword());
+            assertEquals(actualEntries.get(i).getProperties().size(), expectedEntries.get(i).getProperties().size());
+        }
+    }
+
+    private static KeePassHeader header(byte[] database) {
+        return KeePassDatabase.getInstance(new ByteArrayInputStream(database)).getHeader();
+    }
+
+    private static byte[] passwordKey(String password) {
+        return Sha256.hash(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Re-encrypts the payload of an AES file with ChaCha20
+     */
+    private static byte[] toChaCha20(byte[] database) throws Exception {
+        KeePassHeader header = header(database);
+        byte[] masterKey = PayloadReader.masterKey(header, passwordKey(PASSWORD));
+        int offset = KeePassHeader.VERSION_SIGNATURE_LENGTH + header.getHeaderSize();
+        byte[] plain = Aes.decrypt(masterKey, header.getEncryptionIV(), Arrays.copyOfRange(database, offset, database.length));
+
+        byte[] nonce = new byte[12];
+        new Random(2).nextBytes(nonce);
+        header.setValue(KeePassHeader.CIPHER, PayloadCipher.CHACHA20.getUuid());
+        header.setValue(KeePassHeader.ENCRYPTION_IV, nonce);
+        return ByteUtils.concat(header.getBytes(), PayloadEncrypter.encrypt(PayloadCipher.CHACHA20, masterKey, nonce, plain));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import de.slackspace.openkeepass.crypto.ProtectedStringCrypto;
+import de.slackspace.openkeepass.crypto.Salsa20;
+import de.slackspace.openkeepass.crypto.Sha256;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+import org.spongycastle.crypto.engines.Salsa20Engine;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+/**
+ * @author dpishchukhin.
+ */
+public class Salsa20StreamTest {
+    private static final byte[] PROTECTED_STREAM_KEY = Base64.getDecoder().decode("p0ZW4R/jLHrRNTgBjuEHnyrSc9uPcvFqgBhhZnNLYnc=");
+
+    @Test
+    public void testKnownAnswer() {
+        // eSTREAM Salsa20/20 256-bit key, set 1, vector 0
+        byte[] key = new byte[32];
+        key[0] = (byte) 0x80;
+        byte[] expected = hex("E3BE8FDD8BECA2E3EA8EF9475B29A6E7003951E1097A5C38D23B7A5FAD9F6844"
+                + "B22C97559E2723C7CBBD3FE4FC8D9A0744652A83E72A9C461876AF4D7EF1A117");
+        for (Salsa20Keystream keystream : keystreams()) {
+            byte[] stream = new byte[64];
+            new Salsa20Stream(key, new byte[8], keystream).process(stream, 0, stream.length);
+            assertArrayEquals(stream, expected, keystream.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void testProcess_sameAsSpongycastle() {
+        Random random = new Random(42);
+        for (Salsa20Keystream keystream : keystreams()) {
+            byte[] key = new byte[32];
+            byte[] nonce = new byte[8];
+            random.nextBytes(key);
+            random.nextBytes(nonce);
+            Salsa20Engine engine = new Salsa20Engine();
+            engine.init(true, new ParametersWithIV(new KeyParameter(key), nonce));
+            Salsa20Stream stream = new Salsa20Stream(key, nonce, keystream);
+            // chunks cross keystream buffer boundaries
+            for (int i = 0; i < 2000; i++) {
+                byte[] data = new byte[random.nextInt(200)];
+                random.nextBytes(data);
+                byte[] expected = new byte[data.length];
+                engine.processBytes(data, 0, data.length, expected, 0);
+                stream.process(data, 0, data.length);
+                assertArrayEquals(data, expected, keystream.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @Test
+    public void testGenerate_counterCarry() {
+        assumeTrue(isVectorAvailable());
+        Salsa20Keystream vector = Salsa20Stream.newKeystream();
+        Salsa20Keystream scalar = new ScalarSalsa20Keystream();
+        int[] input = new int[16];
+        Arrays.fill(input, 0x5A5A5A5A);
+        // lanes of one vector call cross the 32-bit boundary of the block counter
+        long counter = 0xFFFFFFFFL - 1;
+        byte[] actual = new byte[vector.blocks() * Salsa20Keystream.BLOCK_SIZE];
+        vector.generate(input, counter, actual);
+        byte[] expected = new byte[actual.length];
+        for (int block = 0; block < vector.blocks(); block += scalar.blocks()) {
+            byte[] blocks = new byte[scalar.blocks() * Salsa20Keystream.BLOCK_SIZE];
+            scalar.generate(input, counter + block, blocks);
+            System.arraycopy(blocks, 0, expected, block * Salsa20Keystream.BLOCK_SIZE,
+                    Math.min(blocks.length, expected.length - block * Salsa20Keystream.BLOCK_SIZE));
+        }
+        assertArrayEquals(actual, expected);
+    }
+
+    @Test
+    public void testDecrypt_sameAsOpenkeepass() {
+        List<String> values = protectedValues(500);
+        ProtectedStringCrypto expected = Salsa20.createInstance(PROTECTED_STREAM_KEY);
+        ProtectedStringCrypto actual = Salsa20Stream.createInstance(PROTECTED_STREAM_KEY);
+        for (String value : values) {
+            assertEquals(actual.decrypt(value), expected.decrypt(value));
+        }
+
+        ProtectedStringCrypto encrypt = Salsa20Stream.createInstance(PROTECTED_STREAM_KEY);
+        ProtectedStringCrypto decrypt = Salsa20.createInstance(PROTECTED_STREAM_KEY);
+        assertEquals(decrypt.decrypt(encrypt.encrypt("pässwörd")), "pässwörd");
+    }
+
+    @Test
+    public void testNewKeystream_vector() {
+        assumeTrue(isVectorAvailable());
+        assertEquals(Salsa20Stream.newKeystream().getClass(), VectorSalsa20Keystream.class);
+    }
+
+    @Benchmark
+    public void benchmarkKeystream(BenchmarkReport report) {
+        int[] input = new int[16];
+        for (int round = 0; round < 5; round++) {
+            for (Salsa20Keystream keystream : keystreams()) {
+                byte[] out = new byte[keystream.blocks() * Salsa20Keystream.BLOCK_SIZE];
+                long bytes = 0;
+                long start = System.nanoTime();
+                for (long counter = 0; bytes < 16 << 20; counter += keystream.blocks()) {
+                    keystream.generate(input, counter, out);
+                    bytes += out.length;
+                }
+                long elapsed = System.nanoTime() - start;
+                report.publish(String.format("%s round %d, MB/s", keystream.getClass().getSimpleName(), round), bytes * 1000 / elapsed);
+            }
+        }
+    }
+
+    @Benchmark
+    public void benchmarkDecrypt(BenchmarkReport report) {
+        List<String> values = protectedValues(50000);
+        List<ProtectedStringCrypto> streams = new ArrayList<ProtectedStringCrypto>();
+        for (int i = 0; i < 5; i++) {
+            streams.add(Salsa20.createInstance(PROTECTED_STREAM_KEY));
+            for (Salsa20Keystream keystream : keystreams()) {
+                streams.add(new Salsa20Stream(Sha256.hash(PROTECTED_STREAM_KEY), hex("E830094B97205D2A"), keystream));
+            }
+        }
+        String[] results = new String[values.size()];
+        for (ProtectedStringCrypto stream : streams) {
+            long start = System.nanoTime();
+            for (int i = 0; i < results.length; i++) {
+                results[i] = stream.decrypt(values.get(i));
+            }
+            long elapsed = System.nanoTime() - start;
+            String name = stream instanceof Salsa20Stream ? stream.toString() : "openkeepass Salsa20";
+            report.publish(String.format("%s, us for %d protected values", name, results.length), elapsed / 1000);
+        }
+    }
+
+    private static List<Salsa20Keystream> keystreams() {
+        List<Salsa20Keystream> keystreams = new ArrayList<Salsa20Keystream>();
+        keystreams.add(new ScalarSalsa20Keystream());
+        if (isVectorAvailable()) {
+            keystreams.add(new VectorSalsa20Keystream());
+        }
+        return keystreams;
+    }
+
+    private static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule(Salsa20Stream.VECTOR_MODULE).isPresent()
+                && new VectorSalsa20Keystream().blocks() >= 4;
+    }
+
+    /**
+     * Protected values of a file in document order
+     */
+    private static List<String> protectedValues(int count) {
+        ProtectedStringCrypto encrypt = Salsa20.createInstance(PROTECTED_STREAM_KEY);
+        List<String> values = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(encrypt.encrypt("secret-" + i + "-" + Integer.toHexString(i * 31 + 7)));
+        }
+        return values;
+    }
+
+    private static byte[] hex(String value) {
+        byte[] bytes = new byte[value.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
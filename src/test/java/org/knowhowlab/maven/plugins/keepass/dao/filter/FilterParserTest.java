@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassEntry;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassGroup;
+
+/**
+ * @author dpishchukhin.
+ */
+public class FilterParserTest {
+    private KeePassDAO dao;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dao = new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open("testpass");
+    }
+
+    @Test
+    public void testIsComposite() {
+        assertTrue(FilterParser.isComposite("and(title:a, title:b)"));
+        assertTrue(FilterParser.isComposite(" NOT(title:a)"));
+        assertFalse(FilterParser.isComposite("Not (used)"));
+        assertFalse(FilterParser.isComposite("Or (legacy)"));
+        assertFalse(FilterParser.isComposite("title:and(a)"));
+        assertFalse(FilterParser.isComposite("android"));
+    }
+
+    @Test
+    public void testParse() {
+        Filter<KeePassEntry> filter = FilterParser.parseEntryFilter(
+                "or(and(regex:Dep(loy)?.*, attr:check=true), not('it''s, (quoted)'))");
+        assertEquals("OrFilter{filters=[AndFilter{filters=[EntryTitleRegexFilter{regex='Dep(loy)?.*'}, "
+                + "EntryAttributeFilter{name='check', value='true'}]}, "
+                + "NotFilter{filter=EntryTitleFilter{title='it's, (quoted)'}}]}", filter.toString());
+    }
+
+    @Test
+    public void testParse_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> FilterParser.parseEntryFilter("and(title:a"));
+        assertThrows(IllegalArgumentException.class, () -> FilterParser.parseEntryFilter("not(title:a, title:b)"));
+        assertThrows(IllegalArgumentException.class, () -> FilterParser.parseEntryFilter("and(name:a)"));
+        assertThrows(IllegalArgumentException.class, () -> FilterParser.parseEntryFilter("and(attr:check)"));
+        assertThrows(IllegalArgumentException.class, () -> FilterParser.parseEntryFilter("and('a)"));
+        assertThrows(IllegalArgumentException.class, () -> FilterParser.parseGroupFilter("and(title:a)"));
+        assertThrows(IllegalArgumentException.class, () -> FilterParser.parseGroupFilter("or(name:a) x"));
+    }
+
+    @Test
+    public void testPlan() {
+        Filter<KeePassEntry> plan = FilterPlanner.plan(FilterParser.parseEntryFilter(
+                "and(regex:Dep.*, and(attr:check=true, title:Deployment), uuid:878bc61b9a16259c476564d1b82945f3)"));
+        assertEquals("AndFilter{filters=[EntryUUIDFilter{uuid='878bc61b-9a16-259c-4765-64d1b82945f3'}, "
+                + "EntryTitleFilter{title='Deployment'}, EntryAttributeFilter{name='check', value='true'}, "
+                + "EntryTitleRegexFilter{regex='Dep.*'}]}", plan.toString());
+        assertEquals(UUID.fromString("878bc61b-9a16-259c-4765-64d1b82945f3"), FilterPlanner.findUuid(plan));
+        assertNull(FilterPlanner.findUuid(FilterParser.parseEntryFilter("or(uuid:878bc61b9a16259c476564d1b82945f3, title:a)")));
+    }
+
+    @Test
+    public void testEvaluate() {
+        Filter<KeePassEntry> entries = FilterPlanner.plan(FilterParser.parseEntryFilter(
+                "and(regex:Dep.*, attr:check=true, title:Deployment)"));
+        List<KeePassEntry> result = dao.getEntries(dao.getRootGroup(), entries);
+        assertEquals(1, result.size());
+        assertEquals("true", result.get(0).getPropertyByName("check").getValue());
+
+        assertEquals(2, dao.getEntries(dao.getRootGroup(), FilterParser.parseEntryFilter(
+                "and(title:Deployment, not(attr:check=true))")).size());
+
+        Filter<KeePassGroup> groups = FilterParser.parseGroupFilter("and(name:test, not(path:/Root/client/test))");
+        List<KeePassGroup> found = dao.getGroups(groups);
+        assertEquals(1, found.size());
+        assertEquals("/Root/server/test", found.get(0).getPath());
+
+        assertThrows(IllegalArgumentException.class, () -> dao.getGroups(FilterParser.parseGroupFilter("and(name:test, name:production)")));
+    }
+
+    @Test
+    public void testEvaluate_compact() {
+        dao.compact();
+        List<KeePassGroup> found = dao.getGroups(FilterParser.parseGroupFilter("or(path:/Root/server/test, uuid:657b6663979c424e43b46649c81ba0db)"));
+        assertEquals(2, found.size());
+        assertEquals("/Root/server/test", found.get(0).getPath());
+        assertEquals(1, dao.getEntries(found.get(0), FilterParser.parseEntryFilter("and(title:Deployment, attr:check=true)")).size());
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.dao.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+
+/**
+ * @author dpishchukhin.
+ */
+public class LinearPatternTest {
+    private static final String[] PATTERNS = {
+            "", "a", "abc", "a.c", "a*", "a+b", "a?b", "(ab)*", "(?:a|b)+c", "(?<name>a)b", "a{2}", "a{2,}", "a{1,3}",
+            "a*?b", "a+?", "[abc]+", "[^abc]", "[a-c]x", "[]a]", "[^]a]", "[a-]", "[-a]", "\\d+", "\\D", "\\w+", "\\W",
+            "\\s", "\\S+", "\\.", "\\t", "\\x41", "\\u00e9", "\\Qa.b\\E", "\\Qa.b", "^ab$", "a|b|", "()", "(a*)*b",
+            "(?i)abc", "(?i)[a-c]+", "(?i)[^a]", "(?s).", ".", "[\\d_]+", "[\\]]", "a}", "]", "Dep(loy)?.*",
+            "[🔑a]", "🔑+", "é"};
+    private static final String[] INPUTS = {
+            "", "a", "b", "c", "ab", "abc", "aab", "aaab", "abab", "ac", "aac", "abx", "bx", "]", "-", "x", "A", "ABC",
+            "aBc", "B", "123", "a1_", " ", "\t", "\n", "\r", "\u0085", "a.b", "axb", "é", "É", "a}", "Deployment",
+            "🔑", "🔑🔑", "\ud83d", "abcabc", "a\n"};
+
+    @Test
+    public void testKnownAnswers() {
+        for (String regex : PATTERNS) {
+            LinearPattern pattern = LinearPattern.compile(regex);
+            for (String input : INPUTS) {
+                assertEquals(Pattern.matches(regex, input), pattern.matches(input),
+                        String.format("regex '%s', input '%s'", regex, input));
+            }
+        }
+    }
+
+    @Test
+    public void testRandomPatterns() {
+        long seed = Long.getLong("keepass.differential.seed", System.nanoTime());
+        Random random = new Random(seed);
+        for (int i = 0; i < 2000; i++) {
+            String regex = (random.nextInt(5) == 0 ? "(?i)" : "") + randomRegex(random, 3);
+            LinearPattern pattern = LinearPattern.compile(regex);
+            for (int j = 0; j < 20; j++) {
+                String input = randomInput(random);
+                assertEquals(Pattern.matches(regex, input), pattern.matches(input),
+                        String.format("regex '%s', input '%s' (seed %d)", regex, input, seed));
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupported() {
+        String[] patterns = {"(a)\\1", "(?=a)a", "(?!a)a", "(?<=a)b", "(?<!a)b", "(?>a)", "a*+", "a++", "(?i:a)",
+                "a(?i)b", "(?m)a", "\\ba", "\\Aa", "a\\z", "\\p{L}", "\\P{L}", "[a[b]]", "[a&&b]", "\\0101", "\\cA",
+                "a^", "a$b", "(a$)", "a{1001}", "(a{1000}){20}"};
+        for (String regex : patterns) {
+            PatternSyntaxException e = assertThrows(PatternSyntaxException.class, () -> LinearPattern.compile(regex), regex);
+            assertEquals(regex, e.getPattern());
+        }
+        assertTrue(assertThrows(PatternSyntaxException.class, () -> LinearPattern.compile("(a)\\1")).getMessage()
+                .startsWith("Unsupported by the linear regex engine"));
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] patterns = {"[", "[]", "(", "a)", "*", "a**", "a{", "x{2,1}", "a{,3}", "[b-a]", "\\"};
+        for (String regex : patterns) {
+            assertThrows(PatternSyntaxException.class, () -> Pattern.compile(regex), regex);
+            assertThrows(PatternSyntaxException.class, () -> LinearPattern.compile(regex), regex);
+        }
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+        KeePassDAO dao = new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open("testpass");
+        dao.setRegexEngine(RegexEngine.LINEAR);
+        assertEquals(dao.setRegexEngine(RegexEngine.JAVA).getEntriesByTitleRegex("Dep(loy)?.*").size(),
+                dao.setRegexEngine(RegexEngine.LINEAR).getEntriesByTitleRegex("Dep(loy)?.*").size());
+        assertEquals(2, dao.getGroupsByNameRegex("t[aeiou]st").size());
+        assertThrows(IllegalArgumentException.class, () -> dao.getGroupsByNameRegex("(t)\\1"));
+        assertEquals(2, dao.compact().getGroupsByNameRegex("t[aeiou]st").size());
+        assertThrows(IllegalArgumentException.class, () -> dao.getEntriesByTitleRegex("(?=D)Deployment"));
+
+        Filter<?> filter = FilterParser.parseEntryFilter("and(regex:Deploy.*, not(regex:(x|x)*y))", RegexEngine.LINEAR);
+        assertEquals("AndFilter{filters=[EntryTitleRegexFilter{regex='Deploy.*'}, "
+                + "NotFilter{filter=EntryTitleRegexFilter{regex='(x|x)*y'}}]}", filter.toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> FilterParser.parseGroupFilter("regex:(?<=a)b", RegexEngine.LINEAR));
+    }
+
+    /**
+     * Nested quantifiers take exponential or high polynomial time with a backtracking matcher
+     * on inputs that almost match
+     */
+    @Test
+    public void testPathologicalPatterns() {
+        assertPathological("(.*a){12}", "a", "b", 8);
+        assertPathological("(.*,){11}P", "a,", "", 8);
+        assertPathological(".*.*.*.*b", "a", "", 32);
+        assertPathological("(a+)+b", "a", "", 16);
+    }
+
+    @Benchmark
+    public void benchmarkPathologicalPatterns(BenchmarkReport report) {
+        benchmark(report, "(.*a){12}", "a", "b", 8, 20, 4);
+        benchmark(report, "(.*,){11}P", "a,", "", 8, 20, 4);
+        benchmark(report, ".*.*.*.*b", "a", "", 32, 160, 64);
+        benchmark(report, "(a+)+b", "a", "", 16, 24, 8);
+    }
+
+    /**
+     * Small inputs are checked against the backtracking matcher, a large one only with the linear matcher
+     */
+    private static void assertPathological(String regex, String unit, String suffix, int size) {
+        LinearPattern pattern = LinearPattern.compile(regex);
+        String input = repeat(unit, size) + suffix;
+        assertEquals(Pattern.matches(regex, input), pattern.matches(input), regex);
+        assertFalse(pattern.matches(repeat(unit, 100000) + suffix), regex);
+    }
+
+    private static void benchmark(BenchmarkReport report, String regex, String unit, String suffix, int from, int to, int step) {
+        LinearPattern pattern = LinearPattern.compile(regex);
+        for (int n = from; n <= to; n += step) {
+            String input = repeat(unit, n) + suffix;
+            long start = System.nanoTime();
+            boolean expected = Pattern.matches(regex, input);
+            long java = System.nanoTime() - start;
+            start = System.nanoTime();
+            boolean actual = pattern.matches(input);
+            long linear = System.nanoTime() - start;
+            assertEquals(expected, actual, regex);
+            report.publish(String.format("%s on %d chars, java us", regex, input.length()), java / 1000);
+            report.publish(String.format("%s on %d chars, linear us", regex, input.length()), linear / 1000);
+        }
+        String input = repeat(unit, 100000) + suffix;
+        long start = System.nanoTime();
+        assertFalse(pattern.matches(input));
+        report.publish(String.format("%s on %d chars, linear ms", regex, input.length()), (System.nanoTime() - start) / 1000000);
+    }
+
+    private static String randomRegex(Random random, int depth) {
+        StringBuilder regex = new StringBuilder();
+        int atoms = 1 + random.nextInt(3);
+        for (int i = 0; i < atoms; i++) {
+            int kind = random.nextInt(depth > 0 ? 9 : 6);
+            switch (kind) {
+                case 0:
+                case 1:
+                    regex.append("ab.".charAt(random.nextInt(3)));
+                    break;
+                case 2:
+                    regex.append(random.nextBoolean() ? "[ab]" : "[^a]");
+                    break;
+                case 3:
+                    regex.append(random.nextBoolean() ? "[a-cA]" : "\\w");
+                    break;
+                case 4:
+                    regex.append("B");
+                    break;
+                case 5:
+                    regex.append("\\d");
+                    break;
+                case 6:
+                case 7:
+                    regex.append(random.nextBoolean() ? "(" : "(?:").append(randomRegex(random, depth - 1)).append(')');
+                    break;
+                default:
+                    regex.append('(').append(randomRegex(random, depth - 1)).append('|')
+                            .append(randomRegex(random, depth - 1)).append(')');
+                    break;
+            }
+            switch (random.nextInt(10)) {
+                case 0:
+                    regex.append('*');
+                    break;
+                case 1:
+                    regex.append('+');
+                    break;
+                case 2:
+                    regex.append('?');
+                    break;
+                case 3:
+                    int min = random.nextInt(3);
+                    regex.append('{').append(min).append(random.nextBoolean() ? "," + (min + random.nextInt(3)) : "")
+                            .append('}');
+                    break;
+                case 4:
+                    regex.append("*?");
+                    break;
+                default:
+                    break;
+            }
+        }
+        return regex.toString();
+    }
+
+    private static String randomInput(Random random) {
+        StringBuilder input = new StringBuilder();
+        int length = random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            input.append("abAB1\n".charAt(random.nextInt(6)));
+        }
+        return input.toString();
+    }
+
+    private static String repeat(String unit, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(unit);
+        }
+        return result.toString();
+    }
+}
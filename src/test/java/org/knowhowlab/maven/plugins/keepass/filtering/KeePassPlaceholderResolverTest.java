@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.filtering;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassPlaceholderResolverTest {
+    private AtomicInteger opened;
+    private KeePassPlaceholderResolver resolver;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        File dbFile = new File("./src/test/resources/testdb.kdbx");
+        opened = new AtomicInteger();
+        resolver = new KeePassPlaceholderResolver(() -> {
+            opened.incrementAndGet();
+            return new KeePassDAO(dbFile).open("testpass");
+        }, false);
+    }
+
+    @Test
+    public void testInterpolate_noExpressions() {
+        assertEquals(resolver.interpolate("user=${user.name}"), "user=${user.name}");
+        assertFalse(resolver.isOpen());
+        assertEquals(opened.get(), 0);
+    }
+
+    @Test
+    public void testInterpolate() {
+        String text = resolver.interpolate(
+                "user=${keepass:Root/server/test/Deployment#username}\n"
+                        + "check=${keepass:Root/server/test/Deployment#check}\n"
+                        + "password=${keepass:/Root/server/test/Deployment}");
+        assertTrue(resolver.isOpen());
+        assertTrue(text.startsWith("user=test"));
+        assertTrue(text.contains("check=true\n"));
+        assertFalse(text.contains("${keepass:"));
+    }
+
+    @Test
+    public void testResolve_memoized() {
+        String value = resolver.resolve("Root/server/test/Deployment#password");
+        assertEquals(resolver.resolve("Root/server/test/Deployment#password"), value);
+        resolver.resolve("Root/server/test/Deployment#url");
+        assertEquals(opened.get(), 1);
+    }
+
+    @Test
+    public void testResolve_duplicates() {
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("Deployment#username"));
+    }
+
+    @Test
+    public void testResolve_unknown() {
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("Root/server/test/Unknown"));
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("Root/server/test/Deployment#unknown"));
+        assertThrows(IllegalArgumentException.class, () -> resolver.resolve("#username"));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassEventsTest {
+    private final File dbFile = new File("./src/test/resources/testdb.kdbx");
+
+    @Test
+    public void testOpenEvents() throws Exception {
+        List<RecordedEvent> events = record(() -> new KeePassDAO(dbFile).open("testpass"));
+
+        RecordedEvent read = find(events, "org.knowhowlab.keepass.FileRead");
+        assertEquals(read.getLong("databaseSize"), dbFile.length());
+
+        RecordedEvent open = find(events, "org.knowhowlab.keepass.Open");
+        assertEquals(open.getLong("databaseSize"), dbFile.length());
+        assertEquals(open.getString("credentials"), "password");
+        assertEquals(open.getString("kdf"), "AES");
+        assertTrue(open.getLong("transformRounds") > 0);
+        assertTrue(open.getBoolean("success"));
+
+        RecordedEvent keyDerivation = find(events, "org.knowhowlab.keepass.KeyDerivation");
+        assertEquals(keyDerivation.getLong("transformRounds"), open.getLong("transformRounds"));
+        RecordedEvent decryption = find(events, "org.knowhowlab.keepass.Decryption");
+        assertEquals(decryption.getString("cipher"), "AES");
+        assertTrue(decryption.getLong("payloadSize") > 0);
+        assertTrue(decryption.getInt("threads") > 0);
+        RecordedEvent parse = find(events, "org.knowhowlab.keepass.Parse");
+        // phases are nested in the open event and follow each other
+        assertFalse(keyDerivation.getStartTime().isBefore(open.getStartTime()));
+        assertFalse(decryption.getStartTime().isBefore(keyDerivation.getEndTime()));
+        assertFalse(parse.getStartTime().isBefore(decryption.getEndTime()));
+        assertFalse(parse.getEndTime().isAfter(open.getEndTime()));
+
+        for (RecordedEvent event : events) {
+            assertFalse(event.toString().contains("testpass"));
+        }
+    }
+
+    @Test
+    public void testOpenEvent_invalidPassword() throws Exception {
+        List<RecordedEvent> events = record(() ->
+                assertThrows(IllegalArgumentException.class, () -> new KeePassDAO(dbFile).open("fakepass")));
+
+        assertFalse(find(events, "org.knowhowlab.keepass.Open").getBoolean("success"));
+        assertTrue(events.stream().noneMatch(event -> event.getEventType().getName().equals("org.knowhowlab.keepass.Parse")));
+    }
+
+    private static List<RecordedEvent> record(Runnable action) throws Exception {
+        Path dump = Files.createTempFile("keepass", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(KeePassFileReadEvent.class);
+            recording.enable(KeePassOpenEvent.class);
+            recording.enable(KeePassKeyDerivationEvent.class);
+            recording.enable(KeePassDecryptionEvent.class);
+            recording.enable(KeePassParseEvent.class);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(dump);
+            return RecordingFile.readAllEvents(dump).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("org.knowhowlab.keepass."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(name + " event is missed"));
+    }
+}
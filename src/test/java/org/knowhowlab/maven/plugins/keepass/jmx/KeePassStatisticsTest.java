@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.knowhowlab.maven.plugins.keepass.jmx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.dao.KeePassDAO;
+
+/**
+ * @author dpishchukhin.
+ */
+public class KeePassStatisticsTest {
+    private MBeanServer server;
+    private ObjectName name;
+    private KeePassStatisticsMXBean statistics;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = ManagementFactory.getPlatformMBeanServer();
+        name = KeePassStatistics.getInstance().getObjectName();
+        assertNotNull(name);
+        statistics = JMX.newMXBeanProxy(server, name, KeePassStatisticsMXBean.class);
+        statistics.evictAll();
+        statistics.resetStatistics();
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        KeePassDAO dao = new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open("testpass");
+        dao.getEntriesByTitle(dao.getRootGroup(), "Deployment");
+        dao.compact();
+
+        assertEquals(server.getAttribute(name, "Opens"), 1L);
+        assertEquals(server.getAttribute(name, "OpenFailures"), 0L);
+        assertEquals(((CompositeData) server.getAttribute(name, "KeyDerivationTime")).get("count"), 1L);
+        assertEquals(statistics.getDecryptionTime().getCount(), 1);
+        assertEquals(statistics.getParseTime().getCount(), 1);
+        assertEquals(statistics.getIndexBuildTime().getCount(), 1);
+        assertTrue(statistics.getKeyDerivationTime().getMaxMillis() > 0);
+        assertTrue(statistics.getKeyDerivationTime().getP99Millis() >= statistics.getKeyDerivationTime().getMeanMillis());
+        assertTrue(dao.getRetainedBytes() > 0);
+    }
+
+    @Test
+    public void testOpen_invalidCredentials() throws Exception {
+        String password = UUID.randomUUID().toString();
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalArgumentException.class, () ->
+                    new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open(password));
+        }
+        assertEquals(statistics.getOpens(), 0);
+        assertEquals(statistics.getOpenFailures(), 1);
+        assertEquals(statistics.getRejectedOpens(), 2);
+        assertTrue(statistics.getRetainedBytes() > 0);
+
+        // rejected credentials are forgotten
+        assertTrue(statistics.evictAll() >= 1);
+        assertThrows(IllegalArgumentException.class, () ->
+                new KeePassDAO(new File("./src/test/resources/testdb.kdbx")).open(password));
+        assertEquals(statistics.getOpenFailures(), 2);
+    }
+
+    @Test
+    public void testLookups() {
+        KeePassStatistics.getInstance().recordLookup("group:path");
+        KeePassStatistics.getInstance().recordLookup("group:path");
+        KeePassStatistics.getInstance().recordLookup("entry:title");
+
+        assertEquals(statistics.getLookups().get("group:path").longValue(), 2);
+        assertEquals(statistics.getLookups().get("entry:title").longValue(), 1);
+    }
+
+    @Test
+    public void testRegister_takesNameOver() throws Exception {
+        MBeanServer other = MBeanServerFactory.newMBeanServer();
+        // registration of a previous realm
+        other.registerMBean(new StandardMBean(statistics, KeePassStatisticsMXBean.class, true),
+                new ObjectName(KeePassStatistics.OBJECT_NAME));
+
+        KeePassStatistics.getInstance().register(other);
+        assertEquals(KeePassStatistics.getInstance().getObjectName(), new ObjectName(KeePassStatistics.OBJECT_NAME));
+        assertEquals(other.queryNames(new ObjectName("org.knowhowlab.keepass:*"), null).size(), 1);
+        assertTrue(other.isInstanceOf(new ObjectName(KeePassStatistics.OBJECT_NAME), KeePassStatistics.class.getName()));
+    }
+
+    @Test
+    public void testEvictAll() throws Exception {
+        AtomicInteger held = new AtomicInteger(2);
+        KeePassStatistics.getInstance().register(new KeePassStatistics.Cache() {
+            public int getHeldDatabases() {
+                return held.get();
+            }
+
+            public long getRetainedBytes() {
+                return held.get() * 1000L;
+            }
+
+            public int evict() {
+                return held.getAndSet(0);
+            }
+        });
+        assertEquals(statistics.getHeldDatabases(), 2);
+        assertTrue(statistics.getRetainedBytes() >= 2000);
+
+        assertEquals(server.invoke(name, "evictAll", null, null), 2);
+        assertEquals(statistics.getHeldDatabases(), 0);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.redact;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.knowhowlab.maven.plugins.keepass.Benchmark;
+import org.knowhowlab.maven.plugins.keepass.BenchmarkReport;
+
+/**
+ * @author dpishchukhin.
+ */
+public class RedactingOutputStreamTest {
+    @Test
+    public void testWrite() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        RedactingOutputStream redacting = new RedactingOutputStream(target, StandardCharsets.UTF_8);
+        redacting.setSecrets(Arrays.asList("s3cr3t-value", "token1234"));
+        PrintStream out = new PrintStream(redacting, false, StandardCharsets.UTF_8);
+
+        out.println("[INFO] password=s3cr3t-value");
+        // a secret that is written in pieces within one line
+        out.print("[INFO] tok");
+        out.write('e');
+        out.print("n1234 done\nnext ");
+        out.println("line");
+        out.print("progress token1234\r");
+        assertEquals(target.toString(StandardCharsets.UTF_8),
+                "[INFO] password=******\n[INFO] ****** done\nnext line\nprogress ******\r");
+
+        // secrets that are registered later apply to following lines
+        redacting.setSecrets(Arrays.asList("s3cr3t-value", "token1234", "another"));
+        out.println("another s3cr3t-value");
+        assertTrue(target.toString(StandardCharsets.UTF_8).endsWith("****** ******\n"));
+    }
+
+    @Test
+    public void testFlush_partialLine() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        RedactingOutputStream redacting = new RedactingOutputStream(target, StandardCharsets.UTF_8);
+        redacting.setSecrets(Arrays.asList("s3cr3t-value"));
+        redacting.write("progress s3cr3t-value".getBytes(StandardCharsets.UTF_8));
+        assertEquals(target.size(), 0);
+        redacting.flush();
+        assertEquals(target.toString(StandardCharsets.UTF_8), "progress ******");
+    }
+
+    @Test
+    public void testWrite_manySecrets() {
+        List<String> secrets = randomSecrets(500);
+        List<String> lines = consoleLines(secrets);
+        long size = size(lines);
+        CountingOutputStream target = new CountingOutputStream();
+        RedactingOutputStream redacting = new RedactingOutputStream(target, StandardCharsets.UTF_8);
+        redacting.setSecrets(secrets);
+        print(new PrintStream(redacting, false, StandardCharsets.UTF_8), lines);
+        // 100 lines have a secret of 12 characters
+        assertEquals(target.count, size - 100 * (12 - SecretMatcher.MASK.length));
+    }
+
+    @Benchmark
+    public void benchmarkWrite(BenchmarkReport report) {
+        List<String> secrets = randomSecrets(500);
+        List<String> lines = consoleLines(secrets);
+        long size = size(lines);
+        RedactingOutputStream redacting = new RedactingOutputStream(new CountingOutputStream(), StandardCharsets.UTF_8);
+        redacting.setSecrets(secrets);
+        report.publish("secret matcher", redacting.getMatcher());
+        PrintStream plain = new PrintStream(new CountingOutputStream(), true, StandardCharsets.UTF_8);
+        PrintStream redacted = new PrintStream(redacting, false, StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 30; i++) {
+            print(plain, lines);
+            print(redacted, lines);
+        }
+        report.publish("plain, MB/s", throughput(size, print(plain, lines)));
+        report.publish("masked, MB/s", throughput(size, print(redacted, lines)));
+        report.publish("String.replace, MB/s", throughput(size, printNaive(plain, lines, secrets)));
+    }
+
+    private static List<String> randomSecrets(int count) {
+        Random random = new Random(1);
+        List<String> secrets = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            secrets.add(randomSecret(random));
+        }
+        return secrets;
+    }
+
+    /**
+     * Every 100th line has a secret
+     */
+    private static List<String> consoleLines(List<String> secrets) {
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            String line = "[INFO] --- maven-compiler-plugin:3.11.0:compile (default-compile) @ module-" + i + " ---";
+            lines.add(i % 100 == 0 ? line + " " + secrets.get(i % secrets.size()) : line);
+        }
+        return lines;
+    }
+
+    private static long size(List<String> lines) {
+        long size = 0;
+        for (String line : lines) {
+            size += line.length() + 1;
+        }
+        return size;
+    }
+
+    private static long print(PrintStream out, List<String> lines) {
+        long start = System.nanoTime();
+        for (String line : lines) {
+            out.println(line);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Reference: one replace per secret and line
+     */
+    private static long printNaive(PrintStream out, List<String> lines, List<String> secrets) {
+        long start = System.nanoTime();
+        for (String line : lines) {
+            for (String secret : secrets) {
+                line = line.replace(secret, "******");
+            }
+            out.println(line);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long throughput(long bytes, long nanos) {
+        return bytes * 1000000000L / nanos / (1 << 20);
+    }
+
+    private static String randomSecret(Random random) {
+        char[] chars = new char[12];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('!' + random.nextInt(94));
+        }
+        return new String(chars);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2010-2016 Dmytro Pishchukhin (http://knowhowlab.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.knowhowlab.maven.plugins.keepass.redact;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author dpishchukhin.
+ */
+public class SecretMatcherTest {
+    @Test
+    public void testRedact() {
+        SecretMatcher matcher = matcher("secret", "password", "cretin", "abcd");
+        assertEquals(matcher.getSecretCount(), 4);
+        assertEquals(matcher.redact("nothing to mask"), "nothing to mask");
+        assertEquals(matcher.redact("secret"), "******");
+        assertEquals(matcher.redact("-Dpassword=secret!"), "-D******=******!");
+        // overlapping and adjacent occurrences are one run
+        assertEquals(matcher.redact("a secretin b"), "a ****** b");
+        assertEquals(matcher.redact("passwordsecret"), "******");
+        assertEquals(matcher.redact("abcdabcd abcabcd"), "****** abc******");
+        assertEquals(matcher.redact("ssecrett"), "s******t");
+    }
+
+    @Test
+    public void testRedact_shortAndNonAscii() {
+        SecretMatcher matcher = matcher("abc", "пароль", "密码密码");
+        // secrets shorter than 4 bytes are not masked
+        assertEquals(matcher.getSecretCount(), 2);
+        assertEquals(matcher.redact("abc пароль 密码密码密码"), "abc ****** ******");
+    }
+
+    @Test
+    public void testRedact_noMatchReturnsNull() {
+        SecretMatcher matcher = matcher("secret");
+        byte[] line = "nothing to mask\n".getBytes(StandardCharsets.UTF_8);
+        assertNull(matcher.redact(line, 0, line.length));
+        assertNull(matcher("").redact(line, 0, line.length));
+    }
+
+    @Test
+    public void testRedact_sameAsNaive() {
+        Random random = new Random(1);
+        for (int round = 0; round < 500; round++) {
+            List<String> secrets = new ArrayList<String>();
+            for (int i = random.nextInt(6) + 1; i > 0; i--) {
+                secrets.add(randomString(random, 4 + random.nextInt(4)));
+            }
+            String text = randomString(random, random.nextInt(200));
+            assertEquals(matcher(secrets.toArray(new String[0])).redact(text), naive(secrets, text), text + " " + secrets);
+        }
+    }
+
+    private static SecretMatcher matcher(String... secrets) {
+        List<byte[]> encoded = new ArrayList<byte[]>();
+        for (String secret : secrets) {
+            encoded.add(secret.getBytes(StandardCharsets.UTF_8));
+        }
+        return new SecretMatcher(encoded);
+    }
+
+    /**
+     * Marks every occurrence of every secret and masks marked runs
+     */
+    private static String naive(List<String> secrets, String text) {
+        boolean[] masked = new boolean[text.length()];
+        for (String secret : secrets) {
+            for (int i = text.indexOf(secret); i >= 0; i = text.indexOf(secret, i + 1)) {
+                Arrays.fill(masked, i, i + secret.length(), true);
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            if (!masked[i]) {
+                result.append(text.charAt(i));
+            } else if (i == 0 || !masked[i - 1]) {
+                result.append("******");
+            }
+        }
+        return result.toString();
+    }
+
+    private static String randomString(Random random, int length) {
+        // small alphabet makes many overlapping occurrences
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = "abc".charAt(random.nextInt(3));
+        }
+        return new String(chars);
+    }
+}